@@ -17,8 +17,11 @@
 
 package org.dromara.hmily.config.api;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import org.apache.commons.lang3.StringUtils;
 import org.dromara.hmily.config.api.exception.ConfigException;
@@ -34,6 +37,8 @@ public final class ConfigEnv {
     
     private static final Map<Class<?>, Config> CONFIGS = new ConcurrentHashMap<>();
     
+    private static final ThreadLocal<Map<Class<?>, Config>> SCOPED_CONFIGS = new ThreadLocal<>();
+    
     /**
      * Save some custom configuration information.
      */
@@ -73,9 +78,48 @@ public final class ConfigEnv {
      */
     @SuppressWarnings("unchecked")
     public <T extends Config> T getConfig(final Class<T> clazz) {
+        Map<Class<?>, Config> scoped = SCOPED_CONFIGS.get();
+        if (scoped != null && scoped.containsKey(clazz)) {
+            return (T) scoped.get(clazz);
+        }
         return (T) CONFIGS.get(clazz);
     }
     
+    /**
+     * Gets the registered config of a prefix.
+     *
+     * @param prefix the prefix
+     * @return the config, null if none has the prefix
+     */
+    public Config getConfig(final String prefix) {
+        return CONFIGS.values().stream().filter(e -> prefix.equals(e.prefix())).findFirst().orElse(null);
+    }
+    
+    /**
+     * Run a supplier on this thread with configs which take the place of the registered ones of their class,
+     * so each of several instances of a repository reads its own config in its init.
+     *
+     * @param <T>      the type parameter
+     * @param configs  the configs
+     * @param supplier the supplier
+     * @return the result of the supplier
+     */
+    public <T> T withConfigs(final Collection<? extends Config> configs, final Supplier<T> supplier) {
+        Map<Class<?>, Config> previous = SCOPED_CONFIGS.get();
+        Map<Class<?>, Config> scoped = previous == null ? new HashMap<>(16) : new HashMap<>(previous);
+        configs.forEach(config -> scoped.put(config.getClass(), config));
+        SCOPED_CONFIGS.set(scoped);
+        try {
+            return supplier.get();
+        } finally {
+            if (previous == null) {
+                SCOPED_CONFIGS.remove();
+            } else {
+                SCOPED_CONFIGS.set(previous);
+            }
+        }
+    }
+    
     /**
      * Register an object that needs to interpret configuration information .
      *
@@ -61,6 +61,21 @@ public final class PrefixConstants {
      */
     public static final String ZOOKEEPER_PREFIX = "repository.zookeeper";
     
+    /**
+     * The constant WAL_PREFIX.
+     */
+    public static final String WAL_PREFIX = "repository.wal";
+    
+    /**
+     * The constant SHARDING_PREFIX.
+     */
+    public static final String SHARDING_PREFIX = "repository.sharding";
+    
+    /**
+     * The constant MEMORY_PREFIX.
+     */
+    public static final String MEMORY_PREFIX = "repository.memory";
+    
     /**
      * The constant METRICS_PREFIX.
      */
@@ -110,6 +110,45 @@ public class HmilyConfig extends AbstractConfig {
      */
     private boolean asyncRepository = true;
     
+    /**
+     * max events one async repository consumer drains and group commits.
+     */
+    private int asyncBatchSize = 100;
+    
+    /**
+     * asyncBatchTimeout unit MILLISECONDS, how long a consumer waits to fill up a batch.
+     * 0 means only the events already queued are group committed.
+     */
+    private int asyncBatchTimeout;
+    
+    /**
+     * max repository writes in flight when the repository writes without blocking.
+     */
+    private int asyncMaxInFlight = 256;
+    
+    /**
+     * asyncWriteTimeout unit MILLISECONDS, how long a consumer waits for a free in flight write and for the previous write
+     * of the same transaction, after which the failure is logged and the write is done synchronously.
+     */
+    private int asyncWriteTimeout = 30000;
+    
+    /**
+     * threads which run the writes of a blocking repository, so that they can be kept in flight.
+     * 0 means a blocking repository is written by the consumer threads with group commit.
+     */
+    private int asyncRepositoryThreads;
+    
+    /**
+     * repositoryCacheTtl unit MILLISECONDS, how long the recovery lookups of the repository are cached on this node.
+     * 0 means the lookups are not cached.
+     */
+    private long repositoryCacheTtl;
+    
+    /**
+     * max entries of each repository lookup cache.
+     */
+    private int repositoryCacheSize = 10000;
+    
     /**
      * autoSql.
      */
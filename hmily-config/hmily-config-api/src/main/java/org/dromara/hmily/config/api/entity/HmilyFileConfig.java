@@ -35,6 +35,27 @@ public class HmilyFileConfig extends AbstractConfig {
      * path.
      */
     private String path;
+    
+    /**
+     * the size in bytes a log segment rolls over at.
+     */
+    private long segmentSize = 64 * 1024 * 1024;
+    
+    /**
+     * when a write is forced to disk: none leaves it to the os, group-commit shares one force
+     * between the writes that arrive while the previous one runs, per-write forces every write.
+     */
+    private String durability = "none";
+    
+    /**
+     * the seconds between two checkpoints of the index, each followed by a compaction of the log, 0 disables both.
+     */
+    private long checkpointInterval = 60;
+    
+    /**
+     * a sealed segment is compacted once its live records take less than this share of it.
+     */
+    private double compactionThreshold = 0.5;
 
     /**
      * prefix.
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.config.api.entity;
+
+import lombok.Data;
+import org.dromara.hmily.config.api.AbstractConfig;
+import org.dromara.hmily.config.api.constant.PrefixConstants;
+import org.dromara.hmily.spi.HmilySPI;
+
+/**
+ * The HmilyMemoryConfig, the snapshot of the memory repository.
+ *
+ * @author xiaoyu
+ */
+@Data
+@HmilySPI("hmilyMemoryConfig")
+public class HmilyMemoryConfig extends AbstractConfig {
+    
+    /**
+     * the directory of the snapshot, default is ${user.dir}/hmily-memory.
+     */
+    private String snapshotPath;
+    
+    /**
+     * snapshotInterval unit SECONDS, the interval of writing the snapshot to disk, 0 means the records only live in memory.
+     */
+    private long snapshotInterval;
+    
+    @Override
+    public String prefix() {
+        return PrefixConstants.MEMORY_PREFIX;
+    }
+}
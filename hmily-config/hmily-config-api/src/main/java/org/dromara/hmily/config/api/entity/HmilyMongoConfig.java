@@ -51,6 +51,11 @@ public class HmilyMongoConfig extends AbstractConfig {
      */
     private String password;
     
+    /**
+     * seconds after their update time the deleted records expire, by ttl indexes instead of the cleanup sweeps, 0 disables it.
+     */
+    private long expireAfterSeconds;
+    
     @Override
     public String prefix() {
         return PrefixConstants.MONGO_PREFIX;
@@ -81,6 +81,12 @@ public class HmilyRedisConfig extends AbstractConfig {
 
     private int timeOut = 10000;
     
+    /**
+     * the shards the records are spread over in a cluster, each a hash tag and so a slot, a few times the masters count
+     * spreads the writes evenly. it is kept in redis on the first init, and an init with another count fails.
+     */
+    private int shards = 16;
+    
     @Override
     public String prefix() {
         return PrefixConstants.REDIS_PREFIX;
@@ -0,0 +1,59 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.config.api.entity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Data;
+import org.dromara.hmily.config.api.AbstractConfig;
+import org.dromara.hmily.config.api.constant.PrefixConstants;
+import org.dromara.hmily.spi.HmilySPI;
+
+/**
+ * The HmilyShardingConfig, the backend repositories of the sharding repository.
+ *
+ * @author xiaoyu
+ */
+@Data
+@HmilySPI("hmilyShardingConfig")
+public class HmilyShardingConfig extends AbstractConfig {
+    
+    /**
+     * the spi names of the backend repositories, such as mysql, redis, mongodb, one per shard, a name may repeat.
+     * the records are routed by trans id, participant id or undo id over them, so the list must not be changed once it holds data.
+     */
+    private List<String> repositories = new ArrayList<>();
+    
+    /**
+     * the config of each shard over the config of its repository, keyed by the shard index, the prefix of the repository config
+     * after repository and the field, such as 0.database.url and 1.database.url for two mysql shards.
+     */
+    private Map<String, String> shards = new HashMap<>();
+    
+    /**
+     * threads which fan out the scans to the backend repositories, 0 means the number of the backend repositories.
+     */
+    private int scanThreads;
+    
+    @Override
+    public String prefix() {
+        return PrefixConstants.SHARDING_PREFIX;
+    }
+}
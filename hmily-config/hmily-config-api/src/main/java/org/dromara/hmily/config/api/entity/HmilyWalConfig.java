@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.config.api.entity;
+
+import lombok.Data;
+import org.dromara.hmily.config.api.AbstractConfig;
+import org.dromara.hmily.config.api.constant.PrefixConstants;
+import org.dromara.hmily.spi.HmilySPI;
+
+/**
+ * The HmilyWalConfig, local write ahead log in front of the configured repository.
+ *
+ * @author xiaoyu
+ */
+@Data
+@HmilySPI("hmilyWalConfig")
+public class HmilyWalConfig extends AbstractConfig {
+    
+    /**
+     * enabled.
+     */
+    private boolean enabled;
+    
+    /**
+     * the directory of the log, default is ${user.dir}/hmily-wal.
+     */
+    private String path;
+    
+    /**
+     * max records flushed by one fsync.
+     */
+    private int groupCommitSize = 256;
+    
+    /**
+     * max bytes of one log segment file.
+     */
+    private long segmentSize = 64 * 1024 * 1024;
+    
+    /**
+     * max records applied to the repository by the shipper at once.
+     */
+    private int shipBatchSize = 100;
+    
+    /**
+     * shipRetryDelay unit MILLISECONDS, the first delay before the shipper retries a failed record, doubled on every retry.
+     */
+    private long shipRetryDelay = 1000;
+    
+    /**
+     * shipMaxRetryDelay unit MILLISECONDS, the max delay between two retries of a failed record.
+     */
+    private long shipMaxRetryDelay = 30000;
+    
+    /**
+     * the attempts after which a record that still fails is moved to the quarantine file, 0 retries it forever.
+     */
+    private int shipMaxAttempts = 20;
+    
+    /**
+     * readTimeout unit MILLISECONDS, how long a read waits for the unshipped writes of the records it reads.
+     */
+    private long readTimeout = 3000;
+    
+    @Override
+    public String prefix() {
+        return PrefixConstants.WAL_PREFIX;
+    }
+}
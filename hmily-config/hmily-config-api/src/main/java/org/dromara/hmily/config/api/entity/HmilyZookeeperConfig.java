@@ -37,6 +37,18 @@ public class HmilyZookeeperConfig extends AbstractConfig {
 
     private String rootPath = "/hmily";
     
+    /**
+     * the seconds of creation time the records of one bucket node span, taken from the time bits of their ids.
+     * a scan after a date reads only the buckets modified since. it must not change while there are records.
+     */
+    private int bucketInterval = 10;
+    
+    /**
+     * keep a local mirror of the transaction and participant records, kept current by persistent recursive watches,
+     * and serve their reads from it. the reads lag the writes of the other nodes by the delivery of a watch event.
+     */
+    private boolean mirror;
+    
     @Override
     public String prefix() {
         return PrefixConstants.ZOOKEEPER_PREFIX;
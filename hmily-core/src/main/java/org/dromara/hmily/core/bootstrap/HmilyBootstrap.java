@@ -18,6 +18,9 @@
 package org.dromara.hmily.core.bootstrap;
 
 import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.dromara.hmily.common.concurrent.HmilyThreadFactory;
 import org.dromara.hmily.common.exception.HmilyRuntimeException;
 import org.dromara.hmily.common.utils.StringUtils;
 import org.dromara.hmily.config.api.ConfigEnv;
@@ -25,6 +28,7 @@ import org.dromara.hmily.config.api.ConfigScan;
 import org.dromara.hmily.config.api.entity.HmilyConfig;
 import org.dromara.hmily.config.api.entity.HmilyMetricsConfig;
 import org.dromara.hmily.config.api.entity.HmilyServer;
+import org.dromara.hmily.config.api.entity.HmilyWalConfig;
 import org.dromara.hmily.config.loader.ConfigLoader;
 import org.dromara.hmily.config.loader.ServerConfigLoader;
 import org.dromara.hmily.core.disruptor.publisher.HmilyRepositoryEventPublisher;
@@ -34,8 +38,13 @@ import org.dromara.hmily.core.logo.HmilyLogo;
 import org.dromara.hmily.core.provide.ObjectProvide;
 import org.dromara.hmily.core.provide.ReflectObject;
 import org.dromara.hmily.core.repository.HmilyRepositoryFacade;
+import org.dromara.hmily.core.repository.HmilyRepositoryMetrics;
+import org.dromara.hmily.core.repository.cache.HmilyCachedRepository;
+import org.dromara.hmily.core.repository.wal.HmilyWalRepository;
 import org.dromara.hmily.core.schedule.HmilyTransactionSelfRecoveryScheduled;
 import org.dromara.hmily.metrics.spi.MetricsInit;
+import org.dromara.hmily.repository.spi.HmilyAsyncRepository;
+import org.dromara.hmily.repository.spi.HmilyBlockingAsyncRepository;
 import org.dromara.hmily.repository.spi.HmilyRepository;
 import org.dromara.hmily.serializer.spi.HmilySerializer;
 import org.dromara.hmily.spi.ExtensionLoaderFactory;
@@ -129,13 +138,48 @@ public final class HmilyBootstrap {
     
     private void loadHmilyRepository(final HmilyConfig hmilyConfig) {
         HmilySerializer hmilySerializer = ExtensionLoaderFactory.load(HmilySerializer.class, hmilyConfig.getSerializer());
-        HmilyRepository hmilyRepository = ExtensionLoaderFactory.load(HmilyRepository.class, hmilyConfig.getRepository());
+        HmilyRepository repository = ExtensionLoaderFactory.load(HmilyRepository.class, hmilyConfig.getRepository());
+        HmilyRepository hmilyRepository = repository;
+        HmilyWalConfig walConfig = ConfigEnv.getInstance().getConfig(HmilyWalConfig.class);
+        boolean walEnabled = Objects.nonNull(walConfig) && walConfig.isEnabled();
+        if (walEnabled) {
+            HmilyWalRepository walRepository = new HmilyWalRepository(hmilyRepository, walConfig);
+            registerAutoCloseable(walRepository);
+            hmilyRepository = walRepository;
+        } else if (repository instanceof AutoCloseable) {
+            registerAutoCloseable((AutoCloseable) repository);
+        }
+        HmilyCachedRepository cachedRepository = null;
+        if (hmilyConfig.getRepositoryCacheTtl() > 0) {
+            cachedRepository = new HmilyCachedRepository(hmilyRepository, hmilyConfig.getRepositoryCacheTtl(), hmilyConfig.getRepositoryCacheSize());
+            hmilyRepository = cachedRepository;
+        }
         hmilyRepository.setSerializer(hmilySerializer);
         hmilyRepository.init(buildAppName(hmilyConfig));
+        HmilyRepositoryMetrics.getInstance().init(hmilyConfig.getRepository());
         HmilyRepositoryFacade.getInstance().setHmilyRepository(hmilyRepository);
+        HmilyRepositoryFacade.getInstance().setHmilyAsyncRepository(buildHmilyAsyncRepository(hmilyConfig, repository, walEnabled, cachedRepository, hmilyRepository));
         HmilyRepositoryFacade.getInstance().setPhyDeleted(hmilyConfig.isPhyDeleted());
     }
     
+    /**
+     * the non-blocking writes of the repository go through the cache, they are not used in front of the wal,
+     * whose writes must all be logged and return once the log is flushed.
+     */
+    private HmilyAsyncRepository buildHmilyAsyncRepository(final HmilyConfig hmilyConfig, final HmilyRepository repository, final boolean walEnabled,
+                                                           final HmilyCachedRepository cachedRepository, final HmilyRepository hmilyRepository) {
+        if (!walEnabled && repository instanceof HmilyAsyncRepository) {
+            HmilyAsyncRepository asyncRepository = (HmilyAsyncRepository) repository;
+            return Objects.isNull(cachedRepository) ? asyncRepository : cachedRepository.withAsync(asyncRepository);
+        }
+        if (hmilyConfig.getAsyncRepositoryThreads() <= 0) {
+            return null;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(hmilyConfig.getAsyncRepositoryThreads(), HmilyThreadFactory.create("hmily-repository-async", true));
+        registerAutoCloseable(executor::shutdown);
+        return new HmilyBlockingAsyncRepository(hmilyRepository, executor);
+    }
+    
     private String buildAppName(final HmilyConfig hmilyConfig) {
         HmilyServer server = ConfigEnv.getInstance().getConfig(HmilyServer.class);
         if (StringUtils.isNoneBlank(hmilyConfig.getAppName())) {
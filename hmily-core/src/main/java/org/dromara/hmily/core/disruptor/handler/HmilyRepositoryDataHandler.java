@@ -1,22 +1,67 @@
 package org.dromara.hmily.core.disruptor.handler;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.dromara.hmily.core.concurrent.ConsistentHashSelector;
+import org.dromara.hmily.core.concurrent.SingletonExecutor;
 import org.dromara.hmily.core.disruptor.AbstractDisruptorConsumerExecutor;
 import org.dromara.hmily.core.disruptor.DisruptorConsumerFactory;
 import org.dromara.hmily.core.repository.HmilyRepositoryDispatcher;
 import org.dromara.hmily.core.repository.HmilyRepositoryEvent;
+import org.dromara.hmily.core.repository.HmilyRepositoryEventCoalescer;
+import org.dromara.hmily.core.repository.HmilyRepositoryFacade;
+import org.dromara.hmily.core.repository.HmilyRepositoryMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * this is disruptor consumer.
+ * events are queued per executor, each executor drains its queue, coalesces the events of the same transaction and group commits them.
+ * when the repository has non-blocking writes, the writes are kept in flight instead, one after another for the same transaction.
+ * a consumer waits at most the write timeout for a free in flight write, then it logs the failure and writes synchronously.
  *
  * @author xiaoyu(Myth)
  */
 public class HmilyRepositoryDataHandler extends AbstractDisruptorConsumerExecutor<HmilyRepositoryEvent> implements DisruptorConsumerFactory<HmilyRepositoryEvent> {
     
+    private static final Logger LOGGER = LoggerFactory.getLogger(HmilyRepositoryDataHandler.class);
+    
+    private static final CompletableFuture<Void> COMPLETED = CompletableFuture.completedFuture(null);
+    
+    private final Map<SingletonExecutor, BlockingQueue<HmilyRepositoryEvent>> pendingEvents = new ConcurrentHashMap<>();
+    
+    private final Map<Long, CompletableFuture<Void>> inFlightWrites = new ConcurrentHashMap<>();
+    
     private ConsistentHashSelector executor;
     
+    private final int batchSize;
+    
+    private final long batchTimeout;
+    
+    private final Semaphore inFlightPermits;
+    
+    private final long writeTimeout;
+    
     public HmilyRepositoryDataHandler(final ConsistentHashSelector executor) {
+        this(executor, 1, 0, 1, 30000);
+    }
+    
+    public HmilyRepositoryDataHandler(final ConsistentHashSelector executor, final int batchSize, final long batchTimeout, final int maxInFlight, final long writeTimeout) {
         this.executor = executor;
+        this.batchSize = Math.max(batchSize, 1);
+        this.batchTimeout = Math.max(batchTimeout, 0);
+        this.inFlightPermits = new Semaphore(Math.max(maxInFlight, 1));
+        this.writeTimeout = Math.max(writeTimeout, 1);
     }
     
     @Override
@@ -32,10 +77,100 @@ public class HmilyRepositoryDataHandler extends AbstractDisruptorConsumerExecuto
     @Override
     public void executor(final HmilyRepositoryEvent event) {
         Long transId = event.getTransId();
-        executor.select(String.valueOf(transId)).execute(() -> {
-            HmilyRepositoryDispatcher.getInstance().doDispatcher(event);
-            event.clear();
-        });
-       
+        SingletonExecutor singletonExecutor = executor.select(String.valueOf(transId));
+        BlockingQueue<HmilyRepositoryEvent> queue = pendingEvents.computeIfAbsent(singletonExecutor, e -> new LinkedBlockingQueue<>());
+        queue.offer(event);
+        singletonExecutor.execute(() -> drain(queue));
+    }
+    
+    private void drain(final BlockingQueue<HmilyRepositoryEvent> queue) {
+        if (queue.isEmpty()) {
+            return;
+        }
+        List<HmilyRepositoryEvent> events = new ArrayList<>(Math.min(batchSize, queue.size()));
+        queue.drainTo(events, batchSize);
+        if (batchTimeout > 0) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchTimeout);
+            try {
+                while (events.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    HmilyRepositoryEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    events.add(next);
+                    queue.drainTo(events, batchSize - events.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (HmilyRepositoryEvent event : events) {
+            HmilyRepositoryMetrics.getInstance().observeQueueWait(event.getEnqueueTime());
+        }
+        List<HmilyRepositoryEvent> writes = HmilyRepositoryEventCoalescer.coalesce(events, HmilyRepositoryFacade.getInstance().isPhyDeleted());
+        if (Objects.nonNull(HmilyRepositoryFacade.getInstance().getHmilyAsyncRepository())) {
+            CompletableFuture<?>[] futures = writes.stream().map(this::dispatchInOrder).toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(futures).whenComplete((v, t) -> events.forEach(HmilyRepositoryEvent::clear));
+            return;
+        }
+        if (writes.size() == 1) {
+            HmilyRepositoryDispatcher.getInstance().doDispatcher(writes.get(0));
+        } else if (!writes.isEmpty()) {
+            HmilyRepositoryDispatcher.getInstance().doDispatcher(writes);
+        }
+        events.forEach(HmilyRepositoryEvent::clear);
+    }
+    
+    /**
+     * the write starts once the previous in flight write of the same transaction completes, the writes of different transactions overlap.
+     * when no write completes within the write timeout, the repository is stuck or too slow for the load: the failure is logged and
+     * the write is done synchronously after the previous one of its transaction, so it is neither lost nor reordered.
+     */
+    private CompletableFuture<Void> dispatchInOrder(final HmilyRepositoryEvent event) {
+        Long transId = event.getTransId();
+        int type = event.getType();
+        CompletableFuture<Void> previous = Objects.isNull(transId) ? COMPLETED : inFlightWrites.getOrDefault(transId, COMPLETED);
+        if (!acquire()) {
+            LOGGER.error("hmily repository async dispatcher has no free in flight write in {} ms, event with type {} is written synchronously", writeTimeout, type);
+            return dispatchSynchronously(event, previous);
+        }
+        CompletableFuture<Void> current = previous.thenCompose(v -> HmilyRepositoryDispatcher.getInstance().doAsyncDispatcher(event))
+                .handle((result, throwable) -> {
+                    inFlightPermits.release();
+                    if (Objects.nonNull(throwable)) {
+                        LOGGER.error("hmily repository async dispatcher event with type {} exception:", type, throwable);
+                    }
+                    return null;
+                });
+        if (Objects.nonNull(transId)) {
+            inFlightWrites.put(transId, current);
+            current.whenComplete((v, t) -> inFlightWrites.remove(transId, current));
+        }
+        return current;
+    }
+    
+    private boolean acquire() {
+        try {
+            return inFlightPermits.tryAcquire(writeTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    private CompletableFuture<Void> dispatchSynchronously(final HmilyRepositoryEvent event, final CompletableFuture<Void> previous) {
+        try {
+            previous.get(writeTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            LOGGER.error("hmily repository async dispatcher previous write of trans {} is not done in {} ms", event.getTransId(), writeTimeout, e);
+        }
+        HmilyRepositoryDispatcher.getInstance().doDispatcher(event);
+        return COMPLETED;
     }
 }
@@ -29,6 +29,7 @@ import org.dromara.hmily.core.disruptor.DisruptorProviderManage;
 import org.dromara.hmily.core.disruptor.handler.HmilyRepositoryDataHandler;
 import org.dromara.hmily.core.repository.HmilyRepositoryDispatcher;
 import org.dromara.hmily.core.repository.HmilyRepositoryEvent;
+import org.dromara.hmily.core.repository.HmilyRepositoryMetrics;
 import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
 import org.dromara.hmily.repository.spi.entity.HmilyParticipantUndo;
 import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
@@ -67,7 +68,8 @@ public final class HmilyRepositoryEventPublisher implements AutoCloseable {
         ConsistentHashSelector selector = new ConsistentHashSelector(selects);
         disruptorProviderManage =
                 new DisruptorProviderManage<>(
-                        new HmilyRepositoryDataHandler(selector), 1, hmilyConfig.getBufferSize());
+                        new HmilyRepositoryDataHandler(selector, hmilyConfig.getAsyncBatchSize(), hmilyConfig.getAsyncBatchTimeout(),
+                                hmilyConfig.getAsyncMaxInFlight(), hmilyConfig.getAsyncWriteTimeout()), 1, hmilyConfig.getBufferSize());
         disruptorProviderManage.startup();
     }
     
@@ -96,6 +98,7 @@ public final class HmilyRepositoryEventPublisher implements AutoCloseable {
         event.setType(type);
         event.setTransId(hmilyParticipantUndo.getTransId());
         event.setHmilyParticipantUndo(hmilyParticipantUndo);
+        event.setEnqueueTime(HmilyRepositoryMetrics.getInstance().start());
         disruptorProviderManage.getProvider().onData(event);
     }
     
@@ -124,11 +127,13 @@ public final class HmilyRepositoryEventPublisher implements AutoCloseable {
         event.setType(type);
         event.setHmilyTransaction(hmilyTransaction);
         event.setTransId(hmilyTransaction.getTransId());
+        event.setEnqueueTime(HmilyRepositoryMetrics.getInstance().start());
         disruptorProviderManage.getProvider().onData(event);
     }
     
     private void push(final HmilyRepositoryEvent event) {
         if (Objects.nonNull(hmilyConfig) && hmilyConfig.isAsyncRepository()) {
+            event.setEnqueueTime(HmilyRepositoryMetrics.getInstance().start());
             disruptorProviderManage.getProvider().onData(event);
         } else {
             HmilyRepositoryDispatcher.getInstance().doDispatcher(event);
@@ -17,16 +17,25 @@
 
 package org.dromara.hmily.core.repository;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.dromara.hmily.common.enums.EventTypeEnum;
 import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
 import org.dromara.hmily.repository.spi.entity.HmilyParticipantUndo;
 import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * The type Hmily repository dispatcher.
  */
 public final class HmilyRepositoryDispatcher {
     
+    private static final Logger LOGGER = LoggerFactory.getLogger(HmilyRepositoryDispatcher.class);
+    
     private static final HmilyRepositoryDispatcher INSTANCE = new HmilyRepositoryDispatcher();
     
     private HmilyRepositoryDispatcher() {
@@ -77,4 +86,103 @@ public final class HmilyRepositoryDispatcher {
                 break;
         }
     }
+    
+    /**
+     * Do dispatcher for a batch of events, consecutive events of the same type are group committed.
+     *
+     * @param events the events in publish order
+     */
+    public void doDispatcher(final List<HmilyRepositoryEvent> events) {
+        int start = 0;
+        while (start < events.size()) {
+            int type = events.get(start).getType();
+            int end = start + 1;
+            while (end < events.size() && events.get(end).getType() == type) {
+                end++;
+            }
+            try {
+                if (end - start == 1) {
+                    doDispatcher(events.get(start));
+                } else {
+                    doBatchDispatcher(EventTypeEnum.buildByCode(type), events.subList(start, end));
+                }
+            } catch (Exception e) {
+                LOGGER.error("hmily repository dispatcher batch of {} events with type {} exception:", end - start, type, e);
+            }
+            start = end;
+        }
+    }
+    
+    /**
+     * Do dispatcher without blocking on the repository.
+     *
+     * @param event the event
+     * @return the future of result
+     */
+    public CompletableFuture<Boolean> doAsyncDispatcher(final HmilyRepositoryEvent event) {
+        EventTypeEnum eventTypeEnum = EventTypeEnum.buildByCode(event.getType());
+        HmilyTransaction hmilyTransaction = event.getHmilyTransaction();
+        HmilyParticipant hmilyParticipant = event.getHmilyParticipant();
+        HmilyParticipantUndo hmilyParticipantUndo = event.getHmilyParticipantUndo();
+        switch (eventTypeEnum) {
+            case CREATE_HMILY_TRANSACTION:
+                return HmilyRepositoryFacade.getInstance().createHmilyTransactionAsync(hmilyTransaction);
+            case REMOVE_HMILY_TRANSACTION:
+                return HmilyRepositoryFacade.getInstance().removeHmilyTransactionAsync(hmilyTransaction.getTransId());
+            case UPDATE_HMILY_TRANSACTION_STATUS:
+                return HmilyRepositoryFacade.getInstance().updateHmilyTransactionStatusAsync(hmilyTransaction.getTransId(), hmilyTransaction.getStatus());
+            case CREATE_HMILY_PARTICIPANT:
+                return HmilyRepositoryFacade.getInstance().createHmilyParticipantAsync(hmilyParticipant);
+            case UPDATE_HMILY_PARTICIPANT_STATUS:
+                return HmilyRepositoryFacade.getInstance().updateHmilyParticipantStatusAsync(hmilyParticipant.getParticipantId(), hmilyParticipant.getStatus());
+            case REMOVE_HMILY_PARTICIPANT:
+                return HmilyRepositoryFacade.getInstance().removeHmilyParticipantAsync(hmilyParticipant.getParticipantId());
+            case REMOVE_HMILY_PARTICIPANT_UNDO:
+                return HmilyRepositoryFacade.getInstance().removeHmilyParticipantUndoAsync(hmilyParticipantUndo.getUndoId());
+            default:
+                return CompletableFuture.completedFuture(Boolean.TRUE);
+        }
+    }
+    
+    private void doBatchDispatcher(final EventTypeEnum eventTypeEnum, final List<HmilyRepositoryEvent> events) {
+        switch (eventTypeEnum) {
+            case CREATE_HMILY_TRANSACTION:
+                List<HmilyTransaction> hmilyTransactionList = new ArrayList<>(events.size());
+                events.forEach(event -> hmilyTransactionList.add(event.getHmilyTransaction()));
+                HmilyRepositoryFacade.getInstance().batchCreateHmilyTransaction(hmilyTransactionList);
+                break;
+            case REMOVE_HMILY_TRANSACTION:
+                List<Long> transIdList = new ArrayList<>(events.size());
+                events.forEach(event -> transIdList.add(event.getHmilyTransaction().getTransId()));
+                HmilyRepositoryFacade.getInstance().batchRemoveHmilyTransaction(transIdList);
+                break;
+            case UPDATE_HMILY_TRANSACTION_STATUS:
+                Map<Long, Integer> transactionStatusMap = new LinkedHashMap<>(events.size());
+                events.forEach(event -> transactionStatusMap.put(event.getHmilyTransaction().getTransId(), event.getHmilyTransaction().getStatus()));
+                HmilyRepositoryFacade.getInstance().batchUpdateHmilyTransactionStatus(transactionStatusMap);
+                break;
+            case CREATE_HMILY_PARTICIPANT:
+                List<HmilyParticipant> hmilyParticipantList = new ArrayList<>(events.size());
+                events.forEach(event -> hmilyParticipantList.add(event.getHmilyParticipant()));
+                HmilyRepositoryFacade.getInstance().batchCreateHmilyParticipant(hmilyParticipantList);
+                break;
+            case UPDATE_HMILY_PARTICIPANT_STATUS:
+                Map<Long, Integer> participantStatusMap = new LinkedHashMap<>(events.size());
+                events.forEach(event -> participantStatusMap.put(event.getHmilyParticipant().getParticipantId(), event.getHmilyParticipant().getStatus()));
+                HmilyRepositoryFacade.getInstance().batchUpdateHmilyParticipantStatus(participantStatusMap);
+                break;
+            case REMOVE_HMILY_PARTICIPANT:
+                List<Long> participantIdList = new ArrayList<>(events.size());
+                events.forEach(event -> participantIdList.add(event.getHmilyParticipant().getParticipantId()));
+                HmilyRepositoryFacade.getInstance().batchRemoveHmilyParticipant(participantIdList);
+                break;
+            case REMOVE_HMILY_PARTICIPANT_UNDO:
+                List<Long> undoIdList = new ArrayList<>(events.size());
+                events.forEach(event -> undoIdList.add(event.getHmilyParticipantUndo().getUndoId()));
+                HmilyRepositoryFacade.getInstance().batchRemoveHmilyParticipantUndo(undoIdList);
+                break;
+            default:
+                break;
+        }
+    }
 }
@@ -41,6 +41,11 @@ public class HmilyRepositoryEvent implements Serializable {
     
     private int type;
     
+    /**
+     * the nano time the event is published to the queue, 0 when the metrics are disabled.
+     */
+    private long enqueueTime;
+    
     /**
      * help gc.
      */
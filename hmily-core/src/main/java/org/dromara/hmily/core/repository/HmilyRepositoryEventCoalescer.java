@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.core.repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import org.dromara.hmily.common.enums.EventTypeEnum;
+import org.dromara.hmily.common.enums.HmilyActionEnum;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
+import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
+
+/**
+ * Coalesce the repository events still queued for one executor before they are written.
+ * A status update replaces the previous pending update or is folded into the pending create,
+ * a remove drops the pending updates, and cancels the pending create when the record is physically deleted.
+ * the events and entities of the callers are never changed, a folded status is written on a copy of the create.
+ *
+ * @author xiaoyu
+ */
+public final class HmilyRepositoryEventCoalescer {
+    
+    private HmilyRepositoryEventCoalescer() {
+    }
+    
+    /**
+     * Coalesce the events.
+     *
+     * @param events     the events in publish order
+     * @param phyDeleted whether the remove is a physical delete
+     * @return the events that still need to be written, in publish order
+     */
+    public static List<HmilyRepositoryEvent> coalesce(final List<HmilyRepositoryEvent> events, final boolean phyDeleted) {
+        if (events.size() < 2) {
+            return events;
+        }
+        HmilyRepositoryEvent[] pending = events.toArray(new HmilyRepositoryEvent[0]);
+        PendingWrites transactionWrites = new PendingWrites(event -> event.getHmilyTransaction().getTransId());
+        PendingWrites participantWrites = new PendingWrites(event -> event.getHmilyParticipant().getParticipantId());
+        for (int i = 0; i < pending.length; i++) {
+            switch (EventTypeEnum.buildByCode(pending[i].getType())) {
+                case CREATE_HMILY_TRANSACTION:
+                case CREATE_HMILY_PARTICIPANT:
+                    writesOf(pending[i], transactionWrites, participantWrites).create(pending, i);
+                    break;
+                case UPDATE_HMILY_TRANSACTION_STATUS:
+                case UPDATE_HMILY_PARTICIPANT_STATUS:
+                    writesOf(pending[i], transactionWrites, participantWrites).update(pending, i);
+                    break;
+                case REMOVE_HMILY_TRANSACTION:
+                case REMOVE_HMILY_PARTICIPANT:
+                    writesOf(pending[i], transactionWrites, participantWrites).remove(pending, i, phyDeleted);
+                    break;
+                default:
+                    break;
+            }
+        }
+        List<HmilyRepositoryEvent> result = new ArrayList<>(pending.length);
+        for (HmilyRepositoryEvent event : pending) {
+            if (Objects.nonNull(event)) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+    
+    private static PendingWrites writesOf(final HmilyRepositoryEvent event, final PendingWrites transactionWrites, final PendingWrites participantWrites) {
+        return Objects.nonNull(event.getHmilyParticipant()) ? participantWrites : transactionWrites;
+    }
+    
+    private static Integer statusOf(final HmilyRepositoryEvent event) {
+        return Objects.nonNull(event.getHmilyParticipant()) ? event.getHmilyParticipant().getStatus() : event.getHmilyTransaction().getStatus();
+    }
+    
+    private static HmilyRepositoryEvent withStatus(final HmilyRepositoryEvent event, final Integer status) {
+        HmilyRepositoryEvent copy = new HmilyRepositoryEvent();
+        copy.setType(event.getType());
+        copy.setTransId(event.getTransId());
+        copy.setEnqueueTime(event.getEnqueueTime());
+        copy.setHmilyParticipantUndo(event.getHmilyParticipantUndo());
+        if (Objects.nonNull(event.getHmilyParticipant())) {
+            copy.setHmilyParticipant(copyOf(event.getHmilyParticipant(), status));
+        } else {
+            copy.setHmilyTransaction(copyOf(event.getHmilyTransaction(), status));
+        }
+        return copy;
+    }
+    
+    private static HmilyTransaction copyOf(final HmilyTransaction hmilyTransaction, final Integer status) {
+        HmilyTransaction copy = new HmilyTransaction();
+        copy.setTransId(hmilyTransaction.getTransId());
+        copy.setAppName(hmilyTransaction.getAppName());
+        copy.setStatus(status);
+        copy.setTransType(hmilyTransaction.getTransType());
+        copy.setRetry(hmilyTransaction.getRetry());
+        copy.setVersion(hmilyTransaction.getVersion());
+        copy.setCreateTime(hmilyTransaction.getCreateTime());
+        copy.setUpdateTime(hmilyTransaction.getUpdateTime());
+        copy.setHmilyParticipants(hmilyTransaction.getHmilyParticipants());
+        return copy;
+    }
+    
+    private static HmilyParticipant copyOf(final HmilyParticipant hmilyParticipant, final Integer status) {
+        HmilyParticipant copy = new HmilyParticipant();
+        copy.setParticipantId(hmilyParticipant.getParticipantId());
+        copy.setParticipantRefId(hmilyParticipant.getParticipantRefId());
+        copy.setTransId(hmilyParticipant.getTransId());
+        copy.setTransType(hmilyParticipant.getTransType());
+        copy.setStatus(status);
+        copy.setAppName(hmilyParticipant.getAppName());
+        copy.setRole(hmilyParticipant.getRole());
+        copy.setRetry(hmilyParticipant.getRetry());
+        copy.setTargetClass(hmilyParticipant.getTargetClass());
+        copy.setTargetMethod(hmilyParticipant.getTargetMethod());
+        copy.setConfirmMethod(hmilyParticipant.getConfirmMethod());
+        copy.setCancelMethod(hmilyParticipant.getCancelMethod());
+        copy.setVersion(hmilyParticipant.getVersion());
+        copy.setCreateTime(hmilyParticipant.getCreateTime());
+        copy.setUpdateTime(hmilyParticipant.getUpdateTime());
+        copy.setConfirmHmilyInvocation(hmilyParticipant.getConfirmHmilyInvocation());
+        copy.setCancelHmilyInvocation(hmilyParticipant.getCancelHmilyInvocation());
+        return copy;
+    }
+    
+    /**
+     * The index of pending create and update events of one kind of record.
+     */
+    private static final class PendingWrites {
+        
+        private final Function<HmilyRepositoryEvent, Long> idFunction;
+        
+        private final Map<Long, Integer> creates = new HashMap<>();
+        
+        private final Map<Long, Integer> updates = new HashMap<>();
+        
+        PendingWrites(final Function<HmilyRepositoryEvent, Long> idFunction) {
+            this.idFunction = idFunction;
+        }
+        
+        void create(final HmilyRepositoryEvent[] pending, final int index) {
+            Long id = idFunction.apply(pending[index]);
+            creates.put(id, index);
+            updates.remove(id);
+        }
+        
+        void update(final HmilyRepositoryEvent[] pending, final int index) {
+            Long id = idFunction.apply(pending[index]);
+            Integer createIndex = creates.get(id);
+            if (Objects.nonNull(createIndex)) {
+                pending[createIndex] = withStatus(pending[createIndex], statusOf(pending[index]));
+                pending[index] = null;
+                return;
+            }
+            Integer updateIndex = updates.put(id, index);
+            if (Objects.nonNull(updateIndex)) {
+                pending[updateIndex] = null;
+            }
+        }
+        
+        void remove(final HmilyRepositoryEvent[] pending, final int index, final boolean phyDeleted) {
+            Long id = idFunction.apply(pending[index]);
+            Integer updateIndex = updates.remove(id);
+            if (Objects.nonNull(updateIndex)) {
+                pending[updateIndex] = null;
+            }
+            Integer createIndex = creates.remove(id);
+            if (Objects.isNull(createIndex)) {
+                return;
+            }
+            if (phyDeleted) {
+                pending[createIndex] = null;
+            } else {
+                pending[createIndex] = withStatus(pending[createIndex], HmilyActionEnum.DELETE.getCode());
+            }
+            pending[index] = null;
+        }
+    }
+}
@@ -17,9 +17,15 @@
 
 package org.dromara.hmily.core.repository;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import lombok.Getter;
 import lombok.Setter;
 import org.dromara.hmily.common.enums.HmilyActionEnum;
+import org.dromara.hmily.core.repository.HmilyRepositoryMetrics.Operation;
+import org.dromara.hmily.repository.spi.HmilyAsyncRepository;
 import org.dromara.hmily.repository.spi.HmilyRepository;
 import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
 import org.dromara.hmily.repository.spi.entity.HmilyParticipantUndo;
@@ -34,9 +40,17 @@ public final class HmilyRepositoryFacade {
     
     private static final HmilyRepositoryFacade INSTANCE = new HmilyRepositoryFacade();
     
+    private static final HmilyRepositoryMetrics METRICS = HmilyRepositoryMetrics.getInstance();
+    
+    @Getter
     @Setter
     private HmilyRepository hmilyRepository;
     
+    @Getter
+    @Setter
+    private HmilyAsyncRepository hmilyAsyncRepository;
+    
+    @Getter
     @Setter
     private boolean phyDeleted;
     
@@ -59,7 +73,12 @@ public final class HmilyRepositoryFacade {
      * @return the string
      */
     public boolean createHmilyTransaction(final HmilyTransaction hmilyTransaction) {
-        return hmilyRepository.createHmilyTransaction(hmilyTransaction) > 0;
+        long start = METRICS.start();
+        try {
+            return METRICS.observe(Operation.CREATE_HMILY_TRANSACTION, start, hmilyRepository.createHmilyTransaction(hmilyTransaction)) > 0;
+        } catch (RuntimeException e) {
+            throw METRICS.fail(Operation.CREATE_HMILY_TRANSACTION, start, e);
+        }
     }
     
     /**
@@ -70,7 +89,12 @@ public final class HmilyRepositoryFacade {
      * @return the int
      */
     public boolean updateHmilyTransactionStatus(final Long transId, final Integer status) {
-        return hmilyRepository.updateHmilyTransactionStatus(transId, status) > 0;
+        long start = METRICS.start();
+        try {
+            return METRICS.observe(Operation.UPDATE_HMILY_TRANSACTION_STATUS, start, hmilyRepository.updateHmilyTransactionStatus(transId, status)) > 0;
+        } catch (RuntimeException e) {
+            throw METRICS.fail(Operation.UPDATE_HMILY_TRANSACTION_STATUS, start, e);
+        }
     }
     
     /**
@@ -81,7 +105,12 @@ public final class HmilyRepositoryFacade {
      */
     public boolean removeHmilyTransaction(final Long transId) {
         if (phyDeleted) {
-            return hmilyRepository.removeHmilyTransaction(transId) > 0;
+            long start = METRICS.start();
+            try {
+                return METRICS.observe(Operation.REMOVE_HMILY_TRANSACTION, start, hmilyRepository.removeHmilyTransaction(transId)) > 0;
+            } catch (RuntimeException e) {
+                throw METRICS.fail(Operation.REMOVE_HMILY_TRANSACTION, start, e);
+            }
         } else {
             return updateHmilyTransactionStatus(transId, HmilyActionEnum.DELETE.getCode());
         }
@@ -94,7 +123,12 @@ public final class HmilyRepositoryFacade {
      * @return the boolean
      */
     public boolean createHmilyParticipant(final HmilyParticipant hmilyParticipant) {
-        return hmilyRepository.createHmilyParticipant(hmilyParticipant) > 0;
+        long start = METRICS.start();
+        try {
+            return METRICS.observe(Operation.CREATE_HMILY_PARTICIPANT, start, hmilyRepository.createHmilyParticipant(hmilyParticipant)) > 0;
+        } catch (RuntimeException e) {
+            throw METRICS.fail(Operation.CREATE_HMILY_PARTICIPANT, start, e);
+        }
     }
     
     /**
@@ -105,7 +139,12 @@ public final class HmilyRepositoryFacade {
      * @return the int
      */
     public boolean updateHmilyParticipantStatus(final Long transId, final Integer status) {
-        return hmilyRepository.updateHmilyParticipantStatus(transId, status) > 0;
+        long start = METRICS.start();
+        try {
+            return METRICS.observe(Operation.UPDATE_HMILY_PARTICIPANT_STATUS, start, hmilyRepository.updateHmilyParticipantStatus(transId, status)) > 0;
+        } catch (RuntimeException e) {
+            throw METRICS.fail(Operation.UPDATE_HMILY_PARTICIPANT_STATUS, start, e);
+        }
     }
     
     /**
@@ -116,7 +155,12 @@ public final class HmilyRepositoryFacade {
      */
     public boolean removeHmilyParticipant(final Long participantId) {
         if (phyDeleted) {
-            return hmilyRepository.removeHmilyParticipant(participantId) > 0;
+            long start = METRICS.start();
+            try {
+                return METRICS.observe(Operation.REMOVE_HMILY_PARTICIPANT, start, hmilyRepository.removeHmilyParticipant(participantId)) > 0;
+            } catch (RuntimeException e) {
+                throw METRICS.fail(Operation.REMOVE_HMILY_PARTICIPANT, start, e);
+            }
         } else {
             return updateHmilyParticipantStatus(participantId, HmilyActionEnum.DELETE.getCode());
         }
@@ -129,7 +173,12 @@ public final class HmilyRepositoryFacade {
      * @return the list
      */
     public List<HmilyParticipant> findHmilyParticipant(final Long participantId) {
-        return hmilyRepository.findHmilyParticipant(participantId);
+        long start = METRICS.start();
+        try {
+            return METRICS.observe(Operation.FIND_HMILY_PARTICIPANT, start, hmilyRepository.findHmilyParticipant(participantId));
+        } catch (RuntimeException e) {
+            throw METRICS.fail(Operation.FIND_HMILY_PARTICIPANT, start, e);
+        }
     }
     
     /**
@@ -139,7 +188,12 @@ public final class HmilyRepositoryFacade {
      * @return the boolean
      */
     public boolean createHmilyParticipantUndo(final HmilyParticipantUndo undo) {
-        return hmilyRepository.createHmilyParticipantUndo(undo) > 0;
+        long start = METRICS.start();
+        try {
+            return METRICS.observe(Operation.CREATE_HMILY_PARTICIPANT_UNDO, start, hmilyRepository.createHmilyParticipantUndo(undo)) > 0;
+        } catch (RuntimeException e) {
+            throw METRICS.fail(Operation.CREATE_HMILY_PARTICIPANT_UNDO, start, e);
+        }
     }
     
     /**
@@ -149,7 +203,12 @@ public final class HmilyRepositoryFacade {
      * @return the list
      */
     public List<HmilyParticipantUndo> findUndoByParticipantId(final Long participantId) {
-        return hmilyRepository.findHmilyParticipantUndoByParticipantId(participantId);
+        long start = METRICS.start();
+        try {
+            return METRICS.observe(Operation.FIND_HMILY_PARTICIPANT_UNDO, start, hmilyRepository.findHmilyParticipantUndoByParticipantId(participantId));
+        } catch (RuntimeException e) {
+            throw METRICS.fail(Operation.FIND_HMILY_PARTICIPANT_UNDO, start, e);
+        }
     }
     
     /**
@@ -160,7 +219,12 @@ public final class HmilyRepositoryFacade {
      */
     public boolean removeHmilyParticipantUndo(final Long undoId) {
         if (phyDeleted) {
-            return hmilyRepository.removeHmilyParticipantUndo(undoId) > 0;
+            long start = METRICS.start();
+            try {
+                return METRICS.observe(Operation.REMOVE_HMILY_PARTICIPANT_UNDO, start, hmilyRepository.removeHmilyParticipantUndo(undoId)) > 0;
+            } catch (RuntimeException e) {
+                throw METRICS.fail(Operation.REMOVE_HMILY_PARTICIPANT_UNDO, start, e);
+            }
         } else {
             return updateHmilyParticipantUndoStatus(undoId, HmilyActionEnum.DELETE.getCode());
         }
@@ -174,6 +238,227 @@ public final class HmilyRepositoryFacade {
      * @return the boolean
      */
     public boolean updateHmilyParticipantUndoStatus(final Long undoId, final Integer status) {
-        return hmilyRepository.updateHmilyParticipantUndoStatus(undoId, status) > 0;
+        long start = METRICS.start();
+        try {
+            return METRICS.observe(Operation.UPDATE_HMILY_PARTICIPANT_UNDO_STATUS, start, hmilyRepository.updateHmilyParticipantUndoStatus(undoId, status)) > 0;
+        } catch (RuntimeException e) {
+            throw METRICS.fail(Operation.UPDATE_HMILY_PARTICIPANT_UNDO_STATUS, start, e);
+        }
+    }
+    
+    /**
+     * Batch create hmily transaction boolean.
+     *
+     * @param hmilyTransactionList the hmily transaction list
+     * @return the boolean
+     */
+    public boolean batchCreateHmilyTransaction(final List<HmilyTransaction> hmilyTransactionList) {
+        long start = METRICS.start();
+        try {
+            return METRICS.observe(Operation.BATCH_CREATE_HMILY_TRANSACTION, start, hmilyRepository.batchCreateHmilyTransaction(hmilyTransactionList)) > 0;
+        } catch (RuntimeException e) {
+            throw METRICS.fail(Operation.BATCH_CREATE_HMILY_TRANSACTION, start, e);
+        }
+    }
+    
+    /**
+     * Batch update hmily transaction status boolean.
+     *
+     * @param statusMap the status keyed by trans id
+     * @return the boolean
+     */
+    public boolean batchUpdateHmilyTransactionStatus(final Map<Long, Integer> statusMap) {
+        long start = METRICS.start();
+        try {
+            return METRICS.observe(Operation.BATCH_UPDATE_HMILY_TRANSACTION_STATUS, start, hmilyRepository.batchUpdateHmilyTransactionStatus(statusMap)) > 0;
+        } catch (RuntimeException e) {
+            throw METRICS.fail(Operation.BATCH_UPDATE_HMILY_TRANSACTION_STATUS, start, e);
+        }
+    }
+    
+    /**
+     * Batch remove hmily transaction boolean.
+     *
+     * @param transIdList the trans id list
+     * @return the boolean
+     */
+    public boolean batchRemoveHmilyTransaction(final List<Long> transIdList) {
+        if (phyDeleted) {
+            long start = METRICS.start();
+            try {
+                return METRICS.observe(Operation.BATCH_REMOVE_HMILY_TRANSACTION, start, hmilyRepository.batchRemoveHmilyTransaction(transIdList)) > 0;
+            } catch (RuntimeException e) {
+                throw METRICS.fail(Operation.BATCH_REMOVE_HMILY_TRANSACTION, start, e);
+            }
+        } else {
+            return batchUpdateHmilyTransactionStatus(buildDeleteStatusMap(transIdList));
+        }
+    }
+    
+    /**
+     * Batch create hmily participant boolean.
+     *
+     * @param hmilyParticipantList the hmily participant list
+     * @return the boolean
+     */
+    public boolean batchCreateHmilyParticipant(final List<HmilyParticipant> hmilyParticipantList) {
+        long start = METRICS.start();
+        try {
+            return METRICS.observe(Operation.BATCH_CREATE_HMILY_PARTICIPANT, start, hmilyRepository.batchCreateHmilyParticipant(hmilyParticipantList)) > 0;
+        } catch (RuntimeException e) {
+            throw METRICS.fail(Operation.BATCH_CREATE_HMILY_PARTICIPANT, start, e);
+        }
+    }
+    
+    /**
+     * Batch update hmily participant status boolean.
+     *
+     * @param statusMap the status keyed by participant id
+     * @return the boolean
+     */
+    public boolean batchUpdateHmilyParticipantStatus(final Map<Long, Integer> statusMap) {
+        long start = METRICS.start();
+        try {
+            return METRICS.observe(Operation.BATCH_UPDATE_HMILY_PARTICIPANT_STATUS, start, hmilyRepository.batchUpdateHmilyParticipantStatus(statusMap)) > 0;
+        } catch (RuntimeException e) {
+            throw METRICS.fail(Operation.BATCH_UPDATE_HMILY_PARTICIPANT_STATUS, start, e);
+        }
+    }
+    
+    /**
+     * Batch remove hmily participant boolean.
+     *
+     * @param participantIdList the participant id list
+     * @return the boolean
+     */
+    public boolean batchRemoveHmilyParticipant(final List<Long> participantIdList) {
+        if (phyDeleted) {
+            long start = METRICS.start();
+            try {
+                return METRICS.observe(Operation.BATCH_REMOVE_HMILY_PARTICIPANT, start, hmilyRepository.batchRemoveHmilyParticipant(participantIdList)) > 0;
+            } catch (RuntimeException e) {
+                throw METRICS.fail(Operation.BATCH_REMOVE_HMILY_PARTICIPANT, start, e);
+            }
+        } else {
+            return batchUpdateHmilyParticipantStatus(buildDeleteStatusMap(participantIdList));
+        }
+    }
+    
+    /**
+     * Batch remove hmily participant undo boolean.
+     *
+     * @param undoIdList the undo id list
+     * @return the boolean
+     */
+    public boolean batchRemoveHmilyParticipantUndo(final List<Long> undoIdList) {
+        if (phyDeleted) {
+            long start = METRICS.start();
+            try {
+                return METRICS.observe(Operation.BATCH_REMOVE_HMILY_PARTICIPANT_UNDO, start, hmilyRepository.batchRemoveHmilyParticipantUndo(undoIdList)) > 0;
+            } catch (RuntimeException e) {
+                throw METRICS.fail(Operation.BATCH_REMOVE_HMILY_PARTICIPANT_UNDO, start, e);
+            }
+        } else {
+            long start = METRICS.start();
+            try {
+                return METRICS.observe(Operation.BATCH_UPDATE_HMILY_PARTICIPANT_UNDO_STATUS, start, hmilyRepository.batchUpdateHmilyParticipantUndoStatus(buildDeleteStatusMap(undoIdList))) > 0;
+            } catch (RuntimeException e) {
+                throw METRICS.fail(Operation.BATCH_UPDATE_HMILY_PARTICIPANT_UNDO_STATUS, start, e);
+            }
+        }
+    }
+    
+    /**
+     * Create hmily transaction async.
+     *
+     * @param hmilyTransaction the hmily transaction
+     * @return the future of result
+     */
+    public CompletableFuture<Boolean> createHmilyTransactionAsync(final HmilyTransaction hmilyTransaction) {
+        return METRICS.observeAsync(Operation.CREATE_HMILY_TRANSACTION, METRICS.start(), hmilyAsyncRepository.createHmilyTransactionAsync(hmilyTransaction)).thenApply(rows -> rows > 0);
+    }
+    
+    /**
+     * Update hmily transaction status async.
+     *
+     * @param transId the trans id
+     * @param status  the status
+     * @return the future of result
+     */
+    public CompletableFuture<Boolean> updateHmilyTransactionStatusAsync(final Long transId, final Integer status) {
+        return METRICS.observeAsync(Operation.UPDATE_HMILY_TRANSACTION_STATUS, METRICS.start(), hmilyAsyncRepository.updateHmilyTransactionStatusAsync(transId, status)).thenApply(rows -> rows > 0);
+    }
+    
+    /**
+     * Remove hmily transaction async.
+     *
+     * @param transId the trans id
+     * @return the future of result
+     */
+    public CompletableFuture<Boolean> removeHmilyTransactionAsync(final Long transId) {
+        if (phyDeleted) {
+            return METRICS.observeAsync(Operation.REMOVE_HMILY_TRANSACTION, METRICS.start(), hmilyAsyncRepository.removeHmilyTransactionAsync(transId)).thenApply(rows -> rows > 0);
+        } else {
+            return updateHmilyTransactionStatusAsync(transId, HmilyActionEnum.DELETE.getCode());
+        }
+    }
+    
+    /**
+     * Create hmily participant async.
+     *
+     * @param hmilyParticipant the hmily participant
+     * @return the future of result
+     */
+    public CompletableFuture<Boolean> createHmilyParticipantAsync(final HmilyParticipant hmilyParticipant) {
+        return METRICS.observeAsync(Operation.CREATE_HMILY_PARTICIPANT, METRICS.start(), hmilyAsyncRepository.createHmilyParticipantAsync(hmilyParticipant)).thenApply(rows -> rows > 0);
+    }
+    
+    /**
+     * Update hmily participant status async.
+     *
+     * @param participantId the participant id
+     * @param status        the status
+     * @return the future of result
+     */
+    public CompletableFuture<Boolean> updateHmilyParticipantStatusAsync(final Long participantId, final Integer status) {
+        return METRICS.observeAsync(Operation.UPDATE_HMILY_PARTICIPANT_STATUS, METRICS.start(), hmilyAsyncRepository.updateHmilyParticipantStatusAsync(participantId, status))
+                .thenApply(rows -> rows > 0);
+    }
+    
+    /**
+     * Remove hmily participant async.
+     *
+     * @param participantId the participant id
+     * @return the future of result
+     */
+    public CompletableFuture<Boolean> removeHmilyParticipantAsync(final Long participantId) {
+        if (phyDeleted) {
+            return METRICS.observeAsync(Operation.REMOVE_HMILY_PARTICIPANT, METRICS.start(), hmilyAsyncRepository.removeHmilyParticipantAsync(participantId)).thenApply(rows -> rows > 0);
+        } else {
+            return updateHmilyParticipantStatusAsync(participantId, HmilyActionEnum.DELETE.getCode());
+        }
+    }
+    
+    /**
+     * Remove hmily participant undo async.
+     *
+     * @param undoId the undo id
+     * @return the future of result
+     */
+    public CompletableFuture<Boolean> removeHmilyParticipantUndoAsync(final Long undoId) {
+        if (phyDeleted) {
+            return METRICS.observeAsync(Operation.REMOVE_HMILY_PARTICIPANT_UNDO, METRICS.start(), hmilyAsyncRepository.removeHmilyParticipantUndoAsync(undoId)).thenApply(rows -> rows > 0);
+        } else {
+            return METRICS.observeAsync(Operation.UPDATE_HMILY_PARTICIPANT_UNDO_STATUS, METRICS.start(),
+                    hmilyAsyncRepository.updateHmilyParticipantUndoStatusAsync(undoId, HmilyActionEnum.DELETE.getCode())).thenApply(rows -> rows > 0);
+        }
+    }
+    
+    private Map<Long, Integer> buildDeleteStatusMap(final List<Long> idList) {
+        Map<Long, Integer> statusMap = new LinkedHashMap<>(idList.size());
+        for (Long id : idList) {
+            statusMap.put(id, HmilyActionEnum.DELETE.getCode());
+        }
+        return statusMap;
     }
 }
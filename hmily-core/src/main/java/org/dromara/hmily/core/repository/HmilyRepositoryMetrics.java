@@ -0,0 +1,259 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.core.repository;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.dromara.hmily.metrics.enums.MetricsLabelEnum;
+import org.dromara.hmily.metrics.spi.MetricsHandlerFacade;
+import org.dromara.hmily.metrics.spi.MetricsHandlerFacadeEngine;
+
+/**
+ * The latency, queue wait, failure and cache metrics of the repository operations, tagged by the repository type.
+ * the label values are built once, and nothing is timed or allocated while the metrics are disabled.
+ *
+ * @author xiaoyu
+ */
+public final class HmilyRepositoryMetrics {
+    
+    private static final HmilyRepositoryMetrics INSTANCE = new HmilyRepositoryMetrics();
+    
+    private static final long DISABLED = 0L;
+    
+    private volatile MetricsHandlerFacade metricsHandlerFacade;
+    
+    private volatile String[][] operationLabels;
+    
+    private volatile String[] repositoryLabels;
+    
+    private volatile String[][] cacheLabels;
+    
+    private HmilyRepositoryMetrics() {
+        init("unknown");
+    }
+    
+    /**
+     * Gets instance.
+     *
+     * @return the instance
+     */
+    public static HmilyRepositoryMetrics getInstance() {
+        return INSTANCE;
+    }
+    
+    /**
+     * Init the label values with the repository type.
+     *
+     * @param repository the repository type
+     */
+    public void init(final String repository) {
+        String[][] labels = new String[Operation.values().length][];
+        for (Operation operation : Operation.values()) {
+            labels[operation.ordinal()] = new String[]{repository, operation.getName()};
+        }
+        operationLabels = labels;
+        repositoryLabels = new String[]{repository};
+        String[][] caches = new String[CacheName.values().length * 2][];
+        for (CacheName cache : CacheName.values()) {
+            caches[cacheIndex(cache, true)] = new String[]{repository, cache.getName(), "hit"};
+            caches[cacheIndex(cache, false)] = new String[]{repository, cache.getName(), "miss"};
+        }
+        cacheLabels = caches;
+        metricsHandlerFacade = MetricsHandlerFacadeEngine.load().orElse(null);
+    }
+    
+    /**
+     * Start time of an operation.
+     *
+     * @return the start nano time, 0 when the metrics are disabled
+     */
+    public long start() {
+        MetricsHandlerFacade handler = metricsHandlerFacade;
+        return Objects.nonNull(handler) && handler.isEnabled() ? System.nanoTime() : DISABLED;
+    }
+    
+    /**
+     * Observe the latency of a completed operation.
+     *
+     * @param operation the operation
+     * @param start     the start nano time
+     * @param rows      the rows of the operation
+     * @return the rows
+     */
+    public int observe(final Operation operation, final long start, final int rows) {
+        if (start != DISABLED) {
+            observeLatency(operation, start);
+        }
+        return rows;
+    }
+    
+    /**
+     * Observe the latency of a completed operation.
+     *
+     * @param <T>       the type of result
+     * @param operation the operation
+     * @param start     the start nano time
+     * @param result    the result of the operation
+     * @return the result
+     */
+    public <T> T observe(final Operation operation, final long start, final T result) {
+        if (start != DISABLED) {
+            observeLatency(operation, start);
+        }
+        return result;
+    }
+    
+    /**
+     * Observe the latency and the failure of a failed operation.
+     *
+     * @param operation the operation
+     * @param start     the start nano time
+     * @param exception the exception of the operation
+     * @return the exception
+     */
+    public RuntimeException fail(final Operation operation, final long start, final RuntimeException exception) {
+        if (start != DISABLED) {
+            observeLatency(operation, start);
+            metricsHandlerFacade.counterIncrement(MetricsLabelEnum.REPOSITORY_FAILURE.getName(), operationLabels[operation.ordinal()]);
+        }
+        return exception;
+    }
+    
+    /**
+     * Observe the latency and the failure of an operation when the future completes.
+     *
+     * @param operation the operation
+     * @param start     the start nano time
+     * @param future    the future of the operation
+     * @return the future
+     */
+    public CompletableFuture<Integer> observeAsync(final Operation operation, final long start, final CompletableFuture<Integer> future) {
+        if (start != DISABLED) {
+            future.whenComplete((rows, throwable) -> {
+                observeLatency(operation, start);
+                if (Objects.nonNull(throwable)) {
+                    metricsHandlerFacade.counterIncrement(MetricsLabelEnum.REPOSITORY_FAILURE.getName(), operationLabels[operation.ordinal()]);
+                }
+            });
+        }
+        return future;
+    }
+    
+    /**
+     * Observe how long an event waited in the queue before it is dispatched.
+     *
+     * @param enqueueTime the nano time the event is published, 0 when the metrics were disabled
+     */
+    public void observeQueueWait(final long enqueueTime) {
+        if (enqueueTime != DISABLED) {
+            metricsHandlerFacade.histogramObserve(MetricsLabelEnum.REPOSITORY_QUEUE_WAIT.getName(), micros(enqueueTime), repositoryLabels);
+        }
+    }
+    
+    /**
+     * Count a lookup of a repository cache.
+     *
+     * @param cache the cache
+     * @param hit   whether the value was cached
+     */
+    public void observeCache(final CacheName cache, final boolean hit) {
+        MetricsHandlerFacade handler = metricsHandlerFacade;
+        if (Objects.nonNull(handler) && handler.isEnabled()) {
+            handler.counterIncrement(MetricsLabelEnum.REPOSITORY_CACHE.getName(), cacheLabels[cacheIndex(cache, hit)]);
+        }
+    }
+    
+    private void observeLatency(final Operation operation, final long start) {
+        metricsHandlerFacade.histogramObserve(MetricsLabelEnum.REPOSITORY_LATENCY.getName(), micros(start), operationLabels[operation.ordinal()]);
+    }
+    
+    private static int cacheIndex(final CacheName cache, final boolean hit) {
+        return cache.ordinal() * 2 + (hit ? 0 : 1);
+    }
+    
+    private static long micros(final long start) {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+    }
+    
+    /**
+     * The repository operations.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public enum Operation {
+        
+        CREATE_HMILY_TRANSACTION("createHmilyTransaction"),
+        
+        UPDATE_HMILY_TRANSACTION_STATUS("updateHmilyTransactionStatus"),
+        
+        REMOVE_HMILY_TRANSACTION("removeHmilyTransaction"),
+        
+        CREATE_HMILY_PARTICIPANT("createHmilyParticipant"),
+        
+        UPDATE_HMILY_PARTICIPANT_STATUS("updateHmilyParticipantStatus"),
+        
+        REMOVE_HMILY_PARTICIPANT("removeHmilyParticipant"),
+        
+        FIND_HMILY_PARTICIPANT("findHmilyParticipant"),
+        
+        CREATE_HMILY_PARTICIPANT_UNDO("createHmilyParticipantUndo"),
+        
+        FIND_HMILY_PARTICIPANT_UNDO("findHmilyParticipantUndo"),
+        
+        REMOVE_HMILY_PARTICIPANT_UNDO("removeHmilyParticipantUndo"),
+        
+        UPDATE_HMILY_PARTICIPANT_UNDO_STATUS("updateHmilyParticipantUndoStatus"),
+        
+        BATCH_CREATE_HMILY_TRANSACTION("batchCreateHmilyTransaction"),
+        
+        BATCH_UPDATE_HMILY_TRANSACTION_STATUS("batchUpdateHmilyTransactionStatus"),
+        
+        BATCH_REMOVE_HMILY_TRANSACTION("batchRemoveHmilyTransaction"),
+        
+        BATCH_CREATE_HMILY_PARTICIPANT("batchCreateHmilyParticipant"),
+        
+        BATCH_UPDATE_HMILY_PARTICIPANT_STATUS("batchUpdateHmilyParticipantStatus"),
+        
+        BATCH_REMOVE_HMILY_PARTICIPANT("batchRemoveHmilyParticipant"),
+        
+        BATCH_REMOVE_HMILY_PARTICIPANT_UNDO("batchRemoveHmilyParticipantUndo"),
+        
+        BATCH_UPDATE_HMILY_PARTICIPANT_UNDO_STATUS("batchUpdateHmilyParticipantUndoStatus");
+        
+        private final String name;
+    }
+    
+    /**
+     * The read through caches of the repository.
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public enum CacheName {
+        
+        TRANSACTION("transaction"),
+        
+        PARTICIPANT("participant"),
+        
+        TRANS_PARTICIPANT("transParticipant");
+        
+        private final String name;
+    }
+}
@@ -0,0 +1,482 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.core.repository.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalNotification;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import org.dromara.hmily.core.repository.HmilyRepositoryMetrics;
+import org.dromara.hmily.core.repository.HmilyRepositoryMetrics.CacheName;
+import org.dromara.hmily.repository.spi.HmilyAsyncRepository;
+import org.dromara.hmily.repository.spi.HmilyRepository;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipantUndo;
+import org.dromara.hmily.repository.spi.entity.HmilyScanCursor;
+import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
+import org.dromara.hmily.repository.spi.exception.HmilyRepositoryException;
+import org.dromara.hmily.serializer.spi.HmilySerializer;
+
+/**
+ * The repository decorator with a short lived read through cache of the lookups used by the recovery,
+ * many participants of one recovery sweep share the same global transaction.
+ * the writes through this node invalidate the cached entries, the writes of the other nodes are seen after the ttl.
+ * only the records found are cached, the absent ones are always read from the delegate.
+ * the keys of the cached participant lists are tracked by participant id, so a write knowing only the id drops just the lists holding it.
+ *
+ * @author xiaoyu
+ */
+public final class HmilyCachedRepository implements HmilyRepository {
+    
+    private final HmilyRepository delegate;
+    
+    private final Cache<Long, HmilyTransaction> transactionCache;
+    
+    private final Cache<Long, List<HmilyParticipant>> participantCache;
+    
+    private final Cache<Long, List<HmilyParticipant>> transParticipantCache;
+    
+    /**
+     * the keys of the participant lists by the id of each participant they hold, removed with the last list.
+     */
+    private final ConcurrentMap<Long, ParticipantKeys> participantKeys = new ConcurrentHashMap<>();
+    
+    private final AtomicLong invalidations = new AtomicLong();
+    
+    public HmilyCachedRepository(final HmilyRepository delegate, final long ttl, final int maximumSize) {
+        this.delegate = delegate;
+        this.transactionCache = cacheBuilder(ttl, maximumSize).build();
+        this.participantCache = cacheBuilder(ttl, maximumSize).<Long, List<HmilyParticipant>>removalListener(this::unlink).build();
+        this.transParticipantCache = cacheBuilder(ttl, maximumSize).<Long, List<HmilyParticipant>>removalListener(this::unlink).build();
+    }
+    
+    @Override
+    public void init(final String appName) {
+        delegate.init(appName);
+    }
+    
+    @Override
+    public void setSerializer(final HmilySerializer hmilySerializer) {
+        delegate.setSerializer(hmilySerializer);
+    }
+    
+    @Override
+    public int createHmilyTransaction(final HmilyTransaction hmilyTransaction) throws HmilyRepositoryException {
+        invalidateTransaction(hmilyTransaction.getTransId());
+        return delegate.createHmilyTransaction(hmilyTransaction);
+    }
+    
+    @Override
+    public int updateRetryByLock(final HmilyTransaction hmilyTransaction) {
+        invalidateTransaction(hmilyTransaction.getTransId());
+        return delegate.updateRetryByLock(hmilyTransaction);
+    }
+    
+    @Override
+    public HmilyTransaction findByTransId(final Long transId) {
+        return readThrough(transactionCache, CacheName.TRANSACTION, transId, delegate::findByTransId, e -> { });
+    }
+    
+    @Override
+    public List<HmilyTransaction> listLimitByDelay(final Date date, final int limit) {
+        return delegate.listLimitByDelay(date, limit);
+    }
+    
+    @Override
+    public List<HmilyTransaction> scanHmilyTransaction(final Date date, final HmilyScanCursor cursor, final int limit) {
+        return delegate.scanHmilyTransaction(date, cursor, limit);
+    }
+    
+    @Override
+    public int updateHmilyTransactionStatus(final Long transId, final Integer status) throws HmilyRepositoryException {
+        invalidateTransaction(transId);
+        return delegate.updateHmilyTransactionStatus(transId, status);
+    }
+    
+    @Override
+    public int removeHmilyTransaction(final Long transId) {
+        invalidateTransaction(transId);
+        return delegate.removeHmilyTransaction(transId);
+    }
+    
+    @Override
+    public int removeHmilyTransactionByData(final Date date) {
+        invalidations.incrementAndGet();
+        transactionCache.invalidateAll();
+        return delegate.removeHmilyTransactionByData(date);
+    }
+    
+    @Override
+    public int createHmilyParticipant(final HmilyParticipant hmilyParticipant) throws HmilyRepositoryException {
+        invalidateParticipant(hmilyParticipant);
+        return delegate.createHmilyParticipant(hmilyParticipant);
+    }
+    
+    @Override
+    public List<HmilyParticipant> findHmilyParticipant(final Long participantId) {
+        return readThrough(participantCache, CacheName.PARTICIPANT, participantId, delegate::findHmilyParticipant, this::link);
+    }
+    
+    @Override
+    public List<HmilyParticipant> listHmilyParticipant(final Date date, final String transType, final int limit) {
+        return delegate.listHmilyParticipant(date, transType, limit);
+    }
+    
+    @Override
+    public List<HmilyParticipant> scanHmilyParticipant(final Date date, final String transType, final HmilyScanCursor cursor, final int limit) {
+        return delegate.scanHmilyParticipant(date, transType, cursor, limit);
+    }
+    
+    @Override
+    public List<HmilyParticipant> listHmilyParticipantByTransId(final Long transId) {
+        return readThrough(transParticipantCache, CacheName.TRANS_PARTICIPANT, transId, delegate::listHmilyParticipantByTransId, this::link);
+    }
+    
+    @Override
+    public boolean existHmilyParticipantByTransId(final Long transId) {
+        return delegate.existHmilyParticipantByTransId(transId);
+    }
+    
+    @Override
+    public List<Long> findTransIdsWithoutParticipants(final List<Long> transIdList) {
+        return delegate.findTransIdsWithoutParticipants(transIdList);
+    }
+    
+    @Override
+    public int updateHmilyParticipantStatus(final Long participantId, final Integer status) throws HmilyRepositoryException {
+        invalidateParticipant(participantId);
+        return delegate.updateHmilyParticipantStatus(participantId, status);
+    }
+    
+    @Override
+    public int removeHmilyParticipant(final Long participantId) {
+        invalidateParticipant(participantId);
+        return delegate.removeHmilyParticipant(participantId);
+    }
+    
+    @Override
+    public int removeHmilyParticipantByData(final Date date) {
+        invalidations.incrementAndGet();
+        participantCache.invalidateAll();
+        transParticipantCache.invalidateAll();
+        return delegate.removeHmilyParticipantByData(date);
+    }
+    
+    @Override
+    public boolean lockHmilyParticipant(final HmilyParticipant hmilyParticipant) {
+        invalidateParticipant(hmilyParticipant.getParticipantId());
+        return delegate.lockHmilyParticipant(hmilyParticipant);
+    }
+    
+    @Override
+    public int createHmilyParticipantUndo(final HmilyParticipantUndo hmilyParticipantUndo) {
+        return delegate.createHmilyParticipantUndo(hmilyParticipantUndo);
+    }
+    
+    @Override
+    public List<HmilyParticipantUndo> findHmilyParticipantUndoByParticipantId(final Long participantId) {
+        return delegate.findHmilyParticipantUndoByParticipantId(participantId);
+    }
+    
+    @Override
+    public int removeHmilyParticipantUndo(final Long undoId) {
+        return delegate.removeHmilyParticipantUndo(undoId);
+    }
+    
+    @Override
+    public int removeHmilyParticipantUndoByData(final Date date) {
+        return delegate.removeHmilyParticipantUndoByData(date);
+    }
+    
+    @Override
+    public int updateHmilyParticipantUndoStatus(final Long undoId, final Integer status) {
+        return delegate.updateHmilyParticipantUndoStatus(undoId, status);
+    }
+    
+    @Override
+    public int batchCreateHmilyTransaction(final List<HmilyTransaction> hmilyTransactionList) throws HmilyRepositoryException {
+        hmilyTransactionList.forEach(e -> invalidateTransaction(e.getTransId()));
+        return delegate.batchCreateHmilyTransaction(hmilyTransactionList);
+    }
+    
+    @Override
+    public int batchUpdateHmilyTransactionStatus(final Map<Long, Integer> statusMap) throws HmilyRepositoryException {
+        statusMap.keySet().forEach(this::invalidateTransaction);
+        return delegate.batchUpdateHmilyTransactionStatus(statusMap);
+    }
+    
+    @Override
+    public int batchRemoveHmilyTransaction(final List<Long> transIdList) {
+        transIdList.forEach(this::invalidateTransaction);
+        return delegate.batchRemoveHmilyTransaction(transIdList);
+    }
+    
+    @Override
+    public int batchCreateHmilyParticipant(final List<HmilyParticipant> hmilyParticipantList) throws HmilyRepositoryException {
+        hmilyParticipantList.forEach(this::invalidateParticipant);
+        return delegate.batchCreateHmilyParticipant(hmilyParticipantList);
+    }
+    
+    @Override
+    public int batchUpdateHmilyParticipantStatus(final Map<Long, Integer> statusMap) throws HmilyRepositoryException {
+        statusMap.keySet().forEach(this::invalidateParticipant);
+        return delegate.batchUpdateHmilyParticipantStatus(statusMap);
+    }
+    
+    @Override
+    public int batchRemoveHmilyParticipant(final List<Long> participantIdList) {
+        participantIdList.forEach(this::invalidateParticipant);
+        return delegate.batchRemoveHmilyParticipant(participantIdList);
+    }
+    
+    @Override
+    public int batchRemoveHmilyParticipantUndo(final List<Long> undoIdList) {
+        return delegate.batchRemoveHmilyParticipantUndo(undoIdList);
+    }
+    
+    @Override
+    public int batchUpdateHmilyParticipantUndoStatus(final Map<Long, Integer> statusMap) {
+        return delegate.batchUpdateHmilyParticipantUndoStatus(statusMap);
+    }
+    
+    /**
+     * The non-blocking writes of the delegate, they invalidate the cached entries like the blocking writes.
+     *
+     * @param asyncDelegate the non-blocking writes of the delegate
+     * @return the hmily async repository
+     */
+    public HmilyAsyncRepository withAsync(final HmilyAsyncRepository asyncDelegate) {
+        return new CachedAsyncRepository(asyncDelegate);
+    }
+    
+    /**
+     * Hit and miss stats of the findByTransId cache.
+     *
+     * @return the cache stats
+     */
+    public CacheStats transactionStats() {
+        return transactionCache.stats();
+    }
+    
+    /**
+     * Hit and miss stats of the findHmilyParticipant cache.
+     *
+     * @return the cache stats
+     */
+    public CacheStats participantStats() {
+        return participantCache.stats();
+    }
+    
+    /**
+     * Hit and miss stats of the listHmilyParticipantByTransId cache.
+     *
+     * @return the cache stats
+     */
+    public CacheStats transParticipantStats() {
+        return transParticipantCache.stats();
+    }
+    
+    /**
+     * Number of the participants whose cached lists are tracked.
+     *
+     * @return the number
+     */
+    int trackedParticipants() {
+        return participantKeys.size();
+    }
+    
+    private <V> V readThrough(final Cache<Long, V> cache, final CacheName cacheName, final Long key, final Function<Long, V> loader, final Consumer<V> linker) {
+        if (Objects.isNull(key)) {
+            return loader.apply(key);
+        }
+        V value = cache.getIfPresent(key);
+        HmilyRepositoryMetrics.getInstance().observeCache(cacheName, Objects.nonNull(value));
+        if (Objects.nonNull(value)) {
+            return value;
+        }
+        long invalidation = invalidations.get();
+        value = loader.apply(key);
+        if (Objects.nonNull(value)) {
+            linker.accept(value);
+            cache.put(key, value);
+            // a write invalidated the key while loading, the loaded value may be older than the write.
+            if (invalidation != invalidations.get()) {
+                cache.invalidate(key);
+            }
+        }
+        return value;
+    }
+    
+    private void invalidateTransaction(final Long transId) {
+        if (Objects.nonNull(transId)) {
+            invalidations.incrementAndGet();
+            transactionCache.invalidate(transId);
+        }
+    }
+    
+    private void invalidateParticipant(final HmilyParticipant hmilyParticipant) {
+        invalidations.incrementAndGet();
+        invalidateKey(participantCache, hmilyParticipant.getParticipantId());
+        invalidateKey(participantCache, hmilyParticipant.getParticipantRefId());
+        invalidateKey(transParticipantCache, hmilyParticipant.getTransId());
+    }
+    
+    private void invalidateParticipant(final Long participantId) {
+        if (Objects.isNull(participantId)) {
+            return;
+        }
+        invalidations.incrementAndGet();
+        ParticipantKeys keys = participantKeys.get(participantId);
+        participantCache.invalidate(participantId);
+        if (Objects.nonNull(keys)) {
+            invalidateKey(participantCache, keys.participantRefId);
+            invalidateKey(transParticipantCache, keys.transId);
+        }
+    }
+    
+    /**
+     * track the keys of a list before it is cached, the removal of the list untracks them.
+     */
+    private void link(final List<HmilyParticipant> hmilyParticipants) {
+        for (HmilyParticipant hmilyParticipant : hmilyParticipants) {
+            if (Objects.nonNull(hmilyParticipant.getParticipantId())) {
+                participantKeys.compute(hmilyParticipant.getParticipantId(), (id, keys) -> {
+                    ParticipantKeys result = Objects.isNull(keys) ? new ParticipantKeys(hmilyParticipant.getTransId(), hmilyParticipant.getParticipantRefId()) : keys;
+                    result.lists++;
+                    return result;
+                });
+            }
+        }
+    }
+    
+    private void unlink(final RemovalNotification<Long, List<HmilyParticipant>> notification) {
+        List<HmilyParticipant> hmilyParticipants = notification.getValue();
+        if (Objects.isNull(hmilyParticipants)) {
+            return;
+        }
+        for (HmilyParticipant hmilyParticipant : hmilyParticipants) {
+            if (Objects.nonNull(hmilyParticipant.getParticipantId())) {
+                participantKeys.computeIfPresent(hmilyParticipant.getParticipantId(), (id, keys) -> --keys.lists == 0 ? null : keys);
+            }
+        }
+    }
+    
+    private static void invalidateKey(final Cache<Long, ?> cache, final Long key) {
+        if (Objects.nonNull(key)) {
+            cache.invalidate(key);
+        }
+    }
+    
+    private static CacheBuilder<Object, Object> cacheBuilder(final long ttl, final int maximumSize) {
+        return CacheBuilder.newBuilder()
+                .expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+                .maximumSize(maximumSize)
+                .recordStats();
+    }
+    
+    /**
+     * the cache keys of a participant and the number of the cached lists holding it.
+     */
+    private static final class ParticipantKeys {
+        
+        private final Long transId;
+        
+        private final Long participantRefId;
+        
+        private int lists;
+        
+        ParticipantKeys(final Long transId, final Long participantRefId) {
+            this.transId = transId;
+            this.participantRefId = participantRefId;
+        }
+    }
+    
+    /**
+     * the entries are invalidated again when the write completes, a read meanwhile may have cached the old value.
+     */
+    private final class CachedAsyncRepository implements HmilyAsyncRepository {
+        
+        private final HmilyAsyncRepository asyncDelegate;
+        
+        CachedAsyncRepository(final HmilyAsyncRepository asyncDelegate) {
+            this.asyncDelegate = asyncDelegate;
+        }
+        
+        @Override
+        public CompletableFuture<Integer> createHmilyTransactionAsync(final HmilyTransaction hmilyTransaction) {
+            invalidateTransaction(hmilyTransaction.getTransId());
+            return asyncDelegate.createHmilyTransactionAsync(hmilyTransaction).whenComplete((rows, t) -> invalidateTransaction(hmilyTransaction.getTransId()));
+        }
+        
+        @Override
+        public CompletableFuture<Integer> updateHmilyTransactionStatusAsync(final Long transId, final Integer status) {
+            invalidateTransaction(transId);
+            return asyncDelegate.updateHmilyTransactionStatusAsync(transId, status).whenComplete((rows, t) -> invalidateTransaction(transId));
+        }
+        
+        @Override
+        public CompletableFuture<Integer> removeHmilyTransactionAsync(final Long transId) {
+            invalidateTransaction(transId);
+            return asyncDelegate.removeHmilyTransactionAsync(transId).whenComplete((rows, t) -> invalidateTransaction(transId));
+        }
+        
+        @Override
+        public CompletableFuture<Integer> createHmilyParticipantAsync(final HmilyParticipant hmilyParticipant) {
+            invalidateParticipant(hmilyParticipant);
+            return asyncDelegate.createHmilyParticipantAsync(hmilyParticipant).whenComplete((rows, t) -> invalidateParticipant(hmilyParticipant));
+        }
+        
+        @Override
+        public CompletableFuture<Integer> updateHmilyParticipantStatusAsync(final Long participantId, final Integer status) {
+            invalidateParticipant(participantId);
+            return asyncDelegate.updateHmilyParticipantStatusAsync(participantId, status).whenComplete((rows, t) -> invalidateParticipant(participantId));
+        }
+        
+        @Override
+        public CompletableFuture<Integer> removeHmilyParticipantAsync(final Long participantId) {
+            invalidateParticipant(participantId);
+            return asyncDelegate.removeHmilyParticipantAsync(participantId).whenComplete((rows, t) -> invalidateParticipant(participantId));
+        }
+        
+        @Override
+        public CompletableFuture<Integer> createHmilyParticipantUndoAsync(final HmilyParticipantUndo hmilyParticipantUndo) {
+            return asyncDelegate.createHmilyParticipantUndoAsync(hmilyParticipantUndo);
+        }
+        
+        @Override
+        public CompletableFuture<Integer> removeHmilyParticipantUndoAsync(final Long undoId) {
+            return asyncDelegate.removeHmilyParticipantUndoAsync(undoId);
+        }
+        
+        @Override
+        public CompletableFuture<Integer> updateHmilyParticipantUndoStatusAsync(final Long undoId, final Integer status) {
+            return asyncDelegate.updateHmilyParticipantUndoStatusAsync(undoId, status);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.core.repository.wal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.ObjLongConsumer;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append only log split into segment files, named by the global offset of their first byte.
+ * every record is [int body length][int crc32 of body][body], the shipped offset is kept in the checkpoint file.
+ * the records which can never be shipped are moved to the quarantine file in the same format.
+ *
+ * @author xiaoyu
+ */
+public final class HmilyWalLog implements AutoCloseable {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(HmilyWalLog.class);
+    
+    private static final String SEGMENT_SUFFIX = ".wal";
+    
+    private static final String CHECKPOINT = "shipped.offset";
+    
+    private static final String QUARANTINE = "quarantined.log";
+    
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+    
+    private final File directory;
+    
+    private final long segmentSize;
+    
+    private final List<Long> segmentBases = new ArrayList<>();
+    
+    private FileChannel activeChannel;
+    
+    private long endOffset;
+    
+    public HmilyWalLog(final File directory, final long segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+    
+    /**
+     * Open the log, the torn tail of the last segment left by a crash is truncated.
+     *
+     * @throws IOException the io exception
+     */
+    public synchronized void open() throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("can not create hmily wal directory " + directory.getAbsolutePath());
+        }
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (Objects.nonNull(files)) {
+            Arrays.stream(files).map(file -> Long.parseLong(file.getName().substring(0, file.getName().length() - SEGMENT_SUFFIX.length())))
+                    .sorted().forEach(segmentBases::add);
+        }
+        if (segmentBases.isEmpty()) {
+            segmentBases.add(readCheckpoint());
+        }
+        long activeBase = segmentBases.get(segmentBases.size() - 1);
+        activeChannel = FileChannel.open(segmentPath(activeBase), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long validLength = scan(activeChannel, 0, null);
+        if (validLength < activeChannel.size()) {
+            LOGGER.warn("hmily wal segment {} has a torn tail, truncate from {} to {}", activeBase, activeChannel.size(), validLength);
+            activeChannel.truncate(validLength);
+            activeChannel.force(true);
+        }
+        activeChannel.position(validLength);
+        endOffset = activeBase + validLength;
+    }
+    
+    /**
+     * Append the bodies and fsync them together.
+     *
+     * @param bodies the record bodies
+     * @return the end offset of every body
+     * @throws IOException the io exception
+     */
+    public synchronized long[] append(final List<byte[]> bodies) throws IOException {
+        if (activeChannel.size() >= segmentSize) {
+            roll();
+        }
+        int size = 0;
+        for (byte[] body : bodies) {
+            size += HEADER_SIZE + body.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        long[] endOffsets = new long[bodies.size()];
+        long offset = endOffset;
+        CRC32 crc32 = new CRC32();
+        for (int i = 0; i < bodies.size(); i++) {
+            byte[] body = bodies.get(i);
+            crc32.reset();
+            crc32.update(body, 0, body.length);
+            buffer.putInt(body.length).putInt((int) crc32.getValue()).put(body);
+            offset += HEADER_SIZE + body.length;
+            endOffsets[i] = offset;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            activeChannel.write(buffer);
+        }
+        activeChannel.force(false);
+        endOffset = offset;
+        return endOffsets;
+    }
+    
+    /**
+     * Read every record from the offset to the end of the log.
+     *
+     * @param fromOffset the from offset
+     * @param consumer   accept the body and its end offset
+     * @throws IOException the io exception
+     */
+    public synchronized void read(final long fromOffset, final ObjLongConsumer<byte[]> consumer) throws IOException {
+        for (int i = 0; i < segmentBases.size(); i++) {
+            long base = segmentBases.get(i);
+            long nextBase = i + 1 < segmentBases.size() ? segmentBases.get(i + 1) : endOffset;
+            if (nextBase <= fromOffset) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(segmentPath(base), StandardOpenOption.READ)) {
+                scan(channel, Math.max(fromOffset - base, 0), (body, end) -> consumer.accept(body, base + end));
+            }
+        }
+    }
+    
+    /**
+     * Read checkpoint, the offset up to which the log was shipped.
+     *
+     * @return the shipped offset
+     * @throws IOException the io exception
+     */
+    public long readCheckpoint() throws IOException {
+        Path checkpoint = directory.toPath().resolve(CHECKPOINT);
+        if (!Files.exists(checkpoint)) {
+            return 0L;
+        }
+        return Long.parseLong(new String(Files.readAllBytes(checkpoint), StandardCharsets.UTF_8).trim());
+    }
+    
+    /**
+     * Write checkpoint, and delete the segments that are shipped completely.
+     *
+     * @param shippedOffset the shipped offset
+     * @throws IOException the io exception
+     */
+    public synchronized void writeCheckpoint(final long shippedOffset) throws IOException {
+        Path checkpoint = directory.toPath().resolve(CHECKPOINT);
+        Path tmp = directory.toPath().resolve(CHECKPOINT + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(String.valueOf(shippedOffset).getBytes(StandardCharsets.UTF_8)));
+            channel.force(true);
+        }
+        Files.move(tmp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        while (segmentBases.size() > 1 && segmentBases.get(1) <= shippedOffset) {
+            Files.deleteIfExists(segmentPath(segmentBases.remove(0)));
+        }
+    }
+    
+    /**
+     * Append a record which can not be shipped to the quarantine file, so it can be inspected and applied by hand.
+     *
+     * @param body the record body
+     * @throws IOException the io exception
+     */
+    public synchronized void quarantine(final byte[] body) throws IOException {
+        CRC32 crc32 = new CRC32();
+        crc32.update(body, 0, body.length);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + body.length).putInt(body.length).putInt((int) crc32.getValue()).put(body);
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(directory.toPath().resolve(QUARANTINE), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        if (Objects.nonNull(activeChannel)) {
+            activeChannel.close();
+        }
+    }
+    
+    private void roll() throws IOException {
+        activeChannel.close();
+        segmentBases.add(endOffset);
+        activeChannel = FileChannel.open(segmentPath(endOffset), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+    
+    private Path segmentPath(final long base) {
+        return directory.toPath().resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+    }
+    
+    /**
+     * Scan the records of one segment, stop at the first incomplete or corrupted record.
+     *
+     * @return the position after the last valid record
+     */
+    private static long scan(final FileChannel channel, final long from, final ObjLongConsumer<byte[]> consumer) throws IOException {
+        long position = from;
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        CRC32 crc32 = new CRC32();
+        while (position + HEADER_SIZE <= size) {
+            header.clear();
+            readFully(channel, header, position);
+            header.flip();
+            int length = header.getInt();
+            final int crc = header.getInt();
+            if (length < 0 || position + HEADER_SIZE + length > size) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(length);
+            readFully(channel, body, position + HEADER_SIZE);
+            crc32.reset();
+            crc32.update(body.array(), 0, length);
+            if ((int) crc32.getValue() != crc) {
+                break;
+            }
+            position += HEADER_SIZE + length;
+            if (Objects.nonNull(consumer)) {
+                consumer.accept(body.array(), position);
+            }
+        }
+        return position;
+    }
+    
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("unexpected end of hmily wal segment");
+            }
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.core.repository.wal;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Predicate;
+import lombok.Getter;
+import org.dromara.hmily.repository.spi.HmilyRepository;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipantUndo;
+import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
+import org.dromara.hmily.repository.spi.exception.HmilyRepositoryException;
+import org.dromara.hmily.serializer.spi.HmilySerializer;
+
+/**
+ * One repository write kept in the write ahead log.
+ * the body is the operation code followed by the serialized entity, or by the id and the status.
+ *
+ * @author xiaoyu
+ */
+@Getter
+public final class HmilyWalRecord {
+    
+    private final Operation operation;
+    
+    private final Object entity;
+    
+    private final long id;
+    
+    private final int status;
+    
+    private HmilyWalRecord(final Operation operation, final Object entity, final long id, final int status) {
+        this.operation = operation;
+        this.entity = entity;
+        this.id = id;
+        this.status = status;
+    }
+    
+    /**
+     * Create record of an entity.
+     *
+     * @param operation the create operation
+     * @param entity    the hmily transaction, participant or participant undo
+     * @return the hmily wal record
+     */
+    public static HmilyWalRecord create(final Operation operation, final Object entity) {
+        return new HmilyWalRecord(operation, entity, 0, 0);
+    }
+    
+    /**
+     * Update status record.
+     *
+     * @param operation the update status operation
+     * @param id        the id
+     * @param status    the status
+     * @return the hmily wal record
+     */
+    public static HmilyWalRecord updateStatus(final Operation operation, final Long id, final Integer status) {
+        return new HmilyWalRecord(operation, null, id, status);
+    }
+    
+    /**
+     * Remove record.
+     *
+     * @param operation the remove operation
+     * @param id        the id
+     * @return the hmily wal record
+     */
+    public static HmilyWalRecord remove(final Operation operation, final Long id) {
+        return new HmilyWalRecord(operation, null, id, 0);
+    }
+    
+    /**
+     * Encode the record body.
+     *
+     * @param hmilySerializer the hmily serializer
+     * @return the body
+     */
+    public byte[] encode(final HmilySerializer hmilySerializer) {
+        switch (operation) {
+            case CREATE_HMILY_TRANSACTION:
+            case CREATE_HMILY_PARTICIPANT:
+            case CREATE_HMILY_PARTICIPANT_UNDO:
+                byte[] data = hmilySerializer.serialize(entity);
+                return ByteBuffer.allocate(1 + data.length).put(operation.code).put(data).array();
+            case UPDATE_HMILY_TRANSACTION_STATUS:
+            case UPDATE_HMILY_PARTICIPANT_STATUS:
+            case UPDATE_HMILY_PARTICIPANT_UNDO_STATUS:
+                return ByteBuffer.allocate(1 + Long.BYTES + Integer.BYTES).put(operation.code).putLong(id).putInt(status).array();
+            default:
+                return ByteBuffer.allocate(1 + Long.BYTES).put(operation.code).putLong(id).array();
+        }
+    }
+    
+    /**
+     * Decode the record body.
+     *
+     * @param body            the body
+     * @param hmilySerializer the hmily serializer
+     * @return the hmily wal record
+     */
+    public static HmilyWalRecord decode(final byte[] body, final HmilySerializer hmilySerializer) {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        Operation operation = Operation.of(buffer.get());
+        switch (operation) {
+            case CREATE_HMILY_TRANSACTION:
+                return create(operation, hmilySerializer.deSerialize(Arrays.copyOfRange(body, 1, body.length), HmilyTransaction.class));
+            case CREATE_HMILY_PARTICIPANT:
+                return create(operation, hmilySerializer.deSerialize(Arrays.copyOfRange(body, 1, body.length), HmilyParticipant.class));
+            case CREATE_HMILY_PARTICIPANT_UNDO:
+                return create(operation, hmilySerializer.deSerialize(Arrays.copyOfRange(body, 1, body.length), HmilyParticipantUndo.class));
+            case UPDATE_HMILY_TRANSACTION_STATUS:
+            case UPDATE_HMILY_PARTICIPANT_STATUS:
+            case UPDATE_HMILY_PARTICIPANT_UNDO_STATUS:
+                return updateStatus(operation, buffer.getLong(), buffer.getInt());
+            default:
+                return remove(operation, buffer.getLong());
+        }
+    }
+    
+    /**
+     * Apply the record to the repository.
+     *
+     * @param hmilyRepository the hmily repository
+     * @return the rows
+     */
+    public int apply(final HmilyRepository hmilyRepository) {
+        switch (operation) {
+            case CREATE_HMILY_TRANSACTION:
+                return hmilyRepository.createHmilyTransaction((HmilyTransaction) entity);
+            case UPDATE_HMILY_TRANSACTION_STATUS:
+                return hmilyRepository.updateHmilyTransactionStatus(id, status);
+            case REMOVE_HMILY_TRANSACTION:
+                return hmilyRepository.removeHmilyTransaction(id);
+            case CREATE_HMILY_PARTICIPANT:
+                return hmilyRepository.createHmilyParticipant((HmilyParticipant) entity);
+            case UPDATE_HMILY_PARTICIPANT_STATUS:
+                return hmilyRepository.updateHmilyParticipantStatus(id, status);
+            case REMOVE_HMILY_PARTICIPANT:
+                return hmilyRepository.removeHmilyParticipant(id);
+            case CREATE_HMILY_PARTICIPANT_UNDO:
+                return hmilyRepository.createHmilyParticipantUndo((HmilyParticipantUndo) entity);
+            case UPDATE_HMILY_PARTICIPANT_UNDO_STATUS:
+                return hmilyRepository.updateHmilyParticipantUndoStatus(id, status);
+            case REMOVE_HMILY_PARTICIPANT_UNDO:
+                return hmilyRepository.removeHmilyParticipantUndo(id);
+            default:
+                return HmilyRepository.FAIL_ROWS;
+        }
+    }
+    
+    /**
+     * Whether the record is already in the repository, so a create which failed or was replayed after a crash
+     * is not applied twice. a remove is applied when the record is read back as gone, an undo can not be read
+     * by its id so its remove is never assumed applied, nor is an update.
+     *
+     * @param hmilyRepository the hmily repository
+     * @return the boolean
+     */
+    public boolean isApplied(final HmilyRepository hmilyRepository) {
+        switch (operation) {
+            case CREATE_HMILY_TRANSACTION:
+                return Objects.nonNull(hmilyRepository.findByTransId(((HmilyTransaction) entity).getTransId()));
+            case CREATE_HMILY_PARTICIPANT:
+                Long participantId = ((HmilyParticipant) entity).getParticipantId();
+                return contains(hmilyRepository.findHmilyParticipant(participantId), e -> Objects.equals(participantId, e.getParticipantId()));
+            case CREATE_HMILY_PARTICIPANT_UNDO:
+                HmilyParticipantUndo undo = (HmilyParticipantUndo) entity;
+                return contains(hmilyRepository.findHmilyParticipantUndoByParticipantId(undo.getParticipantId()), e -> Objects.equals(undo.getUndoId(), e.getUndoId()));
+            case REMOVE_HMILY_TRANSACTION:
+                return Objects.isNull(hmilyRepository.findByTransId(id));
+            case REMOVE_HMILY_PARTICIPANT:
+                return !contains(hmilyRepository.findHmilyParticipant(id), e -> Objects.equals(id, e.getParticipantId()));
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * The ids a read may look the record up by.
+     *
+     * @return the ids
+     */
+    public List<Long> keys() {
+        switch (operation) {
+            case CREATE_HMILY_TRANSACTION:
+                return Collections.singletonList(((HmilyTransaction) entity).getTransId());
+            case CREATE_HMILY_PARTICIPANT:
+                HmilyParticipant hmilyParticipant = (HmilyParticipant) entity;
+                return Arrays.asList(hmilyParticipant.getParticipantId(), hmilyParticipant.getTransId());
+            case CREATE_HMILY_PARTICIPANT_UNDO:
+                HmilyParticipantUndo hmilyParticipantUndo = (HmilyParticipantUndo) entity;
+                return Arrays.asList(hmilyParticipantUndo.getUndoId(), hmilyParticipantUndo.getParticipantId());
+            default:
+                return Collections.singletonList(id);
+        }
+    }
+    
+    private static <T> boolean contains(final List<T> list, final Predicate<T> predicate) {
+        return Objects.nonNull(list) && list.stream().anyMatch(predicate);
+    }
+    
+    /**
+     * The write operations kept in the log, the code is persisted and must never change.
+     */
+    public enum Operation {
+        
+        CREATE_HMILY_TRANSACTION(1),
+        
+        UPDATE_HMILY_TRANSACTION_STATUS(2),
+        
+        REMOVE_HMILY_TRANSACTION(3),
+        
+        CREATE_HMILY_PARTICIPANT(4),
+        
+        UPDATE_HMILY_PARTICIPANT_STATUS(5),
+        
+        REMOVE_HMILY_PARTICIPANT(6),
+        
+        CREATE_HMILY_PARTICIPANT_UNDO(7),
+        
+        UPDATE_HMILY_PARTICIPANT_UNDO_STATUS(8),
+        
+        REMOVE_HMILY_PARTICIPANT_UNDO(9);
+        
+        private final byte code;
+        
+        Operation(final int code) {
+            this.code = (byte) code;
+        }
+        
+        /**
+         * Whether the operation removes a record, which is applied once it returns, whether it found the record or not.
+         *
+         * @return the boolean
+         */
+        public boolean isRemove() {
+            return this == REMOVE_HMILY_TRANSACTION || this == REMOVE_HMILY_PARTICIPANT || this == REMOVE_HMILY_PARTICIPANT_UNDO;
+        }
+        
+        private static Operation of(final byte code) {
+            for (Operation operation : values()) {
+                if (operation.code == code) {
+                    return operation;
+                }
+            }
+            throw new HmilyRepositoryException("unknown hmily wal operation code " + code);
+        }
+    }
+}
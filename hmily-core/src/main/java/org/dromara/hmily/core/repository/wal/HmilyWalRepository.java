@@ -0,0 +1,604 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.core.repository.wal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.dromara.hmily.common.concurrent.HmilyThreadFactory;
+import org.dromara.hmily.common.utils.StringUtils;
+import org.dromara.hmily.config.api.entity.HmilyWalConfig;
+import org.dromara.hmily.core.repository.wal.HmilyWalRecord.Operation;
+import org.dromara.hmily.repository.spi.HmilyRepository;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipantUndo;
+import org.dromara.hmily.repository.spi.entity.HmilyScanCursor;
+import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
+import org.dromara.hmily.repository.spi.exception.HmilyRepositoryException;
+import org.dromara.hmily.serializer.spi.HmilySerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The repository decorator with a local write ahead log.
+ * a write returns as soon as it is fsync-ed into the local log, a shipper thread applies the log to the
+ * delegate repository in order, one record after another, and on restart the log is replayed from the last shipped offset.
+ * a record is shipped when the delegate applied it, the checkpoint moves past every shipped record, a failed record
+ * is retried with backoff and moved to the quarantine file once it failed the max attempts.
+ * reads and the version locks of a record with unshipped writes wait until they are shipped,
+ * the scans wait until every write appended before them is shipped, so the reads never miss a write of this node.
+ *
+ * @author xiaoyu
+ */
+public final class HmilyWalRepository implements HmilyRepository, AutoCloseable {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(HmilyWalRepository.class);
+    
+    private final HmilyRepository delegate;
+    
+    private final HmilyWalConfig walConfig;
+    
+    private final BlockingQueue<PendingAppend> appendQueue = new LinkedBlockingQueue<>();
+    
+    private final BlockingQueue<ShipEntry> shipQueue = new LinkedBlockingQueue<>();
+    
+    /**
+     * the end offset of the last unshipped write of every id.
+     */
+    private final Map<Long, Long> pendingIds = new ConcurrentHashMap<>();
+    
+    private final Object shippedMonitor = new Object();
+    
+    private volatile long appendedOffset;
+    
+    private volatile long shippedOffset;
+    
+    private HmilySerializer hmilySerializer;
+    
+    private HmilyWalLog walLog;
+    
+    private Thread writer;
+    
+    private Thread shipper;
+    
+    private volatile boolean running;
+    
+    public HmilyWalRepository(final HmilyRepository delegate, final HmilyWalConfig walConfig) {
+        this.delegate = delegate;
+        this.walConfig = walConfig;
+    }
+    
+    @Override
+    public void init(final String appName) {
+        delegate.init(appName);
+        String path = StringUtils.isNoneBlank(walConfig.getPath()) ? walConfig.getPath() : System.getProperty("user.dir") + File.separator + "hmily-wal";
+        walLog = new HmilyWalLog(new File(path, appName), walConfig.getSegmentSize());
+        try {
+            walLog.open();
+            replay();
+        } catch (IOException e) {
+            LOGGER.error("hmily wal init exception please check the path:{}", path, e);
+            throw new HmilyRepositoryException(e);
+        }
+        running = true;
+        writer = HmilyThreadFactory.create("hmily-wal-writer", false).newThread(this::write);
+        shipper = HmilyThreadFactory.create("hmily-wal-shipper", false).newThread(this::ship);
+        writer.start();
+        shipper.start();
+    }
+    
+    @Override
+    public void setSerializer(final HmilySerializer hmilySerializer) {
+        this.hmilySerializer = hmilySerializer;
+        delegate.setSerializer(hmilySerializer);
+    }
+    
+    @Override
+    public int createHmilyTransaction(final HmilyTransaction hmilyTransaction) throws HmilyRepositoryException {
+        return append(HmilyWalRecord.create(Operation.CREATE_HMILY_TRANSACTION, hmilyTransaction));
+    }
+    
+    @Override
+    public int updateRetryByLock(final HmilyTransaction hmilyTransaction) {
+        if (!awaitShipped(hmilyTransaction.getTransId())) {
+            return FAIL_ROWS;
+        }
+        return delegate.updateRetryByLock(hmilyTransaction);
+    }
+    
+    @Override
+    public HmilyTransaction findByTransId(final Long transId) {
+        checkShipped(transId);
+        return delegate.findByTransId(transId);
+    }
+    
+    @Override
+    public List<HmilyTransaction> listLimitByDelay(final Date date, final int limit) {
+        if (!awaitAppended()) {
+            return Collections.emptyList();
+        }
+        return delegate.listLimitByDelay(date, limit);
+    }
+    
+    @Override
+    public List<HmilyTransaction> scanHmilyTransaction(final Date date, final HmilyScanCursor cursor, final int limit) {
+        if (!awaitAppended()) {
+            return Collections.emptyList();
+        }
+        return delegate.scanHmilyTransaction(date, cursor, limit);
+    }
+    
+    @Override
+    public int updateHmilyTransactionStatus(final Long transId, final Integer status) throws HmilyRepositoryException {
+        return append(HmilyWalRecord.updateStatus(Operation.UPDATE_HMILY_TRANSACTION_STATUS, transId, status));
+    }
+    
+    @Override
+    public int removeHmilyTransaction(final Long transId) {
+        return append(HmilyWalRecord.remove(Operation.REMOVE_HMILY_TRANSACTION, transId));
+    }
+    
+    @Override
+    public int removeHmilyTransactionByData(final Date date) {
+        return delegate.removeHmilyTransactionByData(date);
+    }
+    
+    @Override
+    public int createHmilyParticipant(final HmilyParticipant hmilyParticipant) throws HmilyRepositoryException {
+        return append(HmilyWalRecord.create(Operation.CREATE_HMILY_PARTICIPANT, hmilyParticipant));
+    }
+    
+    @Override
+    public List<HmilyParticipant> findHmilyParticipant(final Long participantId) {
+        checkShipped(participantId);
+        return delegate.findHmilyParticipant(participantId);
+    }
+    
+    @Override
+    public List<HmilyParticipant> listHmilyParticipant(final Date date, final String transType, final int limit) {
+        if (!awaitAppended()) {
+            return Collections.emptyList();
+        }
+        return delegate.listHmilyParticipant(date, transType, limit);
+    }
+    
+    @Override
+    public List<HmilyParticipant> scanHmilyParticipant(final Date date, final String transType, final HmilyScanCursor cursor, final int limit) {
+        if (!awaitAppended()) {
+            return Collections.emptyList();
+        }
+        return delegate.scanHmilyParticipant(date, transType, cursor, limit);
+    }
+    
+    @Override
+    public List<HmilyParticipant> listHmilyParticipantByTransId(final Long transId) {
+        checkShipped(transId);
+        return delegate.listHmilyParticipantByTransId(transId);
+    }
+    
+    @Override
+    public boolean existHmilyParticipantByTransId(final Long transId) {
+        checkShipped(transId);
+        return delegate.existHmilyParticipantByTransId(transId);
+    }
+    
+    @Override
+    public List<Long> findTransIdsWithoutParticipants(final List<Long> transIdList) {
+        transIdList.forEach(this::checkShipped);
+        return delegate.findTransIdsWithoutParticipants(transIdList);
+    }
+    
+    @Override
+    public int updateHmilyParticipantStatus(final Long participantId, final Integer status) throws HmilyRepositoryException {
+        return append(HmilyWalRecord.updateStatus(Operation.UPDATE_HMILY_PARTICIPANT_STATUS, participantId, status));
+    }
+    
+    @Override
+    public int removeHmilyParticipant(final Long participantId) {
+        return append(HmilyWalRecord.remove(Operation.REMOVE_HMILY_PARTICIPANT, participantId));
+    }
+    
+    @Override
+    public int removeHmilyParticipantByData(final Date date) {
+        return delegate.removeHmilyParticipantByData(date);
+    }
+    
+    @Override
+    public boolean lockHmilyParticipant(final HmilyParticipant hmilyParticipant) {
+        return awaitShipped(hmilyParticipant.getParticipantId()) && delegate.lockHmilyParticipant(hmilyParticipant);
+    }
+    
+    @Override
+    public int createHmilyParticipantUndo(final HmilyParticipantUndo hmilyParticipantUndo) {
+        return append(HmilyWalRecord.create(Operation.CREATE_HMILY_PARTICIPANT_UNDO, hmilyParticipantUndo));
+    }
+    
+    @Override
+    public List<HmilyParticipantUndo> findHmilyParticipantUndoByParticipantId(final Long participantId) {
+        checkShipped(participantId);
+        return delegate.findHmilyParticipantUndoByParticipantId(participantId);
+    }
+    
+    @Override
+    public int removeHmilyParticipantUndo(final Long undoId) {
+        return append(HmilyWalRecord.remove(Operation.REMOVE_HMILY_PARTICIPANT_UNDO, undoId));
+    }
+    
+    @Override
+    public int removeHmilyParticipantUndoByData(final Date date) {
+        return delegate.removeHmilyParticipantUndoByData(date);
+    }
+    
+    @Override
+    public int updateHmilyParticipantUndoStatus(final Long undoId, final Integer status) {
+        return append(HmilyWalRecord.updateStatus(Operation.UPDATE_HMILY_PARTICIPANT_UNDO_STATUS, undoId, status));
+    }
+    
+    @Override
+    public int batchCreateHmilyTransaction(final List<HmilyTransaction> hmilyTransactionList) {
+        return append(hmilyTransactionList.stream().map(e -> HmilyWalRecord.create(Operation.CREATE_HMILY_TRANSACTION, e)).collect(Collectors.toList()));
+    }
+    
+    @Override
+    public int batchUpdateHmilyTransactionStatus(final Map<Long, Integer> statusMap) {
+        return append(statusMap.entrySet().stream()
+                .map(e -> HmilyWalRecord.updateStatus(Operation.UPDATE_HMILY_TRANSACTION_STATUS, e.getKey(), e.getValue())).collect(Collectors.toList()));
+    }
+    
+    @Override
+    public int batchRemoveHmilyTransaction(final List<Long> transIdList) {
+        return append(transIdList.stream().map(e -> HmilyWalRecord.remove(Operation.REMOVE_HMILY_TRANSACTION, e)).collect(Collectors.toList()));
+    }
+    
+    @Override
+    public int batchCreateHmilyParticipant(final List<HmilyParticipant> hmilyParticipantList) {
+        return append(hmilyParticipantList.stream().map(e -> HmilyWalRecord.create(Operation.CREATE_HMILY_PARTICIPANT, e)).collect(Collectors.toList()));
+    }
+    
+    @Override
+    public int batchUpdateHmilyParticipantStatus(final Map<Long, Integer> statusMap) {
+        return append(statusMap.entrySet().stream()
+                .map(e -> HmilyWalRecord.updateStatus(Operation.UPDATE_HMILY_PARTICIPANT_STATUS, e.getKey(), e.getValue())).collect(Collectors.toList()));
+    }
+    
+    @Override
+    public int batchRemoveHmilyParticipant(final List<Long> participantIdList) {
+        return append(participantIdList.stream().map(e -> HmilyWalRecord.remove(Operation.REMOVE_HMILY_PARTICIPANT, e)).collect(Collectors.toList()));
+    }
+    
+    @Override
+    public int batchRemoveHmilyParticipantUndo(final List<Long> undoIdList) {
+        return append(undoIdList.stream().map(e -> HmilyWalRecord.remove(Operation.REMOVE_HMILY_PARTICIPANT_UNDO, e)).collect(Collectors.toList()));
+    }
+    
+    @Override
+    public int batchUpdateHmilyParticipantUndoStatus(final Map<Long, Integer> statusMap) {
+        return append(statusMap.entrySet().stream()
+                .map(e -> HmilyWalRecord.updateStatus(Operation.UPDATE_HMILY_PARTICIPANT_UNDO_STATUS, e.getKey(), e.getValue())).collect(Collectors.toList()));
+    }
+    
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join();
+            shipper.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("hmily wal close is interrupted, the unshipped records are replayed on the next start");
+        }
+        try {
+            walLog.close();
+        } catch (IOException e) {
+            LOGGER.error("hmily wal close exception", e);
+        }
+        if (delegate instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) delegate).close();
+            } catch (Exception e) {
+                LOGGER.error("hmily wal close the delegate repository exception", e);
+            }
+        }
+    }
+    
+    private int append(final HmilyWalRecord record) {
+        List<HmilyWalRecord> records = new ArrayList<>(1);
+        records.add(record);
+        return append(records);
+    }
+    
+    private int append(final List<HmilyWalRecord> records) {
+        if (!running) {
+            throw new HmilyRepositoryException("hmily wal is closed");
+        }
+        List<PendingAppend> pendingAppends = new ArrayList<>(records.size());
+        for (HmilyWalRecord record : records) {
+            PendingAppend pendingAppend = new PendingAppend(record, record.encode(hmilySerializer));
+            pendingAppends.add(pendingAppend);
+            appendQueue.offer(pendingAppend);
+        }
+        try {
+            for (PendingAppend pendingAppend : pendingAppends) {
+                pendingAppend.future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HmilyRepositoryException(e);
+        } catch (ExecutionException e) {
+            throw new HmilyRepositoryException(e.getCause());
+        }
+        return records.size();
+    }
+    
+    /**
+     * The writer thread, every fsync commits all the appends queued meanwhile.
+     */
+    private void write() {
+        List<PendingAppend> batch = new ArrayList<>(walConfig.getGroupCommitSize());
+        while (running || !appendQueue.isEmpty()) {
+            try {
+                PendingAppend first = appendQueue.poll(100, TimeUnit.MILLISECONDS);
+                if (Objects.isNull(first)) {
+                    continue;
+                }
+                batch.add(first);
+                appendQueue.drainTo(batch, walConfig.getGroupCommitSize() - 1);
+                long[] endOffsets = walLog.append(batch.stream().map(e -> e.body).collect(Collectors.toList()));
+                for (int i = 0; i < batch.size(); i++) {
+                    enqueue(new ShipEntry(batch.get(i).record, batch.get(i).body, endOffsets[i]));
+                    batch.get(i).future.complete(null);
+                }
+            } catch (IOException e) {
+                LOGGER.error("hmily wal append exception", e);
+                batch.forEach(pendingAppend -> pendingAppend.future.completeExceptionally(e));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+        appendQueue.drainTo(batch);
+        batch.forEach(pendingAppend -> pendingAppend.future.completeExceptionally(new HmilyRepositoryException("hmily wal is closed")));
+    }
+    
+    /**
+     * The shipper thread, applies the log to the delegate in order and moves the checkpoint past every shipped record.
+     * a failed record blocks the records after it, it is retried with a growing delay until it is shipped or quarantined.
+     */
+    private void ship() {
+        Deque<ShipEntry> batch = new ArrayDeque<>(walConfig.getShipBatchSize());
+        int attempts = 0;
+        long retryDelay = walConfig.getShipRetryDelay();
+        while (running || writer.isAlive() || !shipQueue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    ShipEntry first = shipQueue.poll(100, TimeUnit.MILLISECONDS);
+                    if (Objects.isNull(first)) {
+                        continue;
+                    }
+                    batch.add(first);
+                    shipQueue.drainTo(batch, walConfig.getShipBatchSize() - 1);
+                }
+                ShipEntry entry = batch.peekFirst();
+                if (shipOne(entry.record)) {
+                    shipped(batch.pollFirst());
+                } else if (Objects.isNull(entry.record) || (walConfig.getShipMaxAttempts() > 0 && ++attempts >= walConfig.getShipMaxAttempts())) {
+                    LOGGER.error("hmily wal record at offset {} failed {} times, move it to the quarantine file", entry.endOffset, attempts);
+                    walLog.quarantine(entry.body);
+                    shipped(batch.pollFirst());
+                } else {
+                    if (!running) {
+                        return;
+                    }
+                    LOGGER.warn("hmily wal record at offset {} is not shipped, retry after {} ms", entry.endOffset, retryDelay);
+                    sleep(retryDelay);
+                    retryDelay = Math.min(retryDelay * 2, Math.max(walConfig.getShipMaxRetryDelay(), walConfig.getShipRetryDelay()));
+                    continue;
+                }
+                attempts = 0;
+                retryDelay = walConfig.getShipRetryDelay();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                LOGGER.error("hmily wal quarantine exception, retry after {} ms", retryDelay, e);
+                if (!running) {
+                    return;
+                }
+                sleep(retryDelay);
+            }
+        }
+    }
+    
+    /**
+     * apply one record, it is shipped when the delegate applied it now or before, a record that can not be decoded is never shipped.
+     * a remove which returned is shipped whatever it found, one which threw is shipped only when the record is gone.
+     */
+    private boolean shipOne(final HmilyWalRecord record) {
+        if (Objects.isNull(record)) {
+            return false;
+        }
+        try {
+            if (record.apply(delegate) > FAIL_ROWS || record.getOperation().isRemove()) {
+                return true;
+            }
+        } catch (Exception e) {
+            LOGGER.warn("hmily wal apply {} exception: {}", record.getOperation(), e.getMessage());
+        }
+        try {
+            return record.isApplied(delegate);
+        } catch (Exception e) {
+            LOGGER.warn("hmily wal check {} exception: {}", record.getOperation(), e.getMessage());
+            return false;
+        }
+    }
+    
+    private void shipped(final ShipEntry entry) {
+        try {
+            walLog.writeCheckpoint(entry.endOffset);
+        } catch (IOException e) {
+            // the record is applied again on the next start, which the repository tolerates.
+            LOGGER.error("hmily wal write checkpoint exception", e);
+        }
+        if (Objects.nonNull(entry.record)) {
+            for (Long key : entry.record.keys()) {
+                if (Objects.nonNull(key)) {
+                    pendingIds.remove(key, entry.endOffset);
+                }
+            }
+        }
+        synchronized (shippedMonitor) {
+            shippedOffset = entry.endOffset;
+            shippedMonitor.notifyAll();
+        }
+    }
+    
+    private void enqueue(final ShipEntry entry) {
+        if (Objects.nonNull(entry.record)) {
+            for (Long key : entry.record.keys()) {
+                if (Objects.nonNull(key)) {
+                    pendingIds.merge(key, entry.endOffset, Math::max);
+                }
+            }
+        }
+        appendedOffset = entry.endOffset;
+        shipQueue.offer(entry);
+    }
+    
+    /**
+     * the unshipped records of the log are shipped again by the shipper before the new ones, the records which were
+     * applied before the crash are recognized by the shipper.
+     */
+    private void replay() throws IOException {
+        long checkpoint = walLog.readCheckpoint();
+        shippedOffset = checkpoint;
+        appendedOffset = checkpoint;
+        List<ShipEntry> entries = new ArrayList<>();
+        walLog.read(checkpoint, (body, endOffset) -> entries.add(new ShipEntry(decode(body, endOffset), body, endOffset)));
+        if (entries.isEmpty()) {
+            return;
+        }
+        LOGGER.info("hmily wal replay {} records from offset {}", entries.size(), checkpoint);
+        entries.forEach(this::enqueue);
+    }
+    
+    private HmilyWalRecord decode(final byte[] body, final long endOffset) {
+        try {
+            return HmilyWalRecord.decode(body, hmilySerializer);
+        } catch (Exception e) {
+            LOGGER.error("hmily wal record at offset {} can not be decoded", endOffset, e);
+            return null;
+        }
+    }
+    
+    private void checkShipped(final Long id) {
+        if (!awaitShipped(id)) {
+            throw new HmilyRepositoryException("hmily wal writes of " + id + " are not shipped in " + walConfig.getReadTimeout() + " ms");
+        }
+    }
+    
+    private boolean awaitShipped(final Long id) {
+        Long offset = Objects.isNull(id) ? null : pendingIds.get(id);
+        return Objects.isNull(offset) || awaitOffset(offset);
+    }
+    
+    private boolean awaitAppended() {
+        if (awaitOffset(appendedOffset)) {
+            return true;
+        }
+        LOGGER.warn("hmily wal is {} bytes behind, skip the scan", appendedOffset - shippedOffset);
+        return false;
+    }
+    
+    private boolean awaitOffset(final long offset) {
+        if (shippedOffset >= offset) {
+            return true;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(walConfig.getReadTimeout());
+        synchronized (shippedMonitor) {
+            while (shippedOffset < offset) {
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    shippedMonitor.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    private static void sleep(final long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static final class PendingAppend {
+        
+        private final HmilyWalRecord record;
+        
+        private final byte[] body;
+        
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        
+        PendingAppend(final HmilyWalRecord record, final byte[] body) {
+            this.record = record;
+            this.body = body;
+        }
+    }
+    
+    private static final class ShipEntry {
+        
+        private final HmilyWalRecord record;
+        
+        private final byte[] body;
+        
+        private final long endOffset;
+        
+        ShipEntry(final HmilyWalRecord record, final byte[] body, final long endOffset) {
+            this.record = record;
+            this.body = body;
+            this.endOffset = endOffset;
+        }
+    }
+}
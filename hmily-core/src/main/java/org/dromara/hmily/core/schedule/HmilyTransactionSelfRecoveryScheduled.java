@@ -25,6 +25,9 @@ import java.util.Objects;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import org.dromara.hmily.annotation.TransTypeEnum;
 import org.dromara.hmily.common.concurrent.HmilyThreadFactory;
 import org.dromara.hmily.common.enums.HmilyActionEnum;
@@ -33,11 +36,12 @@ import org.dromara.hmily.common.utils.LogUtil;
 import org.dromara.hmily.config.api.ConfigEnv;
 import org.dromara.hmily.config.api.entity.HmilyConfig;
 import org.dromara.hmily.core.hook.UndoHook;
+import org.dromara.hmily.core.repository.HmilyRepositoryFacade;
 import org.dromara.hmily.repository.spi.HmilyRepository;
 import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
 import org.dromara.hmily.repository.spi.entity.HmilyParticipantUndo;
+import org.dromara.hmily.repository.spi.entity.HmilyScanCursor;
 import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
-import org.dromara.hmily.spi.ExtensionLoaderFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -64,8 +68,14 @@ public class HmilyTransactionSelfRecoveryScheduled implements AutoCloseable {
     
     private final HmilyTransactionRecoveryService hmilyTransactionRecoveryService;
     
+    private final AtomicReference<HmilyScanCursor> tccCursor = new AtomicReference<>();
+    
+    private final AtomicReference<HmilyScanCursor> tacCursor = new AtomicReference<>();
+    
+    private final AtomicReference<HmilyScanCursor> cleanCursor = new AtomicReference<>();
+    
     public HmilyTransactionSelfRecoveryScheduled() {
-        hmilyRepository = ExtensionLoaderFactory.load(HmilyRepository.class, hmilyConfig.getRepository());
+        hmilyRepository = HmilyRepositoryFacade.getInstance().getHmilyRepository();
         this.selfTccRecoveryExecutor =
                 new ScheduledThreadPoolExecutor(1,
                         HmilyThreadFactory.create("hmily-tcc-self-recovery", true));
@@ -105,116 +115,135 @@ public class HmilyTransactionSelfRecoveryScheduled implements AutoCloseable {
         selfTccRecoveryExecutor
                 .scheduleWithFixedDelay(() -> {
                     try {
-                        List<HmilyParticipant> hmilyParticipantList =
-                                hmilyRepository.listHmilyParticipant(acquireDelayData(hmilyConfig.getRecoverDelayTime()), TransTypeEnum.TCC.name(), hmilyConfig.getLimit());
-                        if (CollectionUtils.isEmpty(hmilyParticipantList)) {
-                            return;
-                        }
-                        for (HmilyParticipant hmilyParticipant : hmilyParticipantList) {
-                            // if the try is not completed, no compensation will be provided (to prevent various exceptions in the try phase)
-                            if (hmilyParticipant.getRetry() > hmilyConfig.getRetryMax()) {
-                                LogUtil.error(LOGGER, "This hmily tcc transaction exceeds the maximum number of retries and no retries will occur：{}", () -> hmilyParticipant);
-                                hmilyRepository.updateHmilyParticipantStatus(hmilyParticipant.getParticipantId(), HmilyActionEnum.DEATH.getCode());
-                                continue;
-                            }
-                            if (hmilyParticipant.getStatus() == HmilyActionEnum.PRE_TRY.getCode()) {
-                                //try not complete
-                                continue;
-                            }
-                            final boolean successful = hmilyRepository.lockHmilyParticipant(hmilyParticipant);
-                            // determine that rows > 0 is executed to prevent concurrency when the business side is in cluster mode
-                            if (successful) {
-                                LOGGER.info("hmily tcc transaction begin self recovery: {}", hmilyParticipant.toString());
-                                HmilyTransaction globalHmilyTransaction = hmilyRepository.findByTransId(hmilyParticipant.getTransId());
-                                if (Objects.isNull(globalHmilyTransaction)) {
-                                    //do remove
-                                    hmilyRepository.removeHmilyParticipant(hmilyParticipant.getParticipantId());
-                                }
-                                if (globalHmilyTransaction.getStatus() == HmilyActionEnum.TRYING.getCode()
-                                        || globalHmilyTransaction.getStatus() == HmilyActionEnum.CANCELING.getCode()) {
-                                    hmilyTransactionRecoveryService.cancel(hmilyParticipant);
-                                } else if (globalHmilyTransaction.getStatus() == HmilyActionEnum.CONFIRMING.getCode()) {
-                                    hmilyTransactionRecoveryService.confirm(hmilyParticipant);
-                                }
-                            }
-                        }
+                        scanHmilyParticipant(TransTypeEnum.TCC.name(), tccCursor, this::tccRecovery);
                     } catch (Exception e) {
                         LOGGER.error("hmily scheduled transaction log is error:", e);
                     }
                 }, hmilyConfig.getScheduledInitDelay(), hmilyConfig.getScheduledRecoveryDelay(), TimeUnit.SECONDS);
     }
     
+    private void tccRecovery(final HmilyParticipant hmilyParticipant) {
+        // if the try is not completed, no compensation will be provided (to prevent various exceptions in the try phase)
+        if (hmilyParticipant.getRetry() > hmilyConfig.getRetryMax()) {
+            LogUtil.error(LOGGER, "This hmily tcc transaction exceeds the maximum number of retries and no retries will occur：{}", () -> hmilyParticipant);
+            hmilyRepository.updateHmilyParticipantStatus(hmilyParticipant.getParticipantId(), HmilyActionEnum.DEATH.getCode());
+            return;
+        }
+        if (hmilyParticipant.getStatus() == HmilyActionEnum.PRE_TRY.getCode()) {
+            //try not complete
+            return;
+        }
+        final boolean successful = hmilyRepository.lockHmilyParticipant(hmilyParticipant);
+        // determine that rows > 0 is executed to prevent concurrency when the business side is in cluster mode
+        if (successful) {
+            LOGGER.info("hmily tcc transaction begin self recovery: {}", hmilyParticipant.toString());
+            HmilyTransaction globalHmilyTransaction = hmilyRepository.findByTransId(hmilyParticipant.getTransId());
+            if (Objects.isNull(globalHmilyTransaction)) {
+                //do remove
+                hmilyRepository.removeHmilyParticipant(hmilyParticipant.getParticipantId());
+                return;
+            }
+            if (globalHmilyTransaction.getStatus() == HmilyActionEnum.TRYING.getCode()
+                    || globalHmilyTransaction.getStatus() == HmilyActionEnum.CANCELING.getCode()) {
+                hmilyTransactionRecoveryService.cancel(hmilyParticipant);
+            } else if (globalHmilyTransaction.getStatus() == HmilyActionEnum.CONFIRMING.getCode()) {
+                hmilyTransactionRecoveryService.confirm(hmilyParticipant);
+            }
+        }
+    }
+    
     private void selfTacRecovery() {
         selfTacRecoveryExecutor
                 .scheduleWithFixedDelay(() -> {
                     try {
-                        List<HmilyParticipant> hmilyParticipantList =
-                                hmilyRepository.listHmilyParticipant(acquireDelayData(hmilyConfig.getRecoverDelayTime()), TransTypeEnum.TAC.name(), hmilyConfig.getLimit());
-    
-                        if (CollectionUtils.isEmpty(hmilyParticipantList)) {
-                            return;
-                        }
-                        for (HmilyParticipant hmilyParticipant : hmilyParticipantList) {
-                            // if the try is not completed, no compensation will be provided (to prevent various exceptions in the try phase)
-                            if (hmilyParticipant.getRetry() > hmilyConfig.getRetryMax()) {
-                                LogUtil.error(LOGGER, "This tac transaction exceeds the maximum number of retries and no retries will occur：{}", () -> hmilyParticipant);
-                                hmilyRepository.updateHmilyParticipantStatus(hmilyParticipant.getParticipantId(), HmilyActionEnum.DEATH.getCode());
-                                continue;
-                            }
-                            final boolean successful = hmilyRepository.lockHmilyParticipant(hmilyParticipant);
-                            // determine that rows > 0 is executed to prevent concurrency when the business side is in cluster mode
-                            if (successful) {
-                                HmilyTransaction globalHmilyTransaction = hmilyRepository.findByTransId(hmilyParticipant.getTransId());
-                                if (Objects.isNull(globalHmilyTransaction)) {
-                                    //do remove
-                                    hmilyRepository.removeHmilyParticipant(hmilyParticipant.getParticipantId());
-                                }
-                                List<HmilyParticipantUndo> participantUndoList = hmilyRepository.findHmilyParticipantUndoByParticipantId(hmilyParticipant.getParticipantId());
-                                if (CollectionUtils.isEmpty(participantUndoList)) {
-                                    continue;
-                                }
-                                if (globalHmilyTransaction.getStatus() == HmilyActionEnum.TRYING.getCode()
-                                        || globalHmilyTransaction.getStatus() == HmilyActionEnum.CANCELING.getCode()) {
-                                    for (HmilyParticipantUndo undo : participantUndoList) {
-                                        boolean success = UndoHook.INSTANCE.run(undo);
-                                        if (success) {
-                                            hmilyRepository.removeHmilyParticipantUndo(undo.getUndoId());
-                                        }
-                                    }
-                                } else if (globalHmilyTransaction.getStatus() == HmilyActionEnum.CONFIRMING.getCode()) {
-                                    for (HmilyParticipantUndo undo : participantUndoList) {
-                                        hmilyRepository.removeHmilyParticipantUndo(undo.getUndoId());
-                                    }
-                                }
-                            }
-                            hmilyRepository.removeHmilyParticipant(hmilyParticipant.getParticipantId());
-                        }
+                        scanHmilyParticipant(TransTypeEnum.TAC.name(), tacCursor, this::tacRecovery);
                     } catch (Exception e) {
                         LOGGER.error("hmily scheduled transaction log is error:", e);
                     }
                 }, hmilyConfig.getScheduledInitDelay(), hmilyConfig.getScheduledRecoveryDelay(), TimeUnit.SECONDS);
     }
     
+    private void tacRecovery(final HmilyParticipant hmilyParticipant) {
+        // if the try is not completed, no compensation will be provided (to prevent various exceptions in the try phase)
+        if (hmilyParticipant.getRetry() > hmilyConfig.getRetryMax()) {
+            LogUtil.error(LOGGER, "This tac transaction exceeds the maximum number of retries and no retries will occur：{}", () -> hmilyParticipant);
+            hmilyRepository.updateHmilyParticipantStatus(hmilyParticipant.getParticipantId(), HmilyActionEnum.DEATH.getCode());
+            return;
+        }
+        final boolean successful = hmilyRepository.lockHmilyParticipant(hmilyParticipant);
+        // determine that rows > 0 is executed to prevent concurrency when the business side is in cluster mode
+        if (successful) {
+            HmilyTransaction globalHmilyTransaction = hmilyRepository.findByTransId(hmilyParticipant.getTransId());
+            if (Objects.isNull(globalHmilyTransaction)) {
+                //do remove
+                hmilyRepository.removeHmilyParticipant(hmilyParticipant.getParticipantId());
+                return;
+            }
+            List<HmilyParticipantUndo> participantUndoList = hmilyRepository.findHmilyParticipantUndoByParticipantId(hmilyParticipant.getParticipantId());
+            if (CollectionUtils.isEmpty(participantUndoList)) {
+                return;
+            }
+            if (globalHmilyTransaction.getStatus() == HmilyActionEnum.TRYING.getCode()
+                    || globalHmilyTransaction.getStatus() == HmilyActionEnum.CANCELING.getCode()) {
+                for (HmilyParticipantUndo undo : participantUndoList) {
+                    boolean success = UndoHook.INSTANCE.run(undo);
+                    if (success) {
+                        hmilyRepository.removeHmilyParticipantUndo(undo.getUndoId());
+                    }
+                }
+            } else if (globalHmilyTransaction.getStatus() == HmilyActionEnum.CONFIRMING.getCode()) {
+                for (HmilyParticipantUndo undo : participantUndoList) {
+                    hmilyRepository.removeHmilyParticipantUndo(undo.getUndoId());
+                }
+            }
+        }
+        hmilyRepository.removeHmilyParticipant(hmilyParticipant.getParticipantId());
+    }
+    
     private void cleanHmilyTransaction() {
         cleanHmilyTransactionExecutor
                 .scheduleWithFixedDelay(() -> {
                     try {
-                        List<HmilyTransaction> hmilyTransactionList = hmilyRepository.listLimitByDelay(acquireDelayData(hmilyConfig.getCleanDelayTime()), hmilyConfig.getLimit());
-                        if (CollectionUtils.isEmpty(hmilyTransactionList)) {
-                            return;
-                        }
-                        for (HmilyTransaction hmilyTransaction : hmilyTransactionList) {
-                            boolean exist = hmilyRepository.existHmilyParticipantByTransId(hmilyTransaction.getTransId());
-                            if (!exist) {
-                                hmilyRepository.removeHmilyTransaction(hmilyTransaction.getTransId());
+                        Date date = acquireDelayData(hmilyConfig.getCleanDelayTime());
+                        int limit = hmilyConfig.getLimit();
+                        List<HmilyTransaction> hmilyTransactionList;
+                        do {
+                            hmilyTransactionList = hmilyRepository.scanHmilyTransaction(date, cleanCursor.get(), limit);
+                            if (hmilyTransactionList.isEmpty()) {
+                                break;
                             }
-                        }
+                            List<Long> transIdList = hmilyTransactionList.stream().map(HmilyTransaction::getTransId).collect(Collectors.toList());
+                            List<Long> orphanTransIdList = hmilyRepository.findTransIdsWithoutParticipants(transIdList);
+                            if (!orphanTransIdList.isEmpty()) {
+                                hmilyRepository.batchRemoveHmilyTransaction(orphanTransIdList);
+                            }
+                            HmilyTransaction last = hmilyTransactionList.get(hmilyTransactionList.size() - 1);
+                            cleanCursor.set(new HmilyScanCursor(last.getUpdateTime(), last.getTransId()));
+                        } while (hmilyTransactionList.size() >= limit && limit > 0);
+                        cleanCursor.set(null);
                     } catch (Exception e) {
                         LOGGER.error(" scheduled clean hmily transaction log is error:", e);
                     }
                 }, hmilyConfig.getScheduledInitDelay(), hmilyConfig.getScheduledCleanDelay(), TimeUnit.SECONDS);
     }
     
+    /**
+     * Scan the whole delayed backlog page by page, the cursor is kept when a page fails so that the next tick resumes from it.
+     */
+    private void scanHmilyParticipant(final String transType, final AtomicReference<HmilyScanCursor> cursor, final Consumer<HmilyParticipant> recovery) {
+        Date date = acquireDelayData(hmilyConfig.getRecoverDelayTime());
+        int limit = hmilyConfig.getLimit();
+        List<HmilyParticipant> hmilyParticipantList;
+        do {
+            hmilyParticipantList = hmilyRepository.scanHmilyParticipant(date, transType, cursor.get(), limit);
+            for (HmilyParticipant hmilyParticipant : hmilyParticipantList) {
+                recovery.accept(hmilyParticipant);
+                cursor.set(new HmilyScanCursor(hmilyParticipant.getUpdateTime(), hmilyParticipant.getParticipantId()));
+            }
+        } while (hmilyParticipantList.size() >= limit && limit > 0);
+        cursor.set(null);
+    }
+    
     private Date acquireDelayData(final int delayTime) {
         return new Date(LocalDateTime.now().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() - (delayTime * 1000));
     }
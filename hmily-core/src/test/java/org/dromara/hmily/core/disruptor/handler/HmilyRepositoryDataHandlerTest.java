@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.core.disruptor.handler;
+
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import org.dromara.hmily.common.enums.EventTypeEnum;
+import org.dromara.hmily.core.concurrent.ConsistentHashSelector;
+import org.dromara.hmily.core.concurrent.SingletonExecutor;
+import org.dromara.hmily.core.repository.HmilyRepositoryEvent;
+import org.dromara.hmily.core.repository.HmilyRepositoryFacade;
+import org.dromara.hmily.repository.spi.HmilyAsyncRepository;
+import org.dromara.hmily.repository.spi.HmilyRepository;
+import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The in flight writes of the repository data handler.
+ *
+ * @author xiaoyu
+ */
+public final class HmilyRepositoryDataHandlerTest {
+
+    private final SingletonExecutor singletonExecutor = new SingletonExecutor("hmily-data-handler-test");
+
+    private HmilyRepository hmilyRepository;
+
+    private HmilyAsyncRepository hmilyAsyncRepository;
+
+    private HmilyRepository previous;
+
+    private HmilyAsyncRepository previousAsync;
+
+    private boolean phyDeleted;
+
+    @Before
+    public void setUp() {
+        HmilyRepositoryFacade facade = HmilyRepositoryFacade.getInstance();
+        previous = facade.getHmilyRepository();
+        previousAsync = facade.getHmilyAsyncRepository();
+        phyDeleted = facade.isPhyDeleted();
+        hmilyRepository = mock(HmilyRepository.class);
+        hmilyAsyncRepository = mock(HmilyAsyncRepository.class);
+        facade.setHmilyRepository(hmilyRepository);
+        facade.setHmilyAsyncRepository(hmilyAsyncRepository);
+        facade.setPhyDeleted(true);
+    }
+
+    @After
+    public void tearDown() {
+        singletonExecutor.shutdownNow();
+        HmilyRepositoryFacade facade = HmilyRepositoryFacade.getInstance();
+        facade.setHmilyRepository(previous);
+        facade.setHmilyAsyncRepository(previousAsync);
+        facade.setPhyDeleted(phyDeleted);
+    }
+
+    @Test
+    public void assertWritesOfOneTransactionAreInOrderAndOthersOverlap() {
+        CompletableFuture<Integer> first = new CompletableFuture<>();
+        when(hmilyAsyncRepository.updateHmilyTransactionStatusAsync(1L, 2)).thenReturn(first);
+        when(hmilyAsyncRepository.updateHmilyTransactionStatusAsync(1L, 3)).thenReturn(CompletableFuture.completedFuture(HmilyRepository.ROWS));
+        when(hmilyAsyncRepository.updateHmilyTransactionStatusAsync(2L, 2)).thenReturn(CompletableFuture.completedFuture(HmilyRepository.ROWS));
+        HmilyRepositoryDataHandler handler = new HmilyRepositoryDataHandler(selector(), 1, 0, 16, 1000);
+        handler.executor(event(1L, 2));
+        handler.executor(event(1L, 3));
+        handler.executor(event(2L, 2));
+        verify(hmilyAsyncRepository, timeout(1000)).updateHmilyTransactionStatusAsync(2L, 2);
+        verify(hmilyAsyncRepository, never()).updateHmilyTransactionStatusAsync(1L, 3);
+        first.complete(HmilyRepository.ROWS);
+        verify(hmilyAsyncRepository, timeout(1000)).updateHmilyTransactionStatusAsync(1L, 3);
+        InOrder order = inOrder(hmilyAsyncRepository);
+        order.verify(hmilyAsyncRepository).updateHmilyTransactionStatusAsync(1L, 2);
+        order.verify(hmilyAsyncRepository).updateHmilyTransactionStatusAsync(1L, 3);
+    }
+
+    @Test
+    public void assertWriteIsSynchronousWhenNoInFlightWriteIsFree() {
+        when(hmilyAsyncRepository.updateHmilyTransactionStatusAsync(1L, 2)).thenReturn(new CompletableFuture<>());
+        when(hmilyRepository.updateHmilyTransactionStatus(2L, 2)).thenReturn(HmilyRepository.ROWS);
+        HmilyRepositoryDataHandler handler = new HmilyRepositoryDataHandler(selector(), 1, 0, 1, 50);
+        handler.executor(event(1L, 2));
+        handler.executor(event(2L, 2));
+        verify(hmilyRepository, timeout(1000)).updateHmilyTransactionStatus(2L, 2);
+        verify(hmilyAsyncRepository, never()).updateHmilyTransactionStatusAsync(2L, 2);
+    }
+
+    private ConsistentHashSelector selector() {
+        return new ConsistentHashSelector(Collections.singletonList(singletonExecutor));
+    }
+
+    private static HmilyRepositoryEvent event(final Long transId, final Integer status) {
+        HmilyTransaction hmilyTransaction = new HmilyTransaction();
+        hmilyTransaction.setTransId(transId);
+        hmilyTransaction.setStatus(status);
+        HmilyRepositoryEvent event = new HmilyRepositoryEvent();
+        event.setType(EventTypeEnum.UPDATE_HMILY_TRANSACTION_STATUS.getCode());
+        event.setTransId(transId);
+        event.setHmilyTransaction(hmilyTransaction);
+        return event;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.core.repository;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.dromara.hmily.common.enums.EventTypeEnum;
+import org.dromara.hmily.repository.spi.HmilyRepository;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
+import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The group commit of the repository dispatcher.
+ *
+ * @author xiaoyu
+ */
+public final class HmilyRepositoryDispatcherTest {
+
+    private final HmilyRepositoryDispatcher dispatcher = HmilyRepositoryDispatcher.getInstance();
+
+    private HmilyRepository hmilyRepository;
+
+    private HmilyRepository previous;
+
+    private boolean phyDeleted;
+
+    @Before
+    public void setUp() {
+        previous = HmilyRepositoryFacade.getInstance().getHmilyRepository();
+        phyDeleted = HmilyRepositoryFacade.getInstance().isPhyDeleted();
+        hmilyRepository = mock(HmilyRepository.class);
+        HmilyRepositoryFacade.getInstance().setHmilyRepository(hmilyRepository);
+        HmilyRepositoryFacade.getInstance().setPhyDeleted(true);
+    }
+
+    @After
+    public void tearDown() {
+        HmilyRepositoryFacade.getInstance().setHmilyRepository(previous);
+        HmilyRepositoryFacade.getInstance().setPhyDeleted(phyDeleted);
+    }
+
+    @Test
+    public void assertConsecutiveEventsOfOneTypeAreGroupCommitted() {
+        HmilyTransaction first = transaction(1L, 1);
+        HmilyTransaction second = transaction(2L, 1);
+        dispatcher.doDispatcher(Arrays.asList(
+                transactionEvent(EventTypeEnum.CREATE_HMILY_TRANSACTION, first),
+                transactionEvent(EventTypeEnum.CREATE_HMILY_TRANSACTION, second),
+                transactionEvent(EventTypeEnum.UPDATE_HMILY_TRANSACTION_STATUS, transaction(1L, 2)),
+                transactionEvent(EventTypeEnum.UPDATE_HMILY_TRANSACTION_STATUS, transaction(2L, 3)),
+                participantEvent(EventTypeEnum.CREATE_HMILY_PARTICIPANT, participant(10L, 1L, 1))));
+        InOrder order = inOrder(hmilyRepository);
+        order.verify(hmilyRepository).batchCreateHmilyTransaction(Arrays.asList(first, second));
+        Map<Long, Integer> statusMap = new LinkedHashMap<>();
+        statusMap.put(1L, 2);
+        statusMap.put(2L, 3);
+        order.verify(hmilyRepository).batchUpdateHmilyTransactionStatus(statusMap);
+        order.verify(hmilyRepository).createHmilyParticipant(any(HmilyParticipant.class));
+        verify(hmilyRepository, never()).createHmilyTransaction(any(HmilyTransaction.class));
+        verify(hmilyRepository, never()).batchCreateHmilyParticipant(anyList());
+    }
+
+    @Test
+    public void assertGroupsAreSplitByTypeInPublishOrder() {
+        HmilyParticipant participant = participant(10L, 1L, 1);
+        dispatcher.doDispatcher(Arrays.asList(
+                participantEvent(EventTypeEnum.CREATE_HMILY_PARTICIPANT, participant),
+                participantEvent(EventTypeEnum.UPDATE_HMILY_PARTICIPANT_STATUS, participant(10L, 1L, 2)),
+                participantEvent(EventTypeEnum.CREATE_HMILY_PARTICIPANT, participant(11L, 1L, 1))));
+        InOrder order = inOrder(hmilyRepository);
+        order.verify(hmilyRepository).createHmilyParticipant(participant);
+        order.verify(hmilyRepository).updateHmilyParticipantStatus(10L, 2);
+        order.verify(hmilyRepository).createHmilyParticipant(any(HmilyParticipant.class));
+    }
+
+    @Test
+    public void assertFailedGroupDoesNotStopTheNextGroups() {
+        when(hmilyRepository.batchCreateHmilyTransaction(anyList())).thenThrow(new IllegalStateException("down"));
+        dispatcher.doDispatcher(Arrays.asList(
+                transactionEvent(EventTypeEnum.CREATE_HMILY_TRANSACTION, transaction(1L, 1)),
+                transactionEvent(EventTypeEnum.CREATE_HMILY_TRANSACTION, transaction(2L, 1)),
+                participantEvent(EventTypeEnum.REMOVE_HMILY_PARTICIPANT, participant(10L, 1L, 4)),
+                participantEvent(EventTypeEnum.REMOVE_HMILY_PARTICIPANT, participant(11L, 1L, 4))));
+        verify(hmilyRepository).batchRemoveHmilyParticipant(Arrays.asList(10L, 11L));
+    }
+
+    @Test
+    public void assertDefaultBatchFallsBackToSingleRows() {
+        HmilyRepository singleRowRepository = mock(HmilyRepository.class, CALLS_REAL_METHODS);
+        when(singleRowRepository.updateHmilyParticipantStatus(any(), any())).thenReturn(HmilyRepository.ROWS);
+        Map<Long, Integer> statusMap = new LinkedHashMap<>();
+        statusMap.put(10L, 2);
+        statusMap.put(11L, 2);
+        assertEquals(2, singleRowRepository.batchUpdateHmilyParticipantStatus(statusMap));
+        verify(singleRowRepository, times(2)).updateHmilyParticipantStatus(any(), any());
+        assertEquals(0, singleRowRepository.batchRemoveHmilyParticipant(Collections.emptyList()));
+    }
+
+    private static HmilyTransaction transaction(final Long transId, final Integer status) {
+        HmilyTransaction hmilyTransaction = new HmilyTransaction();
+        hmilyTransaction.setTransId(transId);
+        hmilyTransaction.setStatus(status);
+        return hmilyTransaction;
+    }
+
+    private static HmilyParticipant participant(final Long participantId, final Long transId, final Integer status) {
+        HmilyParticipant hmilyParticipant = new HmilyParticipant();
+        hmilyParticipant.setParticipantId(participantId);
+        hmilyParticipant.setTransId(transId);
+        hmilyParticipant.setStatus(status);
+        return hmilyParticipant;
+    }
+
+    private static HmilyRepositoryEvent transactionEvent(final EventTypeEnum type, final HmilyTransaction hmilyTransaction) {
+        HmilyRepositoryEvent event = new HmilyRepositoryEvent();
+        event.setType(type.getCode());
+        event.setTransId(hmilyTransaction.getTransId());
+        event.setHmilyTransaction(hmilyTransaction);
+        return event;
+    }
+
+    private static HmilyRepositoryEvent participantEvent(final EventTypeEnum type, final HmilyParticipant hmilyParticipant) {
+        HmilyRepositoryEvent event = new HmilyRepositoryEvent();
+        event.setType(type.getCode());
+        event.setTransId(hmilyParticipant.getTransId());
+        event.setHmilyParticipant(hmilyParticipant);
+        return event;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.core.repository;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.dromara.hmily.common.enums.EventTypeEnum;
+import org.dromara.hmily.common.enums.HmilyActionEnum;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
+import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The coalescing rules of the repository events.
+ *
+ * @author xiaoyu
+ */
+public final class HmilyRepositoryEventCoalescerTest {
+
+    @Test
+    public void assertSingleEventIsReturnedAsIs() {
+        List<HmilyRepositoryEvent> events = Collections.singletonList(transactionEvent(EventTypeEnum.CREATE_HMILY_TRANSACTION, transaction(1L, 1)));
+        assertSame(events, HmilyRepositoryEventCoalescer.coalesce(events, false));
+    }
+
+    @Test
+    public void assertUpdateIsFoldedIntoCreateOnACopy() {
+        HmilyTransaction created = transaction(1L, 1);
+        HmilyRepositoryEvent create = transactionEvent(EventTypeEnum.CREATE_HMILY_TRANSACTION, created);
+        List<HmilyRepositoryEvent> result = HmilyRepositoryEventCoalescer.coalesce(Arrays.asList(create,
+                transactionEvent(EventTypeEnum.UPDATE_HMILY_TRANSACTION_STATUS, transaction(1L, 2))), false);
+        assertEquals(1, result.size());
+        assertEquals(EventTypeEnum.CREATE_HMILY_TRANSACTION.getCode(), result.get(0).getType());
+        assertEquals(2, result.get(0).getHmilyTransaction().getStatus());
+        assertNotSame(created, result.get(0).getHmilyTransaction());
+        assertEquals(1, created.getStatus());
+        assertSame(created, create.getHmilyTransaction());
+    }
+
+    @Test
+    public void assertLastUpdateWins() {
+        HmilyRepositoryEvent last = participantEvent(EventTypeEnum.UPDATE_HMILY_PARTICIPANT_STATUS, participant(10L, 1L, 3));
+        List<HmilyRepositoryEvent> result = HmilyRepositoryEventCoalescer.coalesce(Arrays.asList(
+                participantEvent(EventTypeEnum.UPDATE_HMILY_PARTICIPANT_STATUS, participant(10L, 1L, 2)), last), false);
+        assertEquals(Collections.singletonList(last), result);
+    }
+
+    @Test
+    public void assertPhysicalRemoveCancelsCreateAndUpdates() {
+        List<HmilyRepositoryEvent> result = HmilyRepositoryEventCoalescer.coalesce(Arrays.asList(
+                participantEvent(EventTypeEnum.CREATE_HMILY_PARTICIPANT, participant(10L, 1L, 1)),
+                participantEvent(EventTypeEnum.UPDATE_HMILY_PARTICIPANT_STATUS, participant(10L, 1L, 2)),
+                participantEvent(EventTypeEnum.REMOVE_HMILY_PARTICIPANT, participant(10L, 1L, 2))), true);
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    public void assertLogicalRemoveIsFoldedIntoCreate() {
+        HmilyParticipant created = participant(10L, 1L, 1);
+        List<HmilyRepositoryEvent> result = HmilyRepositoryEventCoalescer.coalesce(Arrays.asList(
+                participantEvent(EventTypeEnum.CREATE_HMILY_PARTICIPANT, created),
+                participantEvent(EventTypeEnum.REMOVE_HMILY_PARTICIPANT, participant(10L, 1L, 1))), false);
+        assertEquals(1, result.size());
+        assertEquals(EventTypeEnum.CREATE_HMILY_PARTICIPANT.getCode(), result.get(0).getType());
+        assertEquals(Integer.valueOf(HmilyActionEnum.DELETE.getCode()), result.get(0).getHmilyParticipant().getStatus());
+        assertEquals(Integer.valueOf(1), created.getStatus());
+    }
+
+    @Test
+    public void assertRemoveDropsPendingUpdate() {
+        HmilyRepositoryEvent remove = transactionEvent(EventTypeEnum.REMOVE_HMILY_TRANSACTION, transaction(1L, 2));
+        List<HmilyRepositoryEvent> result = HmilyRepositoryEventCoalescer.coalesce(Arrays.asList(
+                transactionEvent(EventTypeEnum.UPDATE_HMILY_TRANSACTION_STATUS, transaction(1L, 2)), remove), true);
+        assertEquals(Collections.singletonList(remove), result);
+    }
+
+    @Test
+    public void assertEventsOfOtherRecordsAreKeptInOrder() {
+        HmilyRepositoryEvent transaction = transactionEvent(EventTypeEnum.UPDATE_HMILY_TRANSACTION_STATUS, transaction(10L, 2));
+        HmilyRepositoryEvent participant = participantEvent(EventTypeEnum.UPDATE_HMILY_PARTICIPANT_STATUS, participant(10L, 10L, 3));
+        HmilyRepositoryEvent other = transactionEvent(EventTypeEnum.UPDATE_HMILY_TRANSACTION_STATUS, transaction(11L, 3));
+        List<HmilyRepositoryEvent> result = HmilyRepositoryEventCoalescer.coalesce(Arrays.asList(transaction, participant, other), false);
+        assertEquals(Arrays.asList(transaction, participant, other), result);
+    }
+
+    private static HmilyTransaction transaction(final Long transId, final int status) {
+        HmilyTransaction hmilyTransaction = new HmilyTransaction(transId);
+        hmilyTransaction.setStatus(status);
+        return hmilyTransaction;
+    }
+
+    private static HmilyParticipant participant(final Long participantId, final Long transId, final Integer status) {
+        HmilyParticipant hmilyParticipant = new HmilyParticipant();
+        hmilyParticipant.setParticipantId(participantId);
+        hmilyParticipant.setTransId(transId);
+        hmilyParticipant.setStatus(status);
+        return hmilyParticipant;
+    }
+
+    private static HmilyRepositoryEvent transactionEvent(final EventTypeEnum type, final HmilyTransaction hmilyTransaction) {
+        HmilyRepositoryEvent event = new HmilyRepositoryEvent();
+        event.setType(type.getCode());
+        event.setTransId(hmilyTransaction.getTransId());
+        event.setHmilyTransaction(hmilyTransaction);
+        return event;
+    }
+
+    private static HmilyRepositoryEvent participantEvent(final EventTypeEnum type, final HmilyParticipant hmilyParticipant) {
+        HmilyRepositoryEvent event = new HmilyRepositoryEvent();
+        event.setType(type.getCode());
+        event.setTransId(hmilyParticipant.getTransId());
+        event.setHmilyParticipant(hmilyParticipant);
+        return event;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.core.repository;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import org.dromara.hmily.common.enums.HmilyActionEnum;
+import org.dromara.hmily.metrics.enums.MetricsLabelEnum;
+import org.dromara.hmily.metrics.spi.MetricsHandlerFacade;
+import org.dromara.hmily.repository.spi.HmilyRepository;
+import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
+import org.dromara.hmily.repository.spi.exception.HmilyRepositoryException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The metrics the repository facade records around the repository operations.
+ *
+ * @author xiaoyu
+ */
+public final class HmilyRepositoryFacadeTest {
+
+    private static final String LATENCY = MetricsLabelEnum.REPOSITORY_LATENCY.getName();
+
+    private static final String FAILURE = MetricsLabelEnum.REPOSITORY_FAILURE.getName();
+
+    private final HmilyRepositoryFacade facade = HmilyRepositoryFacade.getInstance();
+
+    private final HmilyRepositoryMetrics metrics = HmilyRepositoryMetrics.getInstance();
+
+    private final MetricsHandlerFacade handler = mock(MetricsHandlerFacade.class);
+
+    private final HmilyRepository hmilyRepository = mock(HmilyRepository.class);
+
+    private HmilyRepository previous;
+
+    private boolean phyDeleted;
+
+    private Object previousHandler;
+
+    @Before
+    public void setUp() throws Exception {
+        previous = facade.getHmilyRepository();
+        phyDeleted = facade.isPhyDeleted();
+        previousHandler = field().get(metrics);
+        facade.setHmilyRepository(hmilyRepository);
+        metrics.init("test");
+        field().set(metrics, handler);
+        when(handler.isEnabled()).thenReturn(true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        facade.setHmilyRepository(previous);
+        facade.setPhyDeleted(phyDeleted);
+        metrics.init("unknown");
+        field().set(metrics, previousHandler);
+    }
+
+    @Test
+    public void assertSuccessIsRecordedAgainstItsOperation() {
+        HmilyTransaction hmilyTransaction = new HmilyTransaction();
+        when(hmilyRepository.createHmilyTransaction(hmilyTransaction)).thenReturn(HmilyRepository.ROWS);
+        assertTrue(facade.createHmilyTransaction(hmilyTransaction));
+        verify(handler).histogramObserve(eq(LATENCY), anyLong(), eq("test"), eq("createHmilyTransaction"));
+        verify(handler, never()).counterIncrement(eq(FAILURE), anyString(), anyString());
+    }
+
+    @Test
+    public void assertFailureIsRecordedAgainstItsOperation() {
+        HmilyRepositoryException exception = new HmilyRepositoryException("fail");
+        when(hmilyRepository.batchUpdateHmilyParticipantStatus(any())).thenThrow(exception);
+        try {
+            facade.batchUpdateHmilyParticipantStatus(Collections.singletonMap(1L, 2));
+            fail();
+        } catch (HmilyRepositoryException e) {
+            assertSame(exception, e);
+        }
+        verify(handler).histogramObserve(eq(LATENCY), anyLong(), eq("test"), eq("batchUpdateHmilyParticipantStatus"));
+        verify(handler).counterIncrement(FAILURE, "test", "batchUpdateHmilyParticipantStatus");
+    }
+
+    @Test
+    public void assertLogicalRemoveIsRecordedAsTheStatusUpdate() {
+        facade.setPhyDeleted(false);
+        when(hmilyRepository.updateHmilyParticipantUndoStatus(1L, HmilyActionEnum.DELETE.getCode())).thenReturn(HmilyRepository.ROWS);
+        assertTrue(facade.removeHmilyParticipantUndo(1L));
+        verify(handler).histogramObserve(eq(LATENCY), anyLong(), eq("test"), eq("updateHmilyParticipantUndoStatus"));
+        verify(handler, never()).histogramObserve(eq(LATENCY), anyLong(), eq("test"), eq("removeHmilyParticipantUndo"));
+    }
+
+    @Test
+    public void assertNothingIsRecordedWhileDisabled() {
+        when(handler.isEnabled()).thenReturn(false);
+        when(hmilyRepository.removeHmilyParticipant(1L)).thenThrow(new HmilyRepositoryException("fail"));
+        facade.setPhyDeleted(true);
+        try {
+            facade.removeHmilyParticipant(1L);
+            fail();
+        } catch (HmilyRepositoryException ignored) {
+        }
+        verify(handler, never()).histogramObserve(anyString(), anyLong(), any());
+        verify(handler, never()).counterIncrement(anyString(), any());
+    }
+
+    private static Field field() throws Exception {
+        Field field = HmilyRepositoryMetrics.class.getDeclaredField("metricsHandlerFacade");
+        field.setAccessible(true);
+        return field;
+    }
+}
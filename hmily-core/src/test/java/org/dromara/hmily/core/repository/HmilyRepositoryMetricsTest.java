@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.core.repository;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.CompletableFuture;
+import org.dromara.hmily.core.repository.HmilyRepositoryMetrics.CacheName;
+import org.dromara.hmily.core.repository.HmilyRepositoryMetrics.Operation;
+import org.dromara.hmily.metrics.enums.MetricsLabelEnum;
+import org.dromara.hmily.metrics.spi.MetricsHandlerFacade;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * The labels of the repository metrics and what they record while enabled and disabled.
+ *
+ * @author xiaoyu
+ */
+public final class HmilyRepositoryMetricsTest {
+
+    private static final String LATENCY = MetricsLabelEnum.REPOSITORY_LATENCY.getName();
+
+    private static final String FAILURE = MetricsLabelEnum.REPOSITORY_FAILURE.getName();
+
+    private final HmilyRepositoryMetrics metrics = HmilyRepositoryMetrics.getInstance();
+
+    private final MetricsHandlerFacade handler = mock(MetricsHandlerFacade.class);
+
+    private Object previous;
+
+    @Before
+    public void setUp() throws Exception {
+        previous = handler();
+        metrics.init("test");
+        setHandler(handler);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        metrics.init("unknown");
+        setHandler(previous);
+    }
+
+    @Test
+    public void assertObserveRecordsTheLatencyOfTheOperation() {
+        when(handler.isEnabled()).thenReturn(true);
+        long start = metrics.start();
+        assertNotEquals(0L, start);
+        assertEquals(3, metrics.observe(Operation.BATCH_UPDATE_HMILY_PARTICIPANT_STATUS, start, 3));
+        verify(handler).histogramObserve(eq(LATENCY), anyLong(), eq("test"), eq("batchUpdateHmilyParticipantStatus"));
+        verify(handler, never()).counterIncrement(eq(FAILURE), eq("test"), eq("batchUpdateHmilyParticipantStatus"));
+    }
+
+    @Test
+    public void assertFailRecordsTheLatencyAndTheFailureOfTheOperation() {
+        when(handler.isEnabled()).thenReturn(true);
+        RuntimeException exception = new IllegalStateException();
+        assertSame(exception, metrics.fail(Operation.REMOVE_HMILY_PARTICIPANT, metrics.start(), exception));
+        verify(handler).histogramObserve(eq(LATENCY), anyLong(), eq("test"), eq("removeHmilyParticipant"));
+        verify(handler).counterIncrement(FAILURE, "test", "removeHmilyParticipant");
+    }
+
+    @Test
+    public void assertObserveAsyncRecordsWhenTheFutureCompletes() {
+        when(handler.isEnabled()).thenReturn(true);
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        metrics.observeAsync(Operation.CREATE_HMILY_TRANSACTION, metrics.start(), future);
+        verify(handler, never()).histogramObserve(eq(LATENCY), anyLong(), eq("test"), eq("createHmilyTransaction"));
+        future.completeExceptionally(new IllegalStateException());
+        verify(handler).histogramObserve(eq(LATENCY), anyLong(), eq("test"), eq("createHmilyTransaction"));
+        verify(handler).counterIncrement(FAILURE, "test", "createHmilyTransaction");
+    }
+
+    @Test
+    public void assertQueueWaitAndCacheAreTaggedByTheRepository() {
+        when(handler.isEnabled()).thenReturn(true);
+        metrics.observeQueueWait(metrics.start());
+        metrics.observeCache(CacheName.PARTICIPANT, false);
+        verify(handler).histogramObserve(eq(MetricsLabelEnum.REPOSITORY_QUEUE_WAIT.getName()), anyLong(), eq("test"));
+        verify(handler).counterIncrement(MetricsLabelEnum.REPOSITORY_CACHE.getName(), "test", "participant", "miss");
+    }
+
+    @Test
+    public void assertNothingIsRecordedWhileDisabled() {
+        long start = metrics.start();
+        assertEquals(0L, start);
+        assertEquals(1, metrics.observe(Operation.CREATE_HMILY_PARTICIPANT, start, 1));
+        metrics.fail(Operation.CREATE_HMILY_PARTICIPANT, start, new IllegalStateException());
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        metrics.observeAsync(Operation.CREATE_HMILY_PARTICIPANT, start, future);
+        future.complete(1);
+        metrics.observeQueueWait(start);
+        metrics.observeCache(CacheName.TRANSACTION, true);
+        verify(handler, times(2)).isEnabled();
+        verifyNoMoreInteractions(handler);
+    }
+
+    private Object handler() throws Exception {
+        return field().get(metrics);
+    }
+
+    private void setHandler(final Object value) throws Exception {
+        field().set(metrics, value);
+    }
+
+    private static Field field() throws Exception {
+        Field field = HmilyRepositoryMetrics.class.getDeclaredField("metricsHandlerFacade");
+        field.setAccessible(true);
+        return field;
+    }
+}
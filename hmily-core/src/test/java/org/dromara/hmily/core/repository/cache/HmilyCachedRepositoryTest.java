@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.core.repository.cache;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import org.dromara.hmily.repository.spi.HmilyRepository;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
+import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The read through and the invalidation of the repository cache.
+ *
+ * @author xiaoyu
+ */
+public final class HmilyCachedRepositoryTest {
+
+    private HmilyRepository delegate;
+
+    private HmilyCachedRepository cachedRepository;
+
+    @Before
+    public void setUp() {
+        delegate = mock(HmilyRepository.class);
+        cachedRepository = new HmilyCachedRepository(delegate, 60000, 100);
+    }
+
+    @Test
+    public void assertFoundTransactionIsCachedUntilWritten() {
+        HmilyTransaction hmilyTransaction = new HmilyTransaction(1L);
+        when(delegate.findByTransId(1L)).thenReturn(hmilyTransaction);
+        assertEquals(hmilyTransaction, cachedRepository.findByTransId(1L));
+        assertEquals(hmilyTransaction, cachedRepository.findByTransId(1L));
+        verify(delegate).findByTransId(1L);
+        assertEquals(1, cachedRepository.transactionStats().hitCount());
+        assertEquals(1, cachedRepository.transactionStats().missCount());
+        cachedRepository.updateHmilyTransactionStatus(1L, 2);
+        cachedRepository.findByTransId(1L);
+        verify(delegate, times(2)).findByTransId(1L);
+    }
+
+    @Test
+    public void assertAbsentTransactionIsNotCached() {
+        assertNull(cachedRepository.findByTransId(1L));
+        assertNull(cachedRepository.findByTransId(1L));
+        verify(delegate, times(2)).findByTransId(1L);
+    }
+
+    @Test
+    public void assertWriteByIdDropsOnlyTheListsHoldingTheParticipant() {
+        when(delegate.listHmilyParticipantByTransId(1L)).thenReturn(Arrays.asList(participant(10L, 1L, null), participant(11L, 1L, 10L)));
+        when(delegate.listHmilyParticipantByTransId(2L)).thenReturn(Collections.singletonList(participant(20L, 2L, null)));
+        when(delegate.findHmilyParticipant(10L)).thenReturn(Arrays.asList(participant(10L, 1L, null), participant(11L, 1L, 10L)));
+        cachedRepository.listHmilyParticipantByTransId(1L);
+        cachedRepository.listHmilyParticipantByTransId(2L);
+        cachedRepository.findHmilyParticipant(10L);
+        cachedRepository.updateHmilyParticipantStatus(11L, 2);
+        cachedRepository.listHmilyParticipantByTransId(1L);
+        cachedRepository.listHmilyParticipantByTransId(2L);
+        cachedRepository.findHmilyParticipant(10L);
+        verify(delegate, times(2)).listHmilyParticipantByTransId(1L);
+        verify(delegate).listHmilyParticipantByTransId(2L);
+        verify(delegate, times(2)).findHmilyParticipant(10L);
+    }
+
+    @Test
+    public void assertTrackedKeysAreRemovedWithTheLastList() {
+        when(delegate.listHmilyParticipantByTransId(1L)).thenReturn(Arrays.asList(participant(10L, 1L, null), participant(11L, 1L, null)));
+        when(delegate.findHmilyParticipant(10L)).thenReturn(Collections.singletonList(participant(10L, 1L, null)));
+        cachedRepository.listHmilyParticipantByTransId(1L);
+        cachedRepository.findHmilyParticipant(10L);
+        assertEquals(2, cachedRepository.trackedParticipants());
+        cachedRepository.removeHmilyParticipant(11L);
+        assertEquals(1, cachedRepository.trackedParticipants());
+        cachedRepository.removeHmilyParticipantByData(new Date());
+        assertEquals(0, cachedRepository.trackedParticipants());
+    }
+
+    private static HmilyParticipant participant(final Long participantId, final Long transId, final Long participantRefId) {
+        HmilyParticipant hmilyParticipant = new HmilyParticipant();
+        hmilyParticipant.setParticipantId(participantId);
+        hmilyParticipant.setTransId(transId);
+        hmilyParticipant.setParticipantRefId(participantRefId);
+        return hmilyParticipant;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.core.repository.wal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.stream.Stream;
+import org.dromara.hmily.config.api.entity.HmilyWalConfig;
+import org.dromara.hmily.core.repository.wal.HmilyWalRecord.Operation;
+import org.dromara.hmily.repository.spi.HmilyRepository;
+import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
+import org.dromara.hmily.repository.spi.exception.HmilyRepositoryException;
+import org.dromara.hmily.serializer.jdk.JDKSerializer;
+import org.dromara.hmily.serializer.spi.HmilySerializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The shipping and the replay of the write ahead log.
+ *
+ * @author xiaoyu
+ */
+public final class HmilyWalRepositoryTest {
+
+    private static final String APP_NAME = "hmily-wal-test";
+
+    private final HmilySerializer hmilySerializer = new JDKSerializer();
+
+    private File path;
+
+    private HmilyWalConfig walConfig;
+
+    private HmilyWalRepository walRepository;
+
+    @Before
+    public void setUp() throws IOException {
+        path = Files.createTempDirectory("hmily-wal").toFile();
+        walConfig = new HmilyWalConfig();
+        walConfig.setEnabled(true);
+        walConfig.setPath(path.getAbsolutePath());
+        walConfig.setShipRetryDelay(10);
+        walConfig.setShipMaxRetryDelay(20);
+        walConfig.setShipMaxAttempts(3);
+        walConfig.setReadTimeout(5000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (Objects.nonNull(walRepository)) {
+            walRepository.close();
+        }
+        try (Stream<Path> files = Files.walk(path.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void assertUnshippedRecordsAreReplayedAfterCrash() throws Exception {
+        walConfig.setShipMaxAttempts(0);
+        HmilyRepository down = mock(HmilyRepository.class);
+        when(down.createHmilyTransaction(any())).thenThrow(new HmilyRepositoryException("down"));
+        HmilyWalRepository crashed = start(down);
+        crashed.createHmilyTransaction(transaction(1L));
+        crashed.updateHmilyTransactionStatus(1L, 2);
+        crashed.close();
+        HmilyRepository delegate = mock(HmilyRepository.class);
+        when(delegate.createHmilyTransaction(any())).thenReturn(HmilyRepository.ROWS);
+        when(delegate.updateHmilyTransactionStatus(1L, 2)).thenReturn(HmilyRepository.ROWS);
+        walRepository = start(delegate);
+        walRepository.findByTransId(1L);
+        verify(delegate).createHmilyTransaction(any());
+        verify(delegate).updateHmilyTransactionStatus(1L, 2);
+    }
+
+    @Test
+    public void assertCreateAppliedBeforeCrashIsNotAppliedTwice() throws Exception {
+        HmilyTransaction hmilyTransaction = transaction(1L);
+        try (HmilyWalLog walLog = new HmilyWalLog(new File(path, APP_NAME), walConfig.getSegmentSize())) {
+            walLog.open();
+            walLog.append(Arrays.asList(HmilyWalRecord.create(Operation.CREATE_HMILY_TRANSACTION, hmilyTransaction).encode(hmilySerializer),
+                    HmilyWalRecord.updateStatus(Operation.UPDATE_HMILY_TRANSACTION_STATUS, 1L, 2).encode(hmilySerializer)));
+        }
+        HmilyRepository delegate = mock(HmilyRepository.class);
+        when(delegate.createHmilyTransaction(any())).thenThrow(new HmilyRepositoryException("duplicate key"));
+        when(delegate.findByTransId(1L)).thenReturn(hmilyTransaction);
+        when(delegate.updateHmilyTransactionStatus(1L, 2)).thenReturn(HmilyRepository.ROWS);
+        walRepository = start(delegate);
+        walRepository.findByTransId(1L);
+        verify(delegate).createHmilyTransaction(any());
+        verify(delegate).updateHmilyTransactionStatus(1L, 2);
+    }
+
+    @Test
+    public void assertOutageIsRetriedUntilShipped() throws Exception {
+        walConfig.setShipMaxAttempts(0);
+        HmilyRepository delegate = mock(HmilyRepository.class);
+        when(delegate.updateHmilyTransactionStatus(1L, 2))
+                .thenThrow(new HmilyRepositoryException("down"))
+                .thenReturn(HmilyRepository.FAIL_ROWS)
+                .thenReturn(HmilyRepository.ROWS);
+        walRepository = start(delegate);
+        walRepository.updateHmilyTransactionStatus(1L, 2);
+        walRepository.findByTransId(1L);
+        verify(delegate, times(3)).updateHmilyTransactionStatus(1L, 2);
+        walRepository.close();
+        try (HmilyWalLog walLog = new HmilyWalLog(new File(path, APP_NAME), walConfig.getSegmentSize())) {
+            assertTrue(walLog.readCheckpoint() > 0);
+        }
+    }
+
+    @Test
+    public void assertFailedRemoveIsRetriedUntilTheRecordIsGone() throws Exception {
+        walConfig.setShipMaxAttempts(0);
+        HmilyRepository delegate = mock(HmilyRepository.class);
+        when(delegate.removeHmilyTransaction(1L))
+                .thenThrow(new HmilyRepositoryException("down"))
+                .thenReturn(HmilyRepository.FAIL_ROWS);
+        when(delegate.findByTransId(1L)).thenReturn(transaction(1L));
+        walRepository = start(delegate);
+        walRepository.removeHmilyTransaction(1L);
+        walRepository.findByTransId(1L);
+        verify(delegate, times(2)).removeHmilyTransaction(1L);
+    }
+
+    @Test
+    public void assertReadWaitsForTheWritesOfItsId() throws Exception {
+        HmilyRepository delegate = mock(HmilyRepository.class);
+        when(delegate.createHmilyTransaction(any())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return HmilyRepository.ROWS;
+        });
+        walRepository = start(delegate);
+        walRepository.createHmilyTransaction(transaction(1L));
+        walRepository.findByTransId(1L);
+        InOrder inOrder = inOrder(delegate);
+        inOrder.verify(delegate).createHmilyTransaction(any());
+        inOrder.verify(delegate).findByTransId(1L);
+    }
+
+    @Test
+    public void assertPoisonRecordIsQuarantined() throws Exception {
+        HmilyRepository delegate = mock(HmilyRepository.class);
+        when(delegate.updateHmilyParticipantStatus(10L, 2)).thenReturn(HmilyRepository.FAIL_ROWS);
+        when(delegate.createHmilyTransaction(any())).thenReturn(HmilyRepository.ROWS);
+        walRepository = start(delegate);
+        walRepository.updateHmilyParticipantStatus(10L, 2);
+        walRepository.createHmilyTransaction(transaction(2L));
+        walRepository.findByTransId(2L);
+        verify(delegate, times(3)).updateHmilyParticipantStatus(10L, 2);
+        verify(delegate).createHmilyTransaction(any());
+        assertTrue(new File(new File(path, APP_NAME), "quarantined.log").length() > 0);
+    }
+
+    private HmilyWalRepository start(final HmilyRepository delegate) {
+        HmilyWalRepository hmilyWalRepository = new HmilyWalRepository(delegate, walConfig);
+        hmilyWalRepository.setSerializer(hmilySerializer);
+        hmilyWalRepository.init(APP_NAME);
+        return hmilyWalRepository;
+    }
+
+    private static HmilyTransaction transaction(final Long transId) {
+        HmilyTransaction hmilyTransaction = new HmilyTransaction(transId);
+        hmilyTransaction.setStatus(1);
+        return hmilyTransaction;
+    }
+}
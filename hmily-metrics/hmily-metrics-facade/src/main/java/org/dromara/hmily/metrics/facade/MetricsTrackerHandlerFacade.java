@@ -91,5 +91,17 @@ public final class MetricsTrackerHandlerFacade implements MetricsHandlerFacade {
             MetricsTrackerHandler.getInstance().summaryObserveDuration(delegate);
         }
     }
+    
+    @Override
+    public void histogramObserve(final String metricsLabel, final long amount, final String... labelValues) {
+        if (MetricsInitFacade.getEnabled()) {
+            MetricsTrackerHandler.getInstance().histogramObserve(metricsLabel, amount, labelValues);
+        }
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return MetricsInitFacade.getEnabled();
+    }
 }
 
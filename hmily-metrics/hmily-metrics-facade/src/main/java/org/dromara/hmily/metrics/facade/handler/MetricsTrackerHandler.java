@@ -154,6 +154,21 @@ public final class MetricsTrackerHandler {
         }
     }
     
+    /**
+     * Observe the given amount with histogram metrics tracker.
+     *
+     * @param metricsLabel metrics label
+     * @param amount       amount
+     * @param labelValues  label values
+     */
+    public void histogramObserve(final String metricsLabel, final long amount, final String... labelValues) {
+        if (async) {
+            executorService.execute(() -> handlerHistogramObserve(metricsLabel, amount, labelValues));
+        } else {
+            handlerHistogramObserve(metricsLabel, amount, labelValues);
+        }
+    }
+    
     /**
      * Start timer of summary metrics tracker.
      *
@@ -222,6 +237,11 @@ public final class MetricsTrackerHandler {
         return metricsTracker.map(tracker -> Optional.of(((HistogramMetricsTracker) tracker).startTimer(labelValues))).orElseGet(() -> Optional.of(new NoneHistogramMetricsTrackerDelegate()));
     }
     
+    private void handlerHistogramObserve(final String metricsLabel, final long amount, final String... labelValues) {
+        metricsTrackerManager.getMetricsTrackerFactory().create(MetricsTypeEnum.HISTOGRAM.name(), metricsLabel)
+                .ifPresent(metricsTracker -> ((HistogramMetricsTracker) metricsTracker).observer(amount, labelValues));
+    }
+    
     private Optional<SummaryMetricsTrackerDelegate> handlerSummaryStartTimer(final String metricsLabel, final String... labelValues) {
         Optional<MetricsTracker> metricsTracker = metricsTrackerManager.getMetricsTrackerFactory().create(MetricsTypeEnum.SUMMARY.name(), metricsLabel);
         return metricsTracker.map(tracker -> Optional.of(((SummaryMetricsTracker) tracker).startTimer(labelValues))).orElseGet(() -> Optional.of(new NoneSummaryMetricsTrackerDelegate()));
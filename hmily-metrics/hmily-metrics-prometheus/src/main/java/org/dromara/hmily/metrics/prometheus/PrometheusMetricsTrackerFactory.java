@@ -22,8 +22,12 @@ import java.util.Collection;
 import java.util.Optional;
 import org.dromara.hmily.metrics.api.MetricsTracker;
 import org.dromara.hmily.metrics.api.MetricsTrackerFactory;
+import org.dromara.hmily.metrics.prometheus.impl.counter.RepositoryCacheCounterMetricsTracker;
+import org.dromara.hmily.metrics.prometheus.impl.counter.RepositoryFailureCounterMetricsTracker;
 import org.dromara.hmily.metrics.prometheus.impl.counter.TransactionStatusCounterMetricsTracker;
 import org.dromara.hmily.metrics.prometheus.impl.counter.TransactionTotalCounterMetricsTracker;
+import org.dromara.hmily.metrics.prometheus.impl.histogram.RepositoryLatencyHistogramMetricsTracker;
+import org.dromara.hmily.metrics.prometheus.impl.histogram.RepositoryQueueWaitHistogramMetricsTracker;
 import org.dromara.hmily.metrics.prometheus.impl.histogram.TransactionLatencyHistogramMetricsTracker;
 import org.dromara.hmily.metrics.prometheus.impl.summary.TransactionLatencySummaryMetricsTracker;
 
@@ -41,6 +45,10 @@ public final class PrometheusMetricsTrackerFactory implements MetricsTrackerFact
         REGISTER.add(new TransactionStatusCounterMetricsTracker());
         REGISTER.add(new TransactionLatencyHistogramMetricsTracker());
         REGISTER.add(new TransactionLatencySummaryMetricsTracker());
+        REGISTER.add(new RepositoryLatencyHistogramMetricsTracker());
+        REGISTER.add(new RepositoryQueueWaitHistogramMetricsTracker());
+        REGISTER.add(new RepositoryFailureCounterMetricsTracker());
+        REGISTER.add(new RepositoryCacheCounterMetricsTracker());
     }
     
     @Override
@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.metrics.prometheus.impl.histogram;
+
+import io.prometheus.client.Histogram;
+import org.dromara.hmily.metrics.api.HistogramMetricsTracker;
+import org.dromara.hmily.metrics.enums.MetricsLabelEnum;
+
+/**
+ * Repository event queue wait histogram metrics tracker, from the event published to the event dispatched.
+ *
+ * @author xiaoyu
+ */
+public final class RepositoryQueueWaitHistogramMetricsTracker implements HistogramMetricsTracker {
+    
+    private static final Histogram REPOSITORY_QUEUE_WAIT = Histogram.build()
+            .labelNames("repository")
+            .name("repository_queue_wait_histogram_micros").help("Repository Event Queue Wait Histogram Micros (us)")
+            .buckets(100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000, 100000, 250000, 1000000)
+            .register();
+    
+    @Override
+    public void observer(final long amount, final String... labelValues) {
+        REPOSITORY_QUEUE_WAIT.labels(labelValues).observe(amount);
+    }
+    
+    @Override
+    public String metricsLabel() {
+        return MetricsLabelEnum.REPOSITORY_QUEUE_WAIT.getName();
+    }
+}
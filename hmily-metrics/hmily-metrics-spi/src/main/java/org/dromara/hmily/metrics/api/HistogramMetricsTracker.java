@@ -44,6 +44,16 @@ public interface HistogramMetricsTracker extends MetricsTracker {
     default void observer(long amount) {
     }
     
+    /**
+     * Observe the given amount with label values.
+     *
+     * @param amount amount
+     * @param labelValues label values
+     */
+    default void observer(long amount, String... labelValues) {
+        observer(amount);
+    }
+    
     /**
      * Metrics type.
      *
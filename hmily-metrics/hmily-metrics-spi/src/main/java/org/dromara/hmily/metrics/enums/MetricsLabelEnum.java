@@ -42,7 +42,27 @@ public enum MetricsLabelEnum {
     /**
      * Transaction status metrics label enum.
      */
-    TRANSACTION_STATUS("transaction_status");
+    TRANSACTION_STATUS("transaction_status"),
+    
+    /**
+     * repository operation latency metrics label.
+     */
+    REPOSITORY_LATENCY("repository_latency"),
+    
+    /**
+     * repository event queue wait metrics label.
+     */
+    REPOSITORY_QUEUE_WAIT("repository_queue_wait"),
+    
+    /**
+     * repository operation failure metrics label.
+     */
+    REPOSITORY_FAILURE("repository_failure"),
+    
+    /**
+     * repository cache hit and miss metrics label.
+     */
+    REPOSITORY_CACHE("repository_cache");
     
     private final String name;
 }
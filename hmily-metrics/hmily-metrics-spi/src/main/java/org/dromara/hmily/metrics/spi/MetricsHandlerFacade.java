@@ -67,5 +67,24 @@ public interface MetricsHandlerFacade {
      * @return summary metrics tracker delegate
      */
     Supplier<Boolean> summaryStartTimer(String metricsLabel, String... labelValues);
+    
+    /**
+     * Observe the given amount with histogram metrics tracker, nothing is observed by default.
+     *
+     * @param metricsLabel metrics label
+     * @param amount amount
+     * @param labelValues label values
+     */
+    default void histogramObserve(String metricsLabel, long amount, String... labelValues) {
+    }
+    
+    /**
+     * Whether the metrics are enabled, the callers can skip building the labels when not.
+     *
+     * @return true if enabled, false by default
+     */
+    default boolean isEnabled() {
+        return false;
+    }
 }
 
@@ -17,19 +17,27 @@
 
 package org.dromara.hmily.repository.database.manager;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.zaxxer.hikari.HikariDataSource;
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 import javax.sql.DataSource;
 import lombok.extern.slf4j.Slf4j;
@@ -42,6 +50,7 @@ import org.dromara.hmily.repository.spi.HmilyRepository;
 import org.dromara.hmily.repository.spi.entity.HmilyInvocation;
 import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
 import org.dromara.hmily.repository.spi.entity.HmilyParticipantUndo;
+import org.dromara.hmily.repository.spi.entity.HmilyScanCursor;
 import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
 import org.dromara.hmily.repository.spi.entity.HmilyUndoInvocation;
 import org.dromara.hmily.repository.spi.exception.HmilyRepositoryException;
@@ -63,13 +72,19 @@ public abstract class AbstractHmilyDatabase implements HmilyRepository {
     /**
      * The constant SELECT_HMILY_TRANSACTION_COMMON.
      */
-    protected static final String SELECT_HMILY_TRANSACTION_COMMON = "select trans_id, app_name, status, trans_type, retry, version from hmily_transaction_global ";
+    protected static final String SELECT_HMILY_TRANSACTION_COMMON = "select trans_id, app_name, status, trans_type, retry, version, update_time from hmily_transaction_global ";
     
     /**
      * The constant SELECT_HMILY_TRANSACTION_DELAY.
      */
     protected static final String SELECT_HMILY_TRANSACTION_DELAY = SELECT_HMILY_TRANSACTION_COMMON + " where update_time < ? and app_name = ?";
     
+    /**
+     * The constant SELECT_HMILY_TRANSACTION_SCAN.
+     */
+    protected static final String SELECT_HMILY_TRANSACTION_SCAN = SELECT_HMILY_TRANSACTION_DELAY
+            + " and (update_time > ? or (update_time = ? and trans_id > ?)) order by update_time, trans_id";
+    
     /**
      * The constant SELECT_HMILY_TRANSACTION_WITH_TRANS_ID.
      */
@@ -111,7 +126,7 @@ public abstract class AbstractHmilyDatabase implements HmilyRepository {
      * The constant SELECTOR_HMILY_PARTICIPANT_COMMON.
      */
     protected static final String SELECTOR_HMILY_PARTICIPANT_COMMON = "select participant_id, participant_ref_id, trans_id, trans_type, status, app_name,"
-            + "role, retry, target_class, target_method, confirm_method, cancel_method, confirm_invocation, cancel_invocation, version from hmily_transaction_participant ";
+            + "role, retry, target_class, target_method, confirm_method, cancel_method, confirm_invocation, cancel_invocation, version, update_time from hmily_transaction_participant ";
     
     /**
      * The constant SELECTOR_HMILY_PARTICIPANT_WITH_KEY.
@@ -133,12 +148,23 @@ public abstract class AbstractHmilyDatabase implements HmilyRepository {
      */
     protected static final String EXIST_HMILY_PARTICIPANT_WITH_TRANS_ID = " select count(*) as count_total from hmily_transaction_participant where trans_id = ? ";
     
+    /**
+     * The constant SELECTOR_HMILY_PARTICIPANT_TRANS_ID_IN.
+     */
+    protected static final String SELECTOR_HMILY_PARTICIPANT_TRANS_ID_IN = "select distinct trans_id from hmily_transaction_participant where trans_id in ";
+    
     /**
      * The constant SELECTOR_HMILY_PARTICIPANT_WITH_DELAY_AND_APP_NAME_TRANS_TYPE.
      */
     protected static final String SELECTOR_HMILY_PARTICIPANT_WITH_DELAY_AND_APP_NAME_TRANS_TYPE = SELECTOR_HMILY_PARTICIPANT_COMMON
             + " where update_time < ? and app_name = ?  and trans_type = ? and status not in (4, 8) ";
     
+    /**
+     * The constant SELECTOR_HMILY_PARTICIPANT_SCAN.
+     */
+    protected static final String SELECTOR_HMILY_PARTICIPANT_SCAN = SELECTOR_HMILY_PARTICIPANT_WITH_DELAY_AND_APP_NAME_TRANS_TYPE
+            + " and (update_time > ? or (update_time = ? and participant_id > ?)) order by update_time, participant_id";
+    
     /**
      * The constant UPDATE_HMILY_PARTICIPANT_STATUS.
      */
@@ -182,6 +208,16 @@ public abstract class AbstractHmilyDatabase implements HmilyRepository {
      */
     protected static final String UPDATE_HMILY_PARTICIPANT_UNDO_STATUS = "update hmily_participant_undo set status=? where undo_id = ? ";
     
+    /**
+     * The cursor before every row.
+     */
+    private static final HmilyScanCursor START_CURSOR = new HmilyScanCursor(new Date(0), Long.MIN_VALUE);
+    
+    /**
+     * Max parameters of one in list, below the limit of every supported database.
+     */
+    private static final int MAX_IN_SIZE = 500;
+    
     /**
      * The data source.
      */
@@ -213,6 +249,15 @@ public abstract class AbstractHmilyDatabase implements HmilyRepository {
      */
     protected abstract String hmilyParticipantLimitSql(int limit);
     
+    /**
+     * Limit the rows of a scan sql which ends with order by.
+     *
+     * @param sql   the scan sql
+     * @param limit the limit
+     * @return the string
+     */
+    protected abstract String scanLimitSql(String sql, int limit);
+    
     /**
      * Execte schema.sql by different database.
      *
@@ -229,6 +274,16 @@ public abstract class AbstractHmilyDatabase implements HmilyRepository {
      */
     protected abstract Object convertDataType(Object params);
     
+    /**
+     * Whether the transaction of a batch goes on after a failed row, so the rows which succeeded can be committed.
+     * a database which aborts the whole transaction on an error returns false, and all the rows are executed again.
+     *
+     * @return the boolean
+     */
+    protected boolean keepsTransactionOnBatchError() {
+        return true;
+    }
+    
     @Override
     public void init(final String appName) {
         this.appName = appName;
@@ -277,8 +332,7 @@ public abstract class AbstractHmilyDatabase implements HmilyRepository {
     
     @Override
     public int createHmilyTransaction(final HmilyTransaction hmilyTransaction) {
-        return executeUpdate(INSERT_HMILY_TRANSACTION, hmilyTransaction.getTransId(), appName, hmilyTransaction.getStatus(),
-                hmilyTransaction.getTransType(), hmilyTransaction.getRetry(), hmilyTransaction.getVersion(), hmilyTransaction.getCreateTime(), hmilyTransaction.getUpdateTime());
+        return executeUpdate(INSERT_HMILY_TRANSACTION, buildHmilyTransactionParams(hmilyTransaction));
     }
     
     @Override
@@ -309,6 +363,21 @@ public abstract class AbstractHmilyDatabase implements HmilyRepository {
         return false;
     }
     
+    @Override
+    public List<Long> findTransIdsWithoutParticipants(final List<Long> transIdList) {
+        if (CollectionUtils.isEmpty(transIdList)) {
+            return Collections.emptyList();
+        }
+        Set<Long> existTransIds = new HashSet<>();
+        for (List<Long> partition : Lists.partition(transIdList, MAX_IN_SIZE)) {
+            String sql = SELECTOR_HMILY_PARTICIPANT_TRANS_ID_IN + partition.stream().map(e -> "?").collect(Collectors.joining(", ", "(", ")"));
+            executeQuery(sql, partition.toArray()).stream()
+                    .filter(Objects::nonNull)
+                    .forEach(e -> existTransIds.add((Long) e.get("trans_id")));
+        }
+        return transIdList.stream().filter(e -> !existTransIds.contains(e)).collect(Collectors.toList());
+    }
+    
     @Override
     public List<HmilyParticipant> listHmilyParticipantByTransId(final Long transId) {
         List<Map<String, Object>> participantList = executeQuery(SELECTOR_HMILY_PARTICIPANT_WITH_TRANS_ID, transId);
@@ -346,6 +415,32 @@ public abstract class AbstractHmilyDatabase implements HmilyRepository {
         return Collections.emptyList();
     }
     
+    @Override
+    public List<HmilyTransaction> scanHmilyTransaction(final Date date, final HmilyScanCursor cursor, final int limit) {
+        HmilyScanCursor from = Objects.isNull(cursor) ? START_CURSOR : cursor;
+        List<Map<String, Object>> list = executeQuery(scanLimitSql(SELECT_HMILY_TRANSACTION_SCAN, limit), date, appName, from.getUpdateTime(), from.getUpdateTime(), from.getId());
+        if (CollectionUtils.isNotEmpty(list)) {
+            return list.stream().filter(Objects::nonNull)
+                    .map(this::buildHmilyTransactionByResultMap)
+                    .collect(Collectors.toList());
+        }
+        return Collections.emptyList();
+    }
+    
+    @Override
+    public List<HmilyParticipant> scanHmilyParticipant(final Date date, final String transType, final HmilyScanCursor cursor, final int limit) {
+        HmilyScanCursor from = Objects.isNull(cursor) ? START_CURSOR : cursor;
+        List<Map<String, Object>> participantList = executeQuery(scanLimitSql(SELECTOR_HMILY_PARTICIPANT_SCAN, limit),
+                date, appName, transType, from.getUpdateTime(), from.getUpdateTime(), from.getId());
+        if (CollectionUtils.isNotEmpty(participantList)) {
+            return participantList.stream()
+                    .filter(Objects::nonNull)
+                    .map(this::buildHmilyParticipantByResultMap)
+                    .collect(Collectors.toList());
+        }
+        return Collections.emptyList();
+    }
+    
     @Override
     public int updateHmilyTransactionStatus(final Long transId, final Integer status) throws HmilyRepositoryException {
         return executeUpdate(UPDATE_HMILY_TRANSACTION_STATUS, status, transId);
@@ -358,19 +453,7 @@ public abstract class AbstractHmilyDatabase implements HmilyRepository {
     
     @Override
     public int createHmilyParticipant(final HmilyParticipant hmilyParticipant) throws HmilyRepositoryException {
-        byte[] confirmSerialize = null;
-        byte[] cancelSerialize = null;
-        if (Objects.nonNull(hmilyParticipant.getConfirmHmilyInvocation())) {
-            confirmSerialize = hmilySerializer.serialize(hmilyParticipant.getConfirmHmilyInvocation());
-        }
-        if (Objects.nonNull(hmilyParticipant.getCancelHmilyInvocation())) {
-            cancelSerialize = hmilySerializer.serialize(hmilyParticipant.getCancelHmilyInvocation());
-        }
-        return executeUpdate(INSERT_HMILY_PARTICIPANT, hmilyParticipant.getParticipantId(), hmilyParticipant.getParticipantRefId(),
-                hmilyParticipant.getTransId(), hmilyParticipant.getTransType(), hmilyParticipant.getStatus(),
-                appName, hmilyParticipant.getRole(), hmilyParticipant.getRetry(), hmilyParticipant.getTargetClass(), hmilyParticipant.getTargetMethod(),
-                hmilyParticipant.getConfirmMethod(), hmilyParticipant.getCancelMethod(), confirmSerialize, cancelSerialize,
-                hmilyParticipant.getVersion(), hmilyParticipant.getCreateTime(), hmilyParticipant.getUpdateTime());
+        return executeUpdate(INSERT_HMILY_PARTICIPANT, buildHmilyParticipantParams(hmilyParticipant));
     }
     
     @Override
@@ -447,6 +530,79 @@ public abstract class AbstractHmilyDatabase implements HmilyRepository {
         return executeUpdate(DELETE_HMILY_PARTICIPANT, participantId);
     }
     
+    @Override
+    public int batchCreateHmilyTransaction(final List<HmilyTransaction> hmilyTransactionList) {
+        return executeBatch(INSERT_HMILY_TRANSACTION, hmilyTransactionList.stream().map(this::buildHmilyTransactionParams).collect(Collectors.toList()));
+    }
+    
+    @Override
+    public int batchUpdateHmilyTransactionStatus(final Map<Long, Integer> statusMap) {
+        return executeBatch(UPDATE_HMILY_TRANSACTION_STATUS, buildStatusParams(statusMap));
+    }
+    
+    @Override
+    public int batchRemoveHmilyTransaction(final List<Long> transIdList) {
+        return executeBatch(DELETE_HMILY_TRANSACTION, buildIdParams(transIdList));
+    }
+    
+    @Override
+    public int batchCreateHmilyParticipant(final List<HmilyParticipant> hmilyParticipantList) {
+        return executeBatch(INSERT_HMILY_PARTICIPANT, hmilyParticipantList.stream().map(this::buildHmilyParticipantParams).collect(Collectors.toList()));
+    }
+    
+    @Override
+    public int batchUpdateHmilyParticipantStatus(final Map<Long, Integer> statusMap) {
+        return executeBatch(UPDATE_HMILY_PARTICIPANT_STATUS, buildStatusParams(statusMap));
+    }
+    
+    @Override
+    public int batchRemoveHmilyParticipant(final List<Long> participantIdList) {
+        return executeBatch(DELETE_HMILY_PARTICIPANT, buildIdParams(participantIdList));
+    }
+    
+    @Override
+    public int batchRemoveHmilyParticipantUndo(final List<Long> undoIdList) {
+        return executeBatch(DELETE_HMILY_PARTICIPANT_UNDO, buildIdParams(undoIdList));
+    }
+    
+    @Override
+    public int batchUpdateHmilyParticipantUndoStatus(final Map<Long, Integer> statusMap) {
+        return executeBatch(UPDATE_HMILY_PARTICIPANT_UNDO_STATUS, buildStatusParams(statusMap));
+    }
+    
+    private Object[] buildHmilyTransactionParams(final HmilyTransaction hmilyTransaction) {
+        return new Object[]{hmilyTransaction.getTransId(), appName, hmilyTransaction.getStatus(), hmilyTransaction.getTransType(),
+            hmilyTransaction.getRetry(), hmilyTransaction.getVersion(), hmilyTransaction.getCreateTime(), hmilyTransaction.getUpdateTime()};
+    }
+    
+    private Object[] buildHmilyParticipantParams(final HmilyParticipant hmilyParticipant) {
+        byte[] confirmSerialize = null;
+        byte[] cancelSerialize = null;
+        if (Objects.nonNull(hmilyParticipant.getConfirmHmilyInvocation())) {
+            confirmSerialize = hmilySerializer.serialize(hmilyParticipant.getConfirmHmilyInvocation());
+        }
+        if (Objects.nonNull(hmilyParticipant.getCancelHmilyInvocation())) {
+            cancelSerialize = hmilySerializer.serialize(hmilyParticipant.getCancelHmilyInvocation());
+        }
+        return new Object[]{hmilyParticipant.getParticipantId(), hmilyParticipant.getParticipantRefId(),
+            hmilyParticipant.getTransId(), hmilyParticipant.getTransType(), hmilyParticipant.getStatus(),
+            appName, hmilyParticipant.getRole(), hmilyParticipant.getRetry(), hmilyParticipant.getTargetClass(), hmilyParticipant.getTargetMethod(),
+            hmilyParticipant.getConfirmMethod(), hmilyParticipant.getCancelMethod(), confirmSerialize, cancelSerialize,
+            hmilyParticipant.getVersion(), hmilyParticipant.getCreateTime(), hmilyParticipant.getUpdateTime()};
+    }
+    
+    private static List<Object[]> buildStatusParams(final Map<Long, Integer> statusMap) {
+        List<Object[]> paramsList = new ArrayList<>(statusMap.size());
+        statusMap.forEach((id, status) -> paramsList.add(new Object[]{status, id}));
+        return paramsList;
+    }
+    
+    private static List<Object[]> buildIdParams(final List<Long> idList) {
+        List<Object[]> paramsList = new ArrayList<>(idList.size());
+        idList.forEach(id -> paramsList.add(new Object[]{id}));
+        return paramsList;
+    }
+    
     /**
      * Execute update int.
      *
@@ -474,6 +630,73 @@ public abstract class AbstractHmilyDatabase implements HmilyRepository {
         }
     }
     
+    /**
+     * Execute batch int, all params are sent in one round trip and committed together.
+     * the rows the batch reports as failed or not executed are committed without them and executed again one by one,
+     * when the batch fails as a whole nothing is committed and every params are executed one by one.
+     *
+     * @param sql        the sql
+     * @param paramsList the params list
+     * @return the int
+     */
+    private int executeBatch(final String sql, final List<Object[]> paramsList) {
+        if (CollectionUtils.isEmpty(paramsList)) {
+            return FAIL_ROWS;
+        }
+        if (paramsList.size() == 1) {
+            return executeUpdate(sql, paramsList.get(0));
+        }
+        Connection connection = null;
+        PreparedStatement ps = null;
+        boolean autoCommit = true;
+        List<Object[]> retries = paramsList;
+        int rows = 0;
+        try {
+            connection = dataSource.getConnection();
+            autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            ps = connection.prepareStatement(sql);
+            for (Object[] params : paramsList) {
+                for (int i = 0; i < params.length; i++) {
+                    ps.setObject(i + 1, convertDataType(params[i]));
+                }
+                ps.addBatch();
+            }
+            int[] results;
+            try {
+                results = ps.executeBatch();
+            } catch (BatchUpdateException e) {
+                if (!keepsTransactionOnBatchError() || Objects.isNull(e.getUpdateCounts())) {
+                    throw e;
+                }
+                log.warn("executeBatch-> " + e.getMessage());
+                results = e.getUpdateCounts();
+            }
+            List<Object[]> failed = new ArrayList<>();
+            for (int i = 0; i < paramsList.size(); i++) {
+                int result = i < results.length ? results[i] : Statement.EXECUTE_FAILED;
+                if (result == Statement.EXECUTE_FAILED) {
+                    failed.add(paramsList.get(i));
+                } else {
+                    rows += result == Statement.SUCCESS_NO_INFO ? ROWS : Math.max(result, FAIL_ROWS);
+                }
+            }
+            connection.commit();
+            retries = failed;
+        } catch (SQLException e) {
+            log.error("executeBatch-> " + e.getMessage());
+            rollback(connection);
+            rows = 0;
+        } finally {
+            resetAutoCommit(connection, autoCommit);
+            close(connection, ps, null);
+        }
+        for (Object[] params : retries) {
+            rows += executeUpdate(sql, params);
+        }
+        return rows;
+    }
+    
     private List<Map<String, Object>> executeQuery(final String sql, final Object... params) {
         Connection connection = null;
         PreparedStatement ps = null;
@@ -514,6 +737,7 @@ public abstract class AbstractHmilyDatabase implements HmilyRepository {
         hmilyTransaction.setAppName((String) map.get("app_name"));
         hmilyTransaction.setRetry(Integer.parseInt(map.get("retry").toString()));
         hmilyTransaction.setVersion(Integer.parseInt((map.get("version")).toString()));
+        hmilyTransaction.setUpdateTime(convertDate(map.get("update_time")));
         return hmilyTransaction;
     }
     
@@ -563,9 +787,40 @@ public abstract class AbstractHmilyDatabase implements HmilyRepository {
             log.error("hmilySerializer deSerialize have exception:{} ", e.getMessage());
         }
         hmilyParticipant.setVersion(Integer.parseInt((map.get("version")).toString()));
+        hmilyParticipant.setUpdateTime(convertDate(map.get("update_time")));
         return hmilyParticipant;
     }
     
+    private static Date convertDate(final Object value) {
+        if (value instanceof Date) {
+            return new Date(((Date) value).getTime());
+        }
+        if (value instanceof LocalDateTime) {
+            return Date.from(((LocalDateTime) value).atZone(ZoneId.systemDefault()).toInstant());
+        }
+        return Objects.isNull(value) ? null : Timestamp.valueOf(value.toString());
+    }
+    
+    private static void rollback(final Connection connection) {
+        if (null != connection) {
+            try {
+                connection.rollback();
+            } catch (SQLException e) {
+                log.error(e.getMessage());
+            }
+        }
+    }
+    
+    private static void resetAutoCommit(final Connection connection, final boolean autoCommit) {
+        if (null != connection) {
+            try {
+                connection.setAutoCommit(autoCommit);
+            } catch (SQLException e) {
+                log.error(e.getMessage());
+            }
+        }
+    }
+    
     private static void close(final AutoCloseable... closeables) {
         if (null != closeables && closeables.length > 0) {
             for (AutoCloseable closeable : closeables) {
@@ -51,6 +51,11 @@ public class MysqlRepository extends AbstractHmilyDatabase {
         return SELECTOR_HMILY_PARTICIPANT_WITH_DELAY_AND_APP_NAME_TRANS_TYPE + " limit " + limit;
     }
     
+    @Override
+    protected String scanLimitSql(final String sql, final int limit) {
+        return sql + " limit " + limit;
+    }
+    
     @Override
     protected void initScript(final HmilyDatabaseConfig config) throws Exception {
         String jdbcUrl = StringUtils.replace(config.getUrl(), "/hmily", "/");
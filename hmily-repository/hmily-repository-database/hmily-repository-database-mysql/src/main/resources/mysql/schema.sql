@@ -41,7 +41,8 @@ create table if not exists `hmily_transaction_global`
     `retry`       int                   default 0 not null comment '重试次数',
     `version`     int          not null comment '版本号',
     `create_time` datetime     not null comment '创建时间',
-    `update_time` datetime     not null DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP comment '更新时间'
+    `update_time` datetime     not null DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP comment '更新时间',
+    key `idx_app_name_update_time` (`app_name`, `update_time`, `trans_id`)
 ) ENGINE = InnoDB
   DEFAULT CHARSET = utf8mb4
   COLLATE = utf8mb4_unicode_ci comment 'hmily事务表（发起者）';
@@ -64,7 +65,8 @@ create table if not exists `hmily_transaction_participant`
     `cancel_invocation`  longblob      null comment 'cancel调用点',
     `version`            int default 0 not null,
     `create_time`        datetime      not null comment '创建时间',
-    `update_time`        datetime      not null DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP comment '更新时间'
+    `update_time`        datetime      not null DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP comment '更新时间',
+    key `idx_app_name_trans_type_update_time` (`app_name`, `trans_type`, `update_time`, `participant_id`)
 ) ENGINE = InnoDB
   DEFAULT CHARSET = utf8mb4
   COLLATE = utf8mb4_unicode_ci comment 'hmily事务参与者';
@@ -0,0 +1,11 @@
+-- ---------------------------------------------------------------------------------
+-- add the recovery scan indexes to the tables made by versions before they existed,
+-- schema.sql only makes missing tables, so run this once by hand on such a database.
+-- ---------------------------------------------------------------------------------
+USE `hmily`;
+
+alter table `hmily_transaction_global`
+    add key `idx_app_name_update_time` (`app_name`, `update_time`, `trans_id`);
+
+alter table `hmily_transaction_participant`
+    add key `idx_app_name_trans_type_update_time` (`app_name`, `trans_type`, `update_time`, `participant_id`);
@@ -57,6 +57,11 @@ public class OracleRepository extends AbstractHmilyDatabase {
         return SELECTOR_HMILY_PARTICIPANT_WITH_DELAY_AND_APP_NAME_TRANS_TYPE + "and rownum <= " + limit;
     }
     
+    @Override
+    protected String scanLimitSql(final String sql, final int limit) {
+        return "select * from (" + sql + ") where rownum <= " + limit;
+    }
+    
     @Override
     protected void initScript(final HmilyDatabaseConfig config) throws Exception {
         String jdbcUrl = StringUtils.replace(config.getUrl(), "/hmily", "/");
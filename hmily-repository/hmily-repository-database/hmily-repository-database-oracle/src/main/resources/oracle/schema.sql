@@ -138,6 +138,17 @@ BEGIN
 	  EXECUTE IMMEDIATE ' COMMENT ON COLUMN hmily_transaction_participant.update_time IS ''' ||'更新时间' || '''';
 
 	END IF;
+    -- ------------------------------------------------------------------------
+    -- create the recovery scan indexes, also on tables made by older versions
+    -- ------------------------------------------------------------------------
+    SELECT COUNT(1) INTO NUM FROM user_indexes WHERE INDEX_NAME = UPPER('idx_global_update_time');
+    IF NUM < 1 THEN
+      EXECUTE IMMEDIATE 'CREATE INDEX idx_global_update_time ON hmily_transaction_global (app_name, update_time, trans_id)';
+    END IF;
+    SELECT COUNT(1) INTO NUM FROM user_indexes WHERE INDEX_NAME = UPPER('idx_participant_update_time');
+    IF NUM < 1 THEN
+      EXECUTE IMMEDIATE 'CREATE INDEX idx_participant_update_time ON hmily_transaction_participant (app_name, trans_type, update_time, participant_id)';
+    END IF;
 END;
 
 /
@@ -58,6 +58,11 @@ public class PostgresqlRepository extends AbstractHmilyDatabase {
         return SELECTOR_HMILY_PARTICIPANT_WITH_DELAY_AND_APP_NAME_TRANS_TYPE + " limit " + limit;
     }
     
+    @Override
+    protected String scanLimitSql(final String sql, final int limit) {
+        return sql + " limit " + limit;
+    }
+    
     @Override
     protected void initScript(final HmilyDatabaseConfig config) throws Exception {
         String jdbcUrl = StringUtils.replace(config.getUrl(), "/hmily", "/");
@@ -86,6 +91,16 @@ public class PostgresqlRepository extends AbstractHmilyDatabase {
         return params;
     }
     
+    /**
+     * postgresql aborts the transaction on the first failed row of a batch.
+     *
+     * @return false
+     */
+    @Override
+    protected boolean keepsTransactionOnBatchError() {
+        return false;
+    }
+    
     private Reader fillInfoToSqlFile(final String userName, final String password) throws IOException {
         final BufferedReader reader = new BufferedReader(Resources.getResourceAsReader(SQL_FILE_PATH));
         final StringBuilder builder = new StringBuilder();
@@ -168,6 +168,11 @@ ELSE
 	                                           FOR EACH ROW EXECUTE PROCEDURE update_timestamp()');
 	PERFORM public.dblink_exec('init_conn', 'COMMIT');
 END IF;
+-- ----------------------------------------------------------------------
+-- create the recovery scan indexes, also on tables made by older versions
+-- ----------------------------------------------------------------------
+	PERFORM public.dblink_exec('init_conn', 'CREATE INDEX IF NOT EXISTS idx_global_update_time ON hmily_transaction_global (app_name, update_time, trans_id)');
+	PERFORM public.dblink_exec('init_conn', 'CREATE INDEX IF NOT EXISTS idx_participant_update_time ON hmily_transaction_participant (app_name, trans_type, update_time, participant_id)');
     PERFORM public.dblink_disconnect('init_conn');
 END
 $do$;
\ No newline at end of file
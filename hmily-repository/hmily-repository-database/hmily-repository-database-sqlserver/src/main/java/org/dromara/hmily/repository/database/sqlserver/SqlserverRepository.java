@@ -50,6 +50,11 @@ public class SqlserverRepository extends AbstractHmilyDatabase {
         return SELECTOR_HMILY_PARTICIPANT_WITH_DELAY_AND_APP_NAME_TRANS_TYPE.replace("select", "select top " + limit);
     }
     
+    @Override
+    protected String scanLimitSql(final String sql, final int limit) {
+        return sql.replaceFirst("select", "select top " + limit);
+    }
+    
     @Override
     protected void initScript(final HmilyDatabaseConfig config) throws Exception {
         String jdbcUrl = StringUtils.replace(config.getUrl(), "database=hmily", "");
@@ -120,6 +120,13 @@ EXEC sys.sp_addextendedproperty @name=N'MS_Description', @value=N'创建时间'
 EXEC sys.sp_addextendedproperty @name=N'MS_Description', @value=N'更新时间' , @level0type=N'SCHEMA',@level0name=N'dbo', @level1type=N'TABLE',@level1name=N'hmily_transaction_participant', @level2type=N'COLUMN',@level2name=N'update_time';
 EXEC sys.sp_addextendedproperty @name=N'MS_Description', @value=N'hmily事务参与者' , @level0type=N'SCHEMA',@level0name=N'dbo', @level1type=N'TABLE',@level1name=N'hmily_transaction_participant';
 END
+-- -----------------------------------------------------------------------
+-- create the recovery scan indexes, also on tables made by older versions
+-- -----------------------------------------------------------------------
+IF NOT EXISTS(SELECT * FROM sys.indexes WHERE name = 'idx_global_update_time' AND object_id = OBJECT_ID('hmily_transaction_global'))
+CREATE INDEX idx_global_update_time ON hmily_transaction_global (app_name, update_time, trans_id);
+IF NOT EXISTS(SELECT * FROM sys.indexes WHERE name = 'idx_participant_update_time' AND object_id = OBJECT_ID('hmily_transaction_participant'))
+CREATE INDEX idx_participant_update_time ON hmily_transaction_participant (app_name, trans_type, update_time, participant_id);
 
 /
 -- ---------------------------------------------------------
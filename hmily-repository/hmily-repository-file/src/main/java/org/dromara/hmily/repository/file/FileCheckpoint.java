@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.file;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import org.dromara.hmily.common.utils.LogUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Snapshot of the {@link FileIndex}, so recovery only replays the log written after it.
+ *
+ * <p>A checkpoint is fuzzy: it records the end of the log at the moment it was started and then
+ * copies the index while writes go on. Every log entry is an absolute put, status or remove, so
+ * replaying the entries from the recorded end over the copy yields the current index no matter
+ * which of them the copy already saw. The file is laid out as
+ * {@code magic(int) segment(long) offset(long)}, then per record
+ * {@code kind(byte) id(long) metaLength(int) meta segment(long) offset(long) length(int)},
+ * a zero kind and the crc32 of everything before it.</p>
+ *
+ * <p>A new checkpoint is written to a temporary file and renamed over the current one, which is kept as
+ * the previous generation first. Loading falls back to the previous one when the current one is unusable,
+ * and fails when neither is, as compaction may have deleted the log they cover.</p>
+ *
+ * @author xiaoyu
+ */
+final class FileCheckpoint {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileCheckpoint.class);
+    
+    private static final String FILE_NAME = "checkpoint";
+    
+    private static final String TEMP_FILE_NAME = "checkpoint.tmp";
+    
+    private static final String PREVIOUS_FILE_NAME = "checkpoint.prev";
+    
+    private static final int MAGIC = 0x484D4350;
+    
+    private static final byte[] EMPTY_DATA = new byte[0];
+    
+    private FileCheckpoint() {
+    }
+    
+    /**
+     * Write the index to the checkpoint of the directory, the current one becomes the previous generation.
+     *
+     * @param directory the log directory
+     * @param start     the end of the log when the checkpoint was started
+     * @param fileIndex the index
+     * @throws IOException the io exception
+     */
+    static void write(final File directory, final LogPosition start, final FileIndex fileIndex) throws IOException {
+        File temp = new File(directory, TEMP_FILE_NAME);
+        try (FileOutputStream file = new FileOutputStream(temp)) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeLong(start.getSegment());
+            out.writeLong(start.getOffset());
+            for (LogEntry.Kind kind : LogEntry.Kind.values()) {
+                for (FileRecord each : fileIndex.values(kind)) {
+                    byte[] meta = each.encode(EMPTY_DATA);
+                    LogPosition position = each.getPosition();
+                    out.writeByte(kind.getCode());
+                    out.writeLong(each.getId());
+                    out.writeInt(meta.length);
+                    out.write(meta);
+                    out.writeLong(position.getSegment());
+                    out.writeLong(position.getOffset());
+                    out.writeInt(position.getLength());
+                }
+            }
+            out.writeByte(0);
+            out.writeInt((int) checked.getChecksum().getValue());
+            out.flush();
+            file.getFD().sync();
+        }
+        File current = new File(directory, FILE_NAME);
+        if (current.exists()) {
+            Files.move(current.toPath(), new File(directory, PREVIOUS_FILE_NAME).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.move(temp.toPath(), current.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(directory);
+    }
+    
+    /**
+     * Load the checkpoint of the directory into the index, or its previous generation when it is unusable.
+     *
+     * @param directory the log directory
+     * @param fileIndex the index, left empty when there is no checkpoint
+     * @return the position to replay the log from, null to replay all of it
+     * @throws IOException when there are checkpoints but none of them is usable
+     */
+    static LogPosition load(final File directory, final FileIndex fileIndex) throws IOException {
+        File current = new File(directory, FILE_NAME);
+        File previous = new File(directory, PREVIOUS_FILE_NAME);
+        if (!current.exists() && !previous.exists()) {
+            return null;
+        }
+        for (File each : new File[]{current, previous}) {
+            if (!each.exists()) {
+                continue;
+            }
+            try {
+                return read(each, fileIndex);
+            } catch (IOException | IllegalArgumentException e) {
+                LogUtil.warn(LOGGER, "ignore the checkpoint {}", () -> each + ", it is unusable: " + (e instanceof EOFException ? "truncated" : e.getMessage()));
+                fileIndex.clear();
+            }
+        }
+        throw new IOException("no usable checkpoint in " + directory + ", the log before them may be compacted away. restore one or remove both to replay the whole log");
+    }
+    
+    private static LogPosition read(final File file, final FileIndex fileIndex) throws IOException {
+        try (CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(new FileInputStream(file)), new CRC32())) {
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("bad magic");
+            }
+            LogPosition start = new LogPosition(in.readLong(), in.readLong(), 0);
+            byte code;
+            while ((code = in.readByte()) != 0) {
+                LogEntry.Kind kind = LogEntry.Kind.valueOf(code);
+                long id = in.readLong();
+                byte[] meta = new byte[in.readInt()];
+                in.readFully(meta);
+                FileRecord record = FileRecord.decode(id, ByteBuffer.wrap(meta));
+                record.setPosition(new LogPosition(in.readLong(), in.readLong(), in.readInt()));
+                fileIndex.put(kind, record);
+            }
+            int expected = (int) checked.getChecksum().getValue();
+            if (in.readInt() != expected) {
+                throw new IOException("checksum mismatch");
+            }
+            return start;
+        }
+    }
+    
+    /**
+     * make the renames durable, not every platform can open a directory to force it.
+     */
+    private static void syncDirectory(final File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            LogUtil.debug(LOGGER, "cannot force the directory {}", () -> directory);
+        }
+    }
+}
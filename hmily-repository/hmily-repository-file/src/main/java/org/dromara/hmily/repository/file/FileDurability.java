@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.file;
+
+import java.util.Objects;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * When an append to the {@link FileLog} is forced to disk before it is acknowledged.
+ *
+ * @author xiaoyu
+ */
+@Getter
+@AllArgsConstructor
+enum FileDurability {
+    
+    /**
+     * Never force, the os flushes the page cache when it likes. A crash of the machine loses recent writes.
+     */
+    NONE("none"),
+    
+    /**
+     * Writers wait for a shared force, which covers every write that arrived while the previous force ran.
+     */
+    GROUP_COMMIT("group-commit"),
+    
+    /**
+     * Every append is forced on its own.
+     */
+    PER_WRITE("per-write");
+    
+    private final String value;
+    
+    /**
+     * Find the durability by its config name.
+     *
+     * @param name the name, none when empty
+     * @return the file durability
+     */
+    static FileDurability of(final String name) {
+        if (Objects.isNull(name) || name.isEmpty()) {
+            return NONE;
+        }
+        for (FileDurability each : values()) {
+            if (each.value.equalsIgnoreCase(name)) {
+                return each;
+            }
+        }
+        throw new IllegalArgumentException("unknown file durability " + name);
+    }
+}
@@ -0,0 +1,420 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.file;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+
+/**
+ * In memory indexes over the records of the {@link FileLog}, so that no lookup has to scan the log.
+ *
+ * <p>Besides the id of each kind it keeps transId to participants, participantRefId to participants,
+ * participantId to undo and an update time ordered set per appName (transactions), per appName and
+ * transType (participants) and for all undo records. It also counts the bytes of live put entries per
+ * segment, which tells compaction how much of a segment is garbage. Mutations of one record are
+ * serialized by the caller, published records are never mutated.</p>
+ *
+ * @author xiaoyu
+ */
+final class FileIndex {
+    
+    private static final String UNDO_GROUP = "";
+    
+    private final Map<LogEntry.Kind, Map<Long, FileRecord>> records = new EnumMap<>(LogEntry.Kind.class);
+    
+    private final Map<LogEntry.Kind, Map<String, NavigableSet<TimeKey>>> timeIndexes = new EnumMap<>(LogEntry.Kind.class);
+    
+    private final Map<Long, Set<Long>> participantsByTransId = new ConcurrentHashMap<>();
+    
+    private final Map<Long, Set<Long>> participantsByRefId = new ConcurrentHashMap<>();
+    
+    private final Map<Long, Set<Long>> undosByParticipantId = new ConcurrentHashMap<>();
+    
+    private final Map<Long, LongAdder> liveBytes = new ConcurrentHashMap<>();
+    
+    FileIndex() {
+        for (LogEntry.Kind each : LogEntry.Kind.values()) {
+            records.put(each, new ConcurrentHashMap<>());
+            timeIndexes.put(each, new ConcurrentHashMap<>());
+        }
+    }
+    
+    /**
+     * Get a record by id.
+     *
+     * @param kind the kind
+     * @param id   the id
+     * @return the record or null
+     */
+    FileRecord get(final LogEntry.Kind kind, final Long id) {
+        return records.get(kind).get(id);
+    }
+    
+    /**
+     * Every record of a kind.
+     *
+     * @param kind the kind
+     * @return the records
+     */
+    Collection<FileRecord> values(final LogEntry.Kind kind) {
+        return records.get(kind).values();
+    }
+    
+    /**
+     * Bytes of the segment taken by live put entries.
+     *
+     * @param segment the segment sequence
+     * @return the live bytes
+     */
+    long liveBytes(final long segment) {
+        LongAdder adder = liveBytes.get(segment);
+        return Objects.isNull(adder) ? 0 : adder.sum();
+    }
+    
+    /**
+     * Forget the accounting of a deleted segment.
+     *
+     * @param segment the segment sequence
+     */
+    void dropSegment(final long segment) {
+        liveBytes.remove(segment);
+    }
+    
+    /**
+     * Drop everything.
+     */
+    void clear() {
+        records.values().forEach(Map::clear);
+        timeIndexes.values().forEach(Map::clear);
+        participantsByTransId.clear();
+        participantsByRefId.clear();
+        undosByParticipantId.clear();
+        liveBytes.clear();
+    }
+    
+    /**
+     * Whether the record exists.
+     *
+     * @param kind the kind
+     * @param id   the id
+     * @return true if exists
+     */
+    boolean contains(final LogEntry.Kind kind, final Long id) {
+        return records.get(kind).containsKey(id);
+    }
+    
+    /**
+     * Add or replace a record.
+     *
+     * @param kind   the kind
+     * @param record the record
+     */
+    void put(final LogEntry.Kind kind, final FileRecord record) {
+        FileRecord previous = records.get(kind).put(record.getId(), record);
+        index(kind, record);
+        if (Objects.nonNull(previous)) {
+            unindex(kind, previous, record);
+        }
+    }
+    
+    /**
+     * Remove a record.
+     *
+     * @param kind the kind
+     * @param id   the id
+     * @return the removed record or null
+     */
+    FileRecord remove(final LogEntry.Kind kind, final Long id) {
+        FileRecord previous = records.get(kind).remove(id);
+        if (Objects.nonNull(previous)) {
+            unindex(kind, previous, null);
+        }
+        return previous;
+    }
+    
+    /**
+     * Apply the payload of a status entry to a copy of the record, so concurrent readers never see a half updated one.
+     *
+     * @param kind    the kind
+     * @param id      the id
+     * @param payload the status payload
+     * @return false if the record does not exist
+     */
+    boolean applyStatus(final LogEntry.Kind kind, final Long id, final ByteBuffer payload) {
+        FileRecord record = get(kind, id);
+        if (Objects.isNull(record)) {
+            return false;
+        }
+        FileRecord updated = record.copy();
+        updated.applyStatus(payload);
+        records.get(kind).put(id, updated);
+        NavigableSet<TimeKey> timeIndex = timeIndexOf(kind, record);
+        TimeKey key = TimeKey.of(updated);
+        timeIndex.add(key);
+        if (!key.equals(TimeKey.of(record))) {
+            timeIndex.remove(TimeKey.of(record));
+        }
+        return true;
+    }
+    
+    /**
+     * The participants of a transaction.
+     *
+     * @param transId the trans id
+     * @return the participant records
+     */
+    List<FileRecord> findParticipantsByTransId(final Long transId) {
+        return resolve(LogEntry.Kind.PARTICIPANT, participantsByTransId.get(transId));
+    }
+    
+    /**
+     * The participants nested under the given participant.
+     *
+     * @param participantRefId the participant ref id
+     * @return the participant records
+     */
+    List<FileRecord> findParticipantsByRefId(final Long participantRefId) {
+        return resolve(LogEntry.Kind.PARTICIPANT, participantsByRefId.get(participantRefId));
+    }
+    
+    /**
+     * The undo records of a participant.
+     *
+     * @param participantId the participant id
+     * @return the undo records
+     */
+    List<FileRecord> findUndosByParticipantId(final Long participantId) {
+        return resolve(LogEntry.Kind.UNDO, undosByParticipantId.get(participantId));
+    }
+    
+    /**
+     * Whether the transaction has any participant.
+     *
+     * @param transId the trans id
+     * @return true if it has
+     */
+    boolean hasParticipants(final Long transId) {
+        Set<Long> ids = participantsByTransId.get(transId);
+        return Objects.nonNull(ids) && !ids.isEmpty();
+    }
+    
+    /**
+     * Records updated after the given time in update time order.
+     *
+     * @param kind   the kind
+     * @param group  the time index group, see {@link #transactionGroup} and {@link #participantGroup}, null for every group
+     * @param time   records with an update time after it are returned
+     * @param filter the filter
+     * @param limit  the max size of the result
+     * @return the records
+     */
+    List<FileRecord> listAfter(final LogEntry.Kind kind, final String group, final long time, final Predicate<FileRecord> filter, final int limit) {
+        return listAfter(kind, group, time, Long.MAX_VALUE, filter, limit);
+    }
+    
+    /**
+     * Records after the given (update time, id) in (update time, id) order, the time index is entered right after the key
+     * so the records before it are never visited.
+     *
+     * @param kind   the kind
+     * @param group  the time index group, see {@link #transactionGroup} and {@link #participantGroup}, null for every group
+     * @param time   the update time of the key
+     * @param id     the id of the key
+     * @param filter the filter
+     * @param limit  the max size of the result
+     * @return the records
+     */
+    List<FileRecord> listAfter(final LogEntry.Kind kind, final String group, final long time, final long id, final Predicate<FileRecord> filter, final int limit) {
+        Map<String, NavigableSet<TimeKey>> groups = timeIndexes.get(kind);
+        List<NavigableSet<TimeKey>> timeIndexList = Objects.isNull(group) ? new ArrayList<>(groups.values()) : Collections.singletonList(groups.get(group));
+        List<FileRecord> result = new ArrayList<>();
+        TimeKey from = new TimeKey(time, id);
+        for (NavigableSet<TimeKey> each : timeIndexList) {
+            if (Objects.isNull(each)) {
+                continue;
+            }
+            for (TimeKey key : each.tailSet(from, false)) {
+                if (result.size() >= limit) {
+                    return result;
+                }
+                FileRecord record = get(kind, key.id);
+                if (Objects.nonNull(record) && filter.test(record)) {
+                    result.add(record);
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * The time index group of transactions of an application.
+     *
+     * @param appName the app name
+     * @return the group
+     */
+    static String transactionGroup(final String appName) {
+        return String.valueOf(appName);
+    }
+    
+    /**
+     * The time index group of participants of an application and trans type.
+     *
+     * @param appName   the app name
+     * @param transType the trans type
+     * @return the group
+     */
+    static String participantGroup(final String appName, final String transType) {
+        return appName + ":" + transType;
+    }
+    
+    private void index(final LogEntry.Kind kind, final FileRecord record) {
+        timeIndexOf(kind, record).add(TimeKey.of(record));
+        count(record, 1);
+        switch (kind) {
+            case PARTICIPANT:
+                link(participantsByTransId, record.getTransId(), record.getId());
+                link(participantsByRefId, record.getParticipantRefId(), record.getId());
+                break;
+            case UNDO:
+                link(undosByParticipantId, record.getParticipantId(), record.getId());
+                break;
+            default:
+                break;
+        }
+    }
+    
+    /**
+     * unlink the keys of the previous record the current one, already linked, does not share, so a reader
+     * never misses a record that is replaced.
+     */
+    private void unindex(final LogEntry.Kind kind, final FileRecord previous, final FileRecord current) {
+        NavigableSet<TimeKey> timeIndex = timeIndexOf(kind, previous);
+        TimeKey timeKey = TimeKey.of(previous);
+        if (Objects.isNull(current) || timeIndex != timeIndexOf(kind, current) || !timeKey.equals(TimeKey.of(current))) {
+            timeIndex.remove(timeKey);
+        }
+        count(previous, -1);
+        switch (kind) {
+            case PARTICIPANT:
+                if (Objects.isNull(current) || !Objects.equals(previous.getTransId(), current.getTransId())) {
+                    unlink(participantsByTransId, previous.getTransId(), previous.getId());
+                }
+                if (Objects.isNull(current) || !Objects.equals(previous.getParticipantRefId(), current.getParticipantRefId())) {
+                    unlink(participantsByRefId, previous.getParticipantRefId(), previous.getId());
+                }
+                break;
+            case UNDO:
+                if (Objects.isNull(current) || !Objects.equals(previous.getParticipantId(), current.getParticipantId())) {
+                    unlink(undosByParticipantId, previous.getParticipantId(), previous.getId());
+                }
+                break;
+            default:
+                break;
+        }
+    }
+    
+    private void count(final FileRecord record, final int sign) {
+        LogPosition position = record.getPosition();
+        if (Objects.nonNull(position)) {
+            liveBytes.computeIfAbsent(position.getSegment(), key -> new LongAdder()).add(sign * position.getLength());
+        }
+    }
+    
+    private NavigableSet<TimeKey> timeIndexOf(final LogEntry.Kind kind, final FileRecord record) {
+        String group;
+        switch (kind) {
+            case TRANSACTION:
+                group = transactionGroup(record.getAppName());
+                break;
+            case PARTICIPANT:
+                group = participantGroup(record.getAppName(), record.getTransType());
+                break;
+            default:
+                group = UNDO_GROUP;
+                break;
+        }
+        return timeIndexes.get(kind).computeIfAbsent(group, key -> new ConcurrentSkipListSet<>());
+    }
+    
+    private List<FileRecord> resolve(final LogEntry.Kind kind, final Set<Long> ids) {
+        if (Objects.isNull(ids) || ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<FileRecord> result = new ArrayList<>(ids.size());
+        for (Long each : ids) {
+            FileRecord record = get(kind, each);
+            if (Objects.nonNull(record)) {
+                result.add(record);
+            }
+        }
+        return result;
+    }
+    
+    private static void link(final Map<Long, Set<Long>> index, final Long key, final long id) {
+        if (Objects.nonNull(key)) {
+            index.compute(key, (k, ids) -> {
+                Set<Long> result = Objects.isNull(ids) ? ConcurrentHashMap.newKeySet() : ids;
+                result.add(id);
+                return result;
+            });
+        }
+    }
+    
+    private static void unlink(final Map<Long, Set<Long>> index, final Long key, final long id) {
+        if (Objects.isNull(key)) {
+            return;
+        }
+        index.computeIfPresent(key, (k, ids) -> {
+            ids.remove(id);
+            return ids.isEmpty() ? null : ids;
+        });
+    }
+    
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    private static final class TimeKey implements Comparable<TimeKey> {
+        
+        private final long updateTime;
+        
+        private final long id;
+        
+        static TimeKey of(final FileRecord record) {
+            return new TimeKey(record.getUpdateTime(), record.getId());
+        }
+        
+        @Override
+        public int compareTo(final TimeKey other) {
+            int result = Long.compare(updateTime, other.updateTime);
+            return result != 0 ? result : Long.compare(id, other.id);
+        }
+    }
+}
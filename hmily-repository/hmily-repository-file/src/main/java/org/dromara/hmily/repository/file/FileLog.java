@@ -0,0 +1,335 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.file;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+import org.dromara.hmily.common.concurrent.HmilyThreadFactory;
+import org.dromara.hmily.common.utils.LogUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append only log made of size rolled {@link LogSegment}s. Segments are memory mapped for reading,
+ * so a segment is capped at 2GB.
+ *
+ * <p>How an append is made durable is chosen by {@link FileDurability}. With group commit writers
+ * wake a flusher thread and wait on the future of its next round. The flusher forces the segments
+ * written since its last round and completes that future, so one force acknowledges every write that
+ * arrived while the previous force was running.</p>
+ *
+ * @author xiaoyu
+ */
+final class FileLog implements Closeable {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileLog.class);
+    
+    private final File directory;
+    
+    private final long segmentSize;
+    
+    private final FileDurability durability;
+    
+    private final NavigableMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+    
+    private final Set<LogSegment> dirtySegments = ConcurrentHashMap.newKeySet();
+    
+    private final Object flushMonitor = new Object();
+    
+    private volatile LogSegment active;
+    
+    private volatile CompletableFuture<Void> nextFlush = new CompletableFuture<>();
+    
+    private boolean flushRequested;
+    
+    private volatile boolean closed;
+    
+    private Thread flusher;
+    
+    FileLog(final File directory, final long segmentSize, final FileDurability durability) throws IOException {
+        this.directory = directory;
+        this.segmentSize = Math.min(segmentSize, Integer.MAX_VALUE);
+        this.durability = durability;
+        File[] files = directory.listFiles();
+        if (Objects.nonNull(files)) {
+            for (File each : files) {
+                long sequence = LogSegment.parseSequence(each.getName());
+                if (sequence >= 0) {
+                    segments.put(sequence, LogSegment.open(directory, sequence));
+                }
+            }
+        }
+        active = segments.isEmpty() ? roll(1) : segments.lastEntry().getValue();
+        if (durability == FileDurability.GROUP_COMMIT) {
+            flusher = HmilyThreadFactory.create("hmily-file-flush", true).newThread(this::flushLoop);
+            flusher.start();
+        }
+    }
+    
+    /**
+     * Append an encoded entry, rolling to a new segment once the active one is full.
+     * Returns once the entry is as durable as the configured {@link FileDurability} asks for.
+     *
+     * @param entry the entry, see {@link LogEntry#encode}
+     * @return the position of the entry
+     * @throws IOException the io exception
+     */
+    LogPosition append(final ByteBuffer entry) throws IOException {
+        LogPosition position = write(entry);
+        switch (durability) {
+            case PER_WRITE:
+                segments.get(position.getSegment()).force();
+                break;
+            case GROUP_COMMIT:
+                CompletableFuture<Void> flush = nextFlush;
+                synchronized (flushMonitor) {
+                    flushRequested = true;
+                    flushMonitor.notifyAll();
+                }
+                await(flush);
+                break;
+            default:
+                break;
+        }
+        return position;
+    }
+    
+    private synchronized LogPosition write(final ByteBuffer entry) throws IOException {
+        int length = entry.remaining();
+        if (active.size() > 0 && active.size() + length > segmentSize) {
+            active = roll(active.getSequence() + 1);
+        }
+        long offset = active.append(entry);
+        if (durability == FileDurability.GROUP_COMMIT) {
+            dirtySegments.add(active);
+        }
+        return new LogPosition(active.getSequence(), offset, length);
+    }
+    
+    private void await(final CompletableFuture<Void> flush) throws IOException {
+        try {
+            flush.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for the group commit", e);
+        } catch (ExecutionException e) {
+            throw new IOException("group commit failed", e.getCause());
+        }
+    }
+    
+    private void flushLoop() {
+        while (!closed) {
+            synchronized (flushMonitor) {
+                while (!flushRequested && !closed) {
+                    try {
+                        flushMonitor.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                flushRequested = false;
+            }
+            flush();
+        }
+    }
+    
+    private void flush() {
+        CompletableFuture<Void> flush = nextFlush;
+        nextFlush = new CompletableFuture<>();
+        try {
+            for (LogSegment each : new ArrayList<>(dirtySegments)) {
+                dirtySegments.remove(each);
+                each.force();
+            }
+            flush.complete(null);
+        } catch (IOException e) {
+            LogUtil.error(LOGGER, "group commit occur a exception {}", () -> e);
+            flush.completeExceptionally(e);
+        }
+    }
+    
+    /**
+     * Read the entry at the given position.
+     *
+     * @param position the position
+     * @return the entry
+     * @throws IOException the io exception
+     */
+    LogEntry read(final LogPosition position) throws IOException {
+        LogSegment segment = segments.get(position.getSegment());
+        if (Objects.isNull(segment)) {
+            throw new IOException("segment " + position.getSegment() + " does not exist in " + directory);
+        }
+        ByteBuffer body = segment.read(position.getOffset() + LogEntry.HEADER_SIZE, position.getLength() - LogEntry.HEADER_SIZE);
+        return LogEntry.decode(body);
+    }
+    
+    /**
+     * Whether the entry at the given position is still in the log.
+     *
+     * @param position the position
+     * @return true if it is
+     */
+    boolean contains(final LogPosition position) {
+        LogSegment segment = segments.get(position.getSegment());
+        return Objects.nonNull(segment) && position.getOffset() + position.getLength() <= segment.size();
+    }
+    
+    /**
+     * Position right after the last appended entry.
+     *
+     * @return the position
+     */
+    synchronized LogPosition end() {
+        return new LogPosition(active.getSequence(), active.size(), 0);
+    }
+    
+    /**
+     * Force every segment up to the given sequence to the storage device.
+     *
+     * @param sequence the last segment to force
+     * @throws IOException the io exception
+     */
+    void force(final long sequence) throws IOException {
+        for (LogSegment each : segments.headMap(sequence, true).values()) {
+            each.force();
+        }
+    }
+    
+    /**
+     * Replay every entry from the given position on. A torn or corrupt tail of the active segment,
+     * which is what a crash in the middle of an append leaves behind, is cut off.
+     *
+     * @param from     the position to start at, null for the oldest segment
+     * @param consumer receives each entry with its position
+     * @throws IOException the io exception
+     */
+    void replay(final LogPosition from, final BiConsumer<LogEntry, LogPosition> consumer) throws IOException {
+        NavigableMap<Long, LogSegment> tail = Objects.isNull(from) ? segments : segments.tailMap(from.getSegment(), true);
+        for (Map.Entry<Long, LogSegment> each : tail.entrySet()) {
+            LogSegment segment = each.getValue();
+            long start = Objects.nonNull(from) && from.getSegment() == segment.getSequence() ? from.getOffset() : 0;
+            long valid = replay(segment, start, consumer);
+            if (valid < segment.size()) {
+                if (segment == active) {
+                    LogUtil.warn(LOGGER, "truncate the torn tail of segment {}", () -> segment.getFile() + " at " + valid);
+                    segment.truncate(valid);
+                } else {
+                    LogUtil.error(LOGGER, "skip the corrupt entries of segment {}", () -> segment.getFile() + " after " + valid);
+                }
+            }
+        }
+    }
+    
+    private long replay(final LogSegment segment, final long start, final BiConsumer<LogEntry, LogPosition> consumer) throws IOException {
+        long offset = start;
+        long size = segment.size();
+        while (offset + LogEntry.HEADER_SIZE <= size) {
+            ByteBuffer header = segment.read(offset, LogEntry.HEADER_SIZE);
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < LogEntry.BODY_HEADER_SIZE || offset + LogEntry.HEADER_SIZE + length > size) {
+                break;
+            }
+            ByteBuffer body = segment.read(offset + LogEntry.HEADER_SIZE, length);
+            if (!LogEntry.verify(checksum, body)) {
+                break;
+            }
+            consumer.accept(LogEntry.decode(body), new LogPosition(segment.getSequence(), offset, LogEntry.HEADER_SIZE + length));
+            offset += LogEntry.HEADER_SIZE + length;
+        }
+        return offset;
+    }
+    
+    /**
+     * Read every intact entry of a segment.
+     *
+     * @param segment  the segment
+     * @param consumer receives each entry with its position
+     * @throws IOException the io exception
+     */
+    void scan(final LogSegment segment, final BiConsumer<LogEntry, LogPosition> consumer) throws IOException {
+        replay(segment, 0, consumer);
+    }
+    
+    /**
+     * The sealed segments older than the given sequence, oldest first.
+     *
+     * @param sequence the sequence
+     * @return the segments
+     */
+    List<LogSegment> sealedBefore(final long sequence) {
+        return new ArrayList<>(segments.headMap(Math.min(sequence, active.getSequence()), false).values());
+    }
+    
+    /**
+     * Drop a sealed segment whose live entries have been rewritten elsewhere.
+     *
+     * @param segment the segment
+     * @throws IOException the io exception
+     */
+    synchronized void delete(final LogSegment segment) throws IOException {
+        if (segment == active) {
+            throw new IOException("cannot delete the active segment " + segment.getFile());
+        }
+        segments.remove(segment.getSequence());
+        dirtySegments.remove(segment);
+        segment.close();
+        Files.deleteIfExists(segment.getFile().toPath());
+    }
+    
+    private LogSegment roll(final long sequence) throws IOException {
+        LogSegment segment = LogSegment.open(directory, sequence);
+        segments.put(sequence, segment);
+        return segment;
+    }
+    
+    @Override
+    public synchronized void close() throws IOException {
+        if (Objects.nonNull(flusher)) {
+            synchronized (flushMonitor) {
+                closed = true;
+                flushMonitor.notifyAll();
+            }
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flush();
+        }
+        for (LogSegment each : segments.values()) {
+            each.close();
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.file;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Objects;
+import lombok.Getter;
+import lombok.Setter;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipantUndo;
+import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
+
+/**
+ * The in memory index entry of a record stored in the {@link FileLog}.
+ *
+ * <p>A put entry starts with these fields in front of the serialized record, so the index
+ * can be rebuilt by replaying the log without deserializing any record.</p>
+ *
+ * @author xiaoyu
+ */
+@Getter
+@Setter
+final class FileRecord {
+    
+    private static final int STATUS_SIZE = 16;
+    
+    private long id;
+    
+    private Long transId;
+    
+    private Long participantId;
+    
+    private Long participantRefId;
+    
+    private String appName;
+    
+    private String transType;
+    
+    private int status;
+    
+    private int version;
+    
+    private long updateTime;
+    
+    private LogPosition position;
+    
+    /**
+     * Build the index entry of a transaction.
+     *
+     * @param hmilyTransaction the hmily transaction
+     * @return the file record
+     */
+    static FileRecord of(final HmilyTransaction hmilyTransaction) {
+        FileRecord record = new FileRecord();
+        record.id = hmilyTransaction.getTransId();
+        record.transId = hmilyTransaction.getTransId();
+        record.appName = hmilyTransaction.getAppName();
+        record.transType = hmilyTransaction.getTransType();
+        record.status = hmilyTransaction.getStatus();
+        record.version = valueOf(hmilyTransaction.getVersion());
+        record.updateTime = timeOf(hmilyTransaction.getUpdateTime());
+        return record;
+    }
+    
+    /**
+     * Build the index entry of a participant.
+     *
+     * @param hmilyParticipant the hmily participant
+     * @return the file record
+     */
+    static FileRecord of(final HmilyParticipant hmilyParticipant) {
+        FileRecord record = new FileRecord();
+        record.id = hmilyParticipant.getParticipantId();
+        record.transId = hmilyParticipant.getTransId();
+        record.participantId = hmilyParticipant.getParticipantId();
+        record.participantRefId = hmilyParticipant.getParticipantRefId();
+        record.appName = hmilyParticipant.getAppName();
+        record.transType = hmilyParticipant.getTransType();
+        record.status = valueOf(hmilyParticipant.getStatus());
+        record.version = valueOf(hmilyParticipant.getVersion());
+        record.updateTime = timeOf(hmilyParticipant.getUpdateTime());
+        return record;
+    }
+    
+    /**
+     * Build the index entry of a participant undo.
+     *
+     * @param hmilyParticipantUndo the hmily participant undo
+     * @return the file record
+     */
+    static FileRecord of(final HmilyParticipantUndo hmilyParticipantUndo) {
+        FileRecord record = new FileRecord();
+        record.id = hmilyParticipantUndo.getUndoId();
+        record.transId = hmilyParticipantUndo.getTransId();
+        record.participantId = hmilyParticipantUndo.getParticipantId();
+        record.status = valueOf(hmilyParticipantUndo.getStatus());
+        record.updateTime = timeOf(hmilyParticipantUndo.getUpdateTime());
+        return record;
+    }
+    
+    /**
+     * Copy of this record.
+     *
+     * @return the copy
+     */
+    FileRecord copy() {
+        FileRecord record = new FileRecord();
+        record.id = id;
+        record.transId = transId;
+        record.participantId = participantId;
+        record.participantRefId = participantRefId;
+        record.appName = appName;
+        record.transType = transType;
+        record.status = status;
+        record.version = version;
+        record.updateTime = updateTime;
+        record.position = position;
+        return record;
+    }
+    
+    /**
+     * Decode the index fields at the head of a put payload, leaving the payload at the serialized record.
+     *
+     * @param id      the record id
+     * @param payload the put payload
+     * @return the file record
+     */
+    static FileRecord decode(final long id, final ByteBuffer payload) {
+        FileRecord record = new FileRecord();
+        record.id = id;
+        record.transId = getLong(payload);
+        record.participantId = getLong(payload);
+        record.participantRefId = getLong(payload);
+        record.appName = getString(payload);
+        record.transType = getString(payload);
+        record.applyStatus(payload);
+        return record;
+    }
+    
+    /**
+     * Encode the payload of a put entry.
+     *
+     * @param data the serialized record
+     * @return the payload
+     */
+    byte[] encode(final byte[] data) {
+        byte[] app = bytesOf(appName);
+        byte[] type = bytesOf(transType);
+        ByteBuffer buffer = ByteBuffer.allocate(3 * 9 + lengthOf(app) + lengthOf(type) + STATUS_SIZE + data.length);
+        putLong(buffer, transId);
+        putLong(buffer, participantId);
+        putLong(buffer, participantRefId);
+        putBytes(buffer, app);
+        putBytes(buffer, type);
+        buffer.put(encodeStatus());
+        buffer.put(data);
+        return buffer.array();
+    }
+    
+    /**
+     * Skip the index fields at the head of a put payload.
+     *
+     * @param payload the put payload
+     */
+    static void skip(final ByteBuffer payload) {
+        payload.position(payload.position() + 3 * 9);
+        for (int i = 0; i < 2; i++) {
+            int length = payload.getInt();
+            payload.position(payload.position() + Math.max(length, 0));
+        }
+        payload.position(payload.position() + STATUS_SIZE);
+    }
+    
+    /**
+     * Encode the payload of a status entry.
+     *
+     * @param status     the status
+     * @param version    the version
+     * @param updateTime the update time
+     * @return the payload
+     */
+    static byte[] encodeStatus(final int status, final int version, final long updateTime) {
+        return ByteBuffer.allocate(STATUS_SIZE).putInt(status).putInt(version).putLong(updateTime).array();
+    }
+    
+    /**
+     * Encode the current status fields.
+     *
+     * @return the payload of a status entry
+     */
+    byte[] encodeStatus() {
+        return encodeStatus(status, version, updateTime);
+    }
+    
+    /**
+     * Apply the payload of a status entry.
+     *
+     * @param payload the payload
+     */
+    void applyStatus(final ByteBuffer payload) {
+        status = payload.getInt();
+        version = payload.getInt();
+        updateTime = payload.getLong();
+    }
+    
+    /**
+     * Update time as a date.
+     *
+     * @return the date
+     */
+    Date getUpdateDate() {
+        return new Date(updateTime);
+    }
+    
+    private static int valueOf(final Integer value) {
+        return Objects.isNull(value) ? 0 : value;
+    }
+    
+    private static long timeOf(final Date date) {
+        return Objects.isNull(date) ? 0 : date.getTime();
+    }
+    
+    private static byte[] bytesOf(final String value) {
+        return Objects.isNull(value) ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    private static int lengthOf(final byte[] bytes) {
+        return Objects.isNull(bytes) ? 4 : 4 + bytes.length;
+    }
+    
+    private static void putLong(final ByteBuffer buffer, final Long value) {
+        buffer.put((byte) (Objects.isNull(value) ? 0 : 1)).putLong(Objects.isNull(value) ? 0 : value);
+    }
+    
+    private static Long getLong(final ByteBuffer buffer) {
+        boolean present = buffer.get() != 0;
+        long value = buffer.getLong();
+        return present ? value : null;
+    }
+    
+    private static void putBytes(final ByteBuffer buffer, final byte[] bytes) {
+        if (Objects.isNull(bytes)) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(bytes.length).put(bytes);
+    }
+    
+    private static String getString(final ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
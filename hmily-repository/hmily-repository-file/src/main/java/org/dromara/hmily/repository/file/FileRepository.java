@@ -17,27 +17,36 @@
 
 package org.dromara.hmily.repository.file;
 
+import com.google.common.util.concurrent.Striped;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import lombok.SneakyThrows;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.dromara.hmily.common.concurrent.HmilyThreadFactory;
 import org.dromara.hmily.common.enums.HmilyActionEnum;
 import org.dromara.hmily.common.exception.HmilyException;
 import org.dromara.hmily.common.exception.HmilyRuntimeException;
+import org.dromara.hmily.common.hook.HmilyShutdownHook;
 import org.dromara.hmily.common.utils.LogUtil;
 import org.dromara.hmily.config.api.ConfigEnv;
 import org.dromara.hmily.config.api.entity.HmilyFileConfig;
 import org.dromara.hmily.repository.spi.HmilyRepository;
 import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
 import org.dromara.hmily.repository.spi.entity.HmilyParticipantUndo;
+import org.dromara.hmily.repository.spi.entity.HmilyScanCursor;
 import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
 import org.dromara.hmily.repository.spi.exception.HmilyRepositoryException;
 import org.dromara.hmily.serializer.spi.HmilySerializer;
@@ -49,26 +58,46 @@ import org.slf4j.LoggerFactory;
 /**
  * file impl.
  *
+ * <p>Records are appended to a segmented log under {@code path/hmily/appName/log}, status changes are
+ * written as small delta entries and removals as tombstones. The latest position of every record and
+ * the lookup indexes of {@link FileIndex} are kept in memory, so queries never scan the log.</p>
+ *
+ * <p>Every checkpointInterval seconds the index is written to a {@link FileCheckpoint}, and
+ * {@link #init(String)} loads it and replays only the log written after it. The same task compacts
+ * the log: a sealed segment the checkpoint covers, whose live puts fill less than compactionThreshold
+ * of it, has those puts appended again and is deleted. Its tombstones and status entries are not
+ * needed anymore, as recovery starts from the checkpoint rather than the oldest segment.</p>
+ *
+ * <p>Writes to the same record are serialized by a lock striped over the record id, the log itself is
+ * only held for the positional write of an entry. Index entries are replaced rather than mutated, so
+ * reads take no lock at all.</p>
+ *
  * @author xiaoyu
  * @author choviwu
  */
 @SuppressWarnings("all")
 @HmilySPI("file")
-public class FileRepository implements HmilyRepository {
+public class FileRepository implements HmilyRepository, AutoCloseable {
     
     private static final Logger LOGGER = LoggerFactory.getLogger(FileRepository.class);
     
     private static final String HMILY_TRANSATION_FILE_DIRECTORY = "hmily";
     
-    private static final String HMILY_TRANSATION_PARTICIPANT_FILE_DIRECTORY = "participant";
+    private static final String HMILY_LOG_DIRECTORY = "log";
     
     private static final String HMILY_PARTICIPANT_UNDO = "undo";
     
-    private static final ReentrantReadWriteLock LOCK = new ReentrantReadWriteLock();
+    private static final String HMILY_IMPORTED_SUFFIX = ".imported";
+    
+    private static final byte[] EMPTY_PAYLOAD = new byte[0];
+    
+    private static final int LOCK_STRIPES = 256;
     
-    private static final int HMILY_READ_BYTE_SIZE = 2048;
+    private final Striped<Lock> locks = Striped.lock(LOCK_STRIPES);
     
-    private static volatile boolean initialized;
+    private final FileIndex fileIndex = new FileIndex();
+    
+    private final ReadWriteLock checkpointLock = new ReentrantReadWriteLock();
     
     private HmilySerializer hmilySerializer;
     
@@ -76,13 +105,43 @@ public class FileRepository implements HmilyRepository {
     
     private String filePath;
     
+    private File directory;
+    
+    private FileLog fileLog;
+    
+    private double compactionThreshold;
+    
+    private ScheduledThreadPoolExecutor compactionExecutor;
+    
     @Override
     public void init(final String appName) {
         this.appName = appName;
         HmilyFileConfig fileConfig = ConfigEnv.getInstance().getConfig(HmilyFileConfig.class);
-        fileConfig.setPath(fileConfig.getPath());
         filePath = fileConfig.getPath();
-        makeDir();
+        directory = makeDir();
+        try {
+            fileLog = new FileLog(directory, fileConfig.getSegmentSize(), FileDurability.of(fileConfig.getDurability()));
+            LogPosition checkpoint = FileCheckpoint.load(directory, fileIndex);
+            fileLog.replay(checkpoint, this::apply);
+            if (Objects.nonNull(checkpoint)) {
+                dropLost();
+            }
+            importLegacy();
+        } catch (IOException e) {
+            throw new HmilyRuntimeException("cannot open the file log, the path is:" + directory.getAbsolutePath(), e);
+        }
+        if (fileConfig.getCheckpointInterval() > 0) {
+            compactionThreshold = fileConfig.getCompactionThreshold();
+            compactionExecutor = new ScheduledThreadPoolExecutor(1, HmilyThreadFactory.create("hmily-file-compaction", true));
+            compactionExecutor.scheduleWithFixedDelay(() -> {
+                try {
+                    compact();
+                } catch (Exception e) {
+                    LogUtil.error(LOGGER, "compact the file log occur a exception {}", () -> e);
+                }
+            }, fileConfig.getCheckpointInterval(), fileConfig.getCheckpointInterval(), TimeUnit.SECONDS);
+        }
+        HmilyShutdownHook.getInstance().registerAutoCloseable(this);
     }
     
     @Override
@@ -90,89 +149,70 @@ public class FileRepository implements HmilyRepository {
         this.hmilySerializer = hmilySerializer;
     }
 
-    @SneakyThrows
     @Override
     public int createHmilyTransaction(final HmilyTransaction hmilyTransaction) throws HmilyRepositoryException {
-        File file = new File(getTransationPath());
+        Lock lock = locks.get(hmilyTransaction.getTransId());
+        lock.lock();
         try {
-            final boolean exsist = isExsist(file, hmilyTransaction.getTransId());
-            if (!exsist) {
+            if (!fileIndex.contains(LogEntry.Kind.TRANSACTION, hmilyTransaction.getTransId())) {
                 hmilyTransaction.setCreateTime(new Date());
                 hmilyTransaction.setUpdateTime(new Date());
-                createOrUpdateWriteFile(file, hmilyTransaction);
             } else {
                 hmilyTransaction.setVersion(hmilyTransaction.getVersion() + 1);
                 hmilyTransaction.setUpdateTime(new Date());
-                createOrUpdateWriteFile(file, hmilyTransaction);
             }
+            put(LogEntry.Kind.TRANSACTION, FileRecord.of(hmilyTransaction), hmilyTransaction);
             return HmilyRepository.ROWS;
         } catch (IOException e) {
             throw new HmilyException(e);
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public int updateRetryByLock(final HmilyTransaction hmilyTransaction) {
         final int currentVersion = hmilyTransaction.getVersion();
-        File file = new File(getTransationPath());
+        Lock lock = locks.get(hmilyTransaction.getTransId());
+        lock.lock();
         try {
-            final boolean exsist = isExsist(file, hmilyTransaction.getTransId());
-            if (!exsist) {
+            if (!fileIndex.contains(LogEntry.Kind.TRANSACTION, hmilyTransaction.getTransId())) {
                 return HmilyRepository.FAIL_ROWS;
             }
             hmilyTransaction.setVersion(currentVersion + 1);
             hmilyTransaction.setRetry(hmilyTransaction.getRetry() + 1);
             hmilyTransaction.setUpdateTime(new Date());
-            createOrUpdateWriteFile(file, hmilyTransaction);
+            put(LogEntry.Kind.TRANSACTION, FileRecord.of(hmilyTransaction), hmilyTransaction);
             return HmilyRepository.ROWS;
         } catch (IOException e) {
             LogUtil.error(LOGGER, "updateRetryByLock occur a exception {}", () -> e);
+        } finally {
+            lock.unlock();
         }
         return HmilyRepository.FAIL_ROWS;
     }
 
     @Override
     public HmilyTransaction findByTransId(final Long transId) {
-        File file = new File(getTransationPath());
-        boolean exsist = isExsist(file, transId);
-        if (exsist) {
-            return readFile(file, HmilyTransaction.class, transId);
-        }
-        return null;
+        FileRecord record = fileIndex.get(LogEntry.Kind.TRANSACTION, transId);
+        return Objects.isNull(record) ? null : readTransaction(record);
     }
     
     @Override
     public List<HmilyTransaction> listLimitByDelay(final Date date, final int limit) {
-        File file = new File(getTransationPath());
-        return listByFilter(file, HmilyTransaction.class, (hmilyTransaction, params) -> {
-            Date dateParam = (Date) params[0];
-            int limitParam = (int) params[1];
-            boolean filterResult = dateParam.before(hmilyTransaction.getUpdateTime())
-                    && Objects.equals(appName, hmilyTransaction.getAppName())
-                    && limitParam-- > 0;
-            // write back to params
-            params[1] = limitParam;
-            return filterResult;
-        }, date, limit);
+        return read(() -> fileIndex.listAfter(LogEntry.Kind.TRANSACTION, FileIndex.transactionGroup(appName), date.getTime(), record -> true, limit), this::readTransaction);
+    }
+    
+    @Override
+    public List<HmilyTransaction> scanHmilyTransaction(final Date date, final HmilyScanCursor cursor, final int limit) {
+        long[] from = seek(date, cursor);
+        return read(() -> fileIndex.listAfter(LogEntry.Kind.TRANSACTION, FileIndex.transactionGroup(appName), from[0], from[1], record -> true, limit), this::readTransaction);
     }
     
     @Override
     public int updateHmilyTransactionStatus(final Long transId, final Integer status) throws HmilyRepositoryException {
-        File file = new File(getTransationPath());
         try {
-            boolean exsist = isExsist(file, transId);
-            if (!exsist) {
-                return HmilyRepository.FAIL_ROWS;
-            }
-            HmilyTransaction hmilyTransaction = readFile(file, HmilyTransaction.class, transId);
-            if (hmilyTransaction == null) {
-                return HmilyRepository.FAIL_ROWS;
-            }
-            hmilyTransaction.setStatus(status);
-            hmilyTransaction.setVersion(hmilyTransaction.getVersion() + 1);
-            hmilyTransaction.setUpdateTime(new Date());
-            createOrUpdateWriteFile(file, hmilyTransaction);
-            return HmilyRepository.ROWS;
+            return updateStatus(LogEntry.Kind.TRANSACTION, transId, status, true) ? HmilyRepository.ROWS : HmilyRepository.FAIL_ROWS;
         } catch (IOException e) {
             LogUtil.error(LOGGER, "updateHmilyTransactionStatus occur a exception {}", () -> e);
         }
@@ -181,112 +221,85 @@ public class FileRepository implements HmilyRepository {
     
     @Override
     public int removeHmilyTransaction(final Long transId) {
-        File file = new File(getTransationPath());
         try {
-            boolean exsist = isExsist(file, transId);
-            if (!exsist) {
-                return HmilyRepository.FAIL_ROWS;
-            }
-            HmilyTransaction hmilyTransaction = readFile(file, HmilyTransaction.class, transId);
-            if (hmilyTransaction == null) {
-                return HmilyRepository.FAIL_ROWS;
-            }
-            boolean delete = deleteFile(file, transId);
-            return delete ? HmilyRepository.ROWS : HmilyRepository.FAIL_ROWS;
+            return remove(LogEntry.Kind.TRANSACTION, transId) ? HmilyRepository.ROWS : HmilyRepository.FAIL_ROWS;
         } catch (IOException e) {
-            LogUtil.error(LOGGER, "updateHmilyTransactionStatus occur a exception {}", () -> e);
+            LogUtil.error(LOGGER, "removeHmilyTransaction occur a exception {}", () -> e);
         }
         return HmilyRepository.FAIL_ROWS;
     }
 
     @Override
     public int removeHmilyTransactionByData(final Date date) {
-        File file = new File(getTransationPath());
-        return removeByFilter(file, HmilyTransaction.class, (hmilyTransaction, params) -> {
-            Date dateParam = (Date) params[0];
-            return dateParam.before(hmilyTransaction.getUpdateTime()) && hmilyTransaction.getStatus() == HmilyActionEnum.DELETE.getCode();
-        }, date);
+        return removeDeleted(LogEntry.Kind.TRANSACTION, date);
     }
 
     @Override
     public int createHmilyParticipant(final HmilyParticipant hmilyParticipant) throws HmilyRepositoryException {
-        File file = new File(getTransationParticipantPath());
+        Lock lock = locks.get(hmilyParticipant.getParticipantId());
+        lock.lock();
         try {
-            boolean exsist = isExsist(file, hmilyParticipant.getTransId());
-            if (!exsist) {
+            if (!fileIndex.contains(LogEntry.Kind.PARTICIPANT, hmilyParticipant.getParticipantId())) {
                 hmilyParticipant.setCreateTime(new Date());
                 hmilyParticipant.setUpdateTime(new Date());
-                createOrUpdateParticipantWriteFile(file, hmilyParticipant);
             } else {
                 hmilyParticipant.setVersion(hmilyParticipant.getVersion() + 1);
                 hmilyParticipant.setUpdateTime(new Date());
-                createOrUpdateParticipantWriteFile(file, hmilyParticipant);
             }
+            put(LogEntry.Kind.PARTICIPANT, FileRecord.of(hmilyParticipant), hmilyParticipant);
             return HmilyRepository.ROWS;
         } catch (IOException e) {
             throw new HmilyException(e);
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public List<HmilyParticipant> findHmilyParticipant(final Long participantId) {
-        File file = new File(getTransationParticipantPath());
-        return listByFilter(file, HmilyParticipant.class, (hmilyParticipant, params) -> {
-            Long participantIdParam = (Long) params[0];
-            return participantIdParam.compareTo(hmilyParticipant.getParticipantId()) == 0
-                    || (hmilyParticipant.getParticipantRefId() != null && participantIdParam.compareTo(hmilyParticipant.getParticipantRefId()) == 0);
-        }, participantId);
+        return read(() -> {
+            List<FileRecord> records = new ArrayList<>();
+            FileRecord record = fileIndex.get(LogEntry.Kind.PARTICIPANT, participantId);
+            if (Objects.nonNull(record)) {
+                records.add(record);
+            }
+            records.addAll(fileIndex.findParticipantsByRefId(participantId));
+            return records;
+        }, this::readParticipant);
     }
     
     @Override
     public List<HmilyParticipant> listHmilyParticipant(final Date date, final String transType, final int limit) {
-        File file = new File(getTransationParticipantPath());
-        return listByFilter(file, HmilyParticipant.class, (hmilyParticipant, params) -> {
-            Date dateParam = (Date) params[0];
-            String transTypeParam = (String) params[1];
-            int limitParam = (int) params[2];
-            boolean filterResult = dateParam.before(hmilyParticipant.getUpdateTime())
-                    && Objects.equals(appName, hmilyParticipant.getAppName())
-                    && Objects.equals(transTypeParam, hmilyParticipant.getTransType())
-                    && (hmilyParticipant.getStatus().compareTo(HmilyActionEnum.DELETE.getCode()) != 0
-                    && hmilyParticipant.getStatus().compareTo(HmilyActionEnum.DEATH.getCode()) != 0)
-                    && limitParam-- > 0;
-            params[2] = limitParam;
-            return filterResult;
-        }, date, transType, limit);
+        return read(() -> fileIndex.listAfter(LogEntry.Kind.PARTICIPANT, FileIndex.participantGroup(appName, transType), date.getTime(),
+                FileRepository::isRecoverable, limit), this::readParticipant);
+    }
+    
+    @Override
+    public List<HmilyParticipant> scanHmilyParticipant(final Date date, final String transType, final HmilyScanCursor cursor, final int limit) {
+        long[] from = seek(date, cursor);
+        return read(() -> fileIndex.listAfter(LogEntry.Kind.PARTICIPANT, FileIndex.participantGroup(appName, transType), from[0], from[1],
+                FileRepository::isRecoverable, limit), this::readParticipant);
     }
 
     @Override
     public List<HmilyParticipant> listHmilyParticipantByTransId(final Long transId) {
-        File file = new File(getTransationParticipantPath());
-        return listByFilter(file, HmilyParticipant.class, (hmilyParticipant, params) -> transId.compareTo(hmilyParticipant.getTransId()) == 0, transId);
+        return read(() -> fileIndex.findParticipantsByTransId(transId), this::readParticipant);
     }
 
     @Override
     public boolean existHmilyParticipantByTransId(final Long transId) {
-        return existByFilter((hmilyParticipant, params) -> {
-            Long transIdParam = (Long) params[0];
-            return transIdParam.compareTo(hmilyParticipant.getTransId()) == 0;
-        }, transId);
+        return fileIndex.hasParticipants(transId);
+    }
+    
+    @Override
+    public List<Long> findTransIdsWithoutParticipants(final List<Long> transIdList) {
+        return transIdList.stream().filter(transId -> !fileIndex.hasParticipants(transId)).collect(Collectors.toList());
     }
     
     @Override
     public int updateHmilyParticipantStatus(final Long participantId, final Integer status) throws HmilyRepositoryException {
-        File file = new File(getTransationParticipantPath());
         try {
-            boolean exsist = isExsist(file, participantId);
-            if (!exsist) {
-                return HmilyRepository.FAIL_ROWS;
-            }
-            HmilyParticipant hmilyParticipant = readFile(file, HmilyParticipant.class, participantId);
-            if (hmilyParticipant == null) {
-                return HmilyRepository.FAIL_ROWS;
-            }
-            hmilyParticipant.setStatus(status);
-            hmilyParticipant.setVersion(hmilyParticipant.getVersion() + 1);
-            hmilyParticipant.setUpdateTime(new Date());
-            createOrUpdateParticipantWriteFile(file, hmilyParticipant);
-            return HmilyRepository.ROWS;
+            return updateStatus(LogEntry.Kind.PARTICIPANT, participantId, status, true) ? HmilyRepository.ROWS : HmilyRepository.FAIL_ROWS;
         } catch (IOException e) {
             LogUtil.error(LOGGER, "updateHmilyParticipantStatus occur a exception {}", () -> e);
         }
@@ -295,370 +308,415 @@ public class FileRepository implements HmilyRepository {
 
     @Override
     public int removeHmilyParticipant(final Long participantId) {
-        File file = new File(getTransationParticipantPath());
         try {
-            boolean exsist = isExsist(file, participantId);
-            if (!exsist) {
-                return HmilyRepository.FAIL_ROWS;
-            }
-            HmilyParticipant hmilyParticipant = readFile(file, HmilyParticipant.class, participantId);
-            if (hmilyParticipant == null) {
-                return HmilyRepository.FAIL_ROWS;
-            }
-            boolean delete = deleteFile(file, participantId);
-            return delete ? HmilyRepository.ROWS : HmilyRepository.FAIL_ROWS;
+            return remove(LogEntry.Kind.PARTICIPANT, participantId) ? HmilyRepository.ROWS : HmilyRepository.FAIL_ROWS;
         } catch (IOException e) {
-            LogUtil.error(LOGGER, "updateHmilyTransactionStatus occur a exception {}", () -> e);
+            LogUtil.error(LOGGER, "removeHmilyParticipant occur a exception {}", () -> e);
         }
         return HmilyRepository.FAIL_ROWS;
     }
 
     @Override
     public int removeHmilyParticipantByData(final Date date) {
-        File file = new File(getTransationParticipantPath());
-        return removeByFilter(file, HmilyParticipant.class, (hmilyParticipant, params) -> {
-            Date dateParam = (Date) params[0];
-            return dateParam.before(hmilyParticipant.getUpdateTime()) && hmilyParticipant.getStatus() == 4;
-        }, date);
+        return removeDeleted(LogEntry.Kind.PARTICIPANT, date);
     }
 
     @Override
     public boolean lockHmilyParticipant(final HmilyParticipant hmilyParticipant) {
         final int currentVersion = hmilyParticipant.getVersion();
-        File file = new File(getTransationParticipantPath());
+        Lock lock = locks.get(hmilyParticipant.getParticipantId());
+        lock.lock();
         try {
-            boolean exsist = isExsist(file, hmilyParticipant.getParticipantId());
-            if (!exsist) {
-                LogUtil.warn(LOGGER, "path {} is not exists.", () -> file.getPath());
+            if (!fileIndex.contains(LogEntry.Kind.PARTICIPANT, hmilyParticipant.getParticipantId())) {
+                LogUtil.warn(LOGGER, "participant {} is not exists.", hmilyParticipant::getParticipantId);
                 return false;
             }
             hmilyParticipant.setVersion(currentVersion + 1);
             hmilyParticipant.setRetry(hmilyParticipant.getRetry() + 1);
             hmilyParticipant.setUpdateTime(new Date());
-            createOrUpdateParticipantWriteFile(file, hmilyParticipant);
+            put(LogEntry.Kind.PARTICIPANT, FileRecord.of(hmilyParticipant), hmilyParticipant);
             return true;
         } catch (IOException e) {
-            LogUtil.error(LOGGER, "updateRetryByLock occur a exception {}", () -> e);
+            LogUtil.error(LOGGER, "lockHmilyParticipant occur a exception {}", () -> e);
+        } finally {
+            lock.unlock();
         }
         return false;
     }
 
     @Override
     public int createHmilyParticipantUndo(final HmilyParticipantUndo hmilyParticipantUndo) {
-        File file = new File(getParticipantUndoPath());
+        Lock lock = locks.get(hmilyParticipantUndo.getUndoId());
+        lock.lock();
         try {
-            boolean exsist = isExsist(file, hmilyParticipantUndo.getUndoId());
-            if (!exsist) {
+            if (!fileIndex.contains(LogEntry.Kind.UNDO, hmilyParticipantUndo.getUndoId())) {
                 hmilyParticipantUndo.setCreateTime(new Date());
-                hmilyParticipantUndo.setUpdateTime(new Date());
-                createOrUpdateParticipantUndoWriteFile(file, hmilyParticipantUndo);
-            } else {
-                hmilyParticipantUndo.setUpdateTime(new Date());
-
-                createOrUpdateParticipantUndoWriteFile(file, hmilyParticipantUndo);
             }
+            hmilyParticipantUndo.setUpdateTime(new Date());
+            put(LogEntry.Kind.UNDO, FileRecord.of(hmilyParticipantUndo), hmilyParticipantUndo);
             return HmilyRepository.ROWS;
         } catch (IOException e) {
             throw new HmilyException(e);
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
     public List<HmilyParticipantUndo> findHmilyParticipantUndoByParticipantId(final Long participantId) {
-        File file = new File(getParticipantUndoPath());
-        return listByFilter(file, HmilyParticipantUndo.class, (undo, params) -> {
-            Long participantIdParam = (Long) params[0];
-            return participantIdParam.compareTo(undo.getParticipantId()) == 0;
-        }, participantId);
+        return read(() -> fileIndex.findUndosByParticipantId(participantId), this::readUndo);
     }
 
     @Override
     public int removeHmilyParticipantUndo(final Long undoId) {
-        File file = new File(getParticipantUndoPath());
         try {
-            boolean exsist = isExsist(file, undoId);
-            if (!exsist) {
-                return HmilyRepository.FAIL_ROWS;
-            }
-            HmilyParticipantUndo hmilyParticipantUndo = readFile(file, HmilyParticipantUndo.class, undoId);
-
-            if (hmilyParticipantUndo == null) {
-                return HmilyRepository.FAIL_ROWS;
-            }
-            boolean delete = deleteFile(file, undoId);
-            return delete ? HmilyRepository.ROWS : HmilyRepository.FAIL_ROWS;
+            return remove(LogEntry.Kind.UNDO, undoId) ? HmilyRepository.ROWS : HmilyRepository.FAIL_ROWS;
         } catch (IOException e) {
-            LogUtil.error(LOGGER, "updateHmilyTransactionStatus occur a exception {}", () -> e);
+            LogUtil.error(LOGGER, "removeHmilyParticipantUndo occur a exception {}", () -> e);
         }
         return HmilyRepository.FAIL_ROWS;
     }
 
     @Override
     public int removeHmilyParticipantUndoByData(final Date date) {
-        File file = new File(getParticipantUndoPath());
-        return removeByFilter(file, HmilyParticipantUndo.class, (undo, params) -> {
-            Date dateParam = (Date) params[0];
-            return dateParam.before(undo.getUpdateTime()) && undo.getStatus().compareTo(4) == 0;
-        }, date);
+        return removeDeleted(LogEntry.Kind.UNDO, date);
     }
     
     @Override
     public int updateHmilyParticipantUndoStatus(final Long undoId, final Integer status) {
-        File file = new File(getParticipantUndoPath());
         try {
-            boolean exsist = isExsist(file, undoId);
-            if (!exsist) {
-                return HmilyRepository.FAIL_ROWS;
-            }
-            HmilyParticipantUndo hmilyParticipantUndo = readFile(file, HmilyParticipantUndo.class, undoId);
-            hmilyParticipantUndo.setStatus(status);
-            hmilyParticipantUndo.setUpdateTime(new Date());
-            createOrUpdateParticipantUndoWriteFile(file, hmilyParticipantUndo);
-            return HmilyRepository.ROWS;
+            return updateStatus(LogEntry.Kind.UNDO, undoId, status, false) ? HmilyRepository.ROWS : HmilyRepository.FAIL_ROWS;
         } catch (IOException e) {
-            LogUtil.error(LOGGER, "updateHmilyParticipantStatus occur a exception {}", () -> e);
+            LogUtil.error(LOGGER, "updateHmilyParticipantUndoStatus occur a exception {}", () -> e);
         }
         return HmilyRepository.FAIL_ROWS;
     }
     
-    private String getTransationPath() {
-        return filePath + File.separator + HMILY_TRANSATION_FILE_DIRECTORY;
+    @Override
+    public void close() {
+        if (Objects.isNull(fileLog)) {
+            return;
+        }
+        try {
+            if (Objects.nonNull(compactionExecutor)) {
+                compactionExecutor.shutdown();
+                compactionExecutor.awaitTermination(1, TimeUnit.MINUTES);
+                checkpoint();
+            }
+        } catch (IOException e) {
+            LogUtil.error(LOGGER, "checkpoint the file log occur a exception {}", () -> e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            fileLog.close();
+        } catch (IOException e) {
+            LogUtil.error(LOGGER, "close the file log occur a exception {}", () -> e);
+        }
     }
     
-    private String getTransationParticipantPath() {
-        return getTransationPath() + File.separator + appName;
+    private String getLogPath() {
+        return filePath + File.separator + HMILY_TRANSATION_FILE_DIRECTORY + File.separator + appName + File.separator + HMILY_LOG_DIRECTORY;
     }
     
-    private String getParticipantUndoPath() {
-        return getTransationParticipantPath() + File.separator + HMILY_PARTICIPANT_UNDO;
+    private File makeDir() {
+        File logDir = new File(getLogPath());
+        if (!logDir.exists() && !logDir.mkdirs()) {
+            throw new HmilyRuntimeException("cannot create log path, the path to create is:" + logDir.getAbsolutePath());
+        }
+        if (!logDir.isDirectory()) {
+            throw new HmilyRuntimeException("log path is not directory");
+        }
+        return logDir;
     }
     
-    private void makeDir() {
-        if (!initialized) {
-            synchronized (FileRepository.class) {
-                if (!initialized) {
-                    File rootPathFile = new File(filePath);
-                    if (!rootPathFile.exists()) {
-                        boolean result = rootPathFile.mkdir();
-                        if (!result) {
-                            throw new HmilyRuntimeException("cannot create root path, the path to create is:" + filePath);
-                        }
-                        initDir();
-                        initialized = true;
-                    } else if (!rootPathFile.isDirectory()) {
-                        throw new HmilyRuntimeException("rootPath is not directory");
-                    } else {
-                        initDir();
-                    }
-                }
+    /**
+     * import the records of the layout before the log, one file per record id: transactions right under
+     * {@code path/hmily}, participants under {@code path/hmily/appName} and undos in its undo directory.
+     * A record is appended unless the log already has it, and its file is renamed with the imported suffix
+     * once the log is forced, so the import runs once and a crash in the middle only repeats it.
+     */
+    private void importLegacy() throws IOException {
+        File transactionDir = new File(filePath + File.separator + HMILY_TRANSATION_FILE_DIRECTORY);
+        File participantDir = directory.getParentFile();
+        List<File> imported = new ArrayList<>();
+        importLegacy(transactionDir, LogEntry.Kind.TRANSACTION, HmilyTransaction.class,
+            each -> Objects.equals(appName, each.getAppName()) ? FileRecord.of(each) : null, imported);
+        importLegacy(participantDir, LogEntry.Kind.PARTICIPANT, HmilyParticipant.class, FileRecord::of, imported);
+        importLegacy(new File(participantDir, HMILY_PARTICIPANT_UNDO), LogEntry.Kind.UNDO, HmilyParticipantUndo.class, FileRecord::of, imported);
+        if (imported.isEmpty()) {
+            return;
+        }
+        fileLog.force(fileLog.end().getSegment());
+        for (File each : imported) {
+            if (!each.renameTo(new File(each.getParentFile(), each.getName() + HMILY_IMPORTED_SUFFIX))) {
+                LogUtil.warn(LOGGER, "cannot rename the imported file {}", each::getAbsolutePath);
             }
         }
+        LogUtil.info(LOGGER, "imported {} records of the one file per record layout", imported::size);
     }
     
-    private void initDir() {
-        File transationFileDir = new File(getTransationPath());
-        if (!transationFileDir.exists()) {
-            transationFileDir.getParentFile().mkdirs();
-            boolean mkdirs = transationFileDir.mkdirs();
-            if (!mkdirs) {
-                throw new HmilyRuntimeException("cannot create transationFile path, the path to create is:" + transationFileDir.getAbsolutePath());
-            }
+    private <T> void importLegacy(final File dir, final LogEntry.Kind kind, final Class<T> clazz, final Function<T, FileRecord> recordOf, final List<File> imported) throws IOException {
+        File[] files = dir.listFiles(each -> each.isFile() && each.getName().chars().allMatch(Character::isDigit));
+        if (Objects.isNull(files)) {
+            return;
         }
-        File participantFileDir = new File(getTransationParticipantPath());
-        if (!participantFileDir.exists()) {
-            participantFileDir.getParentFile().mkdirs();
-            boolean mkdirs = participantFileDir.mkdirs();
-            if (!mkdirs) {
-                throw new HmilyRuntimeException("cannot create participantFile path, the path to create is:" + participantFileDir.getAbsolutePath());
-            }
+        for (File each : files) {
+            T entity;
+            try {
+                entity = hmilySerializer.deSerialize(Files.readAllBytes(each.toPath()), clazz);
+            } catch (HmilySerializerException e) {
+                LOGGER.warn("skip the file {} that is not a record: {}", each.getAbsolutePath(), e.getMessage());
+                continue;
+            }
+            FileRecord record = recordOf.apply(entity);
+            if (Objects.isNull(record)) {
+                continue;
+            }
+            if (!fileIndex.contains(kind, record.getId())) {
+                put(kind, record, entity);
+            }
+            imported.add(each);
         }
-        File participantUndoFileDir = new File(getParticipantUndoPath());
-        if (!participantUndoFileDir.exists()) {
-            participantUndoFileDir.getParentFile().mkdirs();
-            boolean mkdirs = participantUndoFileDir.mkdirs();
-            if (!mkdirs) {
-                throw new HmilyRuntimeException("cannot create participantUndoFile path, the path to create is:" + participantUndoFileDir.getAbsolutePath());
-            }
+    }
+    
+    private void apply(final LogEntry entry, final LogPosition position) {
+        switch (entry.getType()) {
+            case PUT:
+                FileRecord record = FileRecord.decode(entry.getId(), entry.getPayload());
+                record.setPosition(position);
+                fileIndex.put(entry.getKind(), record);
+                break;
+            case STATUS:
+                fileIndex.applyStatus(entry.getKind(), entry.getId(), entry.getPayload());
+                break;
+            default:
+                fileIndex.remove(entry.getKind(), entry.getId());
+                break;
         }
     }
     
-    private boolean isExsist(final File file, final Long transId) {
-        boolean exsist = Arrays.asList(file.listFiles())
-                .stream().filter(c -> Objects.equals(String.valueOf(transId), c.getName()))
-                .findFirst().isPresent();
-        return exsist;
+    private void dropLost() {
+        // the checkpoint may have seen puts after its start that a crash took from the tail of the log
+        for (LogEntry.Kind kind : LogEntry.Kind.values()) {
+            for (FileRecord each : new ArrayList<>(fileIndex.values(kind))) {
+                if (!fileLog.contains(each.getPosition())) {
+                    LogUtil.warn(LOGGER, "drop the record {} lost from the file log", each::getId);
+                    fileIndex.remove(kind, each.getId());
+                }
+            }
+        }
     }
     
-    private void createOrUpdateWriteFile(final File file, final HmilyTransaction hmilyTransaction) throws IOException {
-        FileOutputStream fos = null;
-        LOCK.writeLock().lock();
+    private void put(final LogEntry.Kind kind, final FileRecord record, final Object entity) throws IOException {
+        ByteBuffer entry = LogEntry.encode(kind, LogEntry.Type.PUT, record.getId(), record.encode(hmilySerializer.serialize(entity)));
+        Lock lock = locks.get(record.getId());
+        lock.lock();
+        checkpointLock.readLock().lock();
         try {
-            File curFile = new File(concatPath(file.getAbsolutePath(), hmilyTransaction.getTransId()));
-            if (!curFile.exists()) {
-                boolean newFile = curFile.createNewFile();
-            }
-            fos = new FileOutputStream(curFile);
-            fos.write(hmilySerializer.serialize(hmilyTransaction));
+            record.setPosition(fileLog.append(entry));
+            fileIndex.put(kind, record);
         } finally {
-            if (fos != null) {
-                fos.close();
-            }
-            LOCK.writeLock().unlock();
+            checkpointLock.readLock().unlock();
+            lock.unlock();
         }
     }
     
-    private void createOrUpdateParticipantWriteFile(final File file, final HmilyParticipant hmilyParticipant) throws IOException {
-        FileOutputStream fos = null;
-        LOCK.writeLock().lock();
+    private boolean updateStatus(final LogEntry.Kind kind, final Long id, final Integer status, final boolean versioned) throws IOException {
+        Lock lock = locks.get(id);
+        lock.lock();
+        checkpointLock.readLock().lock();
         try {
-            File curFile = new File(concatPath(file.getAbsolutePath(), hmilyParticipant.getParticipantId()));
-            if (!curFile.exists()) {
-                boolean newFile = curFile.createNewFile();
+            FileRecord record = fileIndex.get(kind, id);
+            if (Objects.isNull(record)) {
+                return false;
             }
-            fos = new FileOutputStream(curFile);
-            fos.write(hmilySerializer.serialize(hmilyParticipant));
+            byte[] payload = FileRecord.encodeStatus(status, versioned ? record.getVersion() + 1 : record.getVersion(), System.currentTimeMillis());
+            fileLog.append(LogEntry.encode(kind, LogEntry.Type.STATUS, id, payload));
+            fileIndex.applyStatus(kind, id, ByteBuffer.wrap(payload));
+            return true;
         } finally {
-            if (fos != null) {
-                fos.close();
-            }
-            LOCK.writeLock().unlock();
+            checkpointLock.readLock().unlock();
+            lock.unlock();
         }
     }
     
-    private void createOrUpdateParticipantUndoWriteFile(final File file, final HmilyParticipantUndo hmilyParticipantUndo) throws IOException {
-        FileOutputStream fos = null;
-        LOCK.writeLock().lock();
+    private boolean remove(final LogEntry.Kind kind, final Long id) throws IOException {
+        Lock lock = locks.get(id);
+        lock.lock();
+        checkpointLock.readLock().lock();
         try {
-            File curFile = new File(concatPath(file.getAbsolutePath(), hmilyParticipantUndo.getUndoId()));
-            if (!curFile.exists()) {
-                boolean newFile = curFile.createNewFile();
+            if (!fileIndex.contains(kind, id)) {
+                return false;
             }
-            fos = new FileOutputStream(curFile);
-            fos.write(hmilySerializer.serialize(hmilyParticipantUndo));
+            fileLog.append(LogEntry.encode(kind, LogEntry.Type.REMOVE, id, EMPTY_PAYLOAD));
+            fileIndex.remove(kind, id);
+            return true;
         } finally {
-            if (fos != null) {
-                fos.close();
-            }
-            LOCK.writeLock().unlock();
+            checkpointLock.readLock().unlock();
+            lock.unlock();
         }
     }
     
-    private boolean deleteFile(final File file, final Long transId) throws IOException {
-        File curFile = new File(concatPath(file.getAbsolutePath(), transId));
-        if (!curFile.exists()) {
-            return true;
+    private HmilyTransaction readTransaction(final FileRecord record) {
+        HmilyTransaction hmilyTransaction = readRecord(LogEntry.Kind.TRANSACTION, record, HmilyTransaction.class);
+        if (Objects.nonNull(hmilyTransaction)) {
+            hmilyTransaction.setStatus(record.getStatus());
+            hmilyTransaction.setVersion(record.getVersion());
+            hmilyTransaction.setUpdateTime(record.getUpdateDate());
         }
-        return curFile.delete();
+        return hmilyTransaction;
     }
     
-    private String concatPath(final String filePath, final Long id) {
-        return filePath + File.separator + id;
+    private HmilyParticipant readParticipant(final FileRecord record) {
+        HmilyParticipant hmilyParticipant = readRecord(LogEntry.Kind.PARTICIPANT, record, HmilyParticipant.class);
+        if (Objects.nonNull(hmilyParticipant)) {
+            hmilyParticipant.setStatus(record.getStatus());
+            hmilyParticipant.setVersion(record.getVersion());
+            hmilyParticipant.setUpdateTime(record.getUpdateDate());
+        }
+        return hmilyParticipant;
     }
     
-    @SneakyThrows
-    private <T> T readFile(final File file, final Class<T> clazz, final Long transId) {
-        LOCK.readLock().lock();
-        FileInputStream fis = null;
-        try {
-            File curFile = new File(concatPath(file.getAbsolutePath(), transId));
-            if (!curFile.exists()) {
-                return null;
-            }
-            fis = new FileInputStream(curFile);
-            byte[] bytes = new byte[HMILY_READ_BYTE_SIZE];
-            fis.read(bytes);
-            return hmilySerializer.deSerialize(bytes, clazz);
-        } catch (IOException | HmilySerializerException e) {
-            LogUtil.error(LOGGER, " read file exception ,because is {}", () -> e);
-            return null;
-        } finally {
-            if (fis != null) {
-                fis.close();
+    private HmilyParticipantUndo readUndo(final FileRecord record) {
+        HmilyParticipantUndo hmilyParticipantUndo = readRecord(LogEntry.Kind.UNDO, record, HmilyParticipantUndo.class);
+        if (Objects.nonNull(hmilyParticipantUndo)) {
+            hmilyParticipantUndo.setStatus(record.getStatus());
+            hmilyParticipantUndo.setUpdateTime(record.getUpdateDate());
+        }
+        return hmilyParticipantUndo;
+    }
+    
+    private <T> T readRecord(final LogEntry.Kind kind, final FileRecord record, final Class<T> clazz) {
+        LogPosition position = record.getPosition();
+        while (true) {
+            try {
+                return hmilySerializer.deSerialize(readData(position), clazz);
+            } catch (IOException | HmilySerializerException e) {
+                // compaction may have moved the record and deleted the segment it was read from
+                FileRecord current = fileIndex.get(kind, record.getId());
+                if (Objects.isNull(current) || position.equals(current.getPosition())) {
+                    LogUtil.error(LOGGER, " read file exception ,because is {}", () -> e);
+                    return null;
+                }
+                position = current.getPosition();
             }
-            LOCK.readLock().unlock();
         }
     }
     
-    private <T> List<T> listByFilter(final File file, final Class<T> deserializeClass, final Filter<T> filter, final Object... params) {
-        try {
-            File[] files = file.listFiles();
-            if (Objects.isNull(files) || files.length <= 0) {
-                return Collections.emptyList();
-            }
-            List<T> result = new ArrayList<>();
-            for (File child : files) {
-                if (child.isFile()) {
-                    T t = readFile(file, deserializeClass, Long.valueOf(child.getName()));
-                    if (t == null) {
-                        continue;
-                    }
-                    if (filter.filter(t, params)) {
-                        result.add(t);
-                    }
-                }
-            }
-            return result;
-        } catch (Exception e) {
-            LogUtil.error(LOGGER, "listByFilter occur a exception {}", () -> e);
+    private ByteBuffer readData(final LogPosition position) throws IOException {
+        ByteBuffer payload = fileLog.read(position).getPayload();
+        FileRecord.skip(payload);
+        return payload;
+    }
+    
+    private static boolean isRecoverable(final FileRecord record) {
+        return record.getStatus() != HmilyActionEnum.DELETE.getCode() && record.getStatus() != HmilyActionEnum.DEATH.getCode();
+    }
+    
+    /**
+     * the (update time, id) a scan starts after, the list methods return the records updated after the date,
+     * so the scan starts after the later of the date and the cursor.
+     */
+    private static long[] seek(final Date date, final HmilyScanCursor cursor) {
+        if (Objects.isNull(cursor) || Objects.isNull(cursor.getUpdateTime()) || cursor.getUpdateTime().getTime() <= date.getTime()) {
+            return new long[]{date.getTime(), Long.MAX_VALUE};
         }
-        return Collections.emptyList();
+        return new long[]{cursor.getUpdateTime().getTime(), Objects.isNull(cursor.getId()) ? Long.MIN_VALUE : cursor.getId()};
     }
-
-    private <T> boolean existByFilter(final Filter<HmilyParticipant> filter, final Object... params) {
-        File file = new File(getTransationParticipantPath());
-        File[] files = file.listFiles();
-        if (Objects.isNull(files) || files.length <= 0) {
-            return false;
-        }
-        for (File child : files) {
-            if (child.isFile()) {
-                HmilyParticipant hmilyParticipant = readFile(file, HmilyParticipant.class, Long.valueOf(child.getName()));
-                if (hmilyParticipant == null) {
-                    continue;
-                }
-                if (filter.filter(hmilyParticipant, params)) {
-                    return true;
-                }
+    
+    private <T> List<T> read(final Supplier<List<FileRecord>> lookup, final Function<FileRecord, T> reader) {
+        List<FileRecord> records = lookup.get();
+        if (records.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<T> result = new ArrayList<>(records.size());
+        for (FileRecord each : records) {
+            T t = reader.apply(each);
+            if (Objects.nonNull(t)) {
+                result.add(t);
             }
         }
-        return false;
+        return result;
     }
-
-    private <T> int removeByFilter(final File file, final Class<T> deserializeClass, final Filter<T> filter, final Object... params) {
-        File[] files = file.listFiles();
-        if (Objects.isNull(files) || files.length <= 0) {
-            return HmilyRepository.FAIL_ROWS;
-        }
+    
+    private int removeDeleted(final LogEntry.Kind kind, final Date date) {
+        List<FileRecord> records = fileIndex.listAfter(kind, null, date.getTime(), record -> record.getStatus() == HmilyActionEnum.DELETE.getCode(), Integer.MAX_VALUE);
         int count = 0;
-        for (File childFiles : files) {
-            if (childFiles.isFile()) {
-                T t = readFile(file, deserializeClass, Long.parseLong(childFiles.getName()));
-                if (t == null) {
-                    continue;
-                }
-                if (filter.filter(t, params)) {
-                    childFiles.delete();
+        for (FileRecord each : records) {
+            try {
+                if (remove(kind, each.getId())) {
                     count++;
                 }
+            } catch (IOException e) {
+                LogUtil.error(LOGGER, "removeDeleted occur a exception {}", () -> e);
+                break;
             }
         }
         return count;
     }
     
-    /**
-     * The interface Filter.
-     *
-     * @param <T> the type parameter
-     */
-    interface Filter<T> {
-        
-        /**
-         * Filter boolean.
-         *
-         * @param t      the t
-         * @param params the params
-         * @return the boolean
-         */
-        boolean filter(T t, Object... params);
+    private LogPosition checkpoint() throws IOException {
+        LogPosition start;
+        checkpointLock.writeLock().lock();
+        try {
+            start = fileLog.end();
+        } finally {
+            checkpointLock.writeLock().unlock();
+        }
+        fileLog.force(start.getSegment());
+        FileCheckpoint.write(directory, start, fileIndex);
+        return start;
+    }
+    
+    private void compact() throws IOException {
+        LogPosition start = checkpoint();
+        List<LogSegment> garbage = new ArrayList<>();
+        for (LogSegment each : fileLog.sealedBefore(start.getSegment())) {
+            if (fileIndex.liveBytes(each.getSequence()) < each.size() * compactionThreshold) {
+                List<LogPosition> live = new ArrayList<>();
+                fileLog.scan(each, (entry, position) -> {
+                    FileRecord record = fileIndex.get(entry.getKind(), entry.getId());
+                    if (entry.getType() == LogEntry.Type.PUT && Objects.nonNull(record) && position.equals(record.getPosition())) {
+                        live.add(position);
+                    }
+                });
+                for (LogPosition position : live) {
+                    relocate(fileLog.read(position), position);
+                }
+                garbage.add(each);
+            }
+        }
+        if (garbage.isEmpty()) {
+            return;
+        }
+        // the checkpoint just taken still points into the segments, so replace it before deleting them
+        checkpoint();
+        for (LogSegment each : garbage) {
+            fileLog.delete(each);
+            fileIndex.dropSegment(each.getSequence());
+            LogUtil.info(LOGGER, "compacted the file log segment {}", each::getFile);
+        }
+    }
+    
+    private void relocate(final LogEntry entry, final LogPosition position) throws IOException {
+        Lock lock = locks.get(entry.getId());
+        lock.lock();
+        checkpointLock.readLock().lock();
+        try {
+            FileRecord record = fileIndex.get(entry.getKind(), entry.getId());
+            if (Objects.isNull(record) || !position.equals(record.getPosition())) {
+                return;
+            }
+            ByteBuffer data = readData(position);
+            byte[] bytes = new byte[data.remaining()];
+            data.get(bytes);
+            FileRecord moved = record.copy();
+            moved.setPosition(fileLog.append(LogEntry.encode(entry.getKind(), LogEntry.Type.PUT, moved.getId(), moved.encode(bytes))));
+            fileIndex.put(entry.getKind(), moved);
+        } finally {
+            checkpointLock.readLock().unlock();
+            lock.unlock();
+        }
     }
 }
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.file;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * One entry of the {@link FileLog}.
+ *
+ * <p>An entry is laid out as {@code length(int) crc32(int) kind(byte) type(byte) id(long) payload},
+ * where length counts the bytes after the checksum and the checksum covers the same bytes.</p>
+ *
+ * @author xiaoyu
+ */
+@Getter
+@AllArgsConstructor
+final class LogEntry {
+    
+    static final int HEADER_SIZE = 8;
+    
+    static final int BODY_HEADER_SIZE = 10;
+    
+    private final Kind kind;
+    
+    private final Type type;
+    
+    private final long id;
+    
+    private final ByteBuffer payload;
+    
+    /**
+     * Encode an entry.
+     *
+     * @param kind    the record kind
+     * @param type    the entry type
+     * @param id      the record id
+     * @param payload the payload, may be empty
+     * @return the buffer, flipped for writing
+     */
+    static ByteBuffer encode(final Kind kind, final Type type, final long id, final byte[] payload) {
+        int length = BODY_HEADER_SIZE + payload.length;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + length);
+        buffer.position(HEADER_SIZE);
+        buffer.put(kind.code).put(type.code).putLong(id).put(payload);
+        CRC32 crc32 = new CRC32();
+        crc32.update(buffer.array(), HEADER_SIZE, length);
+        buffer.putInt(0, length).putInt(4, (int) crc32.getValue());
+        buffer.flip();
+        return buffer;
+    }
+    
+    /**
+     * Decode the body of an entry, that is everything after the checksum.
+     *
+     * @param body the body
+     * @return the entry, its payload shares the content of body
+     */
+    static LogEntry decode(final ByteBuffer body) {
+        Kind kind = Kind.valueOf(body.get());
+        Type type = Type.valueOf(body.get());
+        long id = body.getLong();
+        return new LogEntry(kind, type, id, body.slice());
+    }
+    
+    /**
+     * Check the body against the checksum stored in the header.
+     *
+     * @param checksum the stored checksum
+     * @param body     the body
+     * @return true when they match
+     */
+    static boolean verify(final int checksum, final ByteBuffer body) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(body.duplicate());
+        return (int) crc32.getValue() == checksum;
+    }
+    
+    /**
+     * The kind of record an entry belongs to.
+     */
+    @Getter
+    @AllArgsConstructor
+    enum Kind {
+        
+        TRANSACTION((byte) 1),
+        
+        PARTICIPANT((byte) 2),
+        
+        UNDO((byte) 3);
+        
+        private final byte code;
+        
+        static Kind valueOf(final byte code) {
+            for (Kind each : values()) {
+                if (each.code == code) {
+                    return each;
+                }
+            }
+            throw new IllegalArgumentException("unknown record kind " + code);
+        }
+    }
+    
+    /**
+     * What an entry does to its record.
+     */
+    @AllArgsConstructor
+    enum Type {
+        
+        /**
+         * The full record.
+         */
+        PUT((byte) 1),
+        
+        /**
+         * A status change, applied on top of the last put.
+         */
+        STATUS((byte) 2),
+        
+        /**
+         * A tombstone.
+         */
+        REMOVE((byte) 3);
+        
+        private final byte code;
+        
+        static Type valueOf(final byte code) {
+            for (Type each : values()) {
+                if (each.code == code) {
+                    return each;
+                }
+            }
+            throw new IllegalArgumentException("unknown entry type " + code);
+        }
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.file;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One size bounded file of the {@link FileLog}, entries are only ever appended to it.
+ *
+ * <p>Reads are served from a read only mapping of the file. The mapping of the active segment is only
+ * replaced once the segment has grown to twice its length, the entries appended in between are read
+ * with positional reads, so a segment is mapped a logarithmic number of times. Reads copy the entry out
+ * of the mapping while holding a reference to it, which lets a replaced, truncated or closed mapping be
+ * unmapped right away once its last reader is done instead of when the collector gets to it.</p>
+ *
+ * @author xiaoyu
+ */
+final class LogSegment implements Closeable {
+    
+    static final String SUFFIX = ".log";
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(LogSegment.class);
+    
+    private static final Consumer<MappedByteBuffer> UNMAPPER = unmapper();
+    
+    @Getter
+    private final long sequence;
+    
+    @Getter
+    private final File file;
+    
+    private final FileChannel channel;
+    
+    private volatile long size;
+    
+    private volatile Mapping mapping;
+    
+    private LogSegment(final long sequence, final File file) throws IOException {
+        this.sequence = sequence;
+        this.file = file;
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.size = channel.size();
+    }
+    
+    /**
+     * Open or create the segment with the given sequence.
+     *
+     * @param directory the log directory
+     * @param sequence  the segment sequence
+     * @return the segment
+     * @throws IOException the io exception
+     */
+    static LogSegment open(final File directory, final long sequence) throws IOException {
+        return new LogSegment(sequence, new File(directory, String.format("%020d%s", sequence, SUFFIX)));
+    }
+    
+    /**
+     * Parse the sequence out of a segment file name.
+     *
+     * @param fileName the file name
+     * @return the sequence, or -1 when it is not a segment file
+     */
+    static long parseSequence(final String fileName) {
+        if (!fileName.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(fileName.substring(0, fileName.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+    
+    /**
+     * Append the remaining bytes of the buffer, the caller serializes appends.
+     *
+     * @param buffer the encoded entry
+     * @return the offset the entry was written at
+     * @throws IOException the io exception
+     */
+    long append(final ByteBuffer buffer) throws IOException {
+        long offset = size;
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        size = position;
+        return offset;
+    }
+    
+    /**
+     * Copy of length bytes starting at offset, read from the mapped file.
+     *
+     * @param offset the offset
+     * @param length the length
+     * @return the bytes
+     * @throws IOException the io exception
+     */
+    ByteBuffer read(final long offset, final int length) throws IOException {
+        long end = offset + length;
+        while (true) {
+            Mapping current = mapping;
+            if (Objects.isNull(current) || end > current.buffer.capacity()) {
+                current = map(end);
+                if (Objects.isNull(current)) {
+                    return readChannel(offset, length);
+                }
+            }
+            if (current.retain()) {
+                try {
+                    ByteBuffer view = current.buffer.duplicate();
+                    view.position((int) offset);
+                    view.limit((int) end);
+                    ByteBuffer result = ByteBuffer.allocate(length);
+                    result.put(view);
+                    result.flip();
+                    return result;
+                } finally {
+                    current.release();
+                }
+            }
+            if (!channel.isOpen()) {
+                throw new IOException("segment " + file + " is closed");
+            }
+        }
+    }
+    
+    /**
+     * Force the written content to the storage device.
+     *
+     * @throws IOException the io exception
+     */
+    void force() throws IOException {
+        channel.force(false);
+    }
+    
+    /**
+     * Cut off a torn tail left behind by a crash.
+     *
+     * @param length the valid length
+     * @throws IOException the io exception
+     */
+    void truncate(final long length) throws IOException {
+        retire();
+        channel.truncate(length);
+        size = length;
+    }
+    
+    /**
+     * Size of the segment in bytes.
+     *
+     * @return the size
+     */
+    long size() {
+        return size;
+    }
+    
+    /**
+     * the mapping covering end, or null when the tail is read from the channel until the segment doubles.
+     */
+    private synchronized Mapping map(final long end) throws IOException {
+        Mapping current = mapping;
+        if (Objects.nonNull(current) && end <= current.buffer.capacity()) {
+            return current;
+        }
+        long length = size;
+        if (end > length) {
+            throw new IOException("unexpected end of segment " + file + " at " + length);
+        }
+        if (Objects.nonNull(current) && length < 2L * current.buffer.capacity()) {
+            return null;
+        }
+        Mapping created = new Mapping(channel.map(FileChannel.MapMode.READ_ONLY, 0, length));
+        mapping = created;
+        if (Objects.nonNull(current)) {
+            current.release();
+        }
+        return created;
+    }
+    
+    private ByteBuffer readChannel(final long offset, final int length) throws IOException {
+        ByteBuffer result = ByteBuffer.allocate(length);
+        long position = offset;
+        while (result.hasRemaining()) {
+            int read = channel.read(result, position);
+            if (read < 0) {
+                throw new IOException("unexpected end of segment " + file + " at " + position);
+            }
+            position += read;
+        }
+        result.flip();
+        return result;
+    }
+    
+    private synchronized void retire() {
+        Mapping current = mapping;
+        mapping = null;
+        if (Objects.nonNull(current)) {
+            current.release();
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        retire();
+        channel.close();
+    }
+    
+    private static Consumer<MappedByteBuffer> unmapper() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            return buffer -> invoke(invokeCleaner, unsafe, buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("no Unsafe.invokeCleaner, unmap through the cleaner of the buffer", e);
+        }
+        try {
+            Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+            Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            return buffer -> invoke(clean, invoke(cleaner, buffer, null), null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.warn("cannot unmap the file log segments explicitly, they are unmapped by the collector", e);
+            return buffer -> { };
+        }
+    }
+    
+    private static Object invoke(final Method method, final Object target, final Object argument) {
+        if (Objects.isNull(target)) {
+            return null;
+        }
+        try {
+            return Objects.isNull(argument) ? method.invoke(target) : method.invoke(target, argument);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.warn("unmap a file log segment failed, it is unmapped by the collector", e);
+            return null;
+        }
+    }
+    
+    /**
+     * A mapping with a count of its readers plus one for the segment, it is unmapped when the count drops to zero.
+     */
+    private static final class Mapping {
+        
+        private final MappedByteBuffer buffer;
+        
+        private final AtomicInteger references = new AtomicInteger(1);
+        
+        Mapping(final MappedByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+        
+        boolean retain() {
+            int count;
+            do {
+                count = references.get();
+                if (count == 0) {
+                    return false;
+                }
+            } while (!references.compareAndSet(count, count + 1));
+            return true;
+        }
+        
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                UNMAPPER.accept(buffer);
+            }
+        }
+    }
+}
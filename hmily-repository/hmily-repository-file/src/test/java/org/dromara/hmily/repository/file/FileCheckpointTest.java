@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.stream.Stream;
+import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The generations of the file checkpoint.
+ *
+ * @author xiaoyu
+ */
+public final class FileCheckpointTest {
+    
+    private File directory;
+    
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("hmily-checkpoint").toFile();
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+    
+    @Test
+    public void assertNoCheckpointReplaysTheWholeLog() throws IOException {
+        FileIndex fileIndex = new FileIndex();
+        assertNull(FileCheckpoint.load(directory, fileIndex));
+        assertTrue(fileIndex.values(LogEntry.Kind.TRANSACTION).isEmpty());
+    }
+    
+    @Test
+    public void assertLatestCheckpointIsLoaded() throws IOException {
+        FileCheckpoint.write(directory, new LogPosition(1, 100, 0), index(1L));
+        FileCheckpoint.write(directory, new LogPosition(2, 200, 0), index(2L));
+        FileIndex fileIndex = new FileIndex();
+        assertEquals(new LogPosition(2, 200, 0), FileCheckpoint.load(directory, fileIndex));
+        assertNotNull(fileIndex.get(LogEntry.Kind.TRANSACTION, 2L));
+        assertNull(fileIndex.get(LogEntry.Kind.TRANSACTION, 1L));
+    }
+    
+    @Test
+    public void assertPreviousCheckpointIsLoadedWhenTheLatestIsCorrupt() throws IOException {
+        FileCheckpoint.write(directory, new LogPosition(1, 100, 0), index(1L));
+        FileCheckpoint.write(directory, new LogPosition(2, 200, 0), index(2L));
+        corrupt(new File(directory, "checkpoint"));
+        FileIndex fileIndex = new FileIndex();
+        assertEquals(new LogPosition(1, 100, 0), FileCheckpoint.load(directory, fileIndex));
+        assertNotNull(fileIndex.get(LogEntry.Kind.TRANSACTION, 1L));
+        assertNull(fileIndex.get(LogEntry.Kind.TRANSACTION, 2L));
+    }
+    
+    @Test
+    public void assertPreviousCheckpointIsLoadedWhenTheLatestIsMissing() throws IOException {
+        FileCheckpoint.write(directory, new LogPosition(1, 100, 0), index(1L));
+        FileCheckpoint.write(directory, new LogPosition(2, 200, 0), index(2L));
+        assertTrue(new File(directory, "checkpoint").delete());
+        assertEquals(new LogPosition(1, 100, 0), FileCheckpoint.load(directory, new FileIndex()));
+    }
+    
+    @Test(expected = IOException.class)
+    public void assertLoadFailsWhenNoCheckpointIsUsable() throws IOException {
+        FileCheckpoint.write(directory, new LogPosition(1, 100, 0), index(1L));
+        FileCheckpoint.write(directory, new LogPosition(2, 200, 0), index(2L));
+        corrupt(new File(directory, "checkpoint"));
+        corrupt(new File(directory, "checkpoint.prev"));
+        FileCheckpoint.load(directory, new FileIndex());
+    }
+    
+    private static FileIndex index(final Long transId) {
+        HmilyTransaction hmilyTransaction = new HmilyTransaction();
+        hmilyTransaction.setTransId(transId);
+        hmilyTransaction.setAppName("test-hmily");
+        hmilyTransaction.setStatus(1);
+        hmilyTransaction.setVersion(1);
+        hmilyTransaction.setUpdateTime(new Date());
+        FileRecord record = FileRecord.of(hmilyTransaction);
+        record.setPosition(new LogPosition(1, 0, 64));
+        FileIndex fileIndex = new FileIndex();
+        fileIndex.put(LogEntry.Kind.TRANSACTION, record);
+        return fileIndex;
+    }
+    
+    private static void corrupt(final File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - 1);
+            int last = raf.read();
+            raf.seek(raf.length() - 1);
+            raf.write(last ^ 0xFF);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Throughput and average ack latency of the {@link FileLog} per {@link FileDurability}, not run as a test.
+ *
+ * <p>Run it from the test classpath with the arguments {@code durability writers seconds entrySize [directory]},
+ * e.g. {@code group-commit 64 3 512}. The directory defaults to a temporary one, which has to be on the disk
+ * being measured. Every run is replayed afterwards and fails if an acknowledged entry is missing.</p>
+ *
+ * @author xiaoyu
+ */
+public final class FileLogBenchmark {
+    
+    private static final long SEGMENT_SIZE = 64 * 1024 * 1024;
+    
+    private FileLogBenchmark() {
+    }
+    
+    /**
+     * Run the benchmark.
+     *
+     * @param args durability, writers, seconds, entry size and optionally the directory
+     * @throws Exception the exception
+     */
+    public static void main(final String[] args) throws Exception {
+        FileDurability durability = FileDurability.of(args.length > 0 ? args[0] : "group-commit");
+        int writers = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int entrySize = args.length > 3 ? Integer.parseInt(args[3]) : 512;
+        File directory = args.length > 4 ? new File(args[4]) : Files.createTempDirectory("hmily-file-benchmark").toFile();
+        try {
+            run(directory, durability, writers, seconds, entrySize);
+        } finally {
+            try (Stream<Path> files = Files.walk(directory.toPath())) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+    
+    private static void run(final File directory, final FileDurability durability, final int writers, final int seconds, final int entrySize) throws Exception {
+        byte[] payload = new byte[entrySize];
+        AtomicLong ids = new AtomicLong();
+        LongAdder acks = new LongAdder();
+        LongAdder ackNanos = new LongAdder();
+        List<Throwable> failures = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(writers);
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        try (FileLog fileLog = new FileLog(directory, SEGMENT_SIZE, durability)) {
+            for (int i = 0; i < writers; i++) {
+                Thread writer = new Thread(() -> {
+                    try {
+                        while (System.nanoTime() < deadline) {
+                            long start = System.nanoTime();
+                            fileLog.append(LogEntry.encode(LogEntry.Kind.TRANSACTION, LogEntry.Type.PUT, ids.incrementAndGet(), payload));
+                            ackNanos.add(System.nanoTime() - start);
+                            acks.increment();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }, "hmily-file-benchmark-" + i);
+                writer.start();
+            }
+            done.await();
+        }
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("append failed", failures.get(0));
+        }
+        LongAdder replayed = new LongAdder();
+        try (FileLog fileLog = new FileLog(directory, SEGMENT_SIZE, FileDurability.NONE)) {
+            fileLog.replay(null, (entry, position) -> replayed.increment());
+        }
+        if (replayed.sum() < acks.sum()) {
+            throw new IllegalStateException("replayed " + replayed.sum() + " of " + acks.sum() + " acknowledged entries");
+        }
+        System.out.printf("%-13s %4d writers %10d ops/s %8d us avg ack%n", durability.getValue(), writers,
+                acks.sum() / seconds, acks.sum() == 0 ? 0 : ackNanos.sum() / acks.sum() / 1000);
+    }
+}
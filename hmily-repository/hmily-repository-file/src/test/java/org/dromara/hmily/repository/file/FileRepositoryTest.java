@@ -17,10 +17,22 @@
 
 package org.dromara.hmily.repository.file;
 
+import java.io.File;
 import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 import org.dromara.hmily.annotation.TransTypeEnum;
 import org.dromara.hmily.config.api.Config;
@@ -29,6 +41,7 @@ import org.dromara.hmily.config.api.entity.HmilyConfig;
 import org.dromara.hmily.config.api.entity.HmilyFileConfig;
 import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
 import org.dromara.hmily.repository.spi.entity.HmilyParticipantUndo;
+import org.dromara.hmily.repository.spi.entity.HmilyScanCursor;
 import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
 import org.dromara.hmily.serializer.jdk.JDKSerializer;
 import org.dromara.hmily.serializer.kryo.KryoSerializer;
@@ -38,6 +51,7 @@ import org.junit.Test;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -68,8 +82,8 @@ public class FileRepositoryTest {
         ConfigEnv.getInstance().putBean(hmilyFileConfig);
         hmilyConfig.setAppName(appName);
         
-        fileRepository.init(appName);
         fileRepository.setSerializer(new KryoSerializer());
+        fileRepository.init(appName);
 //        fileRepository.setSerializer(new JDKSerializer());
 //        fileRepository.setSerializer(new JDKSerializer());
 //        fileRepository.setSerializer(new JDKSerializer());
@@ -90,6 +104,152 @@ public class FileRepositoryTest {
         testParticipantUndo(transactionId, participantId, undoId);
     }
     
+    /**
+     * Test concurrent write.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testConcurrentWrite() throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int perThread = 500;
+        Long transactionId = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                long base = transactionId + (long) i * perThread + 1;
+                futures.add(executor.submit(() -> {
+                    for (long id = base; id < base + perThread; id++) {
+                        fileRepository.createHmilyParticipant(buildHmilyParticipant(transactionId, id));
+                        assertEquals(1L, fileRepository.updateHmilyParticipantStatus(id, 5));
+                    }
+                }));
+            }
+            for (Future<?> each : futures) {
+                each.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        List<HmilyParticipant> participants = fileRepository.listHmilyParticipantByTransId(transactionId);
+        assertEquals((long) threads * perThread, participants.size());
+        assertTrue(participants.stream().allMatch(each -> each.getStatus() == 5 && each.getVersion() == 2));
+    }
+    
+    /**
+     * Test scan pages in (update time, id) order.
+     */
+    @Test
+    public void testScanHmilyTransaction() {
+        long base = System.nanoTime();
+        Set<Long> created = new HashSet<>();
+        for (long id = base; id < base + 5; id++) {
+            assertEquals(1L, fileRepository.createHmilyTransaction(buildHmilyTransaction(id)));
+            created.add(id);
+        }
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.HOUR_OF_DAY, -1);
+        Set<Long> scanned = new HashSet<>();
+        HmilyScanCursor cursor = null;
+        List<HmilyTransaction> page = fileRepository.scanHmilyTransaction(calendar.getTime(), cursor, 2);
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= 2);
+            for (HmilyTransaction each : page) {
+                assertTrue(cursor == null || cursor.isBefore(each.getUpdateTime(), each.getTransId()));
+                assertTrue(scanned.add(each.getTransId()));
+                cursor = new HmilyScanCursor(each.getUpdateTime(), each.getTransId());
+            }
+            page = fileRepository.scanHmilyTransaction(calendar.getTime(), cursor, 2);
+        }
+        assertTrue(scanned.containsAll(created));
+        created.forEach(fileRepository::removeHmilyTransaction);
+    }
+    
+    /**
+     * Test a replaced record stays in the indexes it shares with its previous version.
+     */
+    @Test
+    public void testReplaceKeepsIndexes() {
+        Long transactionId = System.nanoTime();
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.HOUR_OF_DAY, -1);
+        HmilyParticipant hmilyParticipant = buildHmilyParticipant(transactionId, transactionId);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(1L, fileRepository.createHmilyParticipant(hmilyParticipant));
+            assertEquals(1L, fileRepository.updateHmilyParticipantStatus(transactionId, 5));
+            assertEquals(1, fileRepository.listHmilyParticipantByTransId(transactionId).size());
+            assertTrue(fileRepository.findHmilyParticipant(hmilyParticipant.getParticipantRefId()).stream().anyMatch(each -> transactionId.equals(each.getParticipantId())));
+        }
+        HmilyScanCursor cursor = null;
+        boolean scanned = false;
+        List<HmilyParticipant> page = fileRepository.scanHmilyParticipant(calendar.getTime(), TransTypeEnum.TCC.name(), cursor, 100);
+        while (!page.isEmpty() && !scanned) {
+            for (HmilyParticipant each : page) {
+                scanned |= transactionId.equals(each.getParticipantId());
+                cursor = new HmilyScanCursor(each.getUpdateTime(), each.getParticipantId());
+            }
+            page = fileRepository.scanHmilyParticipant(calendar.getTime(), TransTypeEnum.TCC.name(), cursor, 100);
+        }
+        assertTrue(scanned);
+        assertEquals(1L, fileRepository.removeHmilyParticipant(transactionId));
+    }
+    
+    /**
+     * Test the records of the one file per record layout are imported once.
+     *
+     * @throws Exception the exception
+     */
+    @Test
+    public void testImportLegacyLayout() throws Exception {
+        File path = Files.createTempDirectory("hmily-file-legacy").toFile();
+        KryoSerializer serializer = new KryoSerializer();
+        File transactionDir = new File(path, "hmily");
+        File participantDir = new File(transactionDir, appName);
+        File undoDir = new File(participantDir, "undo");
+        assertTrue(undoDir.mkdirs());
+        HmilyTransaction other = buildHmilyTransaction(2L);
+        other.setAppName("other-hmily");
+        Files.write(new File(transactionDir, "1").toPath(), serializer.serialize(buildHmilyTransaction(1L)));
+        Files.write(new File(transactionDir, "2").toPath(), serializer.serialize(other));
+        Files.write(new File(participantDir, "10").toPath(), serializer.serialize(buildHmilyParticipant(1L, 10L)));
+        Files.write(new File(undoDir, "100").toPath(), serializer.serialize(buildHmilyParticipantUndo(1L, 10L, 100L)));
+        HmilyFileConfig legacyConfig = new HmilyFileConfig();
+        legacyConfig.setPath(path.getAbsolutePath());
+        try {
+            FileRepository imported = new FileRepository();
+            imported.setSerializer(serializer);
+            initWith(imported, legacyConfig);
+            assertNotNull(imported.findByTransId(1L));
+            assertNull(imported.findByTransId(2L));
+            assertEquals(1, imported.listHmilyParticipantByTransId(1L).size());
+            assertEquals(1, imported.findHmilyParticipantUndoByParticipantId(10L).size());
+            assertTrue(new File(transactionDir, "1.imported").exists());
+            assertTrue(new File(transactionDir, "2").exists());
+            assertTrue(new File(participantDir, "10.imported").exists());
+            assertTrue(new File(undoDir, "100.imported").exists());
+            assertEquals(1L, imported.removeHmilyTransaction(1L));
+            imported.close();
+            FileRepository reopened = new FileRepository();
+            reopened.setSerializer(serializer);
+            initWith(reopened, legacyConfig);
+            assertNull(reopened.findByTransId(1L));
+            assertEquals(1, reopened.listHmilyParticipantByTransId(1L).size());
+            reopened.close();
+        } finally {
+            try (Stream<Path> files = Files.walk(path.toPath())) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+    
+    private void initWith(final FileRepository repository, final HmilyFileConfig config) {
+        ConfigEnv.getInstance().withConfigs(Collections.singletonList(config), () -> {
+            repository.init(appName);
+            return repository;
+        });
+    }
+    
     private void testTransaction(Long transactionId) {
         HmilyTransaction hmilyTransaction = buildHmilyTransaction(transactionId);
         int result = fileRepository.createHmilyTransaction(hmilyTransaction);
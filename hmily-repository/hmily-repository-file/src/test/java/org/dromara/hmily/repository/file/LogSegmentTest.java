@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The reads of a log segment while its mapping grows, is truncated and closed.
+ *
+ * @author xiaoyu
+ */
+public final class LogSegmentTest {
+    
+    private File directory;
+    
+    private LogSegment segment;
+    
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("hmily-segment").toFile();
+        segment = LogSegment.open(directory, 1);
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        segment.close();
+        try (Stream<Path> files = Files.walk(directory.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+    
+    @Test
+    public void assertReadAfterEachAppend() throws IOException {
+        for (long i = 0; i < 10000; i++) {
+            assertEquals(i, segment.read(append(i), Long.BYTES).getLong());
+        }
+        for (long i = 0; i < 10000; i++) {
+            assertEquals(i, segment.read(i * Long.BYTES, Long.BYTES).getLong());
+        }
+    }
+    
+    @Test
+    public void assertReadAfterTruncate() throws IOException {
+        for (long i = 0; i < 100; i++) {
+            append(i);
+        }
+        assertEquals(99L, segment.read(99 * Long.BYTES, Long.BYTES).getLong());
+        segment.truncate(10 * Long.BYTES);
+        assertEquals(9L, segment.read(9 * Long.BYTES, Long.BYTES).getLong());
+        assertEquals(10L, segment.read(append(10L), Long.BYTES).getLong());
+    }
+    
+    @Test(expected = IOException.class)
+    public void assertReadAfterCloseFails() throws IOException {
+        append(1L);
+        segment.read(0, Long.BYTES);
+        segment.close();
+        segment.read(0, Long.BYTES);
+    }
+    
+    @Test(expected = IOException.class)
+    public void assertReadPastTheEndFails() throws IOException {
+        append(1L);
+        segment.read(Long.BYTES, Long.BYTES);
+    }
+    
+    private long append(final long value) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        buffer.putLong(value);
+        buffer.flip();
+        return segment.append(buffer);
+    }
+}
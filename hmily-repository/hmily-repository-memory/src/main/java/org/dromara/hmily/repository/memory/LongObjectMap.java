@@ -0,0 +1,220 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.memory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * open addressing hash map keyed by primitive long, so the ids are never boxed on lookup.
+ * collisions are resolved by linear probing and removals shift the following entries back, so no tombstones are left.
+ * not thread safe, the callers guard it by their own lock.
+ *
+ * @param <V> the type of value
+ * @author xiaoyu
+ */
+public final class LongObjectMap<V> {
+    
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+    
+    private static final int MIN_CAPACITY = 16;
+    
+    private long[] keys;
+    
+    private Object[] values;
+    
+    private int mask;
+    
+    private int size;
+    
+    private boolean hasZeroKey;
+    
+    private V zeroValue;
+    
+    /**
+     * Instantiates a new Long object map.
+     */
+    public LongObjectMap() {
+        allocate(MIN_CAPACITY);
+    }
+    
+    /**
+     * Get the value of the key.
+     *
+     * @param key the key
+     * @return the value, null when absent
+     */
+    @SuppressWarnings("unchecked")
+    public V get(final long key) {
+        if (key == 0) {
+            return zeroValue;
+        }
+        for (int i = index(key);; i = (i + 1) & mask) {
+            long current = keys[i];
+            if (current == 0) {
+                return null;
+            }
+            if (current == key) {
+                return (V) values[i];
+            }
+        }
+    }
+    
+    /**
+     * Put the value of the key.
+     *
+     * @param key   the key
+     * @param value the value, must not be null
+     * @return the previous value, null when absent
+     */
+    @SuppressWarnings("unchecked")
+    public V put(final long key, final V value) {
+        if (key == 0) {
+            V previous = zeroValue;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return previous;
+        }
+        int i = index(key);
+        for (; keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                V previous = (V) values[i];
+                values[i] = value;
+                return previous;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size >= (mask + 1) >>> 1) {
+            rehash((mask + 1) << 1);
+        }
+        return null;
+    }
+    
+    /**
+     * Remove the key.
+     *
+     * @param key the key
+     * @return the removed value, null when absent
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(final long key) {
+        if (key == 0) {
+            V previous = zeroValue;
+            if (hasZeroKey) {
+                hasZeroKey = false;
+                zeroValue = null;
+                size--;
+            }
+            return previous;
+        }
+        int i = index(key);
+        for (; keys[i] != key; i = (i + 1) & mask) {
+            if (keys[i] == 0) {
+                return null;
+            }
+        }
+        V previous = (V) values[i];
+        shiftBack(i);
+        size--;
+        return previous;
+    }
+    
+    /**
+     * Size of the entries.
+     *
+     * @return the size
+     */
+    public int size() {
+        return size;
+    }
+    
+    /**
+     * Copy of the values.
+     *
+     * @return the values
+     */
+    @SuppressWarnings("unchecked")
+    public List<V> values() {
+        List<V> result = new ArrayList<>(size);
+        if (hasZeroKey) {
+            result.add(zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                result.add((V) values[i]);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Remove all the entries.
+     */
+    public void clear() {
+        hasZeroKey = false;
+        zeroValue = null;
+        size = 0;
+        allocate(MIN_CAPACITY);
+    }
+    
+    private void shiftBack(final int removed) {
+        int gap = removed;
+        for (int i = (removed + 1) & mask; keys[i] != 0; i = (i + 1) & mask) {
+            int ideal = index(keys[i]);
+            if (((i - ideal) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        keys[gap] = 0;
+        values[gap] = null;
+    }
+    
+    private void rehash(final int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int j = index(key);
+                while (keys[j] != 0) {
+                    j = (j + 1) & mask;
+                }
+                keys[j] = key;
+                values[j] = oldValues[i];
+            }
+        }
+    }
+    
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+    
+    private int index(final long key) {
+        long hash = key * GOLDEN_RATIO;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,763 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import org.dromara.hmily.common.concurrent.HmilyThreadFactory;
+import org.dromara.hmily.common.enums.HmilyActionEnum;
+import org.dromara.hmily.common.exception.HmilyRuntimeException;
+import org.dromara.hmily.common.hook.HmilyShutdownHook;
+import org.dromara.hmily.common.utils.LogUtil;
+import org.dromara.hmily.common.utils.StringUtils;
+import org.dromara.hmily.config.api.ConfigEnv;
+import org.dromara.hmily.config.api.entity.HmilyMemoryConfig;
+import org.dromara.hmily.repository.spi.HmilyRepository;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipantUndo;
+import org.dromara.hmily.repository.spi.entity.HmilyScanCursor;
+import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
+import org.dromara.hmily.repository.spi.exception.HmilyRepositoryException;
+import org.dromara.hmily.serializer.spi.HmilySerializer;
+import org.dromara.hmily.spi.HmilySPI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * memory impl, keeps the records in primitive long keyed maps.
+ * the participants are indexed by trans id and participant ref id, the recovery and the clean queries walk
+ * the update time ordered indexes, and the records can be written to disk as periodic snapshots.
+ * the records are copied in and out, so the callers never share the indexed instances.
+ *
+ * @author xiaoyu
+ */
+@HmilySPI("memory")
+public class MemoryRepository implements HmilyRepository, AutoCloseable {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(MemoryRepository.class);
+    
+    private static final int DELETE = HmilyActionEnum.DELETE.getCode();
+    
+    private static final int DEATH = HmilyActionEnum.DEATH.getCode();
+    
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private final LongObjectMap<HmilyTransaction> transactions = new LongObjectMap<>();
+    
+    private final LongObjectMap<HmilyParticipant> participants = new LongObjectMap<>();
+    
+    private final LongObjectMap<HmilyParticipantUndo> undos = new LongObjectMap<>();
+    
+    private final LongObjectMap<List<HmilyParticipant>> participantsByTransId = new LongObjectMap<>();
+    
+    private final LongObjectMap<List<HmilyParticipant>> participantsByRefId = new LongObjectMap<>();
+    
+    private final LongObjectMap<List<HmilyParticipantUndo>> undosByParticipantId = new LongObjectMap<>();
+    
+    private final NavigableSet<TimeKey> transactionTimeIndex = new TreeSet<>();
+    
+    private final Map<String, NavigableSet<TimeKey>> participantTimeIndex = new HashMap<>();
+    
+    private final NavigableSet<TimeKey> deletedTransactions = new TreeSet<>();
+    
+    private final NavigableSet<TimeKey> deletedParticipants = new TreeSet<>();
+    
+    private final NavigableSet<TimeKey> deletedUndos = new TreeSet<>();
+    
+    private long changes;
+    
+    private long snapshotChanges;
+    
+    private String appName;
+    
+    private HmilySerializer hmilySerializer;
+    
+    private File snapshotFile;
+    
+    private ScheduledExecutorService snapshotExecutor;
+    
+    @Override
+    public void init(final String appName) {
+        this.appName = appName;
+        HmilyMemoryConfig memoryConfig = ConfigEnv.getInstance().getConfig(HmilyMemoryConfig.class);
+        if (Objects.isNull(memoryConfig) || memoryConfig.getSnapshotInterval() <= 0) {
+            return;
+        }
+        String path = StringUtils.isNoneBlank(memoryConfig.getSnapshotPath())
+                ? memoryConfig.getSnapshotPath() : System.getProperty("user.dir") + File.separator + "hmily-memory";
+        File directory = new File(path);
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new HmilyRuntimeException("can not create the snapshot directory: " + path);
+        }
+        snapshotFile = new File(directory, appName + ".snapshot");
+        loadSnapshot();
+        snapshotExecutor = Executors.newSingleThreadScheduledExecutor(HmilyThreadFactory.create("hmily-memory-snapshot", true));
+        long interval = memoryConfig.getSnapshotInterval();
+        snapshotExecutor.scheduleWithFixedDelay(this::snapshot, interval, interval, TimeUnit.SECONDS);
+        HmilyShutdownHook.getInstance().registerAutoCloseable(this);
+    }
+    
+    @Override
+    public void setSerializer(final HmilySerializer hmilySerializer) {
+        this.hmilySerializer = hmilySerializer;
+    }
+    
+    @Override
+    public int createHmilyTransaction(final HmilyTransaction hmilyTransaction) throws HmilyRepositoryException {
+        HmilyTransaction transaction = copyOf(hmilyTransaction);
+        transaction.setUpdateTime(new Date());
+        lock.writeLock().lock();
+        try {
+            HmilyTransaction previous = transactions.get(transaction.getTransId());
+            if (Objects.nonNull(previous)) {
+                transaction.setCreateTime(previous.getCreateTime());
+            }
+            putTransaction(transaction);
+            changes++;
+            return HmilyRepository.ROWS;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public int updateRetryByLock(final HmilyTransaction hmilyTransaction) {
+        final Integer currentVersion = hmilyTransaction.getVersion();
+        hmilyTransaction.setVersion(hmilyTransaction.getVersion() + 1);
+        hmilyTransaction.setRetry(hmilyTransaction.getRetry() + 1);
+        lock.writeLock().lock();
+        try {
+            HmilyTransaction transaction = transactions.get(hmilyTransaction.getTransId());
+            if (Objects.isNull(transaction) || !Objects.equals(transaction.getVersion(), currentVersion)) {
+                return HmilyRepository.FAIL_ROWS;
+            }
+            unindexTransaction(transaction);
+            transaction.setVersion(hmilyTransaction.getVersion());
+            transaction.setRetry(hmilyTransaction.getRetry());
+            transaction.setUpdateTime(new Date());
+            indexTransaction(transaction);
+            changes++;
+            return HmilyRepository.ROWS;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public HmilyTransaction findByTransId(final Long transId) {
+        lock.readLock().lock();
+        try {
+            HmilyTransaction transaction = transactions.get(transId);
+            return Objects.isNull(transaction) ? null : copyOf(transaction);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public List<HmilyTransaction> listLimitByDelay(final Date date, final int limit) {
+        return scanHmilyTransaction(date, null, limit);
+    }
+    
+    @Override
+    public List<HmilyTransaction> scanHmilyTransaction(final Date date, final HmilyScanCursor cursor, final int limit) {
+        lock.readLock().lock();
+        try {
+            return collect(range(transactionTimeIndex, date, cursor), transactions, e -> Objects.equals(appName, e.getAppName()), this::copyOf, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public int updateHmilyTransactionStatus(final Long transId, final Integer status) throws HmilyRepositoryException {
+        lock.writeLock().lock();
+        try {
+            HmilyTransaction transaction = transactions.get(transId);
+            if (Objects.isNull(transaction)) {
+                return HmilyRepository.FAIL_ROWS;
+            }
+            unindexTransaction(transaction);
+            transaction.setStatus(status);
+            transaction.setUpdateTime(new Date());
+            indexTransaction(transaction);
+            changes++;
+            return HmilyRepository.ROWS;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public int removeHmilyTransaction(final Long transId) {
+        lock.writeLock().lock();
+        try {
+            HmilyTransaction transaction = transactions.remove(transId);
+            if (Objects.isNull(transaction)) {
+                return HmilyRepository.FAIL_ROWS;
+            }
+            unindexTransaction(transaction);
+            changes++;
+            return HmilyRepository.ROWS;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public int removeHmilyTransactionByData(final Date date) {
+        lock.writeLock().lock();
+        try {
+            List<TimeKey> expired = new ArrayList<>(deletedTransactions.headSet(TimeKey.before(date), false));
+            expired.forEach(key -> unindexTransaction(transactions.remove(key.id)));
+            changes += expired.size();
+            return expired.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public int createHmilyParticipant(final HmilyParticipant hmilyParticipant) throws HmilyRepositoryException {
+        HmilyParticipant participant = copyOf(hmilyParticipant);
+        participant.setUpdateTime(new Date());
+        lock.writeLock().lock();
+        try {
+            HmilyParticipant previous = participants.get(participant.getParticipantId());
+            participant.setCreateTime(Objects.nonNull(previous) ? previous.getCreateTime() : defaultDate(participant.getCreateTime()));
+            putParticipant(participant);
+            changes++;
+            return HmilyRepository.ROWS;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public List<HmilyParticipant> findHmilyParticipant(final Long participantId) {
+        lock.readLock().lock();
+        try {
+            List<HmilyParticipant> result = new ArrayList<>();
+            HmilyParticipant participant = participants.get(participantId);
+            if (Objects.nonNull(participant)) {
+                result.add(copyOf(participant));
+            }
+            List<HmilyParticipant> refs = participantsByRefId.get(participantId);
+            if (Objects.nonNull(refs)) {
+                refs.forEach(e -> result.add(copyOf(e)));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public List<HmilyParticipant> listHmilyParticipant(final Date date, final String transType, final int limit) {
+        return scanHmilyParticipant(date, transType, null, limit);
+    }
+    
+    @Override
+    public List<HmilyParticipant> scanHmilyParticipant(final Date date, final String transType, final HmilyScanCursor cursor, final int limit) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<TimeKey> index = participantTimeIndex.get(transType);
+            if (Objects.isNull(index)) {
+                return Collections.emptyList();
+            }
+            return collect(range(index, date, cursor), participants, e -> Objects.equals(appName, e.getAppName()), this::copyOf, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public List<HmilyParticipant> listHmilyParticipantByTransId(final Long transId) {
+        lock.readLock().lock();
+        try {
+            List<HmilyParticipant> list = participantsByTransId.get(transId);
+            return Objects.isNull(list) ? Collections.emptyList() : list.stream().map(this::copyOf).collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public boolean existHmilyParticipantByTransId(final Long transId) {
+        lock.readLock().lock();
+        try {
+            return Objects.nonNull(participantsByTransId.get(transId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public List<Long> findTransIdsWithoutParticipants(final List<Long> transIdList) {
+        lock.readLock().lock();
+        try {
+            return transIdList.stream().filter(transId -> Objects.isNull(participantsByTransId.get(transId))).collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public int updateHmilyParticipantStatus(final Long participantId, final Integer status) throws HmilyRepositoryException {
+        lock.writeLock().lock();
+        try {
+            HmilyParticipant participant = participants.get(participantId);
+            if (Objects.isNull(participant)) {
+                return HmilyRepository.FAIL_ROWS;
+            }
+            unindexParticipantTime(participant);
+            participant.setStatus(status);
+            participant.setUpdateTime(new Date());
+            indexParticipantTime(participant);
+            changes++;
+            return HmilyRepository.ROWS;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public int removeHmilyParticipant(final Long participantId) {
+        lock.writeLock().lock();
+        try {
+            HmilyParticipant participant = participants.remove(participantId);
+            if (Objects.isNull(participant)) {
+                return HmilyRepository.FAIL_ROWS;
+            }
+            unindexParticipant(participant);
+            changes++;
+            return HmilyRepository.ROWS;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public int removeHmilyParticipantByData(final Date date) {
+        lock.writeLock().lock();
+        try {
+            List<TimeKey> expired = new ArrayList<>(deletedParticipants.headSet(TimeKey.before(date), false));
+            expired.forEach(key -> unindexParticipant(participants.remove(key.id)));
+            changes += expired.size();
+            return expired.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public boolean lockHmilyParticipant(final HmilyParticipant hmilyParticipant) {
+        final Integer currentVersion = hmilyParticipant.getVersion();
+        hmilyParticipant.setVersion(hmilyParticipant.getVersion() + 1);
+        hmilyParticipant.setRetry(hmilyParticipant.getRetry() + 1);
+        lock.writeLock().lock();
+        try {
+            HmilyParticipant participant = participants.get(hmilyParticipant.getParticipantId());
+            if (Objects.isNull(participant) || !Objects.equals(participant.getVersion(), currentVersion)) {
+                return false;
+            }
+            unindexParticipantTime(participant);
+            participant.setVersion(hmilyParticipant.getVersion());
+            participant.setRetry(hmilyParticipant.getRetry());
+            participant.setUpdateTime(new Date());
+            indexParticipantTime(participant);
+            changes++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public int createHmilyParticipantUndo(final HmilyParticipantUndo hmilyParticipantUndo) {
+        HmilyParticipantUndo undo = copyOf(hmilyParticipantUndo);
+        undo.setUpdateTime(new Date());
+        lock.writeLock().lock();
+        try {
+            HmilyParticipantUndo previous = undos.get(undo.getUndoId());
+            undo.setCreateTime(Objects.nonNull(previous) ? previous.getCreateTime() : defaultDate(undo.getCreateTime()));
+            putUndo(undo);
+            changes++;
+            return HmilyRepository.ROWS;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public List<HmilyParticipantUndo> findHmilyParticipantUndoByParticipantId(final Long participantId) {
+        lock.readLock().lock();
+        try {
+            List<HmilyParticipantUndo> list = undosByParticipantId.get(participantId);
+            return Objects.isNull(list) ? Collections.emptyList() : list.stream().map(this::copyOf).collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public int removeHmilyParticipantUndo(final Long undoId) {
+        lock.writeLock().lock();
+        try {
+            HmilyParticipantUndo undo = undos.remove(undoId);
+            if (Objects.isNull(undo)) {
+                return HmilyRepository.FAIL_ROWS;
+            }
+            unindexUndo(undo);
+            changes++;
+            return HmilyRepository.ROWS;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public int removeHmilyParticipantUndoByData(final Date date) {
+        lock.writeLock().lock();
+        try {
+            List<TimeKey> expired = new ArrayList<>(deletedUndos.headSet(TimeKey.before(date), false));
+            expired.forEach(key -> unindexUndo(undos.remove(key.id)));
+            changes += expired.size();
+            return expired.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public int updateHmilyParticipantUndoStatus(final Long undoId, final Integer status) {
+        lock.writeLock().lock();
+        try {
+            HmilyParticipantUndo undo = undos.get(undoId);
+            if (Objects.isNull(undo)) {
+                return HmilyRepository.FAIL_ROWS;
+            }
+            deletedUndos.remove(TimeKey.of(undo.getUpdateTime(), undo.getUndoId()));
+            undo.setStatus(status);
+            undo.setUpdateTime(new Date());
+            if (isStatus(undo.getStatus(), DELETE)) {
+                deletedUndos.add(TimeKey.of(undo.getUpdateTime(), undo.getUndoId()));
+            }
+            changes++;
+            return HmilyRepository.ROWS;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Override
+    public void close() {
+        if (Objects.isNull(snapshotExecutor)) {
+            return;
+        }
+        snapshotExecutor.shutdown();
+        try {
+            snapshotExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshot();
+    }
+    
+    private void putTransaction(final HmilyTransaction transaction) {
+        HmilyTransaction previous = transactions.put(transaction.getTransId(), transaction);
+        if (Objects.nonNull(previous)) {
+            unindexTransaction(previous);
+        }
+        indexTransaction(transaction);
+    }
+    
+    private void indexTransaction(final HmilyTransaction transaction) {
+        TimeKey key = TimeKey.of(transaction.getUpdateTime(), transaction.getTransId());
+        transactionTimeIndex.add(key);
+        if (isStatus(transaction.getStatus(), DELETE)) {
+            deletedTransactions.add(key);
+        }
+    }
+    
+    private void unindexTransaction(final HmilyTransaction transaction) {
+        TimeKey key = TimeKey.of(transaction.getUpdateTime(), transaction.getTransId());
+        transactionTimeIndex.remove(key);
+        deletedTransactions.remove(key);
+    }
+    
+    private void putParticipant(final HmilyParticipant participant) {
+        HmilyParticipant previous = participants.put(participant.getParticipantId(), participant);
+        if (Objects.nonNull(previous)) {
+            unindexParticipant(previous);
+        }
+        addIndex(participantsByTransId, participant.getTransId(), participant);
+        addIndex(participantsByRefId, participant.getParticipantRefId(), participant);
+        indexParticipantTime(participant);
+    }
+    
+    private void unindexParticipant(final HmilyParticipant participant) {
+        removeIndex(participantsByTransId, participant.getTransId(), participant);
+        removeIndex(participantsByRefId, participant.getParticipantRefId(), participant);
+        unindexParticipantTime(participant);
+    }
+    
+    private void indexParticipantTime(final HmilyParticipant participant) {
+        TimeKey key = TimeKey.of(participant.getUpdateTime(), participant.getParticipantId());
+        if (isStatus(participant.getStatus(), DELETE)) {
+            deletedParticipants.add(key);
+        } else if (!isStatus(participant.getStatus(), DEATH)) {
+            participantTimeIndex.computeIfAbsent(participant.getTransType(), k -> new TreeSet<>()).add(key);
+        }
+    }
+    
+    private void unindexParticipantTime(final HmilyParticipant participant) {
+        TimeKey key = TimeKey.of(participant.getUpdateTime(), participant.getParticipantId());
+        deletedParticipants.remove(key);
+        NavigableSet<TimeKey> index = participantTimeIndex.get(participant.getTransType());
+        if (Objects.nonNull(index)) {
+            index.remove(key);
+        }
+    }
+    
+    private void putUndo(final HmilyParticipantUndo undo) {
+        HmilyParticipantUndo previous = undos.put(undo.getUndoId(), undo);
+        if (Objects.nonNull(previous)) {
+            unindexUndo(previous);
+        }
+        addIndex(undosByParticipantId, undo.getParticipantId(), undo);
+        if (isStatus(undo.getStatus(), DELETE)) {
+            deletedUndos.add(TimeKey.of(undo.getUpdateTime(), undo.getUndoId()));
+        }
+    }
+    
+    private void unindexUndo(final HmilyParticipantUndo undo) {
+        removeIndex(undosByParticipantId, undo.getParticipantId(), undo);
+        deletedUndos.remove(TimeKey.of(undo.getUpdateTime(), undo.getUndoId()));
+    }
+    
+    private void loadSnapshot() {
+        if (!snapshotFile.exists()) {
+            return;
+        }
+        MemorySnapshot snapshot;
+        try {
+            snapshot = hmilySerializer.deSerialize(Files.readAllBytes(snapshotFile.toPath()), MemorySnapshot.class);
+        } catch (IOException e) {
+            throw new HmilyRuntimeException("load the memory snapshot error: " + snapshotFile, e);
+        }
+        lock.writeLock().lock();
+        try {
+            snapshot.getTransactions().forEach(this::putTransaction);
+            snapshot.getParticipants().forEach(this::putParticipant);
+            snapshot.getUndos().forEach(this::putUndo);
+            snapshotChanges = changes;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        LOGGER.info("hmily memory repository loaded {} transactions, {} participants, {} undo from the snapshot",
+                transactions.size(), participants.size(), undos.size());
+    }
+    
+    private synchronized void snapshot() {
+        MemorySnapshot snapshot = new MemorySnapshot();
+        long current;
+        lock.readLock().lock();
+        try {
+            current = changes;
+            if (current == snapshotChanges) {
+                return;
+            }
+            snapshot.setTransactions(transactions.values().stream().map(this::copyOf).collect(Collectors.toList()));
+            snapshot.setParticipants(participants.values().stream().map(this::copyOf).collect(Collectors.toList()));
+            snapshot.setUndos(undos.values().stream().map(this::copyOf).collect(Collectors.toList()));
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            writeSnapshot(hmilySerializer.serialize(snapshot));
+            snapshotChanges = current;
+        } catch (IOException | RuntimeException e) {
+            LogUtil.error(LOGGER, "write the memory snapshot occur a exception {}", () -> e);
+        }
+    }
+    
+    private void writeSnapshot(final byte[] bytes) throws IOException {
+        File tmp = new File(snapshotFile.getPath() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private HmilyTransaction copyOf(final HmilyTransaction source) {
+        HmilyTransaction transaction = new HmilyTransaction();
+        transaction.setTransId(source.getTransId());
+        transaction.setAppName(source.getAppName());
+        transaction.setStatus(source.getStatus());
+        transaction.setTransType(source.getTransType());
+        transaction.setRetry(source.getRetry());
+        transaction.setVersion(source.getVersion());
+        transaction.setCreateTime(defaultDate(source.getCreateTime()));
+        transaction.setUpdateTime(defaultDate(source.getUpdateTime()));
+        return transaction;
+    }
+    
+    private HmilyParticipant copyOf(final HmilyParticipant source) {
+        HmilyParticipant participant = new HmilyParticipant();
+        participant.setParticipantId(source.getParticipantId());
+        participant.setParticipantRefId(source.getParticipantRefId());
+        participant.setTransId(source.getTransId());
+        participant.setTransType(source.getTransType());
+        participant.setStatus(source.getStatus());
+        participant.setAppName(source.getAppName());
+        participant.setRole(source.getRole());
+        participant.setRetry(source.getRetry());
+        participant.setTargetClass(source.getTargetClass());
+        participant.setTargetMethod(source.getTargetMethod());
+        participant.setConfirmMethod(source.getConfirmMethod());
+        participant.setCancelMethod(source.getCancelMethod());
+        participant.setVersion(source.getVersion());
+        participant.setCreateTime(source.getCreateTime());
+        participant.setUpdateTime(source.getUpdateTime());
+        participant.setConfirmHmilyInvocation(source.getConfirmHmilyInvocation());
+        participant.setCancelHmilyInvocation(source.getCancelHmilyInvocation());
+        return participant;
+    }
+    
+    private HmilyParticipantUndo copyOf(final HmilyParticipantUndo source) {
+        HmilyParticipantUndo undo = new HmilyParticipantUndo();
+        undo.setUndoId(source.getUndoId());
+        undo.setParticipantId(source.getParticipantId());
+        undo.setTransId(source.getTransId());
+        undo.setResourceId(source.getResourceId());
+        undo.setStatus(source.getStatus());
+        undo.setUndoInvocation(source.getUndoInvocation());
+        undo.setCreateTime(source.getCreateTime());
+        undo.setUpdateTime(source.getUpdateTime());
+        return undo;
+    }
+    
+    private static Date defaultDate(final Date date) {
+        return Objects.isNull(date) ? new Date() : date;
+    }
+    
+    private static boolean isStatus(final Integer status, final int code) {
+        return Objects.nonNull(status) && status == code;
+    }
+    
+    private static <V> void addIndex(final LongObjectMap<List<V>> index, final Long key, final V value) {
+        if (Objects.isNull(key)) {
+            return;
+        }
+        List<V> list = index.get(key);
+        if (Objects.isNull(list)) {
+            list = new ArrayList<>(2);
+            index.put(key, list);
+        }
+        list.add(value);
+    }
+    
+    private static <V> void removeIndex(final LongObjectMap<List<V>> index, final Long key, final V value) {
+        if (Objects.isNull(key)) {
+            return;
+        }
+        List<V> list = index.get(key);
+        if (Objects.nonNull(list) && list.removeIf(e -> e == value) && list.isEmpty()) {
+            index.remove(key);
+        }
+    }
+    
+    private static NavigableSet<TimeKey> range(final NavigableSet<TimeKey> index, final Date date, final HmilyScanCursor cursor) {
+        TimeKey upper = TimeKey.before(date);
+        if (Objects.isNull(cursor) || Objects.isNull(cursor.getUpdateTime())) {
+            return index.headSet(upper, false);
+        }
+        TimeKey lower = TimeKey.of(cursor.getUpdateTime(), Objects.isNull(cursor.getId()) ? Long.MIN_VALUE : cursor.getId());
+        if (lower.compareTo(upper) >= 0) {
+            return Collections.emptyNavigableSet();
+        }
+        return index.subSet(lower, false, upper, false);
+    }
+    
+    private static <T> List<T> collect(final NavigableSet<TimeKey> keys, final LongObjectMap<T> records,
+                                       final Predicate<T> filter, final UnaryOperator<T> copier, final int limit) {
+        List<T> result = new ArrayList<>(Math.max(0, Math.min(limit, 64)));
+        for (TimeKey key : keys) {
+            if (result.size() >= limit) {
+                break;
+            }
+            T record = records.get(key.id);
+            if (Objects.nonNull(record) && filter.test(record)) {
+                result.add(copier.apply(record));
+            }
+        }
+        return result;
+    }
+    
+    private static final class TimeKey implements Comparable<TimeKey> {
+        
+        private final long time;
+        
+        private final long id;
+        
+        private TimeKey(final long time, final long id) {
+            this.time = time;
+            this.id = id;
+        }
+        
+        private static TimeKey of(final Date updateTime, final long id) {
+            return new TimeKey(updateTime.getTime(), id);
+        }
+        
+        private static TimeKey before(final Date date) {
+            return new TimeKey(date.getTime(), Long.MIN_VALUE);
+        }
+        
+        @Override
+        public int compareTo(final TimeKey other) {
+            int result = Long.compare(time, other.time);
+            return result != 0 ? result : Long.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.memory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The open addressing of the long object map.
+ *
+ * @author xiaoyu
+ */
+public final class LongObjectMapTest {
+
+    @Test
+    public void assertPutReplacesAndReturnsPrevious() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        assertNull(map.put(1L, "a"));
+        assertEquals("a", map.put(1L, "b"));
+        assertEquals("b", map.get(1L));
+        assertEquals(1, map.size());
+        assertNull(map.get(2L));
+    }
+
+    @Test
+    public void assertZeroKeyIsKeptApart() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        assertNull(map.get(0L));
+        assertNull(map.put(0L, "zero"));
+        map.put(16L, "sixteen");
+        assertEquals("zero", map.get(0L));
+        assertEquals(2, map.size());
+        assertEquals(2, map.values().size());
+        assertEquals("zero", map.remove(0L));
+        assertNull(map.remove(0L));
+        assertNull(map.get(0L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void assertRemoveOfAbsentKeyIsNoop() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        map.put(1L, "a");
+        assertNull(map.remove(2L));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void assertRehashKeepsEveryEntry() {
+        LongObjectMap<Long> map = new LongObjectMap<>();
+        for (long key = 1; key <= 10000; key++) {
+            map.put(key, key * 10);
+        }
+        assertEquals(10000, map.size());
+        assertEquals(10000, map.values().size());
+        for (long key = 1; key <= 10000; key++) {
+            assertEquals(Long.valueOf(key * 10), map.get(key));
+        }
+    }
+
+    @Test
+    public void assertRemovalInsideCollisionChainsKeepsTheOthersReachable() {
+        LongObjectMap<Long> map = new LongObjectMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        for (long i = 1; i <= 4096; i++) {
+            long key = i << 32;
+            map.put(key, i);
+            expected.put(key, i);
+        }
+        for (long i = 1; i <= 4096; i += 3) {
+            long key = i << 32;
+            assertEquals(Long.valueOf(i), map.remove(key));
+            expected.remove(key);
+        }
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+        for (long i = 1; i <= 4096; i += 3) {
+            assertNull(map.get(i << 32));
+        }
+    }
+
+    @Test
+    public void assertRandomOperationsMatchHashMap() {
+        LongObjectMap<Long> map = new LongObjectMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 100000; i++) {
+            long key = random.nextInt(2048) - 1024;
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+        assertTrue(map.values().containsAll(expected.values()));
+    }
+
+    @Test
+    public void assertClearRemovesEverything() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        map.put(0L, "zero");
+        map.put(1L, "one");
+        map.clear();
+        assertEquals(0, map.size());
+        assertNull(map.get(0L));
+        assertNull(map.get(1L));
+        assertTrue(map.values().isEmpty());
+    }
+}
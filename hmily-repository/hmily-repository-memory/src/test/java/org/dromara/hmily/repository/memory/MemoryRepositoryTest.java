@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.memory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import org.dromara.hmily.common.enums.HmilyActionEnum;
+import org.dromara.hmily.config.api.ConfigEnv;
+import org.dromara.hmily.config.api.entity.HmilyMemoryConfig;
+import org.dromara.hmily.repository.spi.HmilyRepository;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
+import org.dromara.hmily.repository.spi.entity.HmilyScanCursor;
+import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The indexes of the memory repository.
+ *
+ * @author xiaoyu
+ */
+public final class MemoryRepositoryTest {
+
+    private static final String APP_NAME = "hmily-memory-test";
+
+    private static final String TRANS_TYPE = "TCC";
+
+    private final MemoryRepository memoryRepository = new MemoryRepository();
+
+    @Before
+    public void setUp() {
+        ConfigEnv.getInstance().putBean(new HmilyMemoryConfig());
+        memoryRepository.init(APP_NAME);
+    }
+
+    @Test
+    public void assertTransactionIsCopiedInAndOut() {
+        HmilyTransaction created = transaction(1L, 1);
+        assertEquals(HmilyRepository.ROWS, memoryRepository.createHmilyTransaction(created));
+        created.setStatus(3);
+        HmilyTransaction found = memoryRepository.findByTransId(1L);
+        assertEquals(1, found.getStatus());
+        found.setStatus(3);
+        assertEquals(1, memoryRepository.findByTransId(1L).getStatus());
+        assertNotSame(found, memoryRepository.findByTransId(1L));
+        assertNull(memoryRepository.findByTransId(2L));
+    }
+
+    @Test
+    public void assertDelayedTransactionsAreOrderedByUpdateTimeAndPaged() {
+        for (long transId = 1; transId <= 5; transId++) {
+            memoryRepository.createHmilyTransaction(transaction(transId, 1));
+        }
+        List<HmilyTransaction> first = memoryRepository.scanHmilyTransaction(future(), null, 3);
+        assertEquals(3, first.size());
+        HmilyTransaction last = first.get(2);
+        List<HmilyTransaction> second = memoryRepository.scanHmilyTransaction(future(), new HmilyScanCursor(last.getUpdateTime(), last.getTransId()), 3);
+        assertEquals(2, second.size());
+        assertFalse(first.stream().anyMatch(e -> second.stream().anyMatch(s -> s.getTransId().equals(e.getTransId()))));
+        assertTrue(memoryRepository.listLimitByDelay(new Date(0), 10).isEmpty());
+    }
+
+    @Test
+    public void assertOnlyDeletedTransactionsAreRemovedByDate() {
+        memoryRepository.createHmilyTransaction(transaction(1L, 1));
+        memoryRepository.createHmilyTransaction(transaction(2L, 1));
+        assertEquals(HmilyRepository.ROWS, memoryRepository.updateHmilyTransactionStatus(2L, HmilyActionEnum.DELETE.getCode()));
+        assertEquals(HmilyRepository.FAIL_ROWS, memoryRepository.updateHmilyTransactionStatus(3L, HmilyActionEnum.DELETE.getCode()));
+        assertEquals(1, memoryRepository.removeHmilyTransactionByData(future()));
+        assertNull(memoryRepository.findByTransId(2L));
+        assertEquals(1, memoryRepository.findByTransId(1L).getStatus());
+        assertEquals(1, memoryRepository.listLimitByDelay(future(), 10).size());
+    }
+
+    @Test
+    public void assertStatusUpdateMovesTheTransactionOutOfTheDeletedIndex() {
+        memoryRepository.createHmilyTransaction(transaction(1L, HmilyActionEnum.DELETE.getCode()));
+        memoryRepository.updateHmilyTransactionStatus(1L, 1);
+        assertEquals(0, memoryRepository.removeHmilyTransactionByData(future()));
+        assertEquals(HmilyRepository.ROWS, memoryRepository.removeHmilyTransaction(1L));
+        assertTrue(memoryRepository.listLimitByDelay(future(), 10).isEmpty());
+    }
+
+    @Test
+    public void assertOptimisticLockOfTransaction() {
+        memoryRepository.createHmilyTransaction(transaction(1L, 1));
+        HmilyTransaction first = memoryRepository.findByTransId(1L);
+        HmilyTransaction second = memoryRepository.findByTransId(1L);
+        assertEquals(HmilyRepository.ROWS, memoryRepository.updateRetryByLock(first));
+        assertEquals(HmilyRepository.FAIL_ROWS, memoryRepository.updateRetryByLock(second));
+        assertEquals(Integer.valueOf(1), memoryRepository.findByTransId(1L).getRetry());
+    }
+
+    @Test
+    public void assertParticipantWithoutStatusIsIndexed() {
+        memoryRepository.createHmilyParticipant(participant(10L, 1L, null));
+        assertEquals(1, memoryRepository.findHmilyParticipant(10L).size());
+        assertTrue(memoryRepository.existHmilyParticipantByTransId(1L));
+        assertEquals(1, memoryRepository.listHmilyParticipant(future(), TRANS_TYPE, 10).size());
+    }
+
+    @Test
+    public void assertParticipantIndexesFollowTheRecord() {
+        memoryRepository.createHmilyParticipant(participant(10L, 1L, 1));
+        memoryRepository.createHmilyParticipant(participant(11L, 1L, 1));
+        memoryRepository.createHmilyParticipant(participant(12L, 2L, HmilyActionEnum.DEATH.getCode()));
+        assertEquals(2, memoryRepository.listHmilyParticipantByTransId(1L).size());
+        assertEquals(2, memoryRepository.listHmilyParticipant(future(), TRANS_TYPE, 10).size());
+        assertEquals(Collections.singletonList(3L), memoryRepository.findTransIdsWithoutParticipants(Arrays.asList(1L, 2L, 3L)));
+        memoryRepository.updateHmilyParticipantStatus(11L, HmilyActionEnum.DELETE.getCode());
+        assertEquals(1, memoryRepository.listHmilyParticipant(future(), TRANS_TYPE, 10).size());
+        assertEquals(1, memoryRepository.removeHmilyParticipantByData(future()));
+        assertEquals(HmilyRepository.ROWS, memoryRepository.removeHmilyParticipant(10L));
+        assertEquals(HmilyRepository.FAIL_ROWS, memoryRepository.removeHmilyParticipant(10L));
+        assertFalse(memoryRepository.existHmilyParticipantByTransId(1L));
+        assertEquals(Arrays.asList(1L, 3L), memoryRepository.findTransIdsWithoutParticipants(Arrays.asList(1L, 2L, 3L)));
+    }
+
+    @Test
+    public void assertOptimisticLockOfParticipant() {
+        memoryRepository.createHmilyParticipant(participant(10L, 1L, 1));
+        HmilyParticipant first = memoryRepository.findHmilyParticipant(10L).get(0);
+        HmilyParticipant second = memoryRepository.findHmilyParticipant(10L).get(0);
+        assertTrue(memoryRepository.lockHmilyParticipant(first));
+        assertFalse(memoryRepository.lockHmilyParticipant(second));
+    }
+
+    private static Date future() {
+        return new Date(System.currentTimeMillis() + 60000);
+    }
+
+    private static HmilyTransaction transaction(final Long transId, final int status) {
+        HmilyTransaction hmilyTransaction = new HmilyTransaction(transId);
+        hmilyTransaction.setAppName(APP_NAME);
+        hmilyTransaction.setStatus(status);
+        return hmilyTransaction;
+    }
+
+    private static HmilyParticipant participant(final Long participantId, final Long transId, final Integer status) {
+        HmilyParticipant hmilyParticipant = new HmilyParticipant();
+        hmilyParticipant.setParticipantId(participantId);
+        hmilyParticipant.setTransId(transId);
+        hmilyParticipant.setAppName(APP_NAME);
+        hmilyParticipant.setTransType(TRANS_TYPE);
+        hmilyParticipant.setStatus(status);
+        return hmilyParticipant;
+    }
+}
@@ -48,23 +48,10 @@ public class MongoEntityConvert {
         hmilyParticipant.setTargetMethod(mongoEntity.getTargetMethod());
         hmilyParticipant.setConfirmMethod(mongoEntity.getConfirmMethod());
         hmilyParticipant.setCancelMethod(mongoEntity.getCancelMethod());
-        try {
-            if (Objects.nonNull(mongoEntity.getConfirmInvocation())) {
-                byte[] confirmInvocation = mongoEntity.getConfirmInvocation();
-                final HmilyInvocation confirmHmilyInvocation =
-                        hmilySerializer.deSerialize(confirmInvocation, HmilyInvocation.class);
-                hmilyParticipant.setConfirmHmilyInvocation(confirmHmilyInvocation);
-            }
-            if (Objects.nonNull(mongoEntity.getCancelInvocation())) {
-                byte[] cancelInvocation = mongoEntity.getCancelInvocation();
-                final HmilyInvocation cancelHmilyInvocation =
-                        hmilySerializer.deSerialize(cancelInvocation, HmilyInvocation.class);
-                hmilyParticipant.setCancelHmilyInvocation(cancelHmilyInvocation);
-            }
-        } catch (HmilySerializerException e) {
-            logger.error("mongo 存储序列化错误", e);
-        }
+        convertInvocations(mongoEntity, hmilyParticipant);
         hmilyParticipant.setVersion(mongoEntity.getVersion());
+        hmilyParticipant.setCreateTime(mongoEntity.getCreateTime());
+        hmilyParticipant.setUpdateTime(mongoEntity.getUpdateTime());
         return hmilyParticipant;
     }
 
@@ -81,6 +68,8 @@ public class MongoEntityConvert {
         hmilyTransaction.setAppName(entity.getAppName());
         hmilyTransaction.setRetry(entity.getRetry());
         hmilyTransaction.setVersion(entity.getVersion());
+        hmilyTransaction.setCreateTime(entity.getCreateTime());
+        hmilyTransaction.setUpdateTime(entity.getUpdateTime());
         return hmilyTransaction;
     }
 
@@ -179,4 +168,28 @@ public class MongoEntityConvert {
         entity.setUpdateTime(undo.getUpdateTime());
         return entity;
     }
+
+    /**
+     * 转换mongo对象, only the invocations, into a participant read without them.
+     * @param mongoEntity mongoEntity with the invocations.
+     * @param hmilyParticipant the participant.
+     */
+    public void convertInvocations(final ParticipantMongoEntity mongoEntity, final HmilyParticipant hmilyParticipant) {
+        try {
+            if (Objects.nonNull(mongoEntity.getConfirmInvocation())) {
+                byte[] confirmInvocation = mongoEntity.getConfirmInvocation();
+                final HmilyInvocation confirmHmilyInvocation =
+                        hmilySerializer.deSerialize(confirmInvocation, HmilyInvocation.class);
+                hmilyParticipant.setConfirmHmilyInvocation(confirmHmilyInvocation);
+            }
+            if (Objects.nonNull(mongoEntity.getCancelInvocation())) {
+                byte[] cancelInvocation = mongoEntity.getCancelInvocation();
+                final HmilyInvocation cancelHmilyInvocation =
+                        hmilySerializer.deSerialize(cancelInvocation, HmilyInvocation.class);
+                hmilyParticipant.setCancelHmilyInvocation(cancelHmilyInvocation);
+            }
+        } catch (HmilySerializerException e) {
+            logger.error("mongo 存储序列化错误", e);
+        }
+    }
 }
@@ -23,9 +23,13 @@ import com.mongodb.MongoCredential;
 import com.mongodb.ServerAddress;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.tuple.Pair;
 import org.dromara.hmily.config.api.ConfigEnv;
@@ -36,18 +40,31 @@ import org.dromara.hmily.repository.mongodb.entity.UndoMongoEntity;
 import org.dromara.hmily.repository.spi.HmilyRepository;
 import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
 import org.dromara.hmily.repository.spi.entity.HmilyParticipantUndo;
+import org.dromara.hmily.repository.spi.entity.HmilyScanCursor;
 import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
 import org.dromara.hmily.repository.spi.exception.HmilyRepositoryException;
 import org.dromara.hmily.serializer.spi.HmilySerializer;
 import org.dromara.hmily.spi.HmilySPI;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoClientFactoryBean;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
 import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 
 /**
  * mongo impl.
  *
+ * <p>The indexes of the queries are ensured on init. With {@link HmilyMongoConfig#getExpireAfterSeconds()} the deleted
+ * records are removed by ttl indexes, and the cleanup sweeps do nothing.</p>
+ *
+ * <p>The recovery queries go through a cursor a batch at a time, and read the participants without their invocations.
+ * A participant locked by {@link #lockHmilyParticipant(HmilyParticipant)} is given its invocations, read then, so only
+ * the participants the recovery runs carry them.</p>
+ *
  * @author xiaoyu
  */
 @HmilySPI("mongodb")
@@ -55,11 +72,17 @@ public class MongodbRepository implements HmilyRepository {
     
     private static final Logger LOGGER = LoggerFactory.getLogger(MongodbRepository.class);
     
+    private static final int CURSOR_BATCH_SIZE = 200;
+    
+    private static final String[] INVOCATIONS = {"confirm_invocation", "cancel_invocation"};
+    
     private MongoEntityConvert converter;
     
     private MongodbTemplateService service;
 
     private String appName;
+    
+    private boolean expireByTtl;
 
     @Override
     public void init(final String appName) {
@@ -69,13 +92,44 @@ public class MongodbRepository implements HmilyRepository {
         try {
             clientFactoryBean.afterPropertiesSet();
             service = new MongodbTemplateService(Objects.requireNonNull(clientFactoryBean.getObject()), hmilyMongoConfig.getDatabaseName());
-            
+            expireByTtl = hmilyMongoConfig.getExpireAfterSeconds() > 0;
+            ensureIndexes(hmilyMongoConfig.getExpireAfterSeconds());
         } catch (Exception e) {
             LOGGER.error("mongo init error please check you config:{}", e.getMessage());
             throw new HmilyRepositoryException(e);
         }
     }
     
+    /**
+     * the lookups by id, the recovery scans with their equality fields first and their sort last, and the cleanup,
+     * which is a ttl index of the deleted records when they expire. an index which cannot be ensured fails the init.
+     */
+    private void ensureIndexes(final long expireAfterSeconds) {
+        service.ensureIndexes(TransactionMongoEntity.class,
+                new Index().on("trans_id", Sort.Direction.ASC),
+                new Index().on("app_name", Sort.Direction.ASC).on("update_time", Sort.Direction.ASC).on("trans_id", Sort.Direction.ASC),
+                cleanIndex(expireAfterSeconds));
+        service.ensureIndexes(ParticipantMongoEntity.class,
+                new Index().on("trans_id", Sort.Direction.ASC),
+                new Index().on("participant_id", Sort.Direction.ASC),
+                new Index().on("participant_ref_id", Sort.Direction.ASC).sparse(),
+                new Index().on("app_name", Sort.Direction.ASC).on("trans_type", Sort.Direction.ASC)
+                        .on("update_time", Sort.Direction.ASC).on("participant_id", Sort.Direction.ASC),
+                cleanIndex(expireAfterSeconds));
+        service.ensureIndexes(UndoMongoEntity.class,
+                new Index().on("undo_id", Sort.Direction.ASC),
+                new Index().on("participant_id", Sort.Direction.ASC),
+                cleanIndex(expireAfterSeconds));
+    }
+    
+    private Index cleanIndex(final long expireAfterSeconds) {
+        if (expireAfterSeconds > 0) {
+            return new Index().on("update_time", Sort.Direction.ASC).expire(expireAfterSeconds)
+                    .partial(PartialIndexFilter.of(Criteria.where("status").is(4)));
+        }
+        return new Index().on("status", Sort.Direction.ASC).on("update_time", Sort.Direction.ASC);
+    }
+    
     private MongoClientFactoryBean buildMongoClientFactoryBean(final HmilyMongoConfig hmilyMongoConfig) {
         MongoClientFactoryBean clientFactoryBean = new MongoClientFactoryBean();
         MongoCredential credential = MongoCredential.createScramSha1Credential(hmilyMongoConfig.getUserName(),
@@ -121,11 +175,19 @@ public class MongodbRepository implements HmilyRepository {
     
     @Override
     public List<HmilyTransaction> listLimitByDelay(final Date date, final int limit) {
-        return service.find(TransactionMongoEntity.class,
+        return service.findByCursor(TransactionMongoEntity.class,
                 Criteria.where("update_time").lt(date)
-                .and("app_name").is(appName), limit)
-                .stream().filter(Objects::nonNull).map(converter::convert)
-                .collect(Collectors.toList());
+                .and("app_name").is(appName), Sort.unsorted(), limit, CURSOR_BATCH_SIZE, converter::convert);
+    }
+    
+    @Override
+    public List<HmilyTransaction> scanHmilyTransaction(final Date date, final HmilyScanCursor cursor, final int limit) {
+        Criteria criteria = Criteria.where("update_time").lt(date).and("app_name").is(appName);
+        if (Objects.nonNull(cursor)) {
+            criteria.orOperator(Criteria.where("update_time").gt(cursor.getUpdateTime()),
+                    Criteria.where("update_time").is(cursor.getUpdateTime()).and("trans_id").gt(cursor.getId()));
+        }
+        return service.findByCursor(TransactionMongoEntity.class, criteria, Sort.by("update_time", "trans_id"), limit, CURSOR_BATCH_SIZE, converter::convert);
     }
     
     @Override
@@ -167,13 +229,25 @@ public class MongodbRepository implements HmilyRepository {
 
     @Override
     public List<HmilyParticipant> listHmilyParticipant(final Date date, final String transType, final int limit) {
-        return service.find(ParticipantMongoEntity.class,
+        return service.findByCursor(ParticipantMongoEntity.class,
                 Criteria.where("update_time").lt(date)
                     .and("app_name").is(appName)
                     .and("trans_type").is(transType)
-                    .and("status").nin(4, 8), limit)
-                .stream().filter(Objects::nonNull).map(converter::convert)
-                .collect(Collectors.toList());
+                    .and("status").nin(4, 8), Sort.unsorted(), limit, CURSOR_BATCH_SIZE, converter::convert, INVOCATIONS);
+    }
+    
+    @Override
+    public List<HmilyParticipant> scanHmilyParticipant(final Date date, final String transType, final HmilyScanCursor cursor, final int limit) {
+        Criteria criteria = Criteria.where("update_time").lt(date)
+                .and("app_name").is(appName)
+                .and("trans_type").is(transType)
+                .and("status").nin(4, 8);
+        if (Objects.nonNull(cursor)) {
+            criteria.orOperator(Criteria.where("update_time").gt(cursor.getUpdateTime()),
+                    Criteria.where("update_time").is(cursor.getUpdateTime()).and("participant_id").gt(cursor.getId()));
+        }
+        return service.findByCursor(ParticipantMongoEntity.class, criteria, Sort.by("update_time", "participant_id"), limit,
+                CURSOR_BATCH_SIZE, converter::convert, INVOCATIONS);
     }
 
     @Override
@@ -189,6 +263,15 @@ public class MongodbRepository implements HmilyRepository {
         return service.count(ParticipantMongoEntity.class, Criteria.where("trans_id").is(transId)) > 0;
     }
 
+    @Override
+    public List<Long> findTransIdsWithoutParticipants(final List<Long> transIdList) {
+        if (transIdList.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<Long> existTransIds = new HashSet<>(service.distinct(ParticipantMongoEntity.class, "trans_id", Criteria.where("trans_id").in(transIdList), Long.class));
+        return transIdList.stream().filter(e -> !existTransIds.contains(e)).collect(Collectors.toList());
+    }
+
     @Override
     public int createHmilyParticipantUndo(final HmilyParticipantUndo undo) {
         return service.insertc(converter.create(undo));
@@ -207,27 +290,44 @@ public class MongodbRepository implements HmilyRepository {
 
     @Override
     public int removeHmilyTransactionByData(final Date date) {
+        if (expireByTtl) {
+            return 0;
+        }
         return service.delete(TransactionMongoEntity.class,
                 Criteria.where("update_time").lt(date).and("status").is(4));
     }
 
     @Override
     public int removeHmilyParticipantByData(final Date date) {
+        if (expireByTtl) {
+            return 0;
+        }
         return service.delete(ParticipantMongoEntity.class,
                 Criteria.where("update_time").lt(date).and("status").is(4));
     }
 
     @Override
     public boolean lockHmilyParticipant(final HmilyParticipant hmilyParticipant) {
-        return service.update(ParticipantMongoEntity.class,
+        boolean locked = service.update(ParticipantMongoEntity.class,
                 Criteria.where("participant_id").is(hmilyParticipant.getParticipantId())
                 .and("version").is(hmilyParticipant.getVersion()),
                 set("version", hmilyParticipant.getVersion() + 1),
                 set("retry", hmilyParticipant.getRetry() + 1)) > 0;
+        if (locked && Objects.isNull(hmilyParticipant.getConfirmHmilyInvocation()) && Objects.isNull(hmilyParticipant.getCancelHmilyInvocation())) {
+            ParticipantMongoEntity entity = service.findFields(ParticipantMongoEntity.class,
+                    Criteria.where("participant_id").is(hmilyParticipant.getParticipantId()), INVOCATIONS);
+            if (Objects.nonNull(entity)) {
+                converter.convertInvocations(entity, hmilyParticipant);
+            }
+        }
+        return locked;
     }
 
     @Override
     public int removeHmilyParticipantUndoByData(final Date date) {
+        if (expireByTtl) {
+            return 0;
+        }
         return service.delete(UndoMongoEntity.class,
                 Criteria.where("update_time").lt(date).and("status").is(4));
     }
@@ -251,6 +351,64 @@ public class MongodbRepository implements HmilyRepository {
                 Criteria.where("participant_id").is(participantId));
     }
 
+    @Override
+    public int batchCreateHmilyTransaction(final List<HmilyTransaction> hmilyTransactionList) {
+        if (hmilyTransactionList.isEmpty()) {
+            return 0;
+        }
+        List<TransactionMongoEntity> entities = hmilyTransactionList.stream().map(e -> converter.create(e, appName)).collect(Collectors.toList());
+        return service.bulkWrite(TransactionMongoEntity.class, operations -> operations.insert(entities));
+    }
+
+    @Override
+    public int batchUpdateHmilyTransactionStatus(final Map<Long, Integer> statusMap) {
+        return batchUpdateStatus(TransactionMongoEntity.class, "trans_id", statusMap);
+    }
+
+    @Override
+    public int batchRemoveHmilyTransaction(final List<Long> transIdList) {
+        return service.delete(TransactionMongoEntity.class, Criteria.where("trans_id").in(transIdList));
+    }
+
+    @Override
+    public int batchCreateHmilyParticipant(final List<HmilyParticipant> hmilyParticipantList) {
+        if (hmilyParticipantList.isEmpty()) {
+            return 0;
+        }
+        List<ParticipantMongoEntity> entities = hmilyParticipantList.stream().map(e -> converter.create(e, appName)).collect(Collectors.toList());
+        return service.bulkWrite(ParticipantMongoEntity.class, operations -> operations.insert(entities));
+    }
+
+    @Override
+    public int batchUpdateHmilyParticipantStatus(final Map<Long, Integer> statusMap) {
+        return batchUpdateStatus(ParticipantMongoEntity.class, "participant_id", statusMap);
+    }
+
+    @Override
+    public int batchRemoveHmilyParticipant(final List<Long> participantIdList) {
+        return service.delete(ParticipantMongoEntity.class, Criteria.where("participant_id").in(participantIdList));
+    }
+
+    @Override
+    public int batchRemoveHmilyParticipantUndo(final List<Long> undoIdList) {
+        return service.delete(UndoMongoEntity.class, Criteria.where("undo_id").in(undoIdList));
+    }
+
+    @Override
+    public int batchUpdateHmilyParticipantUndoStatus(final Map<Long, Integer> statusMap) {
+        return batchUpdateStatus(UndoMongoEntity.class, "undo_id", statusMap);
+    }
+
+    private int batchUpdateStatus(final Class<?> c, final String idKey, final Map<Long, Integer> statusMap) {
+        if (statusMap.isEmpty()) {
+            return 0;
+        }
+        Map<Integer, List<Long>> statusGroup = statusMap.entrySet().stream()
+                .collect(Collectors.groupingBy(Map.Entry::getValue, Collectors.mapping(Map.Entry::getKey, Collectors.toList())));
+        return service.bulkWrite(c, operations -> statusGroup.forEach((status, ids) ->
+                operations.updateMulti(new Query(Criteria.where(idKey).in(ids)), Update.update("status", status))));
+    }
+
     private Pair<String, Object> set(final String key, final Object value) {
         return Pair.of(key, value);
     }
@@ -1,18 +1,31 @@
 package org.dromara.hmily.repository.mongodb;
 
 import com.mongodb.MongoClient;
+import com.mongodb.bulk.BulkWriteResult;
 import org.apache.commons.lang3.tuple.Pair;
+import org.bson.Document;
 import org.dromara.hmily.repository.spi.HmilyRepository;
+import org.dromara.hmily.repository.spi.exception.HmilyRepositoryException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
 import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * mongo Template.
@@ -22,6 +35,8 @@ import java.util.List;
 public class MongodbTemplateService extends MongoTemplate {
     private static final Logger LOGGER = LoggerFactory.getLogger(MongodbTemplateService.class);
 
+    private static final String EXPIRE_AFTER_SECONDS = "expireAfterSeconds";
+
     public MongodbTemplateService(final MongoClient mongoClient, final String databaseName) {
         super(mongoClient, databaseName);
     }
@@ -49,6 +64,58 @@ public class MongodbTemplateService extends MongoTemplate {
         }
     }
 
+    /**
+     * unordered bulk write, the writes go in as few requests as the server takes and a failed one does not stop the others.
+     * @param c type.
+     * @param writes adds the writes to the bulk.
+     * @return line count, inserted, matched and deleted, as an update which sets the same values still counts.
+     * @throws HmilyRepositoryException if any write of the bulk fails, the ones which did not fail are applied.
+     */
+    public int bulkWrite(final Class<?> c, final Consumer<BulkOperations> writes) {
+        BulkOperations operations = bulkOps(BulkOperations.BulkMode.UNORDERED, c);
+        writes.accept(operations);
+        try {
+            BulkWriteResult result = operations.execute();
+            return result.getInsertedCount() + result.getMatchedCount() + result.getDeletedCount();
+        } catch (BulkOperationException e) {
+            com.mongodb.BulkWriteResult result = e.getResult();
+            LOGGER.error("mongo bulk write exception, inserted:{}, matched:{}, deleted:{}, errors:{}",
+                    result.getInsertedCount(), result.getMatchedCount(), result.getRemovedCount(), e.getErrors(), e);
+            throw new HmilyRepositoryException(e);
+        }
+    }
+
+    /**
+     * ensure indexes, the existing ones with the same keys and options are left as they are.
+     * an existing ttl index with another expireAfterSeconds is changed by a collMod, any other difference fails.
+     * an existing ttl index whose keys are not among the ttl indexes given is dropped, so turning the ttl off removes it.
+     * @param c type.
+     * @param indexes the indexes.
+     */
+    public void ensureIndexes(final Class<?> c, final IndexDefinition... indexes) {
+        String collectionName = getCollectionName(c);
+        List<Document> existing = getCollection(collectionName).listIndexes().into(new ArrayList<>());
+        for (Document current : existing) {
+            if (current.containsKey(EXPIRE_AFTER_SECONDS) && Arrays.stream(indexes)
+                    .noneMatch(index -> index.getIndexOptions().containsKey(EXPIRE_AFTER_SECONDS) && index.getIndexKeys().equals(current.get("key")))) {
+                indexOps(c).dropIndex(current.getString("name"));
+                LOGGER.info("mongo index {} of {} no longer expires, dropped", current.get("name"), collectionName);
+            }
+        }
+        for (IndexDefinition index : indexes) {
+            Object expireAfterSeconds = index.getIndexOptions().get(EXPIRE_AFTER_SECONDS);
+            Document current = existing.stream().filter(e -> index.getIndexKeys().equals(e.get("key"))).findFirst().orElse(null);
+            if (Objects.nonNull(expireAfterSeconds) && Objects.nonNull(current) && current.get(EXPIRE_AFTER_SECONDS) instanceof Number
+                    && ((Number) current.get(EXPIRE_AFTER_SECONDS)).longValue() != ((Number) expireAfterSeconds).longValue()) {
+                executeCommand(new Document("collMod", collectionName)
+                        .append("index", new Document("name", current.get("name")).append(EXPIRE_AFTER_SECONDS, expireAfterSeconds)));
+                LOGGER.info("mongo index {} of {} now expires after {} seconds", current.get("name"), collectionName, expireAfterSeconds);
+            } else {
+                indexOps(c).ensureIndex(index);
+            }
+        }
+    }
+
     /**
      * update.
      * @param c type.
@@ -92,6 +159,85 @@ public class MongodbTemplateService extends MongoTemplate {
         return find(query, c);
     }
 
+    /**
+     * query with order.
+     * @param c type.
+     * @param conditions where conditions.
+     * @param sort order of records.
+     * @param limit records number.
+     * @param <T> result Type.
+     * @return result list.
+     */
+    public <T> List<T> find(final Class<T> c, final Criteria conditions, final Sort sort, final Integer limit) {
+        Query query = new Query();
+        if (limit != null && limit > 0) {
+            query.limit(limit);
+        }
+        query.addCriteria(conditions).with(sort);
+        return find(query, c);
+    }
+
+    /**
+     * query with order through a cursor, the records are read a batch at a time and mapped one by one.
+     * @param c type.
+     * @param conditions where conditions.
+     * @param sort order of records.
+     * @param limit records number.
+     * @param batchSize records number of a round trip.
+     * @param mapper maps a record.
+     * @param excludes the fields not read.
+     * @param <T> record Type.
+     * @param <R> result Type.
+     * @return result list.
+     */
+    public <T, R> List<R> findByCursor(final Class<T> c, final Criteria conditions, final Sort sort, final Integer limit,
+                                       final int batchSize, final Function<T, R> mapper, final String... excludes) {
+        Query query = new Query();
+        if (limit != null && limit > 0) {
+            query.limit(limit);
+        }
+        query.addCriteria(conditions).with(sort).cursorBatchSize(batchSize);
+        for (String field : excludes) {
+            query.fields().exclude(field);
+        }
+        List<R> result = new ArrayList<>();
+        try (CloseableIterator<T> iterator = stream(query, c)) {
+            while (iterator.hasNext()) {
+                result.add(mapper.apply(iterator.next()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * query the first record, only the listed fields.
+     * @param c type.
+     * @param conditions where conditions.
+     * @param includes the fields read.
+     * @param <T> result Type.
+     * @return the record, or null.
+     */
+    public <T> T findFields(final Class<T> c, final Criteria conditions, final String... includes) {
+        Query query = new Query().addCriteria(conditions);
+        for (String field : includes) {
+            query.fields().include(field);
+        }
+        return findOne(query, c);
+    }
+
+    /**
+     * distinct values of a field.
+     * @param c type.
+     * @param field the field name.
+     * @param conditions where conditions.
+     * @param resultClass type of the field.
+     * @param <T> result Type.
+     * @return the distinct values.
+     */
+    public <T> List<T> distinct(final Class<?> c, final String field, final Criteria conditions, final Class<T> resultClass) {
+        return findDistinct(new Query().addCriteria(conditions), field, c, resultClass);
+    }
+
     /**
      * records count.
      * @param c type.
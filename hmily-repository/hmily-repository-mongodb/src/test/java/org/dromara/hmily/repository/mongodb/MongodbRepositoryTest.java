@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.mongodb;
+
+import com.mongodb.client.result.UpdateResult;
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import org.bson.Document;
+import org.dromara.hmily.repository.mongodb.entity.ParticipantMongoEntity;
+import org.dromara.hmily.repository.spi.entity.HmilyInvocation;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
+import org.dromara.hmily.serializer.spi.HmilySerializer;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The recovery scans of the mongo repository and the invocations of the participants they lock.
+ *
+ * @author xiaoyu
+ */
+public final class MongodbRepositoryTest {
+
+    private static final Document NO_INVOCATIONS = new Document("confirm_invocation", 0).append("cancel_invocation", 0);
+
+    private static final Document ONLY_INVOCATIONS = new Document("confirm_invocation", 1).append("cancel_invocation", 1);
+
+    private final HmilyInvocation confirmInvocation = new HmilyInvocation();
+
+    private MongodbTemplateService service;
+
+    private MongodbRepository repository;
+
+    @Before
+    public void setUp() throws Exception {
+        service = spy(new MongodbTemplateService(mock(MongoDbFactory.class)));
+        HmilySerializer hmilySerializer = mock(HmilySerializer.class);
+        when(hmilySerializer.deSerialize(any(byte[].class), eq(HmilyInvocation.class))).thenReturn(confirmInvocation);
+        repository = new MongodbRepository();
+        repository.setSerializer(hmilySerializer);
+        set("service", service);
+        set("appName", "mongo-test");
+    }
+
+    @Test
+    public void assertScanDoesNotReadTheInvocations() {
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        doReturn(iterator(participant())).when(service).stream(query.capture(), eq(ParticipantMongoEntity.class));
+        List<HmilyParticipant> scanned = repository.scanHmilyParticipant(new Date(), "TCC", null, 10);
+        assertEquals(NO_INVOCATIONS, query.getValue().getFieldsObject());
+        assertEquals(1, scanned.size());
+        assertNull(scanned.get(0).getConfirmHmilyInvocation());
+        repository.listHmilyParticipant(new Date(), "TCC", 10);
+        assertEquals(NO_INVOCATIONS, query.getValue().getFieldsObject());
+    }
+
+    @Test
+    public void assertLockedParticipantReadsItsInvocations() {
+        doReturn(UpdateResult.acknowledged(1L, 1L, null)).when(service).updateFirst(any(Query.class), any(Update.class), eq(ParticipantMongoEntity.class));
+        ParticipantMongoEntity invocations = new ParticipantMongoEntity();
+        invocations.setConfirmInvocation(new byte[]{1});
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        doReturn(invocations).when(service).findOne(query.capture(), eq(ParticipantMongoEntity.class));
+        HmilyParticipant hmilyParticipant = scanned();
+        assertTrue(repository.lockHmilyParticipant(hmilyParticipant));
+        assertEquals(ONLY_INVOCATIONS, query.getValue().getFieldsObject());
+        assertNotNull(hmilyParticipant.getConfirmHmilyInvocation());
+        assertNull(hmilyParticipant.getCancelHmilyInvocation());
+    }
+
+    @Test
+    public void assertParticipantNotLockedDoesNotReadItsInvocations() {
+        doReturn(UpdateResult.acknowledged(0L, 0L, null)).when(service).updateFirst(any(Query.class), any(Update.class), eq(ParticipantMongoEntity.class));
+        HmilyParticipant hmilyParticipant = scanned();
+        assertFalse(repository.lockHmilyParticipant(hmilyParticipant));
+        verify(service, never()).findOne(any(Query.class), eq(ParticipantMongoEntity.class));
+        assertNull(hmilyParticipant.getConfirmHmilyInvocation());
+    }
+
+    private HmilyParticipant scanned() {
+        doReturn(iterator(participant())).when(service).stream(any(Query.class), eq(ParticipantMongoEntity.class));
+        return repository.scanHmilyParticipant(new Date(), "TCC", null, 10).get(0);
+    }
+
+    private void set(final String name, final Object value) throws Exception {
+        Field field = MongodbRepository.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(repository, value);
+    }
+
+    /**
+     * a participant as the server returns it to the scan, without the invocations it excludes.
+     */
+    private static ParticipantMongoEntity participant() {
+        ParticipantMongoEntity entity = new ParticipantMongoEntity();
+        entity.setParticipantId(10L);
+        entity.setTransId(1L);
+        entity.setTransType("TCC");
+        entity.setStatus(1);
+        entity.setRole(1);
+        entity.setRetry(0);
+        entity.setVersion(1);
+        entity.setUpdateTime(new Date());
+        return entity;
+    }
+
+    private static <T> CloseableIterator<T> iterator(final T record) {
+        Iterator<T> iterator = Collections.singletonList(record).iterator();
+        return new CloseableIterator<T>() {
+
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.mongodb;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.ListIndexesIterable;
+import com.mongodb.client.MongoCollection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.bson.Document;
+import org.dromara.hmily.repository.mongodb.entity.ParticipantMongoEntity;
+import org.dromara.hmily.repository.spi.exception.HmilyRepositoryException;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The index and ttl provisioning and the bulk writes of the mongo template.
+ *
+ * @author xiaoyu
+ */
+public final class MongodbTemplateServiceTest {
+
+    private static final String COLLECTION = "hmily_participant";
+
+    private static final Document TTL_INDEX = new Document("name", "update_time_1")
+            .append("key", new Document("update_time", 1)).append("expireAfterSeconds", 60L);
+
+    private final IndexOperations indexOperations = mock(IndexOperations.class);
+
+    private final BulkOperations bulkOperations = mock(BulkOperations.class);
+
+    private MongodbTemplateService service;
+
+    @Before
+    public void setUp() {
+        service = spy(new MongodbTemplateService(mock(MongoDbFactory.class)));
+        doReturn(COLLECTION).when(service).getCollectionName(ParticipantMongoEntity.class);
+        doReturn(indexOperations).when(service).indexOps(ParticipantMongoEntity.class);
+        doReturn(bulkOperations).when(service).bulkOps(BulkOperations.BulkMode.UNORDERED, ParticipantMongoEntity.class);
+        doReturn(new Document("ok", 1)).when(service).executeCommand(any(Document.class));
+    }
+
+    @Test
+    public void assertMissingIndexesAreEnsured() {
+        existing();
+        Index index = new Index().on("participant_id", Sort.Direction.ASC);
+        service.ensureIndexes(ParticipantMongoEntity.class, index);
+        verify(indexOperations).ensureIndex(index);
+        verify(service, never()).executeCommand(any(Document.class));
+    }
+
+    @Test
+    public void assertChangedTtlIsModifiedInPlace() {
+        existing(TTL_INDEX);
+        service.ensureIndexes(ParticipantMongoEntity.class, new Index().on("update_time", Sort.Direction.ASC).expire(120L));
+        verify(service).executeCommand(new Document("collMod", COLLECTION)
+                .append("index", new Document("name", "update_time_1").append("expireAfterSeconds", 120L)));
+        verify(indexOperations, never()).ensureIndex(any(Index.class));
+        verify(indexOperations, never()).dropIndex(anyString());
+    }
+
+    @Test
+    public void assertSameTtlIsLeftAsItIs() {
+        existing(TTL_INDEX);
+        Index index = new Index().on("update_time", Sort.Direction.ASC).expire(60L);
+        service.ensureIndexes(ParticipantMongoEntity.class, index);
+        verify(indexOperations).ensureIndex(index);
+        verify(indexOperations, never()).dropIndex(anyString());
+        verify(service, never()).executeCommand(any(Document.class));
+    }
+
+    @Test
+    public void assertTtlTurnedOffDropsTheTtlIndex() {
+        existing(TTL_INDEX, new Document("name", "_id_").append("key", new Document("_id", 1)));
+        Index index = new Index().on("status", Sort.Direction.ASC).on("update_time", Sort.Direction.ASC);
+        service.ensureIndexes(ParticipantMongoEntity.class, index);
+        verify(indexOperations).dropIndex("update_time_1");
+        verify(indexOperations, never()).dropIndex("_id_");
+        verify(indexOperations).ensureIndex(index);
+    }
+
+    @Test
+    public void assertBulkWriteCountsTheMatchedRecords() {
+        when(bulkOperations.execute()).thenReturn(BulkWriteResult.acknowledged(2, 3, 1, 0, Collections.emptyList()));
+        int rows = service.bulkWrite(ParticipantMongoEntity.class, operations -> {
+            operations.insert(Arrays.asList(new ParticipantMongoEntity(), new ParticipantMongoEntity()));
+            operations.updateMulti(new Query(), Update.update("status", 4));
+        });
+        assertEquals(6, rows);
+        verify(bulkOperations).insert(anyList());
+        verify(bulkOperations).updateMulti(any(Query.class), eq(Update.update("status", 4)));
+    }
+
+    @Test
+    public void assertFailedBulkWriteIsThrown() {
+        BulkOperationException failure = mock(BulkOperationException.class);
+        when(failure.getResult()).thenReturn(mock(com.mongodb.BulkWriteResult.class));
+        when(bulkOperations.execute()).thenThrow(failure);
+        try {
+            service.bulkWrite(ParticipantMongoEntity.class, operations -> operations.insert(new ParticipantMongoEntity()));
+            fail();
+        } catch (HmilyRepositoryException e) {
+            assertEquals(failure, e.getCause());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void existing(final Document... indexes) {
+        List<Document> existing = Arrays.asList(indexes);
+        MongoCollection<Document> collection = mock(MongoCollection.class);
+        ListIndexesIterable<Document> listIndexes = mock(ListIndexesIterable.class);
+        when(listIndexes.into(any())).thenAnswer(invocation -> {
+            List<Document> target = invocation.getArgument(0);
+            target.addAll(existing);
+            return target;
+        });
+        when(collection.listIndexes()).thenReturn(listIndexes);
+        doReturn(collection).when(service).getCollection(COLLECTION);
+    }
+}
@@ -20,28 +20,44 @@ package org.dromara.hmily.repository.redis;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.Getter;
 import org.dromara.hmily.common.enums.HmilyActionEnum;
 import org.dromara.hmily.common.exception.HmilyException;
 import org.dromara.hmily.common.utils.LogUtil;
 import org.dromara.hmily.common.utils.StringUtils;
 import org.dromara.hmily.config.api.ConfigEnv;
 import org.dromara.hmily.config.api.entity.HmilyRedisConfig;
+import org.dromara.hmily.repository.redis.jedis.HmilyJedisCluster;
 import org.dromara.hmily.repository.redis.jedis.JedisClient;
 import org.dromara.hmily.repository.redis.jedis.JedisClientCluster;
 import org.dromara.hmily.repository.redis.jedis.JedisClientSentinel;
 import org.dromara.hmily.repository.redis.jedis.JedisClientSingle;
+import org.dromara.hmily.repository.redis.jedis.ScriptCall;
 import org.dromara.hmily.repository.spi.HmilyRepository;
 import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
 import org.dromara.hmily.repository.spi.entity.HmilyParticipantUndo;
+import org.dromara.hmily.repository.spi.entity.HmilyScanCursor;
 import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
 import org.dromara.hmily.repository.spi.exception.HmilyRepositoryException;
 import org.dromara.hmily.serializer.spi.HmilySerializer;
@@ -49,7 +65,6 @@ import org.dromara.hmily.spi.HmilySPI;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.HostAndPort;
-import redis.clients.jedis.JedisCluster;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 import redis.clients.jedis.JedisSentinelPool;
@@ -58,6 +73,28 @@ import redis.clients.jedis.exceptions.JedisException;
 /**
  * redis impl.
  *
+ * <p>Every record is a hash of its serialized data and of the status, version, retry and times, see
+ * {@link RedisScript}. Status updates and locks are lua scripts which change only those fields, so they
+ * take one round trip, check the version on the server and never serialize the record again.</p>
+ *
+ * <p>The records are indexed by sorted sets scored by update time, partitioned by app name and, for
+ * participants, by trans type. Recovery and cleanup read a range of an index and fetch only those records.</p>
+ *
+ * <p>A participant is also in the lookup set of its transaction and of its participant id, which has the participants
+ * referring to it as well, so the lookups of nested calls read only the participants of one transaction.</p>
+ *
+ * <p>In a cluster the keys are spread over {@link HmilyRedisConfig#getShards()} shards, each a hash tag. The records of
+ * a transaction, its participants and undo logs are in the shard of its trans id with their indexes and lookup sets,
+ * so a script stays in one slot. A participant or undo log is found by its own id through the locator hash in the shard
+ * of that id. The batches and the scans over the shards are pipelined per slot, so the writes scale with the masters.
+ * The shard count is kept in redis on the first init, and an init with another one fails.</p>
+ *
+ * <p>A script is given every key it touches. The indexes of a shard are cached from its index registry and declared to the scripts
+ * that may move a record out of one, and a script which finds a record in an index or set it was not given reports it, see
+ * {@link RedisScript}, and is called again with it.</p>
+ *
+ * <p>The records written by the earlier layout, one global hash per kind of record, are imported once on init.</p>
+ *
  * @author dzc
  */
 @HmilySPI("redis")
@@ -71,10 +108,48 @@ public class RedisRepository implements HmilyRepository {
     
     private static final String HMILY_PARTICIPANT_UNDO = "hmily_participant_undo";
     
-    private String rootPathPrefix = "hmily";
+    private static final String HMILY = "hmily";
+    
+    private static final String INDEX = "index";
+    
+    private static final String LOCATOR = "locator";
+    
+    private static final String SHARDS = "shards";
+    
+    private static final byte[] MIN_SCORE = "-inf".getBytes();
+    
+    private static final byte[] MAX_SCORE = "+inf".getBytes();
+    
+    private static final String TRANS = "trans";
+    
+    private static final String PARTICIPANT = "participant";
+    
+    private static final int SCAN_BATCH_SIZE = 500;
+    
+    private static final int DECLARE_ATTEMPTS = 3;
+    
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+    
+    private static final int DATA = 0;
+    
+    private static final int STATUS = 1;
+    
+    private static final int VERSION = 2;
+    
+    private static final int RETRY = 3;
+    
+    private static final int CREATE_TIME = 4;
+    
+    private static final int UPDATE_TIME = 5;
+    
+    private final AtomicInteger scanStart = new AtomicInteger();
+    
+    private final Map<String, Set<String>> indexKeys = new ConcurrentHashMap<>();
     
     private String keyPrefix = "-";
     
+    private int shards = 1;
+    
     private String appName;
     
     private HmilySerializer hmilySerializer;
@@ -87,6 +162,8 @@ public class RedisRepository implements HmilyRepository {
         HmilyRedisConfig hmilyRedisConfig = ConfigEnv.getInstance().getConfig(HmilyRedisConfig.class);
         try {
             buildJedisPool(hmilyRedisConfig);
+            checkShards();
+            importLegacy();
         } catch (Exception e) {
             LOGGER.error("redis init error please check you config:{}", e.getMessage());
             throw new HmilyRepositoryException(e);
@@ -100,36 +177,21 @@ public class RedisRepository implements HmilyRepository {
     
     @Override
     public int createHmilyTransaction(final HmilyTransaction hmilyTransaction) throws HmilyRepositoryException {
-        try {
-            String transId = buildHmilyTransactionRealPath(hmilyTransaction.getTransId());
-            final boolean exist = jedisClient.hexists(HMILY_TRANSACTION_GLOBAL.getBytes(), transId.getBytes());
-            if (!exist) {
-                hmilyTransaction.setRetry(0);
-                hmilyTransaction.setVersion(0);
-                hmilyTransaction.setCreateTime(new Date());
-            } else {
-                hmilyTransaction.setVersion(hmilyTransaction.getVersion() + 1);
-            }
-            hmilyTransaction.setUpdateTime(new Date());
-            jedisClient.hset(HMILY_TRANSACTION_GLOBAL.getBytes(), transId.getBytes(), hmilySerializer.serialize(hmilyTransaction));
-            return HmilyRepository.ROWS;
-        } catch (JedisException e) {
-            throw new HmilyException(e);
-        }
+        batchCreateHmilyTransaction(Collections.singletonList(hmilyTransaction));
+        return HmilyRepository.ROWS;
     }
     
     @Override
     public int updateRetryByLock(final HmilyTransaction hmilyTransaction) {
+        final int currentVersion = hmilyTransaction.getVersion();
+        Date updateTime = new Date();
         try {
-            String transId = buildHmilyTransactionRealPath(hmilyTransaction.getTransId());
-            final boolean exist = jedisClient.hexists(HMILY_TRANSACTION_GLOBAL.getBytes(), transId.getBytes());
-            if (!exist) {
+            if (!lock(HMILY_TRANSACTION_GLOBAL, shardOf(hmilyTransaction.getTransId()), hmilyTransaction.getTransId(), currentVersion, updateTime)) {
                 return HmilyRepository.FAIL_ROWS;
-            } else {
-                hmilyTransaction.setVersion(hmilyTransaction.getVersion() + 1);
-                hmilyTransaction.setUpdateTime(new Date());
-                jedisClient.hset(HMILY_TRANSACTION_GLOBAL.getBytes(), transId.getBytes(), hmilySerializer.serialize(hmilyTransaction));
             }
+            hmilyTransaction.setVersion(currentVersion + 1);
+            hmilyTransaction.setRetry(hmilyTransaction.getRetry() + 1);
+            hmilyTransaction.setUpdateTime(updateTime);
             return HmilyRepository.ROWS;
         } catch (JedisException e) {
             throw new HmilyException(e);
@@ -139,17 +201,7 @@ public class RedisRepository implements HmilyRepository {
     @Override
     public HmilyTransaction findByTransId(final Long transId) {
         try {
-            String key = buildHmilyTransactionRealPath(transId);
-            final boolean exist = jedisClient.hexists(HMILY_TRANSACTION_GLOBAL.getBytes(), key.getBytes());
-            if (!exist) {
-                return null;
-            } else {
-                byte[] data = jedisClient.hget(HMILY_TRANSACTION_GLOBAL.getBytes(), key.getBytes());
-                if (data == null) {
-                    return null;
-                }
-                return hmilySerializer.deSerialize(data, HmilyTransaction.class);
-            }
+            return get(Collections.singletonList(buildHmilyTransactionKey(transId)), HmilyTransaction.class, RedisRepository::mergeHmilyTransaction).get(0);
         } catch (JedisException e) {
             LOGGER.error("transId occur a exception", e);
             throw new HmilyException(e);
@@ -158,57 +210,21 @@ public class RedisRepository implements HmilyRepository {
     
     @Override
     public List<HmilyTransaction> listLimitByDelay(final Date date, final int limit) {
-        String key = buildHmilyTransactionRootPath();
-        return listByFilter(key, HmilyTransaction.class, (hmilyTransaction, params) -> {
-            Date dateParam = (Date) params[0];
-            int limitParam = (int) params[1];
-            boolean filterResult = dateParam.before(hmilyTransaction.getUpdateTime())
-                    && appName.equals(hmilyTransaction.getAppName())
-                    && limitParam-- > 0;
-            // write back to params
-            params[1] = limitParam;
-            return filterResult;
-        }, date, limit);
-    }
-    
-    private <T> List<T> listByFilter(final String key, final Class<T> deserializeClass, final Filter<T> filter, final Object... params) {
-        try {
-            Map<byte[], byte[]> dataAll = jedisClient.hgetAll(key.getBytes());
-            if (Objects.isNull(dataAll)) {
-                return Collections.emptyList();
-            }
-            List<T> result = new ArrayList<>();
-            for (Entry<byte[], byte[]> entry : dataAll.entrySet()) {
-                byte[] data = entry.getValue();
-                if (data == null) {
-                    continue;
-                }
-                T t = hmilySerializer.deSerialize(data, deserializeClass);
-                if (filter.filter(t, params)) {
-                    result.add(t);
-                }
-            }
-            return result;
-        } catch (JedisException e) {
-            LOGGER.error("listByFilter occur a exception", e);
-        }
-        return Collections.emptyList();
+        List<String> indexKeys = buildShardIndexKeys(HMILY_TRANSACTION_GLOBAL, appName);
+        return new ArrayList<>(scanIndexes(indexKeys, buildMinScore(date), MAX_SCORE, HmilyTransaction.class,
+                RedisRepository::mergeHmilyTransaction, (hmilyTransaction, params) -> true, limit).values());
+    }
+    
+    @Override
+    public List<HmilyTransaction> scanHmilyTransaction(final Date date, final HmilyScanCursor cursor, final int limit) {
+        return seekIndexes(buildShardIndexKeys(HMILY_TRANSACTION_GLOBAL, appName), date, cursor, HmilyTransaction.class, RedisRepository::mergeHmilyTransaction,
+                HmilyTransaction::getUpdateTime, HmilyTransaction::getTransId, (hmilyTransaction, params) -> true, limit);
     }
     
     @Override
     public int updateHmilyTransactionStatus(final Long transId, final Integer status) throws HmilyRepositoryException {
-        byte[] key = buildHmilyTransactionRealPath(transId).getBytes();
         try {
-            byte[] data = jedisClient.hget(HMILY_TRANSACTION_GLOBAL.getBytes(), key);
-            if (data == null) {
-                return HmilyRepository.FAIL_ROWS;
-            }
-            HmilyTransaction hmilyTransaction = hmilySerializer.deSerialize(data, HmilyTransaction.class);
-            hmilyTransaction.setStatus(status);
-            hmilyTransaction.setVersion(hmilyTransaction.getVersion() + 1);
-            hmilyTransaction.setUpdateTime(new Date());
-            jedisClient.hset(HMILY_TRANSACTION_GLOBAL.getBytes(), key, hmilySerializer.serialize(hmilyTransaction));
-            return HmilyRepository.ROWS;
+            return updateStatusById(HMILY_TRANSACTION_GLOBAL, Collections.singletonMap(transId, status)) > 0 ? HmilyRepository.ROWS : HmilyRepository.FAIL_ROWS;
         } catch (JedisException e) {
             LOGGER.error("updateHmilyTransactionStatus occur a exception", e);
         }
@@ -217,9 +233,8 @@ public class RedisRepository implements HmilyRepository {
     
     @Override
     public int removeHmilyTransaction(final Long transId) {
-        String key = buildHmilyTransactionRealPath(transId);
         try {
-            jedisClient.hdel(HMILY_TRANSACTION_GLOBAL, key);
+            removeById(HMILY_TRANSACTION_GLOBAL, Collections.singletonList(transId));
             return HmilyRepository.ROWS;
         } catch (JedisException e) {
             LOGGER.error("removeHmilyTransaction occur a exception", e);
@@ -229,88 +244,83 @@ public class RedisRepository implements HmilyRepository {
     
     @Override
     public int removeHmilyTransactionByData(final Date date) {
-        String key = buildHmilyTransactionRootPath();
-        return removeByFilter(key, HmilyTransaction.class, (hmilyTransaction, params) -> {
-            Date dateParam = (Date) params[0];
-            return dateParam.before(hmilyTransaction.getUpdateTime()) && hmilyTransaction.getStatus() == HmilyActionEnum.DELETE.getCode();
-        }, date);
+        return removeByIndex(HMILY_TRANSACTION_GLOBAL, date, HmilyTransaction.class,
+                RedisRepository::mergeHmilyTransaction, (hmilyTransaction, params) -> hmilyTransaction.getStatus() == HmilyActionEnum.DELETE.getCode());
     }
     
     @Override
     public int createHmilyParticipant(final HmilyParticipant hmilyParticipant) throws HmilyRepositoryException {
+        batchCreateHmilyParticipant(Collections.singletonList(hmilyParticipant));
+        return HmilyRepository.ROWS;
+    }
+    
+    @Override
+    public List<HmilyParticipant> findHmilyParticipant(final Long participantId) {
         try {
-            byte[] transId = buildHmilyParticipantRealPath(hmilyParticipant.getTransId()).getBytes();
-            boolean exist = jedisClient.hexists(HMILY_TRANSACTION_PARTICIPANT.getBytes(), transId);
-            if (!exist) {
-                hmilyParticipant.setRetry(0);
-                hmilyParticipant.setVersion(0);
-                hmilyParticipant.setCreateTime(new Date());
-            } else {
-                hmilyParticipant.setVersion(hmilyParticipant.getVersion() + 1);
+            Integer shard = locate(HMILY_TRANSACTION_PARTICIPANT, Collections.singletonList(participantId)).get(participantId);
+            if (Objects.isNull(shard)) {
+                return Collections.emptyList();
             }
-            hmilyParticipant.setUpdateTime(new Date());
-            jedisClient.hset(HMILY_TRANSACTION_PARTICIPANT.getBytes(), String.valueOf(hmilyParticipant.getParticipantId()).getBytes(), hmilySerializer.serialize(hmilyParticipant));
-            return HmilyRepository.ROWS;
+            return getMembers(buildHmilyParticipantLookupKey(shard, participantId), HmilyParticipant.class, RedisRepository::mergeHmilyParticipant);
         } catch (JedisException e) {
-            throw new HmilyException(e);
+            LOGGER.error("findHmilyParticipant occur a exception", e);
         }
+        return Collections.emptyList();
     }
     
     @Override
-    public List<HmilyParticipant> findHmilyParticipant(final Long participantId) {
-        String key = buildHmilyParticipantRootPath();
-        return listByFilter(key, HmilyParticipant.class, (hmilyParticipant, params) -> {
-            Long participantIdParam = (Long) params[0];
-            return participantIdParam.compareTo(hmilyParticipant.getParticipantId()) == 0
-                    || (hmilyParticipant.getParticipantRefId() != null && participantIdParam.compareTo(hmilyParticipant.getParticipantRefId()) == 0);
-        }, participantId);
+    public List<HmilyParticipant> listHmilyParticipant(final Date date, final String transType, final int limit) {
+        List<String> indexKeys = buildShardIndexKeys(HMILY_TRANSACTION_PARTICIPANT, appName, transType);
+        return new ArrayList<>(scanIndexes(indexKeys, buildMinScore(date), MAX_SCORE, HmilyParticipant.class, RedisRepository::mergeHmilyParticipant,
+                RedisRepository::isRecoverable, limit).values());
     }
     
     @Override
-    public List<HmilyParticipant> listHmilyParticipant(final Date date, final String transType, final int limit) {
-        String path = buildHmilyParticipantRootPath();
-        return listByFilter(path, HmilyParticipant.class, (hmilyParticipant, params) -> {
-            Date dateParam = (Date) params[0];
-            String transTypeParam = (String) params[1];
-            int limitParam = (int) params[2];
-            boolean filterResult = dateParam.before(hmilyParticipant.getUpdateTime()) && appName.equals(hmilyParticipant.getAppName())
-                    && transTypeParam.equals(hmilyParticipant.getTransType())
-                    && (hmilyParticipant.getStatus().compareTo(HmilyActionEnum.DELETE.getCode()) != 0 && hmilyParticipant.getStatus().compareTo(HmilyActionEnum.DEATH.getCode()) != 0)
-                    && limitParam-- > 0;
-            params[2] = limitParam;
-            return filterResult;
-        }, date, transType, limit);
+    public List<HmilyParticipant> scanHmilyParticipant(final Date date, final String transType, final HmilyScanCursor cursor, final int limit) {
+        return seekIndexes(buildShardIndexKeys(HMILY_TRANSACTION_PARTICIPANT, appName, transType), date, cursor, HmilyParticipant.class, RedisRepository::mergeHmilyParticipant,
+                HmilyParticipant::getUpdateTime, HmilyParticipant::getParticipantId, RedisRepository::isRecoverable, limit);
     }
     
     @Override
     public List<HmilyParticipant> listHmilyParticipantByTransId(final Long transId) {
-        String key = buildHmilyParticipantRootPath();
-        return listByFilter(key, HmilyParticipant.class, (hmilyParticipant, params) -> transId.compareTo(hmilyParticipant.getTransId()) == 0, transId);
+        try {
+            return getMembers(buildHmilyParticipantTransKey(transId), HmilyParticipant.class, RedisRepository::mergeHmilyParticipant);
+        } catch (JedisException e) {
+            LOGGER.error("listHmilyParticipantByTransId occur a exception", e);
+        }
+        return Collections.emptyList();
     }
     
     @Override
     public boolean existHmilyParticipantByTransId(final Long transId) {
-        String key = buildHmilyParticipantRootPath();
-        return existByFilter(key, HmilyParticipant.class, (hmilyParticipant, params) -> {
-            Long transIdParam = (Long) params[0];
-            return transIdParam.compareTo(hmilyParticipant.getTransId()) == 0;
-        }, transId);
+        return findTransIdsWithoutParticipants(Collections.singletonList(transId)).isEmpty();
     }
     
     @Override
-    public int updateHmilyParticipantStatus(final Long participantId, final Integer status) throws HmilyRepositoryException {
-        byte[] key = buildHmilyParticipantRealPath(participantId).getBytes();
+    public List<Long> findTransIdsWithoutParticipants(final List<Long> transIdList) {
+        if (transIdList.isEmpty()) {
+            return Collections.emptyList();
+        }
         try {
-            byte[] data = jedisClient.hget(HMILY_TRANSACTION_PARTICIPANT.getBytes(), key);
-            if (data == null) {
-                return HmilyRepository.FAIL_ROWS;
+            List<byte[]> keys = transIdList.stream().map(this::buildHmilyParticipantTransKey).collect(Collectors.toList());
+            List<Object> exists = evalByTag(RedisScript.EXISTS, keys);
+            List<Long> orphans = new ArrayList<>();
+            for (int i = 0; i < transIdList.size(); i++) {
+                if ((Long) exists.get(i) == 0) {
+                    orphans.add(transIdList.get(i));
+                }
             }
-            HmilyParticipant hmilyParticipant = hmilySerializer.deSerialize(data, HmilyParticipant.class);
-            hmilyParticipant.setStatus(status);
-            hmilyParticipant.setVersion(hmilyParticipant.getVersion() + 1);
-            hmilyParticipant.setUpdateTime(new Date());
-            jedisClient.hset(HMILY_TRANSACTION_PARTICIPANT.getBytes(), String.valueOf(hmilyParticipant.getParticipantId()).getBytes(), hmilySerializer.serialize(hmilyParticipant));
-            return HmilyRepository.ROWS;
+            return orphans;
+        } catch (JedisException e) {
+            LOGGER.error("findTransIdsWithoutParticipants occur a exception", e);
+        }
+        return Collections.emptyList();
+    }
+    
+    @Override
+    public int updateHmilyParticipantStatus(final Long participantId, final Integer status) throws HmilyRepositoryException {
+        try {
+            return updateStatusById(HMILY_TRANSACTION_PARTICIPANT, Collections.singletonMap(participantId, status)) > 0 ? HmilyRepository.ROWS : HmilyRepository.FAIL_ROWS;
         } catch (JedisException e) {
             LOGGER.error("updateHmilyParticipantStatus occur a exception", e);
         }
@@ -319,9 +329,8 @@ public class RedisRepository implements HmilyRepository {
     
     @Override
     public int removeHmilyParticipant(final Long participantId) {
-        String key = buildHmilyParticipantRealPath(participantId);
         try {
-            jedisClient.hdel(HMILY_TRANSACTION_PARTICIPANT, key);
+            removeById(HMILY_TRANSACTION_PARTICIPANT, Collections.singletonList(participantId));
             return HmilyRepository.ROWS;
         } catch (JedisException e) {
             LOGGER.error("removeHmilyParticipant occur a exception", e);
@@ -331,27 +340,22 @@ public class RedisRepository implements HmilyRepository {
     
     @Override
     public int removeHmilyParticipantByData(final Date date) {
-        String key = buildHmilyParticipantRootPath();
-        return removeByFilter(key, HmilyParticipant.class, (hmilyParticipant, params) -> {
-            Date dateParam = (Date) params[0];
-            return dateParam.before(hmilyParticipant.getUpdateTime()) && hmilyParticipant.getStatus().compareTo(HmilyActionEnum.DELETE.getCode()) == 0;
-        }, date);
+        return removeByIndex(HMILY_TRANSACTION_PARTICIPANT, date, HmilyParticipant.class,
+                RedisRepository::mergeHmilyParticipant, (hmilyParticipant, params) -> hmilyParticipant.getStatus().compareTo(HmilyActionEnum.DELETE.getCode()) == 0);
     }
     
     @Override
     public boolean lockHmilyParticipant(final HmilyParticipant hmilyParticipant) {
         final int currentVersion = hmilyParticipant.getVersion();
-        String key = buildHmilyParticipantRealPath(hmilyParticipant.getParticipantId());
+        Date updateTime = new Date();
         try {
-            boolean exist = jedisClient.hexists(HMILY_TRANSACTION_PARTICIPANT.getBytes(), key.getBytes());
-            if (!exist) {
-                LOGGER.warn("key {} is not exists.", key);
+            if (!lock(HMILY_TRANSACTION_PARTICIPANT, shardOf(hmilyParticipant.getTransId()), hmilyParticipant.getParticipantId(), currentVersion, updateTime)) {
+                LOGGER.warn("participant {} is not exists or not at version {}.", hmilyParticipant.getParticipantId(), currentVersion);
                 return false;
             }
             hmilyParticipant.setVersion(currentVersion + 1);
             hmilyParticipant.setRetry(hmilyParticipant.getRetry() + 1);
-            hmilyParticipant.setUpdateTime(new Date());
-            jedisClient.hset(HMILY_TRANSACTION_PARTICIPANT.getBytes(), String.valueOf(hmilyParticipant.getParticipantId()).getBytes(), hmilySerializer.serialize(hmilyParticipant));
+            hmilyParticipant.setUpdateTime(updateTime);
             return true;
         } catch (JedisException e) {
             LOGGER.error("updateRetryByLock occur a exception", e);
@@ -362,13 +366,18 @@ public class RedisRepository implements HmilyRepository {
     @Override
     public int createHmilyParticipantUndo(final HmilyParticipantUndo hmilyParticipantUndo) {
         try {
-            byte[] transId = buildHmilyParticipantRealPath(hmilyParticipantUndo.getTransId()).getBytes();
-            boolean exist = jedisClient.hexists(HMILY_PARTICIPANT_UNDO.getBytes(), transId);
-            if (!exist) {
-                hmilyParticipantUndo.setCreateTime(new Date());
+            Date updateTime = new Date();
+            hmilyParticipantUndo.setUpdateTime(updateTime);
+            int shard = shardOf(hmilyParticipantUndo.getTransId());
+            saveLocators(HMILY_PARTICIPANT_UNDO, Collections.singletonMap(hmilyParticipantUndo.getUndoId(), shard));
+            DeclaredCall call = buildSaveCall(shard, HMILY_PARTICIPANT_UNDO, buildIndexKey(shard, HMILY_PARTICIPANT_UNDO, appName), updateTime,
+                    Collections.singletonList(buildRecordKey(shard, HMILY_PARTICIPANT_UNDO, hmilyParticipantUndo.getUndoId())),
+                    Arrays.asList(hmilySerializer.serialize(hmilyParticipantUndo), toBytes(hmilyParticipantUndo.getStatus())),
+                    Collections.singletonList(Collections.emptyList()));
+            List<Long> versions = save(Collections.singletonList(call)).get(0);
+            if (versions.get(0) == 0) {
+                hmilyParticipantUndo.setCreateTime(updateTime);
             }
-            hmilyParticipantUndo.setUpdateTime(new Date());
-            jedisClient.hset(HMILY_PARTICIPANT_UNDO.getBytes(), String.valueOf(hmilyParticipantUndo.getUndoId()).getBytes(), hmilySerializer.serialize(hmilyParticipantUndo));
             return HmilyRepository.ROWS;
         } catch (JedisException e) {
             throw new HmilyException(e);
@@ -377,8 +386,7 @@ public class RedisRepository implements HmilyRepository {
     
     @Override
     public List<HmilyParticipantUndo> findHmilyParticipantUndoByParticipantId(final Long participantId) {
-        String key = buildHmilyParticipantUndoRootPath();
-        return listByFilter(key, HmilyParticipantUndo.class, (undo, params) -> {
+        return listByFilter(HMILY_PARTICIPANT_UNDO, HmilyParticipantUndo.class, RedisRepository::mergeHmilyParticipantUndo, (undo, params) -> {
             Long participantIdParam = (Long) params[0];
             return participantIdParam.compareTo(undo.getParticipantId()) == 0;
         }, participantId);
@@ -386,9 +394,8 @@ public class RedisRepository implements HmilyRepository {
     
     @Override
     public int removeHmilyParticipantUndo(final Long undoId) {
-        String key = buildHmilyParticipantUndoRealPath(undoId);
         try {
-            jedisClient.hdel(HMILY_PARTICIPANT_UNDO, key);
+            removeById(HMILY_PARTICIPANT_UNDO, Collections.singletonList(undoId));
             return HmilyRepository.ROWS;
         } catch (JedisException e) {
             LOGGER.error("removeHmilyParticipantUndo occur a exception", e);
@@ -398,102 +405,756 @@ public class RedisRepository implements HmilyRepository {
     
     @Override
     public int removeHmilyParticipantUndoByData(final Date date) {
-        String key = buildHmilyParticipantUndoRootPath();
-        return removeByFilter(key, HmilyParticipantUndo.class, (undo, params) -> {
-            Date dateParam = (Date) params[0];
-            return dateParam.before(undo.getUpdateTime()) && undo.getStatus().compareTo(HmilyActionEnum.DELETE.getCode()) == 0;
-        }, date);
+        return removeByIndex(HMILY_PARTICIPANT_UNDO, date, HmilyParticipantUndo.class,
+                RedisRepository::mergeHmilyParticipantUndo, (undo, params) -> undo.getStatus().compareTo(HmilyActionEnum.DELETE.getCode()) == 0);
     }
     
     @Override
     public int updateHmilyParticipantUndoStatus(final Long undoId, final Integer status) {
-        String key = buildHmilyParticipantUndoRealPath(undoId);
         try {
-            byte[] data = jedisClient.hget(HMILY_PARTICIPANT_UNDO.getBytes(), key.getBytes());
-            if (data == null) {
-                return HmilyRepository.FAIL_ROWS;
-            }
-            
-            HmilyParticipantUndo hmilyParticipantUndo = hmilySerializer.deSerialize(data, HmilyParticipantUndo.class);
-            hmilyParticipantUndo.setStatus(status);
-            hmilyParticipantUndo.setUpdateTime(new Date());
-            jedisClient.hset(HMILY_PARTICIPANT_UNDO.getBytes(), String.valueOf(hmilyParticipantUndo.getUndoId()).getBytes(), hmilySerializer.serialize(hmilyParticipantUndo));
-            return HmilyRepository.ROWS;
+            return updateStatusById(HMILY_PARTICIPANT_UNDO, Collections.singletonMap(undoId, status)) > 0 ? HmilyRepository.ROWS : HmilyRepository.FAIL_ROWS;
         } catch (JedisException e) {
             LOGGER.error("updateHmilyParticipantStatus occur a exception", e);
         }
         return HmilyRepository.FAIL_ROWS;
     }
     
-    private <T> int removeByFilter(final String key, final Class<T> deserializeClass, final Filter<T> filter, final Object... params) {
+    @Override
+    public int batchCreateHmilyTransaction(final List<HmilyTransaction> hmilyTransactionList) {
         try {
-            Map<byte[], byte[]> dataAll = jedisClient.hgetAll(key.getBytes());
-            if (Objects.isNull(dataAll)) {
-                return HmilyRepository.FAIL_ROWS;
+            Date updateTime = new Date();
+            Map<String, List<HmilyTransaction>> indexes = hmilyTransactionList.stream()
+                    .collect(Collectors.groupingBy(e -> buildIndexKey(shardOf(e.getTransId()), HMILY_TRANSACTION_GLOBAL, e.getAppName()), LinkedHashMap::new, Collectors.toList()));
+            List<DeclaredCall> calls = new ArrayList<>(indexes.size());
+            for (Entry<String, List<HmilyTransaction>> entry : indexes.entrySet()) {
+                int shard = shardOf(entry.getValue().get(0).getTransId());
+                List<byte[]> keys = new ArrayList<>(entry.getValue().size());
+                List<byte[]> args = new ArrayList<>(entry.getValue().size() * 2);
+                for (HmilyTransaction hmilyTransaction : entry.getValue()) {
+                    hmilyTransaction.setUpdateTime(updateTime);
+                    keys.add(buildRecordKey(shard, HMILY_TRANSACTION_GLOBAL, hmilyTransaction.getTransId()));
+                    args.add(hmilySerializer.serialize(hmilyTransaction));
+                    args.add(toBytes(hmilyTransaction.getStatus()));
+                }
+                calls.add(buildSaveCall(shard, HMILY_TRANSACTION_GLOBAL, entry.getKey(), updateTime, keys, args, Collections.nCopies(keys.size(), Collections.emptyList())));
             }
-            int count = 0;
-            for (Entry<byte[], byte[]> entry : dataAll.entrySet()) {
-                byte[] data = entry.getValue();
-                if (data == null) {
-                    continue;
+            List<List<Long>> results = save(calls);
+            int index = 0;
+            for (List<HmilyTransaction> each : indexes.values()) {
+                List<Long> versions = results.get(index++);
+                for (int i = 0; i < versions.size(); i++) {
+                    HmilyTransaction hmilyTransaction = each.get(i);
+                    hmilyTransaction.setVersion(versions.get(i).intValue());
+                    if (versions.get(i) == 0) {
+                        hmilyTransaction.setRetry(0);
+                        hmilyTransaction.setCreateTime(updateTime);
+                    }
+                }
+            }
+            return hmilyTransactionList.size();
+        } catch (JedisException e) {
+            throw new HmilyException(e);
+        }
+    }
+    
+    @Override
+    public int batchUpdateHmilyTransactionStatus(final Map<Long, Integer> statusMap) {
+        try {
+            return updateStatusById(HMILY_TRANSACTION_GLOBAL, statusMap);
+        } catch (JedisException e) {
+            LOGGER.error("batchUpdateHmilyTransactionStatus occur a exception", e);
+        }
+        return HmilyRepository.FAIL_ROWS;
+    }
+    
+    @Override
+    public int batchRemoveHmilyTransaction(final List<Long> transIdList) {
+        try {
+            removeById(HMILY_TRANSACTION_GLOBAL, transIdList);
+            return transIdList.size();
+        } catch (JedisException e) {
+            LOGGER.error("batchRemoveHmilyTransaction occur a exception", e);
+        }
+        return HmilyRepository.FAIL_ROWS;
+    }
+    
+    @Override
+    public int batchCreateHmilyParticipant(final List<HmilyParticipant> hmilyParticipantList) {
+        try {
+            Date updateTime = new Date();
+            Map<String, List<HmilyParticipant>> indexes = hmilyParticipantList.stream()
+                    .collect(Collectors.groupingBy(this::buildHmilyParticipantIndexKey, LinkedHashMap::new, Collectors.toList()));
+            Map<Long, Integer> locators = new LinkedHashMap<>();
+            List<DeclaredCall> calls = new ArrayList<>(indexes.size());
+            for (Entry<String, List<HmilyParticipant>> entry : indexes.entrySet()) {
+                int shard = shardOf(entry.getValue().get(0).getTransId());
+                List<byte[]> keys = new ArrayList<>(entry.getValue().size());
+                List<byte[]> args = new ArrayList<>(entry.getValue().size() * 2);
+                List<List<byte[]>> sets = new ArrayList<>(entry.getValue().size());
+                for (HmilyParticipant hmilyParticipant : entry.getValue()) {
+                    hmilyParticipant.setUpdateTime(updateTime);
+                    locators.put(hmilyParticipant.getParticipantId(), shard);
+                    keys.add(buildRecordKey(shard, HMILY_TRANSACTION_PARTICIPANT, hmilyParticipant.getParticipantId()));
+                    args.add(hmilySerializer.serialize(hmilyParticipant));
+                    args.add(toBytes(hmilyParticipant.getStatus()));
+                    sets.add(buildHmilyParticipantSets(hmilyParticipant));
                 }
-                T t = hmilySerializer.deSerialize(data, deserializeClass);
-                if (filter.filter(t, params)) {
-                    jedisClient.hdel(rootPathPrefix, key);
-                    count++;
+                calls.add(buildSaveCall(shard, HMILY_TRANSACTION_PARTICIPANT, entry.getKey(), updateTime, keys, args, sets));
+            }
+            saveLocators(HMILY_TRANSACTION_PARTICIPANT, locators);
+            List<List<Long>> results = save(calls);
+            int index = 0;
+            for (List<HmilyParticipant> each : indexes.values()) {
+                List<Long> versions = results.get(index++);
+                for (int i = 0; i < versions.size(); i++) {
+                    HmilyParticipant hmilyParticipant = each.get(i);
+                    hmilyParticipant.setVersion(versions.get(i).intValue());
+                    if (versions.get(i) == 0) {
+                        hmilyParticipant.setRetry(0);
+                        hmilyParticipant.setCreateTime(updateTime);
+                    }
                 }
-                return count;
             }
+            return hmilyParticipantList.size();
         } catch (JedisException e) {
-            LOGGER.error("removeByFilter occur a exception", e);
+            throw new HmilyException(e);
+        }
+    }
+    
+    @Override
+    public int batchUpdateHmilyParticipantStatus(final Map<Long, Integer> statusMap) {
+        try {
+            return updateStatusById(HMILY_TRANSACTION_PARTICIPANT, statusMap);
+        } catch (JedisException e) {
+            LOGGER.error("batchUpdateHmilyParticipantStatus occur a exception", e);
         }
         return HmilyRepository.FAIL_ROWS;
     }
     
-    private <T> boolean existByFilter(final String key, final Class<T> deserializeClass, final Filter<T> filter, final Object... params) {
+    @Override
+    public int batchRemoveHmilyParticipant(final List<Long> participantIdList) {
         try {
-            Map<byte[], byte[]> dataAll = jedisClient.hgetAll(key.getBytes());
-            if (Objects.isNull(dataAll)) {
-                return false;
+            removeById(HMILY_TRANSACTION_PARTICIPANT, participantIdList);
+            return participantIdList.size();
+        } catch (JedisException e) {
+            LOGGER.error("batchRemoveHmilyParticipant occur a exception", e);
+        }
+        return HmilyRepository.FAIL_ROWS;
+    }
+    
+    @Override
+    public int batchRemoveHmilyParticipantUndo(final List<Long> undoIdList) {
+        try {
+            removeById(HMILY_PARTICIPANT_UNDO, undoIdList);
+            return undoIdList.size();
+        } catch (JedisException e) {
+            LOGGER.error("batchRemoveHmilyParticipantUndo occur a exception", e);
+        }
+        return HmilyRepository.FAIL_ROWS;
+    }
+    
+    @Override
+    public int batchUpdateHmilyParticipantUndoStatus(final Map<Long, Integer> statusMap) {
+        try {
+            return updateStatusById(HMILY_PARTICIPANT_UNDO, statusMap);
+        } catch (JedisException e) {
+            LOGGER.error("batchUpdateHmilyParticipantUndoStatus occur a exception", e);
+        }
+        return HmilyRepository.FAIL_ROWS;
+    }
+    
+    /**
+     * Build the save of the records of one index, see {@link RedisScript#SAVE}.
+     */
+    private DeclaredCall buildSaveCall(final int shard, final String key, final String indexKey, final Date updateTime,
+                                       final List<byte[]> recordKeys, final List<byte[]> recordArgs, final List<List<byte[]>> recordSets) {
+        List<byte[]> keys = new ArrayList<>(recordKeys.size() * 2 + 2);
+        keys.add(buildIndexRegistryKey(shard, key).getBytes());
+        keys.add(indexKey.getBytes());
+        List<byte[]> args = new ArrayList<>(recordKeys.size() * 3 + 2);
+        args.add(toBytes(updateTime.getTime()));
+        args.add(toBytes(recordKeys.size()));
+        for (int i = 0; i < recordKeys.size(); i++) {
+            keys.add(recordKeys.get(i));
+            keys.addAll(recordSets.get(i));
+            args.add(recordArgs.get(i * 2));
+            args.add(recordArgs.get(i * 2 + 1));
+            args.add(toBytes(recordSets.get(i).size()));
+        }
+        return new DeclaredCall(RedisScript.SAVE, buildIndexRegistryKey(shard, key), keys, args);
+    }
+    
+    /**
+     * Run the saves, then cache the indexes they registered. Returns the versions of the records of each save.
+     */
+    @SuppressWarnings("unchecked")
+    private List<List<Long>> save(final List<DeclaredCall> calls) {
+        List<Object> results = evalDeclared(calls);
+        calls.forEach(each -> cacheIndexKey(each.getRegistryKey(), new String(each.getKeys().get(1))));
+        return results.stream().map(each -> (List<Long>) each).collect(Collectors.toList());
+    }
+    
+    private int updateStatusById(final String key, final Map<Long, Integer> statusMap) {
+        Map<Long, Integer> located = locate(key, new ArrayList<>(statusMap.keySet()));
+        List<byte[]> recordKeys = new ArrayList<>(located.size());
+        List<Integer> statusList = new ArrayList<>(located.size());
+        located.forEach((id, shard) -> {
+            recordKeys.add(buildRecordKey(shard, key, id));
+            statusList.add(statusMap.get(id));
+        });
+        return updateStatus(recordKeys, statusList);
+    }
+    
+    private int updateStatus(final List<byte[]> recordKeys, final List<Integer> statusList) {
+        if (recordKeys.isEmpty()) {
+            return 0;
+        }
+        byte[] updateTime = toBytes(System.currentTimeMillis());
+        List<DeclaredCall> calls = new ArrayList<>();
+        for (List<Integer> positions : groupByTag(recordKeys)) {
+            List<byte[]> keys = new ArrayList<>(positions.size());
+            List<byte[]> args = new ArrayList<>(positions.size() + 2);
+            args.add(updateTime);
+            args.add(toBytes(positions.size()));
+            for (Integer each : positions) {
+                keys.add(recordKeys.get(each));
+                args.add(toBytes(statusList.get(each)));
             }
-            for (Entry<byte[], byte[]> entry : dataAll.entrySet()) {
-                byte[] data = entry.getValue();
-                if (data == null) {
+            calls.add(new DeclaredCall(RedisScript.UPDATE_STATUS, buildIndexRegistryKey(keys.get(0)), keys, args));
+        }
+        return sum(evalDeclared(calls));
+    }
+    
+    private boolean lock(final String key, final int shard, final Long id, final int currentVersion, final Date updateTime) {
+        DeclaredCall call = new DeclaredCall(RedisScript.LOCK, buildIndexRegistryKey(shard, key),
+                Collections.singletonList(buildRecordKey(shard, key, id)), Arrays.asList(toBytes(currentVersion), toBytes(updateTime.getTime())));
+        return ((Long) evalDeclared(Collections.singletonList(call)).get(0)) == 1L;
+    }
+    
+    /**
+     * Remove records by id, then their locators.
+     */
+    private int removeById(final String key, final List<Long> ids) {
+        Map<Long, Integer> located = locate(key, ids);
+        int count = remove(located.entrySet().stream().map(e -> buildRecordKey(e.getValue(), key, e.getKey())).collect(Collectors.toList()));
+        removeLocators(key, new ArrayList<>(located.keySet()));
+        return count;
+    }
+    
+    private int remove(final List<byte[]> recordKeys) {
+        if (recordKeys.isEmpty()) {
+            return 0;
+        }
+        List<DeclaredCall> calls = new ArrayList<>();
+        for (List<Integer> positions : groupByTag(recordKeys)) {
+            List<byte[]> keys = positions.stream().map(recordKeys::get).collect(Collectors.toList());
+            calls.add(new DeclaredCall(RedisScript.REMOVE, buildIndexRegistryKey(keys.get(0)), keys, Collections.singletonList(toBytes(keys.size()))));
+        }
+        return sum(evalDeclared(calls));
+    }
+    
+    /**
+     * Run calls of a script which reports the keys it would touch but was not given, see {@link RedisScript}. A call is given
+     * the cached indexes of its registry as well, and a call which reported keys is run again with them, the reported indexes are cached.
+     * Returns the result of each call.
+     *
+     * @throws JedisException when a call still reports keys after {@link #DECLARE_ATTEMPTS} runs
+     */
+    @SuppressWarnings("unchecked")
+    private List<Object> evalDeclared(final List<DeclaredCall> calls) {
+        List<Object> result = new ArrayList<>(Collections.nCopies(calls.size(), null));
+        calls.forEach(each -> each.getDeclared().addAll(indexKeys.getOrDefault(each.getRegistryKey(), Collections.emptySet())));
+        List<Integer> pending = IntStream.range(0, calls.size()).boxed().collect(Collectors.toList());
+        for (int attempt = 0; !pending.isEmpty(); attempt++) {
+            if (attempt == DECLARE_ATTEMPTS) {
+                throw new JedisException("the indexes and sets of the records kept changing over " + DECLARE_ATTEMPTS + " runs");
+            }
+            List<Object> replies = jedisClient.evalBatch(pending.stream().map(calls::get).map(DeclaredCall::toScriptCall).collect(Collectors.toList()));
+            List<Integer> next = new ArrayList<>();
+            for (int i = 0; i < pending.size(); i++) {
+                DeclaredCall call = calls.get(pending.get(i));
+                List<Object> reply = (List<Object>) replies.get(i);
+                List<byte[]> missing = (List<byte[]>) reply.get(1);
+                if (missing.isEmpty()) {
+                    result.set(pending.get(i), reply.get(0));
                     continue;
                 }
-                T t = hmilySerializer.deSerialize(data, deserializeClass);
-                if (filter.filter(t, params)) {
-                    return true;
+                for (byte[] each : missing) {
+                    String missingKey = new String(each);
+                    call.getDeclared().add(missingKey);
+                    if (missingKey.startsWith(call.getRegistryKey() + keyPrefix)) {
+                        cacheIndexKey(call.getRegistryKey(), missingKey);
+                    }
+                }
+                next.add(pending.get(i));
+            }
+            pending = next;
+        }
+        return result;
+    }
+    
+    private void cacheIndexKey(final String registryKey, final String indexKey) {
+        indexKeys.computeIfAbsent(registryKey, k -> ConcurrentHashMap.newKeySet()).add(indexKey);
+    }
+    
+    /**
+     * Read records, the result has null for the absent ones, see {@link RedisScript#GET}.
+     */
+    private <T> List<T> get(final List<byte[]> recordKeys, final Class<T> deserializeClass, final BiConsumer<T, List<byte[]>> merger) {
+        if (recordKeys.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return deserialize(evalByTag(RedisScript.GET, recordKeys), deserializeClass, merger);
+    }
+    
+    /**
+     * Read the records of a lookup set, its members first, see {@link RedisScript#MEMBERS}.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> getMembers(final byte[] setKey, final Class<T> deserializeClass, final BiConsumer<T, List<byte[]>> merger) {
+        List<byte[]> members = (List<byte[]>) RedisScript.MEMBERS.call(Collections.singletonList(setKey), Collections.emptyList()).eval(jedisClient);
+        return get(members, deserializeClass, merger).stream().filter(Objects::nonNull).collect(Collectors.toList());
+    }
+    
+    /**
+     * Run a script which returns one result per key, one call per hash tag of the keys, and put the results back in keys order.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Object> evalByTag(final RedisScript script, final List<byte[]> keys) {
+        Collection<List<Integer>> groups = groupByTag(keys);
+        List<ScriptCall> calls = groups.stream()
+                .map(positions -> script.call(positions.stream().map(keys::get).collect(Collectors.toList()), Collections.emptyList()))
+                .collect(Collectors.toList());
+        List<Object> results = jedisClient.evalBatch(calls);
+        List<Object> result = new ArrayList<>(Collections.nCopies(keys.size(), null));
+        int index = 0;
+        for (List<Integer> positions : groups) {
+            List<Object> each = (List<Object>) results.get(index++);
+            for (int i = 0; i < positions.size(); i++) {
+                result.set(positions.get(i), each.get(i));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * The positions of the keys grouped by their hash tag, the keys of a group are in one slot.
+     */
+    private static Collection<List<Integer>> groupByTag(final List<byte[]> keys) {
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            byte[] key = keys.get(i);
+            int end = 0;
+            while (end < key.length && key[end] != '}') {
+                end++;
+            }
+            groups.computeIfAbsent(new String(key, 0, end), k -> new ArrayList<>()).add(i);
+        }
+        return groups.values();
+    }
+    
+    private static int sum(final List<Object> counts) {
+        return counts.stream().mapToInt(each -> ((Long) each).intValue()).sum();
+    }
+    
+    /**
+     * Find the shards of records by id, the absent ones are left out. A transaction is in the shard of its id,
+     * a participant or undo log in the shard its locator has.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<Long, Integer> locate(final String key, final List<Long> ids) {
+        Map<Long, Integer> result = new LinkedHashMap<>();
+        if (shards == 1 || HMILY_TRANSACTION_GLOBAL.equals(key)) {
+            ids.forEach(id -> result.put(id, shardOf(id)));
+            return result;
+        }
+        if (ids.isEmpty()) {
+            return result;
+        }
+        Map<String, List<Long>> locators = groupByLocator(key, ids);
+        List<ScriptCall> calls = locators.entrySet().stream()
+                .map(e -> RedisScript.LOCATE.call(Collections.singletonList(e.getKey().getBytes()), e.getValue().stream().map(RedisRepository::toBytes).collect(Collectors.toList())))
+                .collect(Collectors.toList());
+        List<Object> results = jedisClient.evalBatch(calls);
+        int index = 0;
+        for (List<Long> each : locators.values()) {
+            List<byte[]> located = (List<byte[]>) results.get(index++);
+            for (int i = 0; i < each.size(); i++) {
+                if (Objects.nonNull(located.get(i))) {
+                    result.put(each.get(i), Integer.parseInt(new String(located.get(i))));
                 }
             }
+        }
+        return result;
+    }
+    
+    /**
+     * Write the locators of records before the records, so a record is never there without its locator.
+     */
+    private void saveLocators(final String key, final Map<Long, Integer> shardMap) {
+        if (shards == 1 || shardMap.isEmpty()) {
+            return;
+        }
+        List<ScriptCall> calls = new ArrayList<>();
+        groupByLocator(key, new ArrayList<>(shardMap.keySet())).forEach((locatorKey, ids) -> {
+            List<byte[]> args = new ArrayList<>(ids.size() * 2);
+            for (Long each : ids) {
+                args.add(toBytes(each));
+                args.add(toBytes(shardMap.get(each)));
+            }
+            calls.add(RedisScript.LOCATE_SAVE.call(Collections.singletonList(locatorKey.getBytes()), args));
+        });
+        jedisClient.evalBatch(calls);
+    }
+    
+    private void removeLocators(final String key, final List<Long> ids) {
+        if (shards == 1 || HMILY_TRANSACTION_GLOBAL.equals(key) || ids.isEmpty()) {
+            return;
+        }
+        List<ScriptCall> calls = groupByLocator(key, ids).entrySet().stream()
+                .map(e -> RedisScript.LOCATE_REMOVE.call(Collections.singletonList(e.getKey().getBytes()), e.getValue().stream().map(RedisRepository::toBytes).collect(Collectors.toList())))
+                .collect(Collectors.toList());
+        jedisClient.evalBatch(calls);
+    }
+    
+    private Map<String, List<Long>> groupByLocator(final String key, final List<Long> ids) {
+        Map<String, List<Long>> result = new LinkedHashMap<>();
+        for (List<Long> each : Lists.partition(ids, SCAN_BATCH_SIZE)) {
+            each.forEach(id -> result.computeIfAbsent(buildLocatorKey(key, id), k -> new ArrayList<>()).add(id));
+        }
+        return result;
+    }
+    
+    /**
+     * Read the records of indexes from the min score, a page of each index per round trip, pipelined per slot.
+     * the index to start from rotates, so a limited scan does not always favor the first shards.
+     * the members whose record is gone are removed from the index on the way.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Map<byte[], T> scanIndexes(final List<String> indexKeys, final byte[] min, final byte[] max, final Class<T> deserializeClass,
+                                           final BiConsumer<T, List<byte[]>> merger, final Filter<T> filter, final int limit) {
+        Map<byte[], T> result = new LinkedHashMap<>();
+        if (indexKeys.isEmpty()) {
+            return result;
+        }
+        List<String> active = new ArrayList<>(indexKeys);
+        Collections.rotate(active, -Math.floorMod(scanStart.getAndIncrement(), active.size()));
+        Map<String, Integer> offsets = new HashMap<>(active.size());
+        Map<String, List<byte[]>> stale = new LinkedHashMap<>();
+        try {
+            while (result.size() < limit && !active.isEmpty()) {
+                int count = (int) Math.min(SCAN_BATCH_SIZE, Math.max(1L, ((long) limit - result.size() + active.size() - 1) / active.size()));
+                List<ScriptCall> calls = active.stream().map(each -> RedisScript.RANGE.call(Collections.singletonList(each.getBytes()),
+                        Arrays.asList(min, max, toBytes(offsets.getOrDefault(each, 0)), toBytes(count)))).collect(Collectors.toList());
+                List<Object> pages = jedisClient.evalBatch(calls);
+                List<T> records = get(pages.stream().flatMap(each -> ((List<byte[]>) each).stream()).collect(Collectors.toList()), deserializeClass, merger);
+                int position = 0;
+                List<String> next = new ArrayList<>(active.size());
+                for (int i = 0; i < active.size(); i++) {
+                    String indexKey = active.get(i);
+                    List<byte[]> members = (List<byte[]>) pages.get(i);
+                    int first = position;
+                    position += members.size();
+                    for (int j = 0; j < members.size() && result.size() < limit; j++) {
+                        T t = records.get(first + j);
+                        if (t == null) {
+                            stale.computeIfAbsent(indexKey, k -> new ArrayList<>()).add(members.get(j));
+                            continue;
+                        }
+                        if (filter.filter(t)) {
+                            result.put(members.get(j), t);
+                        }
+                    }
+                    if (members.size() == count) {
+                        offsets.put(indexKey, offsets.getOrDefault(indexKey, 0) + count);
+                        next.add(indexKey);
+                    }
+                }
+                active = next;
+            }
+            stale.forEach((indexKey, members) -> jedisClient.zrem(indexKey.getBytes(), members.toArray(new byte[0][])));
         } catch (JedisException e) {
-            LOGGER.error("existByFilter occur a exception", e);
+            LOGGER.error("scanIndexes occur a exception", e);
         }
-        return false;
+        return result;
     }
     
-    private String buildHmilyTransactionRootPath() {
-        return rootPathPrefix + keyPrefix + HMILY_TRANSACTION_GLOBAL;
+    /**
+     * Read a page in (update time, id) order after the cursor. an index is ordered by update time, so the page is merged from the first
+     * records of each index from the later of the date and the cursor. the index is read from the update time of the cursor inclusive,
+     * and the records of that time up to the id of the cursor are skipped, as the members of one score are not in id order. for the same
+     * reason a full page of an index may miss records of its last update time with lower ids, so all the records of that time are read too.
+     */
+    private <T> List<T> seekIndexes(final List<String> indexKeys, final Date date, final HmilyScanCursor cursor, final Class<T> deserializeClass,
+                                    final BiConsumer<T, List<byte[]>> merger, final Function<T, Date> updateTime, final Function<T, Long> id,
+                                    final Filter<T> filter, final int limit) {
+        boolean seek = Objects.nonNull(cursor) && Objects.nonNull(cursor.getUpdateTime()) && cursor.getUpdateTime().after(date);
+        byte[] min = seek ? toBytes(cursor.getUpdateTime().getTime()) : buildMinScore(date);
+        Filter<T> after = seek ? (t, params) -> cursor.isBefore(updateTime.apply(t), id.apply(t)) && filter.filter(t) : filter;
+        Map<Long, T> result = new LinkedHashMap<>();
+        for (String each : indexKeys) {
+            List<String> index = Collections.singletonList(each);
+            Collection<T> page = scanIndexes(index, min, MAX_SCORE, deserializeClass, merger, after, limit).values();
+            page.forEach(t -> result.put(id.apply(t), t));
+            if (page.size() == limit) {
+                byte[] last = toBytes(page.stream().map(updateTime).max(Date::compareTo).map(Date::getTime).orElse(0L));
+                scanIndexes(index, last, last, deserializeClass, merger, after, Integer.MAX_VALUE).values().forEach(t -> result.put(id.apply(t), t));
+            }
+        }
+        return result.values().stream()
+                .sorted((o1, o2) -> HmilyScanCursor.compare(updateTime.apply(o1), id.apply(o1), updateTime.apply(o2), id.apply(o2)))
+                .limit(limit)
+                .collect(Collectors.toList());
     }
     
-    private String buildHmilyTransactionRealPath(final Long transId) {
-        return buildHmilyTransactionRootPath() + keyPrefix + transId;
+    private <T> int removeByIndex(final String key, final Date date, final Class<T> deserializeClass, final BiConsumer<T, List<byte[]>> merger, final Filter<T> filter) {
+        try {
+            int count = 0;
+            Map<byte[], T> records = scanIndexes(listIndexKeys(key), buildMinScore(date), MAX_SCORE, deserializeClass, merger, filter, Integer.MAX_VALUE);
+            for (List<byte[]> recordKeys : Lists.partition(new ArrayList<>(records.keySet()), SCAN_BATCH_SIZE)) {
+                count += remove(recordKeys);
+                removeLocators(key, recordKeys.stream().map(this::parseId).collect(Collectors.toList()));
+            }
+            return count;
+        } catch (JedisException e) {
+            LOGGER.error("removeByIndex occur a exception", e);
+        }
+        return HmilyRepository.FAIL_ROWS;
     }
     
-    private String buildHmilyParticipantRootPath() {
-        return rootPathPrefix + keyPrefix + appName + keyPrefix + HMILY_TRANSACTION_PARTICIPANT;
+    @SuppressWarnings("unchecked")
+    private <T> List<T> deserialize(final List<Object> records, final Class<T> deserializeClass, final BiConsumer<T, List<byte[]>> merger) {
+        List<T> result = new ArrayList<>(records.size());
+        for (Object each : records) {
+            List<byte[]> state = (List<byte[]>) each;
+            byte[] data = state.get(DATA);
+            if (data == null) {
+                result.add(null);
+                continue;
+            }
+            T t = hmilySerializer.deSerialize(data, deserializeClass);
+            merger.accept(t, state);
+            result.add(t);
+        }
+        return result;
     }
     
-    private String buildHmilyParticipantRealPath(final Long participantId) {
-        return buildHmilyParticipantRootPath() + keyPrefix + participantId;
+    private <T> List<T> listByFilter(final String key, final Class<T> deserializeClass, final BiConsumer<T, List<byte[]>> merger, final Filter<T> filter, final Object... params) {
+        try {
+            return new ArrayList<>(scanIndexes(listIndexKeys(key), MIN_SCORE, MAX_SCORE, deserializeClass, merger, (t, ignore) -> filter.filter(t, params), Integer.MAX_VALUE).values());
+        } catch (JedisException e) {
+            LOGGER.error("listByFilter occur a exception", e);
+        }
+        return Collections.emptyList();
     }
     
-    private String buildHmilyParticipantUndoRootPath() {
-        return rootPathPrefix + keyPrefix + appName + keyPrefix + HMILY_PARTICIPANT_UNDO;
+    /**
+     * The index keys of a kind of record in every shard, from the index registries, which are cached on the way.
+     */
+    @SuppressWarnings("unchecked")
+    private List<String> listIndexKeys(final String key) {
+        List<ScriptCall> calls = IntStream.range(0, shards)
+                .mapToObj(shard -> RedisScript.MEMBERS.call(Collections.singletonList(buildIndexRegistryKey(shard, key).getBytes()), Collections.emptyList()))
+                .collect(Collectors.toList());
+        List<Object> registries = jedisClient.evalBatch(calls);
+        List<String> result = new ArrayList<>();
+        for (int shard = 0; shard < shards; shard++) {
+            String registryKey = buildIndexRegistryKey(shard, key);
+            for (byte[] each : (List<byte[]>) registries.get(shard)) {
+                String indexKey = new String(each);
+                cacheIndexKey(registryKey, indexKey);
+                result.add(indexKey);
+            }
+        }
+        return result;
     }
     
-    private String buildHmilyParticipantUndoRealPath(final Long undoId) {
-        return buildHmilyParticipantUndoRootPath() + "/" + undoId;
+    /**
+     * Keep the shard count on the first init and refuse another one later, as the records could no longer be found in their shards.
+     */
+    private void checkShards() {
+        byte[] key = (HMILY + keyPrefix + SHARDS).getBytes();
+        Object kept = RedisScript.SHARDS.call(Collections.singletonList(key), Collections.singletonList(toBytes(shards))).eval(jedisClient);
+        int keptShards = Integer.parseInt(new String((byte[]) kept));
+        if (keptShards != shards) {
+            throw new HmilyRepositoryException("the records are spread over " + keptShards + " redis shards, but " + shards + " are configured");
+        }
+    }
+    
+    /**
+     * Import the records this app wrote in the earlier layout, a global hash per kind of record, then remove them from the hashes so it runs once.
+     * the transactions and participants of other apps are left to those apps, an undo log goes with its participant.
+     */
+    private void importLegacy() {
+        Map<byte[], HmilyTransaction> transactions = readLegacy(HMILY_TRANSACTION_GLOBAL, HmilyTransaction.class, e -> appName.equals(e.getAppName()));
+        for (List<byte[]> fields : Lists.partition(new ArrayList<>(transactions.keySet()), SCAN_BATCH_SIZE)) {
+            batchCreateHmilyTransaction(fields.stream().map(transactions::get).collect(Collectors.toList()));
+            jedisClient.hdel(HMILY_TRANSACTION_GLOBAL.getBytes(), fields.toArray(new byte[0][]));
+        }
+        Map<byte[], HmilyParticipant> participants = readLegacy(HMILY_TRANSACTION_PARTICIPANT, HmilyParticipant.class, e -> appName.equals(e.getAppName()));
+        for (List<byte[]> fields : Lists.partition(new ArrayList<>(participants.keySet()), SCAN_BATCH_SIZE)) {
+            batchCreateHmilyParticipant(fields.stream().map(participants::get).collect(Collectors.toList()));
+            jedisClient.hdel(HMILY_TRANSACTION_PARTICIPANT.getBytes(), fields.toArray(new byte[0][]));
+        }
+        Set<Long> participantIds = participants.values().stream().map(HmilyParticipant::getParticipantId).collect(Collectors.toSet());
+        Predicate<HmilyParticipantUndo> owned = e -> participantIds.contains(e.getParticipantId()) || !findHmilyParticipant(e.getParticipantId()).isEmpty();
+        Map<byte[], HmilyParticipantUndo> undos = readLegacy(HMILY_PARTICIPANT_UNDO, HmilyParticipantUndo.class, owned);
+        for (Entry<byte[], HmilyParticipantUndo> entry : undos.entrySet()) {
+            createHmilyParticipantUndo(entry.getValue());
+            jedisClient.hdel(HMILY_PARTICIPANT_UNDO.getBytes(), entry.getKey());
+        }
+        if (transactions.size() + participants.size() + undos.size() > 0) {
+            LOGGER.info("imported {} transactions, {} participants and {} undo logs of the earlier layout.", transactions.size(), participants.size(), undos.size());
+        }
+    }
+    
+    private <T> Map<byte[], T> readLegacy(final String hashKey, final Class<T> deserializeClass, final Predicate<T> owned) {
+        Map<byte[], T> result = new LinkedHashMap<>();
+        Map<byte[], byte[]> hash = jedisClient.hgetAll(hashKey.getBytes());
+        if (Objects.isNull(hash)) {
+            return result;
+        }
+        hash.forEach((field, data) -> {
+            T t = hmilySerializer.deSerialize(data, deserializeClass);
+            if (owned.test(t)) {
+                result.put(field, t);
+            }
+        });
+        return result;
+    }
+    
+    private static void mergeHmilyTransaction(final HmilyTransaction hmilyTransaction, final List<byte[]> state) {
+        merge(state.get(STATUS), value -> hmilyTransaction.setStatus(Integer.parseInt(value)));
+        merge(state.get(VERSION), value -> hmilyTransaction.setVersion(Integer.parseInt(value)));
+        merge(state.get(RETRY), value -> hmilyTransaction.setRetry(Integer.parseInt(value)));
+        merge(state.get(CREATE_TIME), value -> hmilyTransaction.setCreateTime(new Date(Long.parseLong(value))));
+        merge(state.get(UPDATE_TIME), value -> hmilyTransaction.setUpdateTime(new Date(Long.parseLong(value))));
+    }
+    
+    private static void mergeHmilyParticipant(final HmilyParticipant hmilyParticipant, final List<byte[]> state) {
+        merge(state.get(STATUS), value -> hmilyParticipant.setStatus(Integer.parseInt(value)));
+        merge(state.get(VERSION), value -> hmilyParticipant.setVersion(Integer.parseInt(value)));
+        merge(state.get(RETRY), value -> hmilyParticipant.setRetry(Integer.parseInt(value)));
+        merge(state.get(CREATE_TIME), value -> hmilyParticipant.setCreateTime(new Date(Long.parseLong(value))));
+        merge(state.get(UPDATE_TIME), value -> hmilyParticipant.setUpdateTime(new Date(Long.parseLong(value))));
+    }
+    
+    private static void mergeHmilyParticipantUndo(final HmilyParticipantUndo hmilyParticipantUndo, final List<byte[]> state) {
+        merge(state.get(STATUS), value -> hmilyParticipantUndo.setStatus(Integer.parseInt(value)));
+        merge(state.get(CREATE_TIME), value -> hmilyParticipantUndo.setCreateTime(new Date(Long.parseLong(value))));
+        merge(state.get(UPDATE_TIME), value -> hmilyParticipantUndo.setUpdateTime(new Date(Long.parseLong(value))));
+    }
+    
+    private static boolean isRecoverable(final HmilyParticipant hmilyParticipant, final Object... params) {
+        return hmilyParticipant.getStatus().compareTo(HmilyActionEnum.DELETE.getCode()) != 0 && hmilyParticipant.getStatus().compareTo(HmilyActionEnum.DEATH.getCode()) != 0;
+    }
+    
+    private static void merge(final byte[] value, final Consumer<String> setter) {
+        if (Objects.nonNull(value) && value.length > 0) {
+            setter.accept(new String(value));
+        }
+    }
+    
+    private static byte[] toBytes(final Object value) {
+        return Objects.isNull(value) ? new byte[0] : String.valueOf(value).getBytes();
+    }
+    
+    private static byte[] buildMinScore(final Date date) {
+        return ("(" + date.getTime()).getBytes();
+    }
+    
+    /**
+     * The shard of an id, the ids are mixed first since they are sequential, a single node has one shard.
+     */
+    private int shardOf(final Long id) {
+        if (shards == 1 || Objects.isNull(id)) {
+            return 0;
+        }
+        return (int) ((id * GOLDEN_RATIO >>> 1) % shards);
+    }
+    
+    /**
+     * The hash tag of a shard, every key of a shard has it so they are in one slot.
+     */
+    private String buildTag(final int shard) {
+        return "{" + HMILY + keyPrefix + shard + "}";
+    }
+    
+    /**
+     * The set of every index key of a kind of record in a shard.
+     */
+    private String buildIndexRegistryKey(final int shard, final String key) {
+        return buildTag(shard) + keyPrefix + key + keyPrefix + INDEX;
+    }
+    
+    /**
+     * The index registry of the shard and kind of a record key.
+     */
+    private String buildIndexRegistryKey(final byte[] recordKey) {
+        String key = new String(recordKey);
+        return key.substring(0, key.lastIndexOf(keyPrefix) + keyPrefix.length()) + INDEX;
+    }
+    
+    /**
+     * The sorted set of the records of a kind in a shard scored by update time, partitioned by the groups.
+     */
+    private String buildIndexKey(final int shard, final String key, final String... groups) {
+        StringBuilder builder = new StringBuilder(buildIndexRegistryKey(shard, key));
+        for (String each : groups) {
+            builder.append(keyPrefix).append(each);
+        }
+        return builder.toString();
+    }
+    
+    private List<String> buildShardIndexKeys(final String key, final String... groups) {
+        return IntStream.range(0, shards).mapToObj(shard -> buildIndexKey(shard, key, groups)).collect(Collectors.toList());
+    }
+    
+    private String buildHmilyParticipantIndexKey(final HmilyParticipant hmilyParticipant) {
+        return buildIndexKey(shardOf(hmilyParticipant.getTransId()), HMILY_TRANSACTION_PARTICIPANT, hmilyParticipant.getAppName(), hmilyParticipant.getTransType());
+    }
+    
+    /**
+     * The lookup sets of a participant: the set of its transaction, and the set of its id which also has the participants referring to it,
+     * all in the shard of its transaction as a participant only refers to one of the same transaction.
+     */
+    private List<byte[]> buildHmilyParticipantSets(final HmilyParticipant hmilyParticipant) {
+        int shard = shardOf(hmilyParticipant.getTransId());
+        List<byte[]> sets = new ArrayList<>(3);
+        sets.add(buildHmilyParticipantTransKey(hmilyParticipant.getTransId()));
+        sets.add(buildHmilyParticipantLookupKey(shard, hmilyParticipant.getParticipantId()));
+        if (Objects.nonNull(hmilyParticipant.getParticipantRefId())) {
+            sets.add(buildHmilyParticipantLookupKey(shard, hmilyParticipant.getParticipantRefId()));
+        }
+        return sets;
+    }
+    
+    private byte[] buildHmilyParticipantTransKey(final Long transId) {
+        return (buildTag(shardOf(transId)) + keyPrefix + HMILY_TRANSACTION_PARTICIPANT + keyPrefix + TRANS + keyPrefix + transId).getBytes();
+    }
+    
+    private byte[] buildHmilyParticipantLookupKey(final int shard, final Long participantId) {
+        return (buildTag(shard) + keyPrefix + HMILY_TRANSACTION_PARTICIPANT + keyPrefix + PARTICIPANT + keyPrefix + participantId).getBytes();
+    }
+    
+    /**
+     * The hash of the shards of the records of a kind whose id is in this shard.
+     */
+    private String buildLocatorKey(final String key, final Long id) {
+        return buildTag(shardOf(id)) + keyPrefix + key + keyPrefix + LOCATOR;
+    }
+    
+    private byte[] buildRecordKey(final int shard, final String key, final Long id) {
+        return (buildTag(shard) + keyPrefix + key + keyPrefix + id).getBytes();
+    }
+    
+    private byte[] buildHmilyTransactionKey(final Long transId) {
+        return buildRecordKey(shardOf(transId), HMILY_TRANSACTION_GLOBAL, transId);
+    }
+    
+    private Long parseId(final byte[] recordKey) {
+        String key = new String(recordKey);
+        return Long.valueOf(key.substring(key.lastIndexOf(keyPrefix) + keyPrefix.length()));
     }
     
     private void buildJedisPool(final HmilyRedisConfig hmilyRedisConfig) {
@@ -518,8 +1179,8 @@ public class RedisRepository implements HmilyRepository {
                             .split(clusterUrl))
                             .stream()
                             .map(HostAndPort::parseString).collect(Collectors.toSet());
-            JedisCluster jedisCluster = new JedisCluster(hostAndPorts, config);
-            jedisClient = new JedisClientCluster(jedisCluster);
+            jedisClient = new JedisClientCluster(new HmilyJedisCluster(hostAndPorts, config));
+            shards = Math.max(1, hmilyRedisConfig.getShards());
         } else if (hmilyRedisConfig.isSentinel()) {
             LogUtil.info(LOGGER, () -> "build redis sentinel ............");
             final String sentinelUrl = hmilyRedisConfig.getSentinelUrl();
@@ -539,6 +1200,37 @@ public class RedisRepository implements HmilyRepository {
         }
     }
     
+    /**
+     * A call of a script which reports the keys it was not given, with the keys declared so far besides its own.
+     */
+    @Getter
+    private static final class DeclaredCall {
+    
+        private final RedisScript script;
+    
+        private final String registryKey;
+    
+        private final List<byte[]> keys;
+    
+        private final List<byte[]> args;
+    
+        private final Set<String> declared = new LinkedHashSet<>();
+    
+        DeclaredCall(final RedisScript script, final String registryKey, final List<byte[]> keys, final List<byte[]> args) {
+            this.script = script;
+            this.registryKey = registryKey;
+            this.keys = keys;
+            this.args = args;
+        }
+    
+        ScriptCall toScriptCall() {
+            Set<String> own = keys.stream().map(String::new).collect(Collectors.toSet());
+            List<byte[]> all = new ArrayList<>(keys);
+            declared.stream().filter(each -> !own.contains(each)).forEach(each -> all.add(each.getBytes()));
+            return script.call(all, args);
+        }
+    }
+    
     /**
      * The interface Filter.
      *
@@ -0,0 +1,303 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.redis;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import lombok.Getter;
+import org.dromara.hmily.repository.redis.jedis.ScriptCall;
+
+/**
+ * The lua scripts of {@link RedisRepository}, a script runs atomically on the server, so a record and its index never diverge.
+ *
+ * <p>A record is a hash of its serialized data and the fields which change on every status update or lock:
+ * status, version, retry, create_time and update_time, which override the ones in the data when it is read.
+ * The index field is the sorted set the record is in, and the sets field lists the lookup sets it is in.
+ * Every key of a script has the same hash tag, so a script only touches keys of one slot in a cluster,
+ * and the calls of a batch are pipelined per slot by {@link org.dromara.hmily.repository.redis.jedis.JedisClient#evalBatch(List)}.</p>
+ *
+ * <p>A script only touches the keys it is given, whose names are built by the client. The indexes and lookup sets
+ * a record is in are read from the record, so the scripts that leave them take the ones the client expects as keys too.
+ * When a record names one that is not among them, the script changes nothing and returns it, and the client calls it
+ * again with that key declared.</p>
+ *
+ * @author dzc
+ */
+@Getter
+final class RedisScript {
+    
+    /**
+     * Save records into one index, a new record starts at version 0 and an existing one has its version increased.
+     * a record is also added to its lookup sets and removed from the ones it left.
+     * KEYS: the index registry, the index, (record, its lookup sets) of each record, then the keys the records may have to leave.
+     * ARGV: the update time, the record count, (data, status, lookup set count) of each record.
+     * Returns the version of each record and the keys to leave that were not declared, when there are any nothing is saved.
+     */
+    static final RedisScript SAVE = declaring(
+            "local count = tonumber(ARGV[2])",
+            "local records = {}",
+            "local missing = {}",
+            "local k = 3",
+            "for r = 1, count do",
+            "    local j = (r - 1) * 3 + 3",
+            "    local sets = {}",
+            "    for s = 1, tonumber(ARGV[j + 2]) do",
+            "        sets[s] = KEYS[k + s]",
+            "    end",
+            "    local state = redis.call('HMGET', KEYS[k], 'index', 'sets')",
+            "    undeclared(state[1], missing)",
+            "    undeclaredSets(state[2], missing)",
+            "    records[r] = {KEYS[k], table.concat(sets, ' '), j, state}",
+            "    k = k + #sets + 1",
+            "end",
+            "if #missing > 0 then",
+            "    return {{}, missing}",
+            "end",
+            "redis.call('SADD', KEYS[1], KEYS[2])",
+            "local versions = {}",
+            "for r = 1, count do",
+            "    local key, sets, j, state = records[r][1], records[r][2], records[r][3], records[r][4]",
+            "    local version = 0",
+            "    if state[1] then",
+            "        version = redis.call('HINCRBY', key, 'version', 1)",
+            "        if state[1] ~= KEYS[2] then",
+            "            redis.call('ZREM', state[1], key)",
+            "        end",
+            "        if state[2] and state[2] ~= sets then",
+            "            for set in string.gmatch(state[2], '%S+') do",
+            "                redis.call('SREM', set, key)",
+            "            end",
+            "        end",
+            "    else",
+            "        redis.call('HMSET', key, 'version', 0, 'retry', 0, 'create_time', ARGV[1])",
+            "    end",
+            "    for set in string.gmatch(sets, '%S+') do",
+            "        redis.call('SADD', set, key)",
+            "    end",
+            "    redis.call('HMSET', key, 'data', ARGV[j], 'status', ARGV[j + 1], 'update_time', ARGV[1], 'index', KEYS[2], 'sets', sets)",
+            "    redis.call('ZADD', KEYS[2], ARGV[1], key)",
+            "    versions[r] = version",
+            "end",
+            "return {versions, {}}");
+    
+    /**
+     * Set the status of the existing records and increase their version.
+     * KEYS: the records, then the indexes they may be in. ARGV: the update time, the record count, the status of each record.
+     * Returns the updated count and the indexes that were not declared, when there are any nothing is updated.
+     */
+    static final RedisScript UPDATE_STATUS = declaring(
+            "local count = tonumber(ARGV[2])",
+            "local indexes = {}",
+            "local missing = {}",
+            "for i = 1, count do",
+            "    indexes[i] = redis.call('HGET', KEYS[i], 'index')",
+            "    undeclared(indexes[i], missing)",
+            "end",
+            "if #missing > 0 then",
+            "    return {0, missing}",
+            "end",
+            "local updated = 0",
+            "for i = 1, count do",
+            "    if indexes[i] then",
+            "        redis.call('HMSET', KEYS[i], 'status', ARGV[i + 2], 'update_time', ARGV[1])",
+            "        redis.call('HINCRBY', KEYS[i], 'version', 1)",
+            "        redis.call('ZADD', indexes[i], ARGV[1], KEYS[i])",
+            "        updated = updated + 1",
+            "    end",
+            "end",
+            "return {updated, {}}");
+    
+    /**
+     * Increase the version and retry of a record if it is still at the expected version.
+     * KEYS: the record, then the indexes it may be in. ARGV: the expected version, the update time.
+     * Returns 1 if locked, else 0, and the index if it was not declared, then nothing is locked.
+     */
+    static final RedisScript LOCK = declaring(
+            "local state = redis.call('HMGET', KEYS[1], 'index', 'version')",
+            "if not state[1] or state[2] ~= ARGV[1] then",
+            "    return {0, {}}",
+            "end",
+            "local missing = {}",
+            "undeclared(state[1], missing)",
+            "if #missing > 0 then",
+            "    return {0, missing}",
+            "end",
+            "redis.call('HINCRBY', KEYS[1], 'version', 1)",
+            "redis.call('HINCRBY', KEYS[1], 'retry', 1)",
+            "redis.call('HSET', KEYS[1], 'update_time', ARGV[2])",
+            "redis.call('ZADD', state[1], ARGV[2], KEYS[1])",
+            "return {1, {}}");
+    
+    /**
+     * Read records. KEYS: the records. Returns (data, status, version, retry, create_time, update_time) of each record.
+     */
+    static final RedisScript GET = new RedisScript(
+            "local records = {}",
+            "for i = 1, #KEYS do",
+            "    records[i] = redis.call('HMGET', KEYS[i], 'data', 'status', 'version', 'retry', 'create_time', 'update_time')",
+            "end",
+            "return records");
+    
+    /**
+     * Whether keys exist. KEYS: the keys. Returns 1 or 0 for each key.
+     */
+    static final RedisScript EXISTS = new RedisScript(
+            "local result = {}",
+            "for i = 1, #KEYS do",
+            "    result[i] = redis.call('EXISTS', KEYS[i])",
+            "end",
+            "return result");
+    
+    /**
+     * Remove records, their index entry and their lookup set entries.
+     * KEYS: the records, then the indexes and lookup sets they may be in. ARGV: the record count.
+     * Returns the removed count and the indexes and sets that were not declared, when there are any nothing is removed.
+     */
+    static final RedisScript REMOVE = declaring(
+            "local count = tonumber(ARGV[1])",
+            "local states = {}",
+            "local missing = {}",
+            "for i = 1, count do",
+            "    states[i] = redis.call('HMGET', KEYS[i], 'index', 'sets')",
+            "    undeclared(states[i][1], missing)",
+            "    undeclaredSets(states[i][2], missing)",
+            "end",
+            "if #missing > 0 then",
+            "    return {0, missing}",
+            "end",
+            "local removed = 0",
+            "for i = 1, count do",
+            "    if states[i][1] then",
+            "        redis.call('ZREM', states[i][1], KEYS[i])",
+            "    end",
+            "    if states[i][2] then",
+            "        for set in string.gmatch(states[i][2], '%S+') do",
+            "            redis.call('SREM', set, KEYS[i])",
+            "        end",
+            "    end",
+            "    removed = removed + redis.call('DEL', KEYS[i])",
+            "end",
+            "return {removed, {}}");
+    
+    /**
+     * Read a page of an index. KEYS: the index. ARGV: the min score, the max score, the offset, the count.
+     * Returns the members, whose records are read by {@link #GET}.
+     */
+    static final RedisScript RANGE = new RedisScript(
+            "return redis.call('ZRANGEBYSCORE', KEYS[1], ARGV[1], ARGV[2], 'LIMIT', ARGV[3], ARGV[4])");
+    
+    /**
+     * Read a set. KEYS: the set. Returns its members.
+     */
+    static final RedisScript MEMBERS = new RedisScript(
+            "return redis.call('SMEMBERS', KEYS[1])");
+    
+    /**
+     * Keep the shard count the records are spread over. KEYS: the shards key. ARGV: the shard count.
+     * Returns the kept count, which is the given one when there was none.
+     */
+    static final RedisScript SHARDS = new RedisScript(
+            "local shards = redis.call('GET', KEYS[1])",
+            "if not shards then",
+            "    redis.call('SET', KEYS[1], ARGV[1])",
+            "    return ARGV[1]",
+            "end",
+            "return shards");
+    
+    /**
+     * Read the shards of ids from a locator. KEYS: the locator. ARGV: the ids. Returns the shard of each id, nil if unknown.
+     */
+    static final RedisScript LOCATE = new RedisScript(
+            "return redis.call('HMGET', KEYS[1], unpack(ARGV))");
+    
+    /**
+     * Write the shards of ids into a locator. KEYS: the locator. ARGV: (id, shard) of each id. Returns the written count.
+     */
+    static final RedisScript LOCATE_SAVE = new RedisScript(
+            "redis.call('HMSET', KEYS[1], unpack(ARGV))",
+            "return #ARGV / 2");
+    
+    /**
+     * Remove ids from a locator. KEYS: the locator. ARGV: the ids. Returns the removed count.
+     */
+    static final RedisScript LOCATE_REMOVE = new RedisScript(
+            "return redis.call('HDEL', KEYS[1], unpack(ARGV))");
+    
+    private final byte[] script;
+    
+    private final byte[] sha;
+    
+    private RedisScript(final String... lines) {
+        this.script = String.join("\n", lines).getBytes(StandardCharsets.UTF_8);
+        this.sha = sha1(script);
+    }
+    
+    /**
+     * Build a call of the script.
+     *
+     * @param keys the keys
+     * @param args the args
+     * @return the call
+     */
+    ScriptCall call(final List<byte[]> keys, final List<byte[]> args) {
+        return new ScriptCall(script, sha, keys, args);
+    }
+    
+    /**
+     * A script with the declared keys and the functions collecting the undeclared ones before its lines.
+     */
+    private static RedisScript declaring(final String... lines) {
+        List<String> all = new ArrayList<>(Arrays.asList(
+                "local declared = {}",
+                "for _, key in ipairs(KEYS) do",
+                "    declared[key] = true",
+                "end",
+                "local function undeclared(key, missing)",
+                "    if key and not declared[key] then",
+                "        missing[#missing + 1] = key",
+                "    end",
+                "end",
+                "local function undeclaredSets(sets, missing)",
+                "    if sets then",
+                "        for set in string.gmatch(sets, '%S+') do",
+                "            undeclared(set, missing)",
+                "        end",
+                "    end",
+                "end"));
+        all.addAll(Arrays.asList(lines));
+        return new RedisScript(all.toArray(new String[0]));
+    }
+    
+    private static byte[] sha1(final byte[] script) {
+        MessageDigest sha1;
+        try {
+            sha1 = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+        StringBuilder builder = new StringBuilder();
+        for (byte each : sha1.digest(script)) {
+            builder.append(String.format("%02x", each));
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.redis.jedis;
+
+import java.util.Set;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.JedisSlotBasedConnectionHandler;
+
+/**
+ * A jedis cluster which hands out the connection of a slot, so the commands of one slot can be pipelined.
+ *
+ * @author dzc
+ */
+public class HmilyJedisCluster extends JedisCluster {
+    
+    public HmilyJedisCluster(final Set<HostAndPort> nodes, final JedisPoolConfig poolConfig) {
+        super(nodes, poolConfig);
+    }
+    
+    /**
+     * Get the connection of the master serving a slot, it must be closed after use.
+     *
+     * @param slot the slot
+     * @return the connection
+     */
+    public Jedis getConnectionFromSlot(final int slot) {
+        return ((JedisSlotBasedConnectionHandler) connectionHandler).getConnectionFromSlot(slot);
+    }
+}
@@ -17,6 +17,7 @@
 
 package org.dromara.hmily.repository.redis.jedis;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -133,6 +134,15 @@ public interface JedisClient {
      */
     Long hdel(String key, String item);
     
+    /**
+     * Hdel long.
+     *
+     * @param key    the key
+     * @param fields the fields
+     * @return the long
+     */
+    Long hdel(byte[] key, byte[]... fields);
+    
     /**
      * Incr long.
      *
@@ -184,4 +194,79 @@ public interface JedisClient {
      * @return the boolean
      */
     boolean hexists(byte[] key, byte[] field);
+    
+    /**
+     * Hmset string.
+     *
+     * @param key  the key
+     * @param hash the field value map
+     * @return the string
+     */
+    String hmset(byte[] key, Map<byte[], byte[]> hash);
+    
+    /**
+     * Hmget list.
+     *
+     * @param key    the key
+     * @param fields the fields
+     * @return the values in fields order, null for absent field
+     */
+    List<byte[]> hmget(byte[] key, byte[]... fields);
+    
+    /**
+     * Zrange by score set.
+     *
+     * @param key    the key
+     * @param min    the min score, prefix with ( for exclusive
+     * @param max    the max score, prefix with ( for exclusive
+     * @param offset the offset
+     * @param count  the count
+     * @return the members in score order
+     */
+    Set<byte[]> zrangeByScore(byte[] key, byte[] min, byte[] max, int offset, int count);
+    
+    /**
+     * Zrem long.
+     *
+     * @param key     the key
+     * @param members the members
+     * @return the removed count
+     */
+    Long zrem(byte[] key, byte[]... members);
+    
+    /**
+     * Eval a lua script, all the keys must be in the same slot for a cluster.
+     *
+     * @param script the script
+     * @param keys   the keys
+     * @param args   the args
+     * @return the script result
+     */
+    Object eval(byte[] script, List<byte[]> keys, List<byte[]> args);
+    
+    /**
+     * Smembers set.
+     *
+     * @param key the key
+     * @return the members
+     */
+    Set<byte[]> smembers(byte[] key);
+    
+    /**
+     * Evalsha a loaded lua script, all the keys must be in the same slot for a cluster.
+     *
+     * @param sha1 the sha1 of the script
+     * @param keys the keys
+     * @param args the args
+     * @return the script result
+     */
+    Object evalsha(byte[] sha1, List<byte[]> keys, List<byte[]> args);
+    
+    /**
+     * Run a batch of lua script calls, the calls of one slot are pipelined on its connection.
+     *
+     * @param calls the calls, all the keys of a call must be in the same slot for a cluster
+     * @return the results in calls order
+     */
+    List<Object> evalBatch(List<ScriptCall> calls);
 }
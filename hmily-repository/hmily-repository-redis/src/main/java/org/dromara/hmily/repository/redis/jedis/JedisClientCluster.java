@@ -17,9 +17,18 @@
 
 package org.dromara.hmily.repository.redis.jedis;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
+import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisRedirectionException;
+import redis.clients.jedis.util.JedisClusterCRC16;
 
 /**
  * JedisClientCluster.
@@ -94,6 +103,11 @@ public class JedisClientCluster implements JedisClient {
         return jedisCluster.hdel(key, item);
     }
     
+    @Override
+    public Long hdel(final byte[] key, final byte[]... fields) {
+        return jedisCluster.hdel(key, fields);
+    }
+    
     @Override
     public Long incr(final String key) {
         return jedisCluster.incr(key);
@@ -123,4 +137,84 @@ public class JedisClientCluster implements JedisClient {
     public boolean hexists(final byte[] key, final byte[] field) {
         return jedisCluster.hexists(key, field);
     }
+    
+    @Override
+    public String hmset(final byte[] key, final Map<byte[], byte[]> hash) {
+        return jedisCluster.hmset(key, hash);
+    }
+    
+    @Override
+    public List<byte[]> hmget(final byte[] key, final byte[]... fields) {
+        return jedisCluster.hmget(key, fields);
+    }
+    
+    @Override
+    public Set<byte[]> zrangeByScore(final byte[] key, final byte[] min, final byte[] max, final int offset, final int count) {
+        return jedisCluster.zrangeByScore(key, min, max, offset, count);
+    }
+    
+    @Override
+    public Long zrem(final byte[] key, final byte[]... members) {
+        return jedisCluster.zrem(key, members);
+    }
+    
+    @Override
+    public Object eval(final byte[] script, final List<byte[]> keys, final List<byte[]> args) {
+        return jedisCluster.eval(script, keys, args);
+    }
+    
+    @Override
+    public Set<byte[]> smembers(final byte[] key) {
+        return jedisCluster.smembers(key);
+    }
+    
+    @Override
+    public Object evalsha(final byte[] sha1, final List<byte[]> keys, final List<byte[]> args) {
+        return jedisCluster.evalsha(sha1, keys, args);
+    }
+    
+    /**
+     * The calls are grouped by the slot of their first key and each group is pipelined on the connection of its slot.
+     * a call is run once: only the calls a node redirected, which it did not run, go through the cluster again, which
+     * follows the redirection. when the cluster only has a {@link JedisCluster} or the connection of a slot can not be had,
+     * nothing was sent and the calls of the group go through the cluster one by one. a connection failing once the calls
+     * are sent fails the batch, as the calls may have run.
+     */
+    @Override
+    public List<Object> evalBatch(final List<ScriptCall> calls) {
+        Object[] results = new Object[calls.size()];
+        Map<Integer, List<Integer>> slots = new LinkedHashMap<>();
+        for (int i = 0; i < calls.size(); i++) {
+            slots.computeIfAbsent(JedisClusterCRC16.getSlot(calls.get(i).getKeys().get(0)), k -> new ArrayList<>()).add(i);
+        }
+        for (Map.Entry<Integer, List<Integer>> entry : slots.entrySet()) {
+            List<ScriptCall> slotCalls = entry.getValue().stream().map(calls::get).collect(Collectors.toList());
+            List<Object> slotResults = slotCalls.size() > 1 ? pipelined(entry.getKey(), slotCalls) : null;
+            if (slotResults == null) {
+                slotResults = slotCalls.stream().map(each -> each.eval(this)).collect(Collectors.toList());
+            }
+            for (int i = 0; i < slotResults.size(); i++) {
+                Object result = slotResults.get(i);
+                results[entry.getValue().get(i)] = result instanceof JedisRedirectionException ? slotCalls.get(i).eval(this) : result;
+            }
+        }
+        return Arrays.asList(results);
+    }
+    
+    private List<Object> pipelined(final int slot, final List<ScriptCall> slotCalls) {
+        if (!(jedisCluster instanceof HmilyJedisCluster)) {
+            return null;
+        }
+        Jedis jedis;
+        try {
+            jedis = ((HmilyJedisCluster) jedisCluster).getConnectionFromSlot(slot);
+        } catch (JedisConnectionException e) {
+            return null;
+        }
+        try {
+            return ScriptCall.pipelined(jedis, slotCalls);
+        } finally {
+            jedis.close();
+        }
+    }
 }
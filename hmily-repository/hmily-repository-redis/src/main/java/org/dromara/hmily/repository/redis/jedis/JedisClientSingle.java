@@ -17,6 +17,7 @@
 
 package org.dromara.hmily.repository.redis.jedis;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import redis.clients.jedis.Jedis;
@@ -117,6 +118,13 @@ public class JedisClientSingle implements JedisClient {
             return jedis.hdel(key, item);
         }
     }
+    
+    @Override
+    public Long hdel(final byte[] key, final byte[]... fields) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.hdel(key, fields);
+        }
+    }
 
     @Override
     public Long incr(final String key) {
@@ -159,4 +167,60 @@ public class JedisClientSingle implements JedisClient {
             return jedis.hexists(key, field);
         }
     }
+    
+    @Override
+    public String hmset(final byte[] key, final Map<byte[], byte[]> hash) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.hmset(key, hash);
+        }
+    }
+    
+    @Override
+    public List<byte[]> hmget(final byte[] key, final byte[]... fields) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.hmget(key, fields);
+        }
+    }
+    
+    @Override
+    public Set<byte[]> zrangeByScore(final byte[] key, final byte[] min, final byte[] max, final int offset, final int count) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.zrangeByScore(key, min, max, offset, count);
+        }
+    }
+    
+    @Override
+    public Long zrem(final byte[] key, final byte[]... members) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.zrem(key, members);
+        }
+    }
+    
+    @Override
+    public Object eval(final byte[] script, final List<byte[]> keys, final List<byte[]> args) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.eval(script, keys, args);
+        }
+    }
+    
+    @Override
+    public Set<byte[]> smembers(final byte[] key) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.smembers(key);
+        }
+    }
+    
+    @Override
+    public Object evalsha(final byte[] sha1, final List<byte[]> keys, final List<byte[]> args) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return jedis.evalsha(sha1, keys, args);
+        }
+    }
+    
+    @Override
+    public List<Object> evalBatch(final List<ScriptCall> calls) {
+        try (Jedis jedis = jedisPool.getResource()) {
+            return ScriptCall.pipelined(jedis, calls);
+        }
+    }
 }
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.redis.jedis;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+import redis.clients.jedis.exceptions.JedisRedirectionException;
+
+/**
+ * A call of a lua script, by its sha1 first and by its body when the server does not have it.
+ *
+ * @author dzc
+ */
+@Getter
+@AllArgsConstructor
+public final class ScriptCall {
+    
+    private final byte[] script;
+    
+    private final byte[] sha1;
+    
+    private final List<byte[]> keys;
+    
+    private final List<byte[]> args;
+    
+    /**
+     * Run the call on a jedis client.
+     *
+     * @param jedisClient the jedis client
+     * @return the script result
+     */
+    public Object eval(final JedisClient jedisClient) {
+        try {
+            return jedisClient.evalsha(sha1, keys, args);
+        } catch (JedisNoScriptException e) {
+            return jedisClient.eval(script, keys, args);
+        }
+    }
+    
+    /**
+     * Pipeline the calls on one connection, the calls the server has no script for are run again by eval,
+     * which also loads the script. The calls a cluster node redirected were not run, they are left as their
+     * {@link JedisRedirectionException} for the caller to run them where they belong.
+     *
+     * @param jedis the jedis
+     * @param calls the calls
+     * @return the results in calls order
+     * @throws JedisDataException when a call fails
+     */
+    static List<Object> pipelined(final Jedis jedis, final List<ScriptCall> calls) {
+        Pipeline pipeline = jedis.pipelined();
+        calls.forEach(each -> pipeline.evalsha(each.getSha1(), each.getKeys(), each.getArgs()));
+        List<Object> results = new ArrayList<>(pipeline.syncAndReturnAll());
+        for (int i = 0; i < results.size(); i++) {
+            Object result = results.get(i);
+            if (result instanceof JedisNoScriptException) {
+                ScriptCall call = calls.get(i);
+                results.set(i, jedis.eval(call.getScript(), call.getKeys(), call.getArgs()));
+            } else if (result instanceof JedisDataException && !(result instanceof JedisRedirectionException)) {
+                throw (JedisDataException) result;
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,334 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.redis;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import org.dromara.hmily.common.enums.HmilyActionEnum;
+import org.dromara.hmily.config.api.ConfigEnv;
+import org.dromara.hmily.config.api.entity.HmilyRedisConfig;
+import org.dromara.hmily.repository.spi.HmilyRepository;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipantUndo;
+import org.dromara.hmily.repository.spi.entity.HmilyScanCursor;
+import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
+import org.dromara.hmily.repository.spi.exception.HmilyRepositoryException;
+import org.dromara.hmily.serializer.jdk.JDKSerializer;
+import org.dromara.hmily.serializer.spi.HmilySerializer;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.embedded.RedisServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The redis repository against an embedded redis server.
+ *
+ * @author xiaoyu
+ */
+public final class RedisRepositoryTest {
+
+    private static final String APP_NAME = "hmily-redis-test";
+
+    private static final String OTHER_APP_NAME = "hmily-redis-other";
+
+    private static RedisServer redisServer;
+
+    private static int port;
+
+    private final HmilySerializer hmilySerializer = new JDKSerializer();
+
+    private RedisRepository redisRepository;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        try {
+            redisServer = new RedisServer(port);
+            redisServer.start();
+        } catch (RuntimeException e) {
+            redisServer = null;
+        }
+        Assume.assumeTrue("an embedded redis server can not start here", redisServer != null);
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        try (Jedis jedis = new Jedis("localhost", port)) {
+            jedis.flushAll();
+        }
+        HmilyRedisConfig hmilyRedisConfig = new HmilyRedisConfig();
+        hmilyRedisConfig.setHostName("localhost");
+        hmilyRedisConfig.setPort(port);
+        ConfigEnv.getInstance().putBean(hmilyRedisConfig);
+        redisRepository = start(APP_NAME);
+    }
+
+    @Test
+    public void assertTransactionLifecycle() {
+        HmilyTransaction hmilyTransaction = transaction(1L, APP_NAME);
+        assertEquals(HmilyRepository.ROWS, redisRepository.createHmilyTransaction(hmilyTransaction));
+        assertEquals(0, (int) hmilyTransaction.getVersion());
+        assertEquals(HmilyRepository.ROWS, redisRepository.updateHmilyTransactionStatus(1L, 2));
+        HmilyTransaction found = redisRepository.findByTransId(1L);
+        assertEquals(2, found.getStatus());
+        assertEquals(1, (int) found.getVersion());
+        assertEquals(HmilyRepository.ROWS, redisRepository.updateRetryByLock(found));
+        assertEquals(HmilyRepository.FAIL_ROWS, redisRepository.updateRetryByLock(transaction(1L, APP_NAME)));
+        assertEquals(1, (int) redisRepository.findByTransId(1L).getRetry());
+        assertEquals(HmilyRepository.FAIL_ROWS, redisRepository.updateHmilyTransactionStatus(2L, 2));
+        assertEquals(HmilyRepository.ROWS, redisRepository.removeHmilyTransaction(1L));
+        assertNull(redisRepository.findByTransId(1L));
+        assertTrue(redisRepository.listLimitByDelay(new Date(0), 10).isEmpty());
+    }
+
+    @Test
+    public void assertParticipantLookups() {
+        redisRepository.batchCreateHmilyParticipant(Arrays.asList(participant(10L, null, 1L), participant(11L, 10L, 1L), participant(12L, null, 2L)));
+        assertEquals(Arrays.asList(10L, 11L), ids(redisRepository.findHmilyParticipant(10L)));
+        assertEquals(Arrays.asList(10L, 11L), ids(redisRepository.listHmilyParticipantByTransId(1L)));
+        assertTrue(redisRepository.existHmilyParticipantByTransId(2L));
+        assertEquals(Collections.singletonList(3L), redisRepository.findTransIdsWithoutParticipants(Arrays.asList(1L, 2L, 3L)));
+        assertEquals(HmilyRepository.ROWS, redisRepository.removeHmilyParticipant(12L));
+        assertFalse(redisRepository.existHmilyParticipantByTransId(2L));
+        assertTrue(redisRepository.findHmilyParticipant(12L).isEmpty());
+    }
+
+    @Test
+    public void assertResaveLeavesTheSetsItNoLongerBelongsTo() {
+        redisRepository.createHmilyParticipant(participant(10L, null, 1L));
+        redisRepository.createHmilyParticipant(participant(11L, 10L, 1L));
+        HmilyParticipant moved = participant(11L, 12L, 1L);
+        redisRepository.createHmilyParticipant(moved);
+        assertEquals(1, (int) moved.getVersion());
+        assertEquals(Collections.singletonList(10L), ids(redisRepository.findHmilyParticipant(10L)));
+        redisRepository.createHmilyParticipant(participant(12L, null, 1L));
+        assertEquals(Arrays.asList(11L, 12L), ids(redisRepository.findHmilyParticipant(12L)));
+    }
+
+    @Test
+    public void assertRepositoryWithoutCachedIndexesDeclaresTheStoredOnes() {
+        redisRepository.createHmilyTransaction(transaction(1L, APP_NAME));
+        redisRepository.createHmilyParticipant(participant(10L, null, 1L));
+        RedisRepository restarted = start(APP_NAME);
+        assertEquals(HmilyRepository.ROWS, restarted.updateHmilyTransactionStatus(1L, 3));
+        HmilyParticipant hmilyParticipant = restarted.findHmilyParticipant(10L).get(0);
+        assertTrue(restarted.lockHmilyParticipant(hmilyParticipant));
+        assertEquals(HmilyRepository.ROWS, start(APP_NAME).removeHmilyParticipant(10L));
+        assertTrue(redisRepository.listHmilyParticipantByTransId(1L).isEmpty());
+        assertTrue(redisRepository.listHmilyParticipant(new Date(0), "tcc", 10).isEmpty());
+        assertEquals(3, redisRepository.listLimitByDelay(new Date(0), 10).get(0).getStatus());
+    }
+
+    @Test
+    public void assertListAndRemoveByIndex() {
+        HmilyParticipant deleted = participant(10L, null, 1L);
+        deleted.setStatus(HmilyActionEnum.DELETE.getCode());
+        redisRepository.batchCreateHmilyParticipant(Arrays.asList(deleted, participant(11L, null, 1L), participant(12L, null, 2L)));
+        assertEquals(Arrays.asList(11L, 12L), ids(redisRepository.listHmilyParticipant(new Date(0), "tcc", 10)));
+        assertEquals(1, redisRepository.listHmilyParticipant(new Date(0), "tcc", 1).size());
+        assertTrue(redisRepository.listHmilyParticipant(new Date(System.currentTimeMillis() + 1000), "tcc", 10).isEmpty());
+        assertEquals(1, redisRepository.removeHmilyParticipantByData(new Date(0)));
+        assertTrue(redisRepository.findHmilyParticipant(10L).isEmpty());
+        assertEquals(2, redisRepository.listHmilyParticipantByTransId(1L).size() + redisRepository.listHmilyParticipantByTransId(2L).size());
+    }
+
+    @Test
+    public void assertUndoLifecycle() {
+        redisRepository.createHmilyParticipantUndo(undo(100L, 10L, 1L));
+        redisRepository.createHmilyParticipantUndo(undo(101L, 11L, 1L));
+        assertEquals(1, redisRepository.findHmilyParticipantUndoByParticipantId(10L).size());
+        assertEquals(HmilyRepository.ROWS, redisRepository.updateHmilyParticipantUndoStatus(100L, HmilyActionEnum.DELETE.getCode()));
+        assertEquals(1, redisRepository.removeHmilyParticipantUndoByData(new Date(0)));
+        assertTrue(redisRepository.findHmilyParticipantUndoByParticipantId(10L).isEmpty());
+        assertEquals(HmilyRepository.ROWS, redisRepository.removeHmilyParticipantUndo(101L));
+        assertTrue(redisRepository.findHmilyParticipantUndoByParticipantId(11L).isEmpty());
+    }
+
+    @Test
+    public void assertLegacyHashesAreImportedOnce() {
+        try (Jedis jedis = new Jedis("localhost", port)) {
+            jedis.hset("hmily_transaction_global".getBytes(), "hmily-hmily_transaction_global-1".getBytes(), hmilySerializer.serialize(transaction(1L, APP_NAME)));
+            jedis.hset("hmily_transaction_global".getBytes(), "hmily-hmily_transaction_global-2".getBytes(), hmilySerializer.serialize(transaction(2L, OTHER_APP_NAME)));
+            jedis.hset("hmily_transaction_participant".getBytes(), "10".getBytes(), hmilySerializer.serialize(participant(10L, null, 1L)));
+            jedis.hset("hmily_participant_undo".getBytes(), "100".getBytes(), hmilySerializer.serialize(undo(100L, 10L, 1L)));
+            jedis.hset("hmily_participant_undo".getBytes(), "101".getBytes(), hmilySerializer.serialize(undo(101L, 20L, 2L)));
+            RedisRepository imported = start(APP_NAME);
+            assertEquals(APP_NAME, imported.findByTransId(1L).getAppName());
+            assertNull(imported.findByTransId(2L));
+            assertEquals(Collections.singletonList(10L), ids(imported.listHmilyParticipantByTransId(1L)));
+            assertEquals(1, imported.findHmilyParticipantUndoByParticipantId(10L).size());
+            assertTrue(imported.findHmilyParticipantUndoByParticipantId(20L).isEmpty());
+            assertEquals(Collections.singleton("hmily-hmily_transaction_global-2"), jedis.hkeys("hmily_transaction_global"));
+            assertFalse(jedis.exists("hmily_transaction_participant"));
+            assertEquals(Collections.singleton("101"), jedis.hkeys("hmily_participant_undo"));
+            imported.updateHmilyTransactionStatus(1L, 3);
+            assertEquals(3, start(APP_NAME).findByTransId(1L).getStatus());
+        }
+    }
+
+    @Test
+    public void assertBatchWritesOfTransactions() {
+        List<HmilyTransaction> hmilyTransactions = Arrays.asList(transaction(1L, APP_NAME), transaction(2L, APP_NAME), transaction(3L, OTHER_APP_NAME));
+        assertEquals(3, redisRepository.batchCreateHmilyTransaction(hmilyTransactions));
+        assertEquals(Arrays.asList(0, 0, 0), hmilyTransactions.stream().map(HmilyTransaction::getVersion).collect(Collectors.toList()));
+        assertEquals(3, redisRepository.batchCreateHmilyTransaction(hmilyTransactions));
+        assertEquals(Arrays.asList(1, 1, 1), hmilyTransactions.stream().map(HmilyTransaction::getVersion).collect(Collectors.toList()));
+        assertEquals(2, redisRepository.listLimitByDelay(new Date(0), 10).size());
+        Map<Long, Integer> statusMap = new LinkedHashMap<>();
+        statusMap.put(1L, 3);
+        statusMap.put(2L, 4);
+        statusMap.put(9L, 3);
+        assertEquals(2, redisRepository.batchUpdateHmilyTransactionStatus(statusMap));
+        assertEquals(3, redisRepository.findByTransId(1L).getStatus());
+        assertEquals(4, redisRepository.findByTransId(2L).getStatus());
+        assertEquals(2, (int) redisRepository.findByTransId(2L).getVersion());
+        assertNull(redisRepository.findByTransId(9L));
+        assertEquals(2, redisRepository.batchRemoveHmilyTransaction(Arrays.asList(1L, 2L)));
+        assertNull(redisRepository.findByTransId(1L));
+        assertTrue(redisRepository.listLimitByDelay(new Date(0), 10).isEmpty());
+        assertEquals(1, start(OTHER_APP_NAME).listLimitByDelay(new Date(0), 10).size());
+    }
+
+    @Test
+    public void assertBatchStatusAndRemoveOfParticipantsAndUndo() {
+        redisRepository.batchCreateHmilyParticipant(Arrays.asList(participant(10L, null, 1L), participant(11L, 10L, 1L), participant(12L, null, 2L)));
+        Map<Long, Integer> statusMap = new LinkedHashMap<>();
+        statusMap.put(10L, HmilyActionEnum.DELETE.getCode());
+        statusMap.put(12L, 3);
+        assertEquals(2, redisRepository.batchUpdateHmilyParticipantStatus(statusMap));
+        assertEquals(Arrays.asList(11L, 12L), ids(redisRepository.listHmilyParticipant(new Date(0), "tcc", 10)));
+        assertEquals(3, redisRepository.findHmilyParticipant(12L).get(0).getStatus().intValue());
+        assertEquals(2, redisRepository.batchRemoveHmilyParticipant(Arrays.asList(10L, 11L)));
+        assertTrue(redisRepository.listHmilyParticipantByTransId(1L).isEmpty());
+        assertTrue(redisRepository.findHmilyParticipant(10L).isEmpty());
+        assertEquals(Collections.singletonList(12L), ids(redisRepository.listHmilyParticipantByTransId(2L)));
+        redisRepository.createHmilyParticipantUndo(undo(100L, 12L, 2L));
+        redisRepository.createHmilyParticipantUndo(undo(101L, 12L, 2L));
+        Map<Long, Integer> undoStatusMap = new LinkedHashMap<>();
+        undoStatusMap.put(100L, HmilyActionEnum.DELETE.getCode());
+        undoStatusMap.put(101L, 3);
+        assertEquals(2, redisRepository.batchUpdateHmilyParticipantUndoStatus(undoStatusMap));
+        assertEquals(1, redisRepository.removeHmilyParticipantUndoByData(new Date(0)));
+        assertEquals(1, redisRepository.batchRemoveHmilyParticipantUndo(Collections.singletonList(101L)));
+        assertTrue(redisRepository.findHmilyParticipantUndoByParticipantId(12L).isEmpty());
+    }
+
+    @Test
+    public void assertScansPageThroughMoreThanABatch() {
+        List<HmilyParticipant> hmilyParticipants = LongStream.rangeClosed(1, 1200).mapToObj(id -> participant(id, null, id)).collect(Collectors.toList());
+        assertEquals(1200, redisRepository.batchCreateHmilyParticipant(hmilyParticipants));
+        assertEquals(1100, new HashSet<>(ids(redisRepository.listHmilyParticipant(new Date(0), "tcc", 1100))).size());
+        assertEquals(1200, redisRepository.listHmilyParticipant(new Date(0), "tcc", Integer.MAX_VALUE).size());
+        List<Long> scanned = new ArrayList<>();
+        HmilyScanCursor cursor = null;
+        List<HmilyParticipant> page = redisRepository.scanHmilyParticipant(new Date(0), "tcc", cursor, 500);
+        while (!page.isEmpty()) {
+            page.forEach(each -> scanned.add(each.getParticipantId()));
+            HmilyParticipant last = page.get(page.size() - 1);
+            cursor = new HmilyScanCursor(last.getUpdateTime(), last.getParticipantId());
+            page = redisRepository.scanHmilyParticipant(new Date(0), "tcc", cursor, 500);
+        }
+        assertEquals(LongStream.rangeClosed(1, 1200).boxed().collect(Collectors.toList()), scanned);
+    }
+
+    @Test
+    public void assertScanRemovesTheIndexMembersOfGoneRecords() {
+        redisRepository.batchCreateHmilyTransaction(Arrays.asList(transaction(1L, APP_NAME), transaction(2L, APP_NAME)));
+        try (Jedis jedis = new Jedis("localhost", port)) {
+            String index = jedis.keys("*hmily_transaction_global*").stream().filter(each -> jedis.type(each).equals("zset")).findFirst().orElse(null);
+            assertEquals(Long.valueOf(2), jedis.zcard(index));
+            jedis.del(jedis.zrange(index, 0, 0).iterator().next());
+            assertEquals(1, redisRepository.listLimitByDelay(new Date(0), 10).size());
+            assertEquals(Long.valueOf(1), jedis.zcard(index));
+        }
+    }
+
+    @Test(expected = HmilyRepositoryException.class)
+    public void assertAnotherShardCountFailsInit() {
+        try (Jedis jedis = new Jedis("localhost", port)) {
+            assertEquals("1", jedis.get("hmily-shards"));
+            jedis.set("hmily-shards", "16");
+        }
+        start(APP_NAME);
+    }
+
+    private RedisRepository start(final String appName) {
+        RedisRepository repository = new RedisRepository();
+        repository.setSerializer(hmilySerializer);
+        repository.init(appName);
+        return repository;
+    }
+
+    private static List<Long> ids(final List<HmilyParticipant> hmilyParticipants) {
+        return hmilyParticipants.stream().map(HmilyParticipant::getParticipantId).sorted().collect(Collectors.toList());
+    }
+
+    private static HmilyTransaction transaction(final Long transId, final String appName) {
+        HmilyTransaction hmilyTransaction = new HmilyTransaction(transId);
+        hmilyTransaction.setAppName(appName);
+        hmilyTransaction.setStatus(1);
+        return hmilyTransaction;
+    }
+
+    private static HmilyParticipant participant(final Long participantId, final Long participantRefId, final Long transId) {
+        HmilyParticipant hmilyParticipant = new HmilyParticipant();
+        hmilyParticipant.setParticipantId(participantId);
+        hmilyParticipant.setParticipantRefId(participantRefId);
+        hmilyParticipant.setTransId(transId);
+        hmilyParticipant.setAppName(APP_NAME);
+        hmilyParticipant.setTransType("tcc");
+        hmilyParticipant.setStatus(1);
+        return hmilyParticipant;
+    }
+
+    private static HmilyParticipantUndo undo(final Long undoId, final Long participantId, final Long transId) {
+        HmilyParticipantUndo hmilyParticipantUndo = new HmilyParticipantUndo();
+        hmilyParticipantUndo.setUndoId(undoId);
+        hmilyParticipantUndo.setParticipantId(participantId);
+        hmilyParticipantUndo.setTransId(transId);
+        hmilyParticipantUndo.setStatus(1);
+        return hmilyParticipantUndo;
+    }
+}
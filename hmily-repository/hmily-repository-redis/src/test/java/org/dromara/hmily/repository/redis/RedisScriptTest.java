@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.redis;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.dromara.hmily.repository.redis.jedis.JedisClient;
+import org.dromara.hmily.repository.redis.jedis.JedisClientSingle;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.embedded.RedisServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The lua scripts touch only the keys they are given, and report the ones they would touch but were not given.
+ *
+ * @author xiaoyu
+ */
+public final class RedisScriptTest {
+
+    private static final String REGISTRY = "{hmily-0}-r-index";
+
+    private static final String INDEX = "{hmily-0}-r-index-app";
+
+    private static final String OTHER_INDEX = "{hmily-0}-r-index-other";
+
+    private static final String RECORD = "{hmily-0}-r-1";
+
+    private static final String TRANS_SET = "{hmily-0}-r-trans-1";
+
+    private static final String REF_SET = "{hmily-0}-r-participant-2";
+
+    private static final String LOCATOR = "{hmily-0}-r-locator";
+
+    private static RedisServer redisServer;
+
+    private static JedisPool jedisPool;
+
+    private static JedisClient jedisClient;
+
+    @BeforeClass
+    public static void startServer() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        try {
+            redisServer = new RedisServer(port);
+            redisServer.start();
+        } catch (RuntimeException e) {
+            redisServer = null;
+        }
+        Assume.assumeTrue("an embedded redis server can not start here", redisServer != null);
+        jedisPool = new JedisPool("localhost", port);
+        jedisClient = new JedisClientSingle(jedisPool);
+    }
+
+    @AfterClass
+    public static void stopServer() {
+        if (jedisPool != null) {
+            jedisPool.close();
+        }
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.flushAll();
+        }
+    }
+
+    @Test
+    public void assertSaveBuildsTheSetsFromItsKeys() {
+        List<Object> reply = save(INDEX, Arrays.asList(TRANS_SET, REF_SET));
+        assertEquals(Arrays.asList(Collections.singletonList(0L), Collections.emptyList()), reply);
+        try (Jedis jedis = jedisPool.getResource()) {
+            assertEquals(TRANS_SET + " " + REF_SET, jedis.hget(RECORD, "sets"));
+            assertEquals(INDEX, jedis.hget(RECORD, "index"));
+            assertTrue(jedis.sismember(REF_SET, RECORD));
+            assertTrue(jedis.sismember(REGISTRY, INDEX));
+        }
+    }
+
+    @Test
+    public void assertSaveReportsTheSetsItWouldLeave() {
+        save(INDEX, Arrays.asList(TRANS_SET, REF_SET));
+        List<Object> reply = save(OTHER_INDEX, Collections.singletonList(TRANS_SET));
+        assertEquals(Arrays.asList(INDEX, REF_SET), strings(reply.get(1)));
+        try (Jedis jedis = jedisPool.getResource()) {
+            assertEquals(INDEX, jedis.hget(RECORD, "index"));
+            assertTrue(jedis.sismember(REF_SET, RECORD));
+        }
+        reply = save(OTHER_INDEX, Collections.singletonList(TRANS_SET), INDEX, REF_SET);
+        assertEquals(Collections.singletonList(1L), reply.get(0));
+        try (Jedis jedis = jedisPool.getResource()) {
+            assertEquals(OTHER_INDEX, jedis.hget(RECORD, "index"));
+            assertFalse(jedis.sismember(REF_SET, RECORD));
+            assertTrue(jedis.sismember(TRANS_SET, RECORD));
+            assertEquals(Long.valueOf(0), jedis.zcard(INDEX));
+        }
+    }
+
+    @Test
+    public void assertUpdateStatusAndLockReportTheIndex() {
+        save(INDEX, Collections.emptyList());
+        List<Object> reply = eval(RedisScript.UPDATE_STATUS, Collections.singletonList(RECORD), "2000", "1", "3");
+        assertEquals(Arrays.asList(0L, Collections.singletonList(INDEX)), Arrays.asList(reply.get(0), strings(reply.get(1))));
+        reply = eval(RedisScript.LOCK, Collections.singletonList(RECORD), "0", "2000");
+        assertEquals(Arrays.asList(0L, Collections.singletonList(INDEX)), Arrays.asList(reply.get(0), strings(reply.get(1))));
+        try (Jedis jedis = jedisPool.getResource()) {
+            assertEquals("1", jedis.hget(RECORD, "status"));
+            assertEquals("0", jedis.hget(RECORD, "version"));
+        }
+        assertEquals(1L, eval(RedisScript.UPDATE_STATUS, Arrays.asList(RECORD, INDEX), "2000", "1", "3").get(0));
+        assertEquals(1L, eval(RedisScript.LOCK, Arrays.asList(RECORD, INDEX), "1", "3000").get(0));
+        assertEquals(0L, eval(RedisScript.LOCK, Arrays.asList(RECORD, INDEX), "1", "3000").get(0));
+        try (Jedis jedis = jedisPool.getResource()) {
+            assertEquals("3", jedis.hget(RECORD, "status"));
+            assertEquals("2", jedis.hget(RECORD, "version"));
+            assertEquals(Double.valueOf(3000), jedis.zscore(INDEX, RECORD));
+        }
+    }
+
+    @Test
+    public void assertRemoveReportsTheIndexAndSets() {
+        save(INDEX, Collections.singletonList(TRANS_SET));
+        List<Object> reply = eval(RedisScript.REMOVE, Arrays.asList(RECORD, INDEX), "1");
+        assertEquals(Arrays.asList(0L, Collections.singletonList(TRANS_SET)), Arrays.asList(reply.get(0), strings(reply.get(1))));
+        reply = eval(RedisScript.REMOVE, Arrays.asList(RECORD, INDEX, TRANS_SET), "1");
+        assertEquals(1L, reply.get(0));
+        try (Jedis jedis = jedisPool.getResource()) {
+            assertFalse(jedis.exists(RECORD));
+            assertFalse(jedis.exists(TRANS_SET));
+            assertEquals(Long.valueOf(0), jedis.zcard(INDEX));
+        }
+    }
+
+    @Test
+    public void assertBatchRunsTheScriptsTheServerDoesNotHaveByTheirBody() {
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.scriptFlush();
+        }
+        List<Object> reply = jedisClient.evalBatch(Arrays.asList(
+                RedisScript.LOCATE_SAVE.call(Collections.singletonList(LOCATOR.getBytes()), bytes(Arrays.asList("1", "3", "2", "5"))),
+                RedisScript.LOCATE.call(Collections.singletonList(LOCATOR.getBytes()), bytes(Arrays.asList("1", "2", "9")))));
+        assertEquals(2L, reply.get(0));
+        assertEquals(Arrays.asList("3", "5", null), strings(reply.get(1)));
+        reply = jedisClient.evalBatch(Collections.singletonList(
+                RedisScript.LOCATE_REMOVE.call(Collections.singletonList(LOCATOR.getBytes()), bytes(Arrays.asList("1", "9")))));
+        assertEquals(Collections.singletonList(1L), reply);
+        reply = jedisClient.evalBatch(Collections.singletonList(
+                RedisScript.LOCATE.call(Collections.singletonList(LOCATOR.getBytes()), bytes(Arrays.asList("1", "2")))));
+        assertEquals(Arrays.asList(null, "5"), strings(reply.get(0)));
+    }
+
+    @Test
+    public void assertRangeReadsAPageOfTheIndexAndGetReadsItsRecords() {
+        save(INDEX, Collections.emptyList());
+        try (Jedis jedis = jedisPool.getResource()) {
+            jedis.zadd(INDEX, 500, "{hmily-0}-r-0");
+            jedis.zadd(INDEX, 3000, "{hmily-0}-r-2");
+        }
+        assertEquals(Collections.singletonList(RECORD), strings(RedisScript.RANGE.call(Collections.singletonList(INDEX.getBytes()),
+                bytes(Arrays.asList("1000", "+inf", "0", "1"))).eval(jedisClient)));
+        assertEquals(Collections.singletonList("{hmily-0}-r-2"), strings(RedisScript.RANGE.call(Collections.singletonList(INDEX.getBytes()),
+                bytes(Arrays.asList("1000", "+inf", "1", "1"))).eval(jedisClient)));
+        List<Object> records = eval(RedisScript.GET, Arrays.asList(RECORD, "{hmily-0}-r-2"));
+        assertEquals(Arrays.asList("data", "1", "0", "0", "1000", "1000"), strings(records.get(0)));
+        assertEquals(Collections.nCopies(6, null), strings(records.get(1)));
+    }
+
+    @Test
+    public void assertShardsKeepsTheFirstCount() {
+        List<byte[]> keys = Collections.singletonList("hmily-shards".getBytes());
+        assertEquals("4", new String((byte[]) RedisScript.SHARDS.call(keys, bytes(Collections.singletonList("4"))).eval(jedisClient)));
+        assertEquals("4", new String((byte[]) RedisScript.SHARDS.call(keys, bytes(Collections.singletonList("16"))).eval(jedisClient)));
+    }
+
+    private static List<Object> save(final String index, final List<String> sets, final String... leaving) {
+        List<String> keys = new ArrayList<>(Arrays.asList(REGISTRY, index, RECORD));
+        keys.addAll(sets);
+        keys.addAll(Arrays.asList(leaving));
+        return eval(RedisScript.SAVE, keys, "1000", "1", "data", "1", String.valueOf(sets.size()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> eval(final RedisScript script, final List<String> keys, final String... args) {
+        return (List<Object>) script.call(bytes(keys), bytes(Arrays.asList(args))).eval(jedisClient);
+    }
+
+    private static List<byte[]> bytes(final List<String> values) {
+        List<byte[]> result = new ArrayList<>(values.size());
+        values.forEach(each -> result.add(each.getBytes()));
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> strings(final Object values) {
+        List<String> result = new ArrayList<>();
+        ((List<byte[]>) values).forEach(each -> result.add(each == null ? null : new String(each)));
+        return result;
+    }
+}
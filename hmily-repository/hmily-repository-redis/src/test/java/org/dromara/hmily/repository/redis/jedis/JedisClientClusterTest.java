@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.redis.jedis;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisMovedDataException;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The pipelined batches of the cluster client run each call once.
+ *
+ * @author xiaoyu
+ */
+public final class JedisClientClusterTest {
+
+    private static final byte[] SCRIPT = "return 1".getBytes();
+
+    private static final byte[] SHA1 = "sha1".getBytes();
+
+    private final ScriptCall first = call("{hmily-0}-1");
+
+    private final ScriptCall second = call("{hmily-0}-2");
+
+    private HmilyJedisCluster jedisCluster;
+
+    private Jedis jedis;
+
+    private Pipeline pipeline;
+
+    @Before
+    public void setUp() {
+        jedisCluster = mock(HmilyJedisCluster.class);
+        jedis = mock(Jedis.class);
+        pipeline = mock(Pipeline.class);
+        when(jedisCluster.getConnectionFromSlot(anyInt())).thenReturn(jedis);
+        when(jedis.pipelined()).thenReturn(pipeline);
+    }
+
+    @Test
+    public void assertOnlyRedirectedCallsAreRunAgain() {
+        when(pipeline.syncAndReturnAll()).thenReturn(Arrays.asList(1L, new JedisMovedDataException("MOVED", new HostAndPort("localhost", 7001), 0)));
+        when(jedisCluster.evalsha(SHA1, second.getKeys(), second.getArgs())).thenReturn(2L);
+        List<Object> results = new JedisClientCluster(jedisCluster).evalBatch(Arrays.asList(first, second));
+        assertEquals(Arrays.asList(1L, 2L), results);
+        verify(jedisCluster, never()).evalsha(SHA1, first.getKeys(), first.getArgs());
+        verify(jedis).close();
+    }
+
+    @Test(expected = JedisConnectionException.class)
+    public void assertConnectionFailureAfterSendingIsNotRetried() {
+        when(pipeline.syncAndReturnAll()).thenThrow(new JedisConnectionException("reset"));
+        try {
+            new JedisClientCluster(jedisCluster).evalBatch(Arrays.asList(first, second));
+        } finally {
+            verify(jedisCluster, never()).evalsha(SHA1, first.getKeys(), first.getArgs());
+        }
+    }
+
+    @Test
+    public void assertCallsGoOneByOneWhenNoConnectionCanBeHad() {
+        when(jedisCluster.getConnectionFromSlot(anyInt())).thenThrow(new JedisConnectionException("down"));
+        when(jedisCluster.evalsha(SHA1, first.getKeys(), first.getArgs())).thenReturn(1L);
+        when(jedisCluster.evalsha(SHA1, second.getKeys(), second.getArgs())).thenReturn(2L);
+        assertEquals(Arrays.asList(1L, 2L), new JedisClientCluster(jedisCluster).evalBatch(Arrays.asList(first, second)));
+    }
+
+    private static ScriptCall call(final String key) {
+        return new ScriptCall(SCRIPT, SHA1, Collections.singletonList(key.getBytes()), Collections.emptyList());
+    }
+}
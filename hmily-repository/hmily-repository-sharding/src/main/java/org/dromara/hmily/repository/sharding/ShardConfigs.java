@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.sharding;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import org.dromara.hmily.common.exception.HmilyRuntimeException;
+import org.dromara.hmily.config.api.Config;
+import org.dromara.hmily.config.api.ConfigEnv;
+import org.dromara.hmily.config.api.entity.HmilyShardingConfig;
+
+/**
+ * The configs of a shard: copies of the registered repository configs with the fields
+ * given for the shard in {@link HmilyShardingConfig#getShards()}.
+ *
+ * @author xiaoyu
+ */
+final class ShardConfigs {
+    
+    private static final String REPOSITORY = "repository.";
+    
+    private ShardConfigs() {
+    }
+    
+    /**
+     * Build the configs of a shard, a repository config without fields for the shard is not copied, so the shard reads the registered one.
+     *
+     * @param shards the fields of the shards, keyed by shard index, repository config prefix and field
+     * @param shard  the shard index
+     * @return the configs of the shard
+     */
+    static Collection<Config> build(final Map<String, String> shards, final int shard) {
+        String shardPrefix = shard + ".";
+        Map<String, Config> configs = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : shards.entrySet()) {
+            if (!entry.getKey().startsWith(shardPrefix)) {
+                continue;
+            }
+            String key = entry.getKey().substring(shardPrefix.length());
+            int dot = key.lastIndexOf('.');
+            if (dot <= 0) {
+                throw new HmilyRuntimeException("the sharding config " + entry.getKey() + " must be shard index.repository config.field");
+            }
+            Config config = configs.computeIfAbsent(REPOSITORY + key.substring(0, dot), ShardConfigs::copy);
+            set(config, key.substring(dot + 1), entry.getValue());
+        }
+        return configs.values();
+    }
+    
+    private static Config copy(final String prefix) {
+        Config registered = ConfigEnv.getInstance().getConfig(prefix);
+        if (Objects.isNull(registered)) {
+            throw new HmilyRuntimeException("not found the repository config of the sharding config: " + prefix);
+        }
+        try {
+            Config copy = registered.getClass().getDeclaredConstructor().newInstance();
+            for (Class<?> clazz = registered.getClass(); clazz != Object.class; clazz = clazz.getSuperclass()) {
+                for (Field field : clazz.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        field.setAccessible(true);
+                        field.set(copy, field.get(registered));
+                    }
+                }
+            }
+            return copy;
+        } catch (ReflectiveOperationException e) {
+            throw new HmilyRuntimeException("copy the repository config " + prefix + " failed", e);
+        }
+    }
+    
+    private static void set(final Config config, final String name, final String value) {
+        for (Class<?> clazz = config.getClass(); clazz != Object.class; clazz = clazz.getSuperclass()) {
+            try {
+                Field field = clazz.getDeclaredField(name);
+                field.setAccessible(true);
+                field.set(config, convert(field.getType(), value));
+                return;
+            } catch (NoSuchFieldException ignored) {
+                // declared by a super class
+            } catch (IllegalAccessException | IllegalArgumentException e) {
+                throw new HmilyRuntimeException("set " + name + " of " + config.prefix() + " failed", e);
+            }
+        }
+        throw new HmilyRuntimeException("not found the field " + name + " of " + config.prefix());
+    }
+    
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object convert(final Class<?> type, final String value) {
+        if (type == String.class) {
+            return value;
+        }
+        if (type == int.class || type == Integer.class) {
+            return Integer.valueOf(value.trim());
+        }
+        if (type == long.class || type == Long.class) {
+            return Long.valueOf(value.trim());
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            return Boolean.valueOf(value.trim());
+        }
+        if (type == double.class || type == Double.class) {
+            return Double.valueOf(value.trim());
+        }
+        if (type.isEnum()) {
+            return Enum.valueOf((Class<? extends Enum>) type, value.trim());
+        }
+        throw new IllegalArgumentException("unsupported type " + type.getName());
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.sharding;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.dromara.hmily.common.concurrent.HmilyThreadFactory;
+import org.dromara.hmily.common.exception.HmilyRuntimeException;
+import org.dromara.hmily.common.utils.CollectionUtils;
+import org.dromara.hmily.config.api.ConfigEnv;
+import org.dromara.hmily.config.api.entity.HmilyShardingConfig;
+import org.dromara.hmily.repository.spi.HmilyRepository;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipantUndo;
+import org.dromara.hmily.repository.spi.entity.HmilyScanCursor;
+import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
+import org.dromara.hmily.repository.spi.exception.HmilyRepositoryException;
+import org.dromara.hmily.serializer.spi.HmilySerializer;
+import org.dromara.hmily.spi.ExtensionLoaderFactory;
+import org.dromara.hmily.spi.HmilySPI;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * sharding impl, routes the records over the backend repositories.
+ * transactions are routed by trans id, participants by participant id and undo by undo id,
+ * the lookups by the other keys and the scans fan out to all the backends in parallel and merge.
+ * each shard is an instance of its own, which reads the config of its repository with the fields given for the shard.
+ *
+ * @author xiaoyu
+ */
+@HmilySPI("sharding")
+public class ShardingRepository implements HmilyRepository, AutoCloseable {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardingRepository.class);
+    
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+    
+    private static final Comparator<HmilyTransaction> TRANSACTION_ORDER =
+        (o1, o2) -> HmilyScanCursor.compare(o1.getUpdateTime(), o1.getTransId(), o2.getUpdateTime(), o2.getTransId());
+    
+    private static final Comparator<HmilyParticipant> PARTICIPANT_ORDER =
+        (o1, o2) -> HmilyScanCursor.compare(o1.getUpdateTime(), o1.getParticipantId(), o2.getUpdateTime(), o2.getParticipantId());
+    
+    private final List<HmilyRepository> shards = new ArrayList<>();
+    
+    private ExecutorService scanExecutor;
+    
+    private HmilySerializer hmilySerializer;
+    
+    public ShardingRepository() {
+    }
+    
+    ShardingRepository(final List<HmilyRepository> shards, final int scanThreads) {
+        this.shards.addAll(shards);
+        scanExecutor = Executors.newFixedThreadPool(scanThreads, HmilyThreadFactory.create("hmily-repository-sharding", true));
+    }
+    
+    @Override
+    public void init(final String appName) {
+        HmilyShardingConfig shardingConfig = ConfigEnv.getInstance().getConfig(HmilyShardingConfig.class);
+        if (Objects.isNull(shardingConfig) || CollectionUtils.isEmpty(shardingConfig.getRepositories())) {
+            throw new HmilyRuntimeException("sharding repository must config the backend repositories");
+        }
+        List<String> repositories = shardingConfig.getRepositories();
+        if (repositories.contains("sharding")) {
+            throw new HmilyRuntimeException("the backend repositories of sharding must not be sharding: " + repositories);
+        }
+        for (int i = 0; i < repositories.size(); i++) {
+            HmilyRepository shard = newShard(repositories.get(i));
+            shard.setSerializer(hmilySerializer);
+            ConfigEnv.getInstance().withConfigs(ShardConfigs.build(shardingConfig.getShards(), i), () -> {
+                shard.init(appName);
+                return shard;
+            });
+            shards.add(shard);
+        }
+        int scanThreads = shardingConfig.getScanThreads() > 0 ? shardingConfig.getScanThreads() : shards.size();
+        scanExecutor = Executors.newFixedThreadPool(scanThreads, HmilyThreadFactory.create("hmily-repository-sharding", true));
+    }
+    
+    @Override
+    public void close() {
+        if (Objects.nonNull(scanExecutor)) {
+            scanExecutor.shutdown();
+        }
+        for (HmilyRepository shard : shards) {
+            if (shard instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) shard).close();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    LOGGER.warn("hmily sharding close of the shard {} is interrupted", shard.getClass().getName());
+                } catch (Exception e) {
+                    LOGGER.error("hmily sharding close of the shard {} exception", shard.getClass().getName(), e);
+                }
+            }
+        }
+    }
+    
+    @Override
+    public void setSerializer(final HmilySerializer hmilySerializer) {
+        this.hmilySerializer = hmilySerializer;
+    }
+    
+    @Override
+    public int createHmilyTransaction(final HmilyTransaction hmilyTransaction) throws HmilyRepositoryException {
+        return route(hmilyTransaction.getTransId()).createHmilyTransaction(hmilyTransaction);
+    }
+    
+    @Override
+    public int updateRetryByLock(final HmilyTransaction hmilyTransaction) {
+        return route(hmilyTransaction.getTransId()).updateRetryByLock(hmilyTransaction);
+    }
+    
+    @Override
+    public HmilyTransaction findByTransId(final Long transId) {
+        return route(transId).findByTransId(transId);
+    }
+    
+    @Override
+    public List<HmilyTransaction> listLimitByDelay(final Date date, final int limit) {
+        return fanOut(shard -> shard.listLimitByDelay(date, limit)).stream().sorted(TRANSACTION_ORDER).limit(limit).collect(Collectors.toList());
+    }
+    
+    @Override
+    public List<HmilyTransaction> scanHmilyTransaction(final Date date, final HmilyScanCursor cursor, final int limit) {
+        return fanOut(shard -> shard.scanHmilyTransaction(date, cursor, limit)).stream().sorted(TRANSACTION_ORDER).limit(limit).collect(Collectors.toList());
+    }
+    
+    @Override
+    public int updateHmilyTransactionStatus(final Long transId, final Integer status) throws HmilyRepositoryException {
+        return route(transId).updateHmilyTransactionStatus(transId, status);
+    }
+    
+    @Override
+    public int removeHmilyTransaction(final Long transId) {
+        return route(transId).removeHmilyTransaction(transId);
+    }
+    
+    @Override
+    public int removeHmilyTransactionByData(final Date date) {
+        return sum(shard -> shard.removeHmilyTransactionByData(date));
+    }
+    
+    @Override
+    public int createHmilyParticipant(final HmilyParticipant hmilyParticipant) throws HmilyRepositoryException {
+        return route(hmilyParticipant.getParticipantId()).createHmilyParticipant(hmilyParticipant);
+    }
+    
+    @Override
+    public List<HmilyParticipant> findHmilyParticipant(final Long participantId) {
+        return fanOut(shard -> shard.findHmilyParticipant(participantId));
+    }
+    
+    @Override
+    public List<HmilyParticipant> listHmilyParticipant(final Date date, final String transType, final int limit) {
+        return fanOut(shard -> shard.listHmilyParticipant(date, transType, limit)).stream().sorted(PARTICIPANT_ORDER).limit(limit).collect(Collectors.toList());
+    }
+    
+    @Override
+    public List<HmilyParticipant> scanHmilyParticipant(final Date date, final String transType, final HmilyScanCursor cursor, final int limit) {
+        return fanOut(shard -> shard.scanHmilyParticipant(date, transType, cursor, limit)).stream().sorted(PARTICIPANT_ORDER).limit(limit).collect(Collectors.toList());
+    }
+    
+    @Override
+    public List<HmilyParticipant> listHmilyParticipantByTransId(final Long transId) {
+        return fanOut(shard -> shard.listHmilyParticipantByTransId(transId));
+    }
+    
+    @Override
+    public boolean existHmilyParticipantByTransId(final Long transId) {
+        return parallel(HmilyRepository::existHmilyParticipantByTransId, transId).stream().anyMatch(Boolean::booleanValue);
+    }
+    
+    @Override
+    public List<Long> findTransIdsWithoutParticipants(final List<Long> transIdList) {
+        List<List<Long>> orphansOfShards = parallel(HmilyRepository::findTransIdsWithoutParticipants, transIdList);
+        return transIdList.stream().filter(transId -> orphansOfShards.stream().allMatch(orphans -> orphans.contains(transId))).collect(Collectors.toList());
+    }
+    
+    @Override
+    public int updateHmilyParticipantStatus(final Long participantId, final Integer status) throws HmilyRepositoryException {
+        return route(participantId).updateHmilyParticipantStatus(participantId, status);
+    }
+    
+    @Override
+    public int removeHmilyParticipant(final Long participantId) {
+        return route(participantId).removeHmilyParticipant(participantId);
+    }
+    
+    @Override
+    public int removeHmilyParticipantByData(final Date date) {
+        return sum(shard -> shard.removeHmilyParticipantByData(date));
+    }
+    
+    @Override
+    public boolean lockHmilyParticipant(final HmilyParticipant hmilyParticipant) {
+        return route(hmilyParticipant.getParticipantId()).lockHmilyParticipant(hmilyParticipant);
+    }
+    
+    @Override
+    public int createHmilyParticipantUndo(final HmilyParticipantUndo hmilyParticipantUndo) {
+        return route(hmilyParticipantUndo.getUndoId()).createHmilyParticipantUndo(hmilyParticipantUndo);
+    }
+    
+    @Override
+    public List<HmilyParticipantUndo> findHmilyParticipantUndoByParticipantId(final Long participantId) {
+        return fanOut(shard -> shard.findHmilyParticipantUndoByParticipantId(participantId));
+    }
+    
+    @Override
+    public int removeHmilyParticipantUndo(final Long undoId) {
+        return route(undoId).removeHmilyParticipantUndo(undoId);
+    }
+    
+    @Override
+    public int removeHmilyParticipantUndoByData(final Date date) {
+        return sum(shard -> shard.removeHmilyParticipantUndoByData(date));
+    }
+    
+    @Override
+    public int updateHmilyParticipantUndoStatus(final Long undoId, final Integer status) {
+        return route(undoId).updateHmilyParticipantUndoStatus(undoId, status);
+    }
+    
+    @Override
+    public int batchCreateHmilyTransaction(final List<HmilyTransaction> hmilyTransactionList) {
+        return groupByShard(hmilyTransactionList, HmilyTransaction::getTransId, HmilyRepository::batchCreateHmilyTransaction);
+    }
+    
+    @Override
+    public int batchUpdateHmilyTransactionStatus(final Map<Long, Integer> statusMap) {
+        return groupByShard(statusMap, HmilyRepository::batchUpdateHmilyTransactionStatus);
+    }
+    
+    @Override
+    public int batchRemoveHmilyTransaction(final List<Long> transIdList) {
+        return groupByShard(transIdList, Function.identity(), HmilyRepository::batchRemoveHmilyTransaction);
+    }
+    
+    @Override
+    public int batchCreateHmilyParticipant(final List<HmilyParticipant> hmilyParticipantList) {
+        return groupByShard(hmilyParticipantList, HmilyParticipant::getParticipantId, HmilyRepository::batchCreateHmilyParticipant);
+    }
+    
+    @Override
+    public int batchUpdateHmilyParticipantStatus(final Map<Long, Integer> statusMap) {
+        return groupByShard(statusMap, HmilyRepository::batchUpdateHmilyParticipantStatus);
+    }
+    
+    @Override
+    public int batchRemoveHmilyParticipant(final List<Long> participantIdList) {
+        return groupByShard(participantIdList, Function.identity(), HmilyRepository::batchRemoveHmilyParticipant);
+    }
+    
+    @Override
+    public int batchRemoveHmilyParticipantUndo(final List<Long> undoIdList) {
+        return groupByShard(undoIdList, Function.identity(), HmilyRepository::batchRemoveHmilyParticipantUndo);
+    }
+    
+    @Override
+    public int batchUpdateHmilyParticipantUndoStatus(final Map<Long, Integer> statusMap) {
+        return groupByShard(statusMap, HmilyRepository::batchUpdateHmilyParticipantUndoStatus);
+    }
+    
+    /**
+     * a new instance of the repository class of the spi name, as the spi keeps one instance of a name and a name may serve several shards.
+     */
+    private static HmilyRepository newShard(final String repository) {
+        HmilyRepository loaded = ExtensionLoaderFactory.load(HmilyRepository.class, repository);
+        if (Objects.isNull(loaded)) {
+            throw new HmilyRuntimeException("not found the backend repository: " + repository);
+        }
+        try {
+            return loaded.getClass().getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new HmilyRuntimeException("create the backend repository " + repository + " failed", e);
+        }
+    }
+    
+    /**
+     * snowflake ids keep the sequence in the low bits, so the id is mixed before it is taken modulo the shards.
+     */
+    private HmilyRepository route(final Long id) {
+        return shards.get(shardIndex(id));
+    }
+    
+    private int shardIndex(final Long id) {
+        return (int) ((id * GOLDEN_RATIO >>> 1) % shards.size());
+    }
+    
+    private <T> List<T> fanOut(final Function<HmilyRepository, List<T>> query) {
+        List<T> result = new ArrayList<>();
+        parallel((shard, arg) -> query.apply(shard), null).forEach(result::addAll);
+        return result;
+    }
+    
+    private int sum(final Function<HmilyRepository, Integer> update) {
+        return parallel((shard, arg) -> update.apply(shard), null).stream().mapToInt(Integer::intValue).sum();
+    }
+    
+    private <A, R> List<R> parallel(final BiFunction<HmilyRepository, A, R> call, final A arg) {
+        if (shards.size() == 1) {
+            List<R> result = new ArrayList<>(1);
+            result.add(call.apply(shards.get(0), arg));
+            return result;
+        }
+        List<CompletableFuture<R>> futures = shards.stream()
+                .map(shard -> CompletableFuture.supplyAsync(() -> call.apply(shard, arg), scanExecutor))
+                .collect(Collectors.toList());
+        return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+    
+    private <T> int groupByShard(final List<T> list, final Function<T, Long> idFunction, final BiFunction<HmilyRepository, List<T>, Integer> batch) {
+        Map<Integer, List<T>> groups = list.stream().collect(Collectors.groupingBy(t -> shardIndex(idFunction.apply(t)), LinkedHashMap::new, Collectors.toList()));
+        int rows = 0;
+        for (Map.Entry<Integer, List<T>> entry : groups.entrySet()) {
+            rows += batch.apply(shards.get(entry.getKey()), entry.getValue());
+        }
+        return rows;
+    }
+    
+    private int groupByShard(final Map<Long, Integer> statusMap, final BiFunction<HmilyRepository, Map<Long, Integer>, Integer> batch) {
+        Map<Integer, Map<Long, Integer>> groups = new LinkedHashMap<>();
+        statusMap.forEach((id, status) -> groups.computeIfAbsent(shardIndex(id), index -> new LinkedHashMap<>()).put(id, status));
+        int rows = 0;
+        for (Map.Entry<Integer, Map<Long, Integer>> entry : groups.entrySet()) {
+            rows += batch.apply(shards.get(entry.getKey()), entry.getValue());
+        }
+        return rows;
+    }
+}
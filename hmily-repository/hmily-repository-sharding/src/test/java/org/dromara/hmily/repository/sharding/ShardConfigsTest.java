@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.sharding;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.dromara.hmily.config.api.Config;
+import org.dromara.hmily.config.api.ConfigEnv;
+import org.dromara.hmily.config.api.entity.HmilyRedisConfig;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The configs of the shards of the sharding repository.
+ *
+ * @author xiaoyu
+ */
+public final class ShardConfigsTest {
+
+    @Test
+    public void assertShardFieldsAreSetOnACopyOfTheRepositoryConfig() {
+        HmilyRedisConfig registered = registeredRedisConfig();
+        String hostName = registered.getHostName();
+        Map<String, String> shards = new HashMap<>();
+        shards.put("0.redis.hostName", "redis-0");
+        shards.put("0.redis.port", "6380");
+        shards.put("1.redis.hostName", "redis-1");
+        List<Config> configs = new ArrayList<>(ShardConfigs.build(shards, 0));
+        assertEquals(1, configs.size());
+        HmilyRedisConfig shard = (HmilyRedisConfig) configs.get(0);
+        assertNotSame(registered, shard);
+        assertEquals("redis-0", shard.getHostName());
+        assertEquals(6380, shard.getPort());
+        assertEquals(registered.getMaxTotal(), shard.getMaxTotal());
+        assertEquals(hostName, registered.getHostName());
+    }
+
+    @Test
+    public void assertShardWithoutFieldsReadsTheRegisteredConfig() {
+        assertTrue(ShardConfigs.build(Collections.singletonMap("1.redis.hostName", "redis-1"), 0).isEmpty());
+    }
+
+    @Test
+    public void assertScopedConfigIsReadOnlyInsideWithConfigs() {
+        HmilyRedisConfig registered = registeredRedisConfig();
+        List<Config> configs = new ArrayList<>(ShardConfigs.build(Collections.singletonMap("0.redis.hostName", "redis-0"), 0));
+        HmilyRedisConfig scoped = ConfigEnv.getInstance().withConfigs(configs, () -> ConfigEnv.getInstance().getConfig(HmilyRedisConfig.class));
+        assertSame(configs.get(0), scoped);
+        assertSame(registered, ConfigEnv.getInstance().getConfig(HmilyRedisConfig.class));
+    }
+
+    private static HmilyRedisConfig registeredRedisConfig() {
+        ConfigEnv.getInstance().putBean(new HmilyRedisConfig());
+        return ConfigEnv.getInstance().getConfig(HmilyRedisConfig.class);
+    }
+}
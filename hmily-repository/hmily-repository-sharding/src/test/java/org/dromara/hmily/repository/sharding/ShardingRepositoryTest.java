@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.sharding;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.dromara.hmily.repository.spi.HmilyRepository;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
+import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * The routing and the merged reads of the sharding repository.
+ *
+ * @author xiaoyu
+ */
+public final class ShardingRepositoryTest {
+
+    private HmilyRepository first;
+
+    private HmilyRepository second;
+
+    private ShardingRepository shardingRepository;
+
+    @Before
+    public void setUp() {
+        first = mock(HmilyRepository.class, withSettings().extraInterfaces(AutoCloseable.class));
+        second = mock(HmilyRepository.class);
+        shardingRepository = new ShardingRepository(Arrays.asList(first, second), 2);
+    }
+
+    @After
+    public void tearDown() {
+        shardingRepository.close();
+    }
+
+    @Test
+    public void assertListLimitByDelayMergesTheShardsByUpdateTime() {
+        when(first.listLimitByDelay(any(), anyInt())).thenReturn(Arrays.asList(transaction(1L, 10), transaction(3L, 30)));
+        when(second.listLimitByDelay(any(), anyInt())).thenReturn(Arrays.asList(transaction(2L, 20), transaction(4L, 40)));
+        List<HmilyTransaction> result = shardingRepository.listLimitByDelay(new Date(0), 3);
+        assertEquals(Arrays.asList(1L, 2L, 3L), result.stream().map(HmilyTransaction::getTransId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void assertListHmilyParticipantMergesTheShardsByUpdateTime() {
+        when(first.listHmilyParticipant(any(), any(), anyInt())).thenReturn(Arrays.asList(participant(12L, 20), participant(11L, 20)));
+        when(second.listHmilyParticipant(any(), any(), anyInt())).thenReturn(Collections.singletonList(participant(10L, 10)));
+        List<HmilyParticipant> result = shardingRepository.listHmilyParticipant(new Date(0), "TCC", 2);
+        assertEquals(Arrays.asList(10L, 11L), result.stream().map(HmilyParticipant::getParticipantId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void assertRecordsAreSpreadOverTheShardsByTheirId() {
+        when(first.updateHmilyTransactionStatus(any(), any())).thenReturn(HmilyRepository.ROWS);
+        when(second.updateHmilyTransactionStatus(any(), any())).thenReturn(HmilyRepository.ROWS);
+        int rows = 0;
+        for (long transId = 1; transId <= 32; transId++) {
+            rows += shardingRepository.updateHmilyTransactionStatus(transId, 2);
+        }
+        assertEquals(32, rows);
+        verify(first, atLeastOnce()).updateHmilyTransactionStatus(any(), any());
+        verify(second, atLeastOnce()).updateHmilyTransactionStatus(any(), any());
+    }
+
+    @Test
+    public void assertCloseClosesTheShards() throws Exception {
+        shardingRepository.close();
+        verify((AutoCloseable) first).close();
+    }
+
+    @Test
+    public void assertInterruptedCloseRestoresTheFlagAndClosesTheOtherShards() throws Exception {
+        HmilyRepository third = mock(HmilyRepository.class, withSettings().extraInterfaces(AutoCloseable.class));
+        doThrow(new InterruptedException()).when((AutoCloseable) first).close();
+        new ShardingRepository(Arrays.asList(first, third), 1).close();
+        assertTrue(Thread.interrupted());
+        verify((AutoCloseable) third).close();
+        doNothing().when((AutoCloseable) first).close();
+    }
+
+    private static HmilyTransaction transaction(final Long transId, final long updateTime) {
+        HmilyTransaction hmilyTransaction = new HmilyTransaction();
+        hmilyTransaction.setTransId(transId);
+        hmilyTransaction.setUpdateTime(new Date(updateTime));
+        return hmilyTransaction;
+    }
+
+    private static HmilyParticipant participant(final Long participantId, final long updateTime) {
+        HmilyParticipant hmilyParticipant = new HmilyParticipant();
+        hmilyParticipant.setParticipantId(participantId);
+        hmilyParticipant.setUpdateTime(new Date(updateTime));
+        return hmilyParticipant;
+    }
+}
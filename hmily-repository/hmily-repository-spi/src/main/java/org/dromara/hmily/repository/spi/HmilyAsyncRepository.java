@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.spi;
+
+import java.util.concurrent.CompletableFuture;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipantUndo;
+import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
+
+/**
+ * The non-blocking writes of a hmily repository, the futures complete with the affected rows like {@link HmilyRepository}.
+ * a repository which has a non-blocking client implements it besides {@link HmilyRepository},
+ * the others can be adapted by {@link HmilyBlockingAsyncRepository}.
+ *
+ * @author xiaoyu
+ */
+public interface HmilyAsyncRepository {
+    
+    /**
+     * Create hmily transaction.
+     *
+     * @param hmilyTransaction the hmily transaction
+     * @return the future of rows
+     */
+    CompletableFuture<Integer> createHmilyTransactionAsync(HmilyTransaction hmilyTransaction);
+    
+    /**
+     * Update hmily transaction status.
+     *
+     * @param transId the trans id
+     * @param status  the status
+     * @return the future of rows
+     */
+    CompletableFuture<Integer> updateHmilyTransactionStatusAsync(Long transId, Integer status);
+    
+    /**
+     * Remove hmily transaction.
+     *
+     * @param transId the trans id
+     * @return the future of rows
+     */
+    CompletableFuture<Integer> removeHmilyTransactionAsync(Long transId);
+    
+    /**
+     * Create hmily participant.
+     *
+     * @param hmilyParticipant the hmily participant
+     * @return the future of rows
+     */
+    CompletableFuture<Integer> createHmilyParticipantAsync(HmilyParticipant hmilyParticipant);
+    
+    /**
+     * Update hmily participant status.
+     *
+     * @param participantId the participant id
+     * @param status        the status
+     * @return the future of rows
+     */
+    CompletableFuture<Integer> updateHmilyParticipantStatusAsync(Long participantId, Integer status);
+    
+    /**
+     * Remove hmily participant.
+     *
+     * @param participantId the participant id
+     * @return the future of rows
+     */
+    CompletableFuture<Integer> removeHmilyParticipantAsync(Long participantId);
+    
+    /**
+     * Create hmily participant undo.
+     *
+     * @param hmilyParticipantUndo the hmily participant undo
+     * @return the future of rows
+     */
+    CompletableFuture<Integer> createHmilyParticipantUndoAsync(HmilyParticipantUndo hmilyParticipantUndo);
+    
+    /**
+     * Remove hmily participant undo.
+     *
+     * @param undoId the undo id
+     * @return the future of rows
+     */
+    CompletableFuture<Integer> removeHmilyParticipantUndoAsync(Long undoId);
+    
+    /**
+     * Update hmily participant undo status.
+     *
+     * @param undoId the undo id
+     * @param status the status
+     * @return the future of rows
+     */
+    CompletableFuture<Integer> updateHmilyParticipantUndoStatusAsync(Long undoId, Integer status);
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.spi;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipantUndo;
+import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
+
+/**
+ * Adapt a blocking {@link HmilyRepository} to {@link HmilyAsyncRepository}.
+ * the blocking calls run on the executor, so the caller only waits when the executor is saturated.
+ *
+ * @author xiaoyu
+ */
+public class HmilyBlockingAsyncRepository implements HmilyAsyncRepository {
+    
+    private final HmilyRepository hmilyRepository;
+    
+    private final Executor executor;
+    
+    /**
+     * Instantiates a new Hmily blocking async repository.
+     *
+     * @param hmilyRepository the blocking hmily repository
+     * @param executor        the executor which runs the blocking calls
+     */
+    public HmilyBlockingAsyncRepository(final HmilyRepository hmilyRepository, final Executor executor) {
+        this.hmilyRepository = hmilyRepository;
+        this.executor = executor;
+    }
+    
+    @Override
+    public CompletableFuture<Integer> createHmilyTransactionAsync(final HmilyTransaction hmilyTransaction) {
+        return supply(() -> hmilyRepository.createHmilyTransaction(hmilyTransaction));
+    }
+    
+    @Override
+    public CompletableFuture<Integer> updateHmilyTransactionStatusAsync(final Long transId, final Integer status) {
+        return supply(() -> hmilyRepository.updateHmilyTransactionStatus(transId, status));
+    }
+    
+    @Override
+    public CompletableFuture<Integer> removeHmilyTransactionAsync(final Long transId) {
+        return supply(() -> hmilyRepository.removeHmilyTransaction(transId));
+    }
+    
+    @Override
+    public CompletableFuture<Integer> createHmilyParticipantAsync(final HmilyParticipant hmilyParticipant) {
+        return supply(() -> hmilyRepository.createHmilyParticipant(hmilyParticipant));
+    }
+    
+    @Override
+    public CompletableFuture<Integer> updateHmilyParticipantStatusAsync(final Long participantId, final Integer status) {
+        return supply(() -> hmilyRepository.updateHmilyParticipantStatus(participantId, status));
+    }
+    
+    @Override
+    public CompletableFuture<Integer> removeHmilyParticipantAsync(final Long participantId) {
+        return supply(() -> hmilyRepository.removeHmilyParticipant(participantId));
+    }
+    
+    @Override
+    public CompletableFuture<Integer> createHmilyParticipantUndoAsync(final HmilyParticipantUndo hmilyParticipantUndo) {
+        return supply(() -> hmilyRepository.createHmilyParticipantUndo(hmilyParticipantUndo));
+    }
+    
+    @Override
+    public CompletableFuture<Integer> removeHmilyParticipantUndoAsync(final Long undoId) {
+        return supply(() -> hmilyRepository.removeHmilyParticipantUndo(undoId));
+    }
+    
+    @Override
+    public CompletableFuture<Integer> updateHmilyParticipantUndoStatusAsync(final Long undoId, final Integer status) {
+        return supply(() -> hmilyRepository.updateHmilyParticipantUndoStatus(undoId, status));
+    }
+    
+    private CompletableFuture<Integer> supply(final Supplier<Integer> supplier) {
+        return CompletableFuture.supplyAsync(supplier, executor);
+    }
+}
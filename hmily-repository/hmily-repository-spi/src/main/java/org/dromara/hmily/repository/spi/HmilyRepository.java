@@ -19,8 +19,12 @@ package org.dromara.hmily.repository.spi;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
 import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
 import org.dromara.hmily.repository.spi.entity.HmilyParticipantUndo;
+import org.dromara.hmily.repository.spi.entity.HmilyScanCursor;
 import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
 import org.dromara.hmily.repository.spi.exception.HmilyRepositoryException;
 import org.dromara.hmily.serializer.spi.HmilySerializer;
@@ -90,6 +94,24 @@ public interface HmilyRepository {
      */
     List<HmilyTransaction> listLimitByDelay(Date date, int limit);
     
+    /**
+     * Scan the hmily transactions updated before the date, ordered by (update time, trans id) and after the cursor.
+     * the default implementation sorts the result of {@link #listLimitByDelay(Date, int)}, the repositories which
+     * can seek by (update time, trans id) should override it.
+     *
+     * @param date   the date
+     * @param cursor the cursor, null means from the beginning
+     * @param limit  the limit
+     * @return the list
+     */
+    default List<HmilyTransaction> scanHmilyTransaction(Date date, HmilyScanCursor cursor, int limit) {
+        return listLimitByDelay(date, Integer.MAX_VALUE).stream()
+                .filter(e -> Objects.isNull(cursor) || cursor.isBefore(e.getUpdateTime(), e.getTransId()))
+                .sorted((o1, o2) -> HmilyScanCursor.compare(o1.getUpdateTime(), o1.getTransId(), o2.getUpdateTime(), o2.getTransId()))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+    
     /**
      * Update hmily transaction status int.
      *
@@ -143,6 +165,25 @@ public interface HmilyRepository {
      */
     List<HmilyParticipant> listHmilyParticipant(Date date, String transType, int limit);
     
+    /**
+     * Scan the hmily participants updated before the date, ordered by (update time, participant id) and after the cursor.
+     * the default implementation sorts the result of {@link #listHmilyParticipant(Date, String, int)}, the repositories which
+     * can seek by (update time, participant id) should override it.
+     *
+     * @param date      the date
+     * @param transType the trans type
+     * @param cursor    the cursor, null means from the beginning
+     * @param limit     the limit
+     * @return the list
+     */
+    default List<HmilyParticipant> scanHmilyParticipant(Date date, String transType, HmilyScanCursor cursor, int limit) {
+        return listHmilyParticipant(date, transType, Integer.MAX_VALUE).stream()
+                .filter(e -> Objects.isNull(cursor) || cursor.isBefore(e.getUpdateTime(), e.getParticipantId()))
+                .sorted((o1, o2) -> HmilyScanCursor.compare(o1.getUpdateTime(), o1.getParticipantId(), o2.getUpdateTime(), o2.getParticipantId()))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+    
     /**
      * List hmily participant by trans id list.
      *
@@ -159,6 +200,16 @@ public interface HmilyRepository {
      */
     boolean existHmilyParticipantByTransId(Long transId);
     
+    /**
+     * Find the trans ids which have no participant, the set based form of {@link #existHmilyParticipantByTransId(Long)}.
+     *
+     * @param transIdList the trans id list
+     * @return the trans ids without participant, in the order of the given list
+     */
+    default List<Long> findTransIdsWithoutParticipants(List<Long> transIdList) {
+        return transIdList.stream().filter(transId -> !existHmilyParticipantByTransId(transId)).collect(Collectors.toList());
+    }
+    
     /**
      * Update hmily participant status int.
      *
@@ -234,4 +285,120 @@ public interface HmilyRepository {
      */
     int updateHmilyParticipantUndoStatus(Long undoId, Integer status);
     
+    /**
+     * Batch create hmily transaction int.
+     *
+     * @param hmilyTransactionList the hmily transaction list
+     * @return the rows
+     * @throws HmilyRepositoryException the hmily repository exception
+     */
+    default int batchCreateHmilyTransaction(List<HmilyTransaction> hmilyTransactionList) throws HmilyRepositoryException {
+        int rows = 0;
+        for (HmilyTransaction hmilyTransaction : hmilyTransactionList) {
+            rows += createHmilyTransaction(hmilyTransaction);
+        }
+        return rows;
+    }
+    
+    /**
+     * Batch update hmily transaction status int.
+     *
+     * @param statusMap the status keyed by trans id
+     * @return the rows
+     * @throws HmilyRepositoryException the hmily repository exception
+     */
+    default int batchUpdateHmilyTransactionStatus(Map<Long, Integer> statusMap) throws HmilyRepositoryException {
+        int rows = 0;
+        for (Map.Entry<Long, Integer> entry : statusMap.entrySet()) {
+            rows += updateHmilyTransactionStatus(entry.getKey(), entry.getValue());
+        }
+        return rows;
+    }
+    
+    /**
+     * Batch remove hmily transaction int.
+     *
+     * @param transIdList the trans id list
+     * @return the rows
+     */
+    default int batchRemoveHmilyTransaction(List<Long> transIdList) {
+        int rows = 0;
+        for (Long transId : transIdList) {
+            rows += removeHmilyTransaction(transId);
+        }
+        return rows;
+    }
+    
+    /**
+     * Batch create hmily participant int.
+     *
+     * @param hmilyParticipantList the hmily participant list
+     * @return the rows
+     * @throws HmilyRepositoryException the hmily repository exception
+     */
+    default int batchCreateHmilyParticipant(List<HmilyParticipant> hmilyParticipantList) throws HmilyRepositoryException {
+        int rows = 0;
+        for (HmilyParticipant hmilyParticipant : hmilyParticipantList) {
+            rows += createHmilyParticipant(hmilyParticipant);
+        }
+        return rows;
+    }
+    
+    /**
+     * Batch update hmily participant status int.
+     *
+     * @param statusMap the status keyed by participant id
+     * @return the rows
+     * @throws HmilyRepositoryException the hmily repository exception
+     */
+    default int batchUpdateHmilyParticipantStatus(Map<Long, Integer> statusMap) throws HmilyRepositoryException {
+        int rows = 0;
+        for (Map.Entry<Long, Integer> entry : statusMap.entrySet()) {
+            rows += updateHmilyParticipantStatus(entry.getKey(), entry.getValue());
+        }
+        return rows;
+    }
+    
+    /**
+     * Batch remove hmily participant int.
+     *
+     * @param participantIdList the participant id list
+     * @return the rows
+     */
+    default int batchRemoveHmilyParticipant(List<Long> participantIdList) {
+        int rows = 0;
+        for (Long participantId : participantIdList) {
+            rows += removeHmilyParticipant(participantId);
+        }
+        return rows;
+    }
+    
+    /**
+     * Batch remove hmily participant undo int.
+     *
+     * @param undoIdList the undo id list
+     * @return the rows
+     */
+    default int batchRemoveHmilyParticipantUndo(List<Long> undoIdList) {
+        int rows = 0;
+        for (Long undoId : undoIdList) {
+            rows += removeHmilyParticipantUndo(undoId);
+        }
+        return rows;
+    }
+    
+    /**
+     * Batch update hmily participant undo status int.
+     *
+     * @param statusMap the status keyed by undo id
+     * @return the rows
+     */
+    default int batchUpdateHmilyParticipantUndoStatus(Map<Long, Integer> statusMap) {
+        int rows = 0;
+        for (Map.Entry<Long, Integer> entry : statusMap.entrySet()) {
+            rows += updateHmilyParticipantUndoStatus(entry.getKey(), entry.getValue());
+        }
+        return rows;
+    }
+    
 }
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.spi.entity;
+
+import java.io.Serializable;
+import java.util.Comparator;
+import java.util.Date;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The keyset cursor of a scan, it is the (update time, id) of the last row returned,
+ * the next page starts right after it. a null cursor means the scan starts from the beginning.
+ *
+ * @author xiaoyu
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class HmilyScanCursor implements Serializable {
+    
+    private static final long serialVersionUID = 6085338436474063215L;
+    
+    private static final Comparator<Date> DATE_COMPARATOR = Comparator.nullsFirst(Comparator.naturalOrder());
+    
+    private static final Comparator<Long> ID_COMPARATOR = Comparator.nullsFirst(Comparator.naturalOrder());
+    
+    /**
+     * update time of the last row.
+     */
+    private Date updateTime;
+    
+    /**
+     * id of the last row, trans id for transaction and participant id for participant.
+     */
+    private Long id;
+    
+    /**
+     * Whether the row is after this cursor in (update time, id) order.
+     *
+     * @param rowUpdateTime the row update time
+     * @param rowId         the row id
+     * @return true if the row is after this cursor
+     */
+    public boolean isBefore(final Date rowUpdateTime, final Long rowId) {
+        return compare(updateTime, id, rowUpdateTime, rowId) < 0;
+    }
+    
+    /**
+     * Compare two rows in (update time, id) order.
+     *
+     * @param updateTime      the update time
+     * @param id              the id
+     * @param otherUpdateTime the other update time
+     * @param otherId         the other id
+     * @return the compare result
+     */
+    public static int compare(final Date updateTime, final Long id, final Date otherUpdateTime, final Long otherId) {
+        int compare = DATE_COMPARATOR.compare(updateTime, otherUpdateTime);
+        return compare != 0 ? compare : ID_COMPARATOR.compare(id, otherId);
+    }
+}
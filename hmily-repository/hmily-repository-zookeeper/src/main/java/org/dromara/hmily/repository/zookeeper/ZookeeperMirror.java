@@ -0,0 +1,314 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.zookeeper;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.apache.zookeeper.AddWatchMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher;
+import org.apache.zookeeper.ZooKeeper;
+import org.dromara.hmily.serializer.spi.exception.HmilySerializerException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A local mirror of the records in the buckets of a root, kept current by a persistent recursive watch.
+ *
+ * <p>The events of the watch and the callbacks of the async reads are delivered in order on the event thread
+ * of the client, so the data read for an event is never older than the data of an earlier event. The mirror
+ * is loaded again when the connection comes back, as the events in between are lost, and it is not ready
+ * while loading.</p>
+ *
+ * <p>The records are kept by bucket, decoded once when they are read or written, so a visit skips buckets
+ * like a scan of zookeeper and tests its filter on the records held. Only the records which pass are decoded
+ * again, into copies the caller may change. The writes of this node are applied when they complete, before
+ * their watch events, and a record is replaced only by the same or a later version of it.</p>
+ *
+ * @param <T> the type of the records
+ * @author xiaoyu
+ */
+final class ZookeeperMirror<T> implements Watcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ZookeeperMirror.class);
+
+    private static final int OK = KeeperException.Code.OK.intValue();
+
+    private static final int NO_NODE = KeeperException.Code.NONODE.intValue();
+
+    private final ZooKeeper zooKeeper;
+
+    private final String root;
+
+    private final Function<byte[], T> decoder;
+
+    /**
+     * the records by bucket name, then by path. an emptied bucket is removed.
+     */
+    private final Map<String, Map<String, MirroredRecord<T>>> buckets = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+
+    /**
+     * the mirror missed or may miss events, it is loaded again on the next connect. only used on the event thread.
+     */
+    private boolean stale;
+
+    /**
+     * the load in progress, the callbacks of an earlier one are ignored. only used on the event thread.
+     */
+    private int generation;
+
+    ZookeeperMirror(final ZooKeeper zooKeeper, final String root, final Function<byte[], T> decoder) {
+        this.zooKeeper = zooKeeper;
+        this.root = root;
+        this.decoder = decoder;
+    }
+
+    /**
+     * watch the root, then load its records.
+     */
+    void start() {
+        zooKeeper.addWatch(root, this, AddWatchMode.PERSISTENT_RECURSIVE, (rc, path, ctx) -> {
+            if (rc == OK) {
+                load();
+            } else {
+                LOGGER.warn("watch {} failed, reads go to zookeeper until the next connect: {}", path, KeeperException.Code.get(rc));
+                stale = true;
+            }
+        }, null);
+    }
+
+    /**
+     * Whether the mirror is loaded and connected, so it can serve reads.
+     *
+     * @return the boolean
+     */
+    boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * A copy of a record.
+     *
+     * @param path the path
+     * @return the record, or null when it is not mirrored
+     */
+    T get(final String path) {
+        Map<String, MirroredRecord<T>> records = buckets.get(bucketOf(path));
+        MirroredRecord<T> record = Objects.isNull(records) ? null : records.get(path);
+        return Objects.isNull(record) ? null : decoder.apply(record.getData());
+    }
+
+    /**
+     * The names of the buckets which hold records.
+     *
+     * @return the bucket names
+     */
+    Set<String> bucketNames() {
+        return buckets.keySet();
+    }
+
+    /**
+     * Visit copies of the records of the buckets, in the order given, which pass the filter, until the visitor returns false.
+     * The filter is given the mirrored record, which it must not change.
+     *
+     * @param bucketNames the bucket names
+     * @param filter      the filter
+     * @param visitor     the visitor
+     * @return false if the visitor stopped
+     */
+    boolean visit(final List<String> bucketNames, final Predicate<T> filter, final Predicate<T> visitor) {
+        for (String bucketName : bucketNames) {
+            Map<String, MirroredRecord<T>> records = buckets.get(bucketName);
+            if (Objects.isNull(records)) {
+                continue;
+            }
+            for (MirroredRecord<T> record : records.values()) {
+                if (filter.test(record.getRecord()) && !visitor.test(decoder.apply(record.getData()))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Apply a record written by this node.
+     *
+     * @param path    the path
+     * @param data    the data written
+     * @param version the version of the node after the write
+     */
+    void put(final String path, final byte[] data, final int version) {
+        T record;
+        try {
+            record = decoder.apply(data);
+        } catch (HmilySerializerException e) {
+            LOGGER.warn("mirror {} skipped: {}", path, e.getMessage());
+            remove(path);
+            return;
+        }
+        MirroredRecord<T> mirrored = new MirroredRecord<>(data, record, version);
+        buckets.compute(bucketOf(path), (bucketName, records) -> {
+            Map<String, MirroredRecord<T>> result = Objects.isNull(records) ? new ConcurrentHashMap<>() : records;
+            result.merge(path, mirrored, (older, newer) -> newer.getVersion() >= older.getVersion() ? newer : older);
+            return result;
+        });
+    }
+
+    /**
+     * Apply a record removed by this node.
+     *
+     * @param path the path
+     */
+    void remove(final String path) {
+        buckets.computeIfPresent(bucketOf(path), (bucketName, records) -> {
+            records.remove(path);
+            return records.isEmpty() ? null : records;
+        });
+    }
+
+    @Override
+    public void process(final WatchedEvent event) {
+        switch (event.getType()) {
+            case None:
+                onState(event.getState());
+                break;
+            case NodeCreated:
+            case NodeDataChanged:
+                if (isRecord(event.getPath())) {
+                    zooKeeper.getData(event.getPath(), false, (rc, path, ctx, data, stat) -> {
+                        if (rc == OK && Objects.nonNull(data)) {
+                            put(path, data, stat.getVersion());
+                        } else if (rc == NO_NODE) {
+                            remove(path);
+                        }
+                    }, null);
+                }
+                break;
+            case NodeDeleted:
+                if (isRecord(event.getPath())) {
+                    remove(event.getPath());
+                } else if (event.getPath().startsWith(root + "/")) {
+                    buckets.remove(event.getPath().substring(root.length() + 1));
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void onState(final Event.KeeperState state) {
+        switch (state) {
+            case Disconnected:
+            case Expired:
+                ready = false;
+                stale = true;
+                break;
+            case SyncConnected:
+                if (stale) {
+                    stale = false;
+                    load();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * read the buckets, their children and the data of the children with the async api, the mirror is ready
+     * when the last read completes.
+     */
+    private void load() {
+        ready = false;
+        buckets.clear();
+        final int current = ++generation;
+        final AtomicInteger pending = new AtomicInteger(1);
+        zooKeeper.getChildren(root, false, (rc, rootPath, ctx, bucketList) -> {
+            if (rc == OK && current == generation) {
+                for (String bucket : bucketList) {
+                    pending.incrementAndGet();
+                    zooKeeper.getChildren(rootPath + "/" + bucket, false, (bucketRc, bucketPath, bucketCtx, children) -> {
+                        if (bucketRc == OK && current == generation) {
+                            for (String child : children) {
+                                pending.incrementAndGet();
+                                zooKeeper.getData(bucketPath + "/" + child, false, (dataRc, dataPath, dataCtx, data, stat) -> {
+                                    if (dataRc == OK && current == generation && Objects.nonNull(data)) {
+                                        put(dataPath, data, stat.getVersion());
+                                    }
+                                    loaded(current, pending, dataRc, dataPath);
+                                }, null);
+                            }
+                        }
+                        loaded(current, pending, bucketRc, bucketPath);
+                    }, null);
+                }
+            }
+            loaded(current, pending, rc, rootPath);
+        }, null);
+    }
+
+    private void loaded(final int current, final AtomicInteger pending, final int rc, final String path) {
+        if (current != generation) {
+            return;
+        }
+        if (rc != OK && rc != NO_NODE) {
+            LOGGER.warn("load {} failed, reads go to zookeeper until the next connect: {}", path, KeeperException.Code.get(rc));
+            stale = true;
+            ++generation;
+            return;
+        }
+        if (pending.decrementAndGet() == 0) {
+            ready = true;
+            LOGGER.info("mirror of {} loaded {} records", root, buckets.values().stream().mapToInt(Map::size).sum());
+        }
+    }
+
+    private boolean isRecord(final String path) {
+        return path.startsWith(root + "/") && path.indexOf('/', root.length() + 1) > 0;
+    }
+
+    private String bucketOf(final String path) {
+        return path.substring(root.length() + 1, path.lastIndexOf('/'));
+    }
+
+    /**
+     * A mirrored record, its data, decoded once for the filters, and the version of its node.
+     */
+    @Getter
+    @AllArgsConstructor
+    private static final class MirroredRecord<T> {
+
+        private final byte[] data;
+
+        private final T record;
+
+        private final int version;
+    }
+}
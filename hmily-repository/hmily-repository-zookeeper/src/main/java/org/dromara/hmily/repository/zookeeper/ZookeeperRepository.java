@@ -17,18 +17,45 @@
 
 package org.dromara.hmily.repository.zookeeper;
 
+import com.google.common.collect.Lists;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.Op;
 import org.apache.zookeeper.Watcher;
 import org.apache.zookeeper.ZooDefs;
 import org.apache.zookeeper.ZooKeeper;
 import org.apache.zookeeper.data.Stat;
+import org.dromara.hmily.common.concurrent.HmilyThreadFactory;
 import org.dromara.hmily.common.enums.HmilyActionEnum;
 import org.dromara.hmily.common.exception.HmilyException;
 import org.dromara.hmily.common.exception.HmilyRuntimeException;
@@ -37,12 +64,15 @@ import org.dromara.hmily.common.utils.LogUtil;
 import org.dromara.hmily.common.utils.StringUtils;
 import org.dromara.hmily.config.api.ConfigEnv;
 import org.dromara.hmily.config.api.entity.HmilyZookeeperConfig;
+import org.dromara.hmily.repository.spi.HmilyAsyncRepository;
 import org.dromara.hmily.repository.spi.HmilyRepository;
 import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
 import org.dromara.hmily.repository.spi.entity.HmilyParticipantUndo;
+import org.dromara.hmily.repository.spi.entity.HmilyScanCursor;
 import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
 import org.dromara.hmily.repository.spi.exception.HmilyRepositoryException;
 import org.dromara.hmily.serializer.spi.HmilySerializer;
+import org.dromara.hmily.serializer.spi.exception.HmilySerializerException;
 import org.dromara.hmily.spi.HmilySPI;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,12 +80,29 @@ import org.slf4j.LoggerFactory;
 /**
  * zookeeper impl.
  *
+ * <p>The parent paths are made once and cached, so a write is one request: a create, falling back to a set data
+ * when the node exists. The batches are one multi request, which is atomic, and their fallbacks and the reads
+ * of a batch use the async api, so the requests are in flight at once instead of one round trip each.</p>
+ *
+ * <p>The records are kept in bucket nodes under their root, by the creation time in the bits of their snowflake id,
+ * see {@link HmilyZookeeperConfig#getBucketInterval()}. The buckets are the index of a root. A record is not updated before
+ * it is created, so a scan of the records updated before a date, as recovery and cleanup do, reads only the buckets
+ * created before it, by their names. A write touches its bucket first, so the modified time of a bucket is not before
+ * the update time of any of its records, and a page after a cursor also skips the buckets untouched since the cursor.
+ * A scan reads the children and the data of a page of buckets with the async api. The records written directly under
+ * their roots, before the buckets, are moved into their buckets once on init.</p>
+ *
+ * <p>With {@link HmilyZookeeperConfig#isMirror()} the transaction and participant records are mirrored locally by a
+ * {@link ZookeeperMirror}, which serves their reads once loaded, the writes still go to zookeeper. The writes of this node
+ * are applied to the mirror when they complete, and a record not in the mirror is read from zookeeper, so a node reads
+ * its own writes. The lists stop at their limits, in the mirror as in zookeeper.</p>
+ *
  * @author xiaoyu
  * @author lilang
  */
 @HmilySPI("zookeeper")
 @Slf4j
-public class ZookeeperRepository implements HmilyRepository {
+public class ZookeeperRepository implements HmilyRepository, HmilyAsyncRepository {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ZookeeperRepository.class);
     
@@ -67,24 +114,89 @@ public class ZookeeperRepository implements HmilyRepository {
 
     private static final String HMILY_PARTICIPANT_UNDO = "hmily_participant_undo";
     
+    /**
+     * the participants by transaction, an empty node per participant under a container node per transaction.
+     */
+    private static final String HMILY_PARTICIPANT_TRANS_INDEX = "hmily_participant_trans_index";
+    
+    /**
+     * made under the index root once the participants written before the index are indexed.
+     */
+    private static final String TRANS_INDEX_BUILT = "built";
+    
+    /**
+     * made under the app node once the records written directly under their roots are moved into their buckets.
+     */
+    private static final String BUCKETED = "bucketed";
+    
+    /**
+     * the time bits of the snowflake ids of {@link org.dromara.hmily.common.utils.IdWorkerUtils} start from this bit.
+     */
+    private static final int ID_TIMESTAMP_SHIFT = 27;
+    
+    /**
+     * the time bits of the snowflake ids count from this time.
+     */
+    private static final long ID_EPOCH = 1288834974657L;
+    
+    /**
+     * the time bits of the snowflake ids are shifted out of the id past this, so they wrap around every cycle.
+     */
+    private static final long ID_TIME_CYCLE = 1L << (Long.SIZE - ID_TIMESTAMP_SHIFT);
+    
+    /**
+     * the buckets created this long after the date of a scan, or touched this long before its cursor, are still read,
+     * for the clock differences of the nodes.
+     */
+    private static final long BUCKET_CLOCK_SKEW = 60 * 1000L;
+    
+    private static final int SCAN_BUCKET_SIZE = 16;
+    
+    private static final int SCAN_BATCH_SIZE = 500;
+    
+    private static final byte[] EMPTY_DATA = new byte[0];
+    
+    private static final int FALLBACK_THREADS = 4;
+    
+    private static final int FALLBACK_QUEUE_SIZE = 1024;
+    
     private static volatile ZooKeeper zooKeeper;
     
+    private final Set<String> knownPaths = ConcurrentHashMap.newKeySet();
+    
+    private final Map<String, ZookeeperMirror<?>> mirrors = new ConcurrentHashMap<>();
+    
+    /**
+     * runs the blocking fallbacks of the async writes, bounded so a burst of them neither grows without limit
+     * nor takes the threads of the common pool, a fallback it cannot take fails its write.
+     */
+    private final ExecutorService fallbackExecutor = buildFallbackExecutor();
+    
     private HmilySerializer hmilySerializer;
 
     private String rootPathPrefix = "/hmily";
 
     private String appName;
+    
+    private long bucketMillis;
 
     @Override
     public void init(final String appName) {
         this.appName = appName;
         HmilyZookeeperConfig zookeeperConfig = ConfigEnv.getInstance().getConfig(HmilyZookeeperConfig.class);
+        bucketMillis = Math.max(1L, zookeeperConfig.getBucketInterval()) * 1000;
         try {
             connect(zookeeperConfig);
+            importFlatLayout();
+            buildTransIndex();
         } catch (Exception e) {
             LogUtil.error(LOGGER, "zookeeper init error please check you config:{}", e::getMessage);
             throw new HmilyRuntimeException(e.getMessage());
         }
+        if (zookeeperConfig.isMirror()) {
+            startMirror(buildHmilyTransactionRootPath(), HmilyTransaction.class);
+            startMirror(buildHmilyParticipantRootPath(), HmilyParticipant.class);
+        }
     }
 
     @Override
@@ -94,23 +206,26 @@ public class ZookeeperRepository implements HmilyRepository {
 
     @Override
     public int createHmilyTransaction(final HmilyTransaction hmilyTransaction) throws HmilyRepositoryException {
-        String path = buildHmilyTransactionRootPath();
+        final Integer version = hmilyTransaction.getVersion();
+        final Integer retry = hmilyTransaction.getRetry();
+        final Date createTime = hmilyTransaction.getCreateTime();
+        final Date now = new Date();
         try {
-            create(path);
-            Stat stat = zooKeeper.exists(path + "/" + hmilyTransaction.getTransId(), false);
-            if (stat == null) {
+            Supplier<byte[]> created = () -> {
                 hmilyTransaction.setRetry(0);
                 hmilyTransaction.setVersion(0);
-                hmilyTransaction.setCreateTime(new Date());
-                hmilyTransaction.setUpdateTime(new Date());
-                zooKeeper.create(path + "/" + hmilyTransaction.getTransId(),
-                        hmilySerializer.serialize(hmilyTransaction), ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
-            } else {
-                hmilyTransaction.setVersion(hmilyTransaction.getVersion() + 1);
-                hmilyTransaction.setUpdateTime(new Date());
-                zooKeeper.setData(path + "/" + hmilyTransaction.getTransId(),
-                        hmilySerializer.serialize(hmilyTransaction), stat.getVersion());
-            }
+                hmilyTransaction.setCreateTime(now);
+                hmilyTransaction.setUpdateTime(now);
+                return hmilySerializer.serialize(hmilyTransaction);
+            };
+            Supplier<byte[]> updated = () -> {
+                hmilyTransaction.setRetry(retry);
+                hmilyTransaction.setVersion(version + 1);
+                hmilyTransaction.setCreateTime(createTime);
+                hmilyTransaction.setUpdateTime(now);
+                return hmilySerializer.serialize(hmilyTransaction);
+            };
+            createOrUpdate(buildHmilyTransactionRealPath(hmilyTransaction.getTransId()), created, updated);
             return HmilyRepository.ROWS;
         } catch (KeeperException | InterruptedException e) {
             throw new HmilyException(e);
@@ -122,9 +237,6 @@ public class ZookeeperRepository implements HmilyRepository {
         final int currentVersion = hmilyTransaction.getVersion();
         String path = buildHmilyTransactionRealPath(hmilyTransaction.getTransId());
         try {
-            if (checkPath(path, true)) {
-                return FAIL_ROWS;
-            }
             Stat stat = zooKeeper.exists(path, false);
             if (stat == null) {
                 LOGGER.warn("path {} is not exists.", path);
@@ -137,7 +249,7 @@ public class ZookeeperRepository implements HmilyRepository {
             hmilyTransaction.setVersion(currentVersion + 1);
             hmilyTransaction.setRetry(hmilyTransaction.getRetry() + 1);
             hmilyTransaction.setUpdateTime(new Date());
-            zooKeeper.setData(path, hmilySerializer.serialize(hmilyTransaction), stat.getVersion());
+            setData(path, hmilySerializer.serialize(hmilyTransaction), stat.getVersion());
             return HmilyRepository.ROWS;
         } catch (KeeperException | InterruptedException e) {
             LOGGER.error("updateRetryByLock occur a exception", e);
@@ -148,15 +260,21 @@ public class ZookeeperRepository implements HmilyRepository {
     @Override
     public HmilyTransaction findByTransId(final Long transId) {
         String path = buildHmilyTransactionRealPath(transId);
-        try {
-            if (checkPath(path, true)) {
-                return null;
+        ZookeeperMirror<HmilyTransaction> mirror = mirrorOf(buildHmilyTransactionRootPath());
+        if (Objects.nonNull(mirror) && mirror.isReady()) {
+            HmilyTransaction hmilyTransaction = mirror.get(path);
+            if (Objects.nonNull(hmilyTransaction)) {
+                return hmilyTransaction;
             }
+        }
+        try {
             byte[] data = zooKeeper.getData(path, false, null);
             if (data == null) {
                 return null;
             }
             return hmilySerializer.deSerialize(data, HmilyTransaction.class);
+        } catch (KeeperException.NoNodeException e) {
+            return null;
         } catch (KeeperException | InterruptedException e) {
             LOGGER.error("findByTransId occur a exception", e);
         }
@@ -166,36 +284,24 @@ public class ZookeeperRepository implements HmilyRepository {
     @Override
     public List<HmilyTransaction> listLimitByDelay(final Date date, final int limit) {
         String path = buildHmilyTransactionRootPath();
-        return listByFilter(path, HmilyTransaction.class, (hmilyTransaction, params) -> {
-            Date dateParam = (Date) params[0];
-            int limitParam = (int) params[1];
-            boolean filterResult = dateParam.before(hmilyTransaction.getUpdateTime())
-                    && appName.equals(hmilyTransaction.getAppName())
-                    && limitParam-- > 0;
-            // write back to params
-            params[1] = limitParam;
-            return filterResult;
-        }, date, limit);
+        Predicate<HmilyTransaction> filter = hmilyTransaction -> hmilyTransaction.getUpdateTime().before(date) && appName.equals(hmilyTransaction.getAppName());
+        return listByFilter(path, date, limit, HmilyTransaction.class, filter);
+    }
+    
+    @Override
+    public List<HmilyTransaction> scanHmilyTransaction(final Date date, final HmilyScanCursor cursor, final int limit) {
+        Predicate<HmilyTransaction> filter = hmilyTransaction -> appName.equals(hmilyTransaction.getAppName());
+        return seekByFilter(buildHmilyTransactionRootPath(), date, cursor, limit, HmilyTransaction.class, HmilyTransaction::getUpdateTime, HmilyTransaction::getTransId, filter);
     }
 
     @Override
     public int updateHmilyTransactionStatus(final Long transId, final Integer status) throws HmilyRepositoryException {
-        String path = buildHmilyTransactionRealPath(transId);
-        Stat stat = new Stat();
         try {
-            if (checkPath(path, true)) {
-                return FAIL_ROWS;
-            }
-            byte[] data = zooKeeper.getData(path, false, stat);
-            if (data == null) {
-                return HmilyRepository.FAIL_ROWS;
-            }
-            HmilyTransaction hmilyTransaction = hmilySerializer.deSerialize(data, HmilyTransaction.class);
-            hmilyTransaction.setStatus(status);
-            hmilyTransaction.setVersion(hmilyTransaction.getVersion() + 1);
-            hmilyTransaction.setUpdateTime(new Date());
-            zooKeeper.setData(path, hmilySerializer.serialize(hmilyTransaction), stat.getVersion());
-            return HmilyRepository.ROWS;
+            return update(buildHmilyTransactionRealPath(transId), HmilyTransaction.class, hmilyTransaction -> {
+                hmilyTransaction.setStatus(status);
+                hmilyTransaction.setVersion(hmilyTransaction.getVersion() + 1);
+                hmilyTransaction.setUpdateTime(new Date());
+            });
         } catch (KeeperException | InterruptedException e) {
             LOGGER.error("updateHmilyTransactionStatus occur a exception", e);
         }
@@ -204,13 +310,8 @@ public class ZookeeperRepository implements HmilyRepository {
 
     @Override
     public int removeHmilyTransaction(final Long transId) {
-        String path = buildHmilyTransactionRealPath(transId);
         try {
-            if (checkPath(path, false)) {
-                return FAIL_ROWS;
-            }
-            zooKeeper.delete(path, -1);
-            return HmilyRepository.ROWS;
+            return delete(buildHmilyTransactionRealPath(transId));
         } catch (InterruptedException | KeeperException e) {
             LOGGER.error("removeHmilyTransaction occur a exception", e);
         }
@@ -220,31 +321,35 @@ public class ZookeeperRepository implements HmilyRepository {
     @Override
     public int removeHmilyTransactionByData(final Date date) {
         String path = buildHmilyTransactionRootPath();
-        return removeByFilter(path, HmilyTransaction.class, (hmilyTransaction, params) -> {
+        return removeByFilter(path, date, HmilyTransaction.class, hmilyTransaction -> { }, (hmilyTransaction, params) -> {
             Date dateParam = (Date) params[0];
-            return dateParam.before(hmilyTransaction.getUpdateTime()) && hmilyTransaction.getStatus() == HmilyActionEnum.DELETE.getCode();
+            return hmilyTransaction.getUpdateTime().before(dateParam) && hmilyTransaction.getStatus() == HmilyActionEnum.DELETE.getCode();
         }, date);
     }
     
     @Override
     public int createHmilyParticipant(final HmilyParticipant hmilyParticipant) throws HmilyRepositoryException {
+        final Integer version = hmilyParticipant.getVersion();
+        final int retry = hmilyParticipant.getRetry();
+        final Date createTime = hmilyParticipant.getCreateTime();
+        final Date now = new Date();
         try {
-            String path = buildHmilyParticipantRootPath();
-            create(path);
-            Stat stat = zooKeeper.exists(path + "/" + hmilyParticipant.getTransId(), false);
-            if (stat == null) {
+            indexParticipant(hmilyParticipant);
+            Supplier<byte[]> created = () -> {
                 hmilyParticipant.setRetry(0);
                 hmilyParticipant.setVersion(0);
-                hmilyParticipant.setCreateTime(new Date());
-                hmilyParticipant.setUpdateTime(new Date());
-                zooKeeper.create(path + "/" + hmilyParticipant.getParticipantId(),
-                        hmilySerializer.serialize(hmilyParticipant), ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
-            } else {
-                hmilyParticipant.setVersion(hmilyParticipant.getVersion() + 1);
-                hmilyParticipant.setUpdateTime(new Date());
-                zooKeeper.setData(path + "/" + hmilyParticipant.getParticipantId(),
-                        hmilySerializer.serialize(hmilyParticipant), stat.getVersion());
-            }
+                hmilyParticipant.setCreateTime(now);
+                hmilyParticipant.setUpdateTime(now);
+                return hmilySerializer.serialize(hmilyParticipant);
+            };
+            Supplier<byte[]> updated = () -> {
+                hmilyParticipant.setRetry(retry);
+                hmilyParticipant.setVersion(version + 1);
+                hmilyParticipant.setCreateTime(createTime);
+                hmilyParticipant.setUpdateTime(now);
+                return hmilySerializer.serialize(hmilyParticipant);
+            };
+            createOrUpdate(buildHmilyParticipantRealPath(hmilyParticipant.getParticipantId()), created, updated);
             return HmilyRepository.ROWS;
         } catch (KeeperException | InterruptedException e) {
             throw new HmilyException(e);
@@ -254,62 +359,74 @@ public class ZookeeperRepository implements HmilyRepository {
     @Override
     public List<HmilyParticipant> findHmilyParticipant(final Long participantId) {
         String path = buildHmilyParticipantRootPath();
-        return listByFilter(path, HmilyParticipant.class, (hmilyParticipant, params) -> {
-            Long participantIdParam = (Long) params[0];
-            return participantIdParam.compareTo(hmilyParticipant.getParticipantId()) == 0
-                    || (hmilyParticipant.getParticipantRefId() != null && participantIdParam.compareTo(hmilyParticipant.getParticipantRefId()) == 0);
-        }, participantId);
+        Predicate<HmilyParticipant> filter = hmilyParticipant -> participantId.compareTo(hmilyParticipant.getParticipantId()) == 0
+                || (hmilyParticipant.getParticipantRefId() != null && participantId.compareTo(hmilyParticipant.getParticipantRefId()) == 0);
+        return listByFilter(path, null, Integer.MAX_VALUE, HmilyParticipant.class, filter);
     }
 
     @Override
     public List<HmilyParticipant> listHmilyParticipant(final Date date, final String transType, final int limit) {
         String path = buildHmilyParticipantRootPath();
-        return listByFilter(path, HmilyParticipant.class, (hmilyParticipant, params) -> {
-            Date dateParam = (Date) params[0];
-            String transTypeParam = (String) params[1];
-            int limitParam = (int) params[2];
-            boolean filterResult = dateParam.before(hmilyParticipant.getUpdateTime()) && appName.equals(hmilyParticipant.getAppName())
-                    && transTypeParam.equals(hmilyParticipant.getTransType())
-                    && (hmilyParticipant.getStatus().compareTo(HmilyActionEnum.DELETE.getCode()) != 0 && hmilyParticipant.getStatus().compareTo(HmilyActionEnum.DEATH.getCode()) != 0)
-                    && limitParam-- > 0;
-            params[2] = limitParam;
-            return filterResult;
-        }, date, transType, limit);
+        Predicate<HmilyParticipant> filter = hmilyParticipant -> hmilyParticipant.getUpdateTime().before(date) && appName.equals(hmilyParticipant.getAppName())
+                && transType.equals(hmilyParticipant.getTransType())
+                && (hmilyParticipant.getStatus().compareTo(HmilyActionEnum.DELETE.getCode()) != 0 && hmilyParticipant.getStatus().compareTo(HmilyActionEnum.DEATH.getCode()) != 0);
+        return listByFilter(path, date, limit, HmilyParticipant.class, filter);
+    }
+    
+    @Override
+    public List<HmilyParticipant> scanHmilyParticipant(final Date date, final String transType, final HmilyScanCursor cursor, final int limit) {
+        Predicate<HmilyParticipant> filter = hmilyParticipant -> appName.equals(hmilyParticipant.getAppName()) && transType.equals(hmilyParticipant.getTransType())
+                && hmilyParticipant.getStatus().compareTo(HmilyActionEnum.DELETE.getCode()) != 0 && hmilyParticipant.getStatus().compareTo(HmilyActionEnum.DEATH.getCode()) != 0;
+        return seekByFilter(buildHmilyParticipantRootPath(), date, cursor, limit, HmilyParticipant.class, HmilyParticipant::getUpdateTime, HmilyParticipant::getParticipantId, filter);
     }
 
     @Override
     public List<HmilyParticipant> listHmilyParticipantByTransId(final Long transId) {
-        String path = buildHmilyParticipantRootPath();
-        return listByFilter(path, HmilyParticipant.class, (hmilyParticipant, params) -> transId.compareTo(hmilyParticipant.getTransId()) == 0, transId);
+        try {
+            List<HmilyParticipant> result = new ArrayList<>();
+            for (NodeData node : getDataAsync(participantPathsOf(getChildrenAsync(buildTransIndexPath(transId)).join()))) {
+                if (Objects.nonNull(node)) {
+                    HmilyParticipant hmilyParticipant = hmilySerializer.deSerialize(node.getData(), HmilyParticipant.class);
+                    if (transId.equals(hmilyParticipant.getTransId())) {
+                        result.add(hmilyParticipant);
+                    }
+                }
+            }
+            return result;
+        } catch (CompletionException e) {
+            LOGGER.error("listHmilyParticipantByTransId occur a exception", e);
+        }
+        return Collections.emptyList();
     }
 
     @Override
     public boolean existHmilyParticipantByTransId(final Long transId) {
-        String path = buildHmilyParticipantRootPath();
-        return existByFilter(path, HmilyParticipant.class, (hmilyParticipant, params) -> {
-            Long transIdParam = (Long) params[0];
-            return transIdParam.compareTo(hmilyParticipant.getTransId()) == 0;
-        }, transId);
+        try {
+            return withoutParticipants(Collections.singletonList(transId)).isEmpty();
+        } catch (CompletionException e) {
+            LOGGER.error("existHmilyParticipantByTransId occur a exception", e);
+        }
+        return false;
+    }
+    
+    @Override
+    public List<Long> findTransIdsWithoutParticipants(final List<Long> transIdList) {
+        try {
+            return withoutParticipants(new ArrayList<>(new LinkedHashSet<>(transIdList)));
+        } catch (CompletionException e) {
+            LOGGER.error("findTransIdsWithoutParticipants occur a exception", e);
+        }
+        return Collections.emptyList();
     }
     
     @Override
     public int updateHmilyParticipantStatus(final Long participantId, final Integer status) throws HmilyRepositoryException {
-        String path = buildHmilyParticipantRealPath(participantId);
         try {
-            if (checkPath(path, false)) {
-                return FAIL_ROWS;
-            }
-            Stat stat = new Stat();
-            byte[] data = zooKeeper.getData(path, false, stat);
-            if (data == null) {
-                return HmilyRepository.FAIL_ROWS;
-            }
-            HmilyParticipant hmilyParticipant = hmilySerializer.deSerialize(data, HmilyParticipant.class);
-            hmilyParticipant.setStatus(status);
-            hmilyParticipant.setVersion(hmilyParticipant.getVersion() + 1);
-            hmilyParticipant.setUpdateTime(new Date());
-            zooKeeper.setData(path, hmilySerializer.serialize(hmilyParticipant), stat.getVersion());
-            return HmilyRepository.ROWS;
+            return update(buildHmilyParticipantRealPath(participantId), HmilyParticipant.class, hmilyParticipant -> {
+                hmilyParticipant.setStatus(status);
+                hmilyParticipant.setVersion(hmilyParticipant.getVersion() + 1);
+                hmilyParticipant.setUpdateTime(new Date());
+            });
         } catch (KeeperException | InterruptedException e) {
             LOGGER.error("updateHmilyParticipantStatus occur a exception", e);
         }
@@ -320,11 +437,17 @@ public class ZookeeperRepository implements HmilyRepository {
     public int removeHmilyParticipant(final Long participantId) {
         String path = buildHmilyParticipantRealPath(participantId);
         try {
-            if (checkPath(path, false)) {
-                return FAIL_ROWS;
+            byte[] data;
+            try {
+                data = zooKeeper.getData(path, false, null);
+            } catch (KeeperException.NoNodeException e) {
+                return HmilyRepository.FAIL_ROWS;
             }
-            zooKeeper.delete(path, -1);
-            return HmilyRepository.ROWS;
+            int rows = delete(path);
+            if (rows == HmilyRepository.ROWS && Objects.nonNull(data)) {
+                unindexParticipant(hmilySerializer.deSerialize(data, HmilyParticipant.class));
+            }
+            return rows;
         } catch (InterruptedException | KeeperException e) {
             LOGGER.error("removeHmilyParticipant occur a exception", e);
         }
@@ -334,9 +457,9 @@ public class ZookeeperRepository implements HmilyRepository {
     @Override
     public int removeHmilyParticipantByData(final Date date) {
         String path = buildHmilyParticipantRootPath();
-        return removeByFilter(path, HmilyParticipant.class, (hmilyParticipant, params) -> {
+        return removeByFilter(path, date, HmilyParticipant.class, this::unindexParticipant, (hmilyParticipant, params) -> {
             Date dateParam = (Date) params[0];
-            return dateParam.before(hmilyParticipant.getUpdateTime()) && hmilyParticipant.getStatus().compareTo(HmilyActionEnum.DELETE.getCode()) == 0;
+            return hmilyParticipant.getUpdateTime().before(dateParam) && hmilyParticipant.getStatus().compareTo(HmilyActionEnum.DELETE.getCode()) == 0;
         }, date);
     }
 
@@ -345,9 +468,6 @@ public class ZookeeperRepository implements HmilyRepository {
         final int currentVersion = hmilyParticipant.getVersion();
         String path = buildHmilyParticipantRealPath(hmilyParticipant.getParticipantId());
         try {
-            if (checkPath(path, false)) {
-                return false;
-            }
             Stat stat = zooKeeper.exists(path, false);
             if (stat == null) {
                 LOGGER.warn("path {} is not exists.", path);
@@ -360,7 +480,7 @@ public class ZookeeperRepository implements HmilyRepository {
             hmilyParticipant.setVersion(currentVersion + 1);
             hmilyParticipant.setRetry(hmilyParticipant.getRetry() + 1);
             hmilyParticipant.setUpdateTime(new Date());
-            zooKeeper.setData(path, hmilySerializer.serialize(hmilyParticipant), stat.getVersion());
+            setData(path, hmilySerializer.serialize(hmilyParticipant), stat.getVersion());
             return true;
         } catch (KeeperException | InterruptedException e) {
             LOGGER.error("updateRetryByLock occur a exception", e);
@@ -370,20 +490,20 @@ public class ZookeeperRepository implements HmilyRepository {
 
     @Override
     public int createHmilyParticipantUndo(final HmilyParticipantUndo hmilyParticipantUndo) {
-        String path = buildHmilyParticipantUndoRootPath();
+        final Date createTime = hmilyParticipantUndo.getCreateTime();
+        final Date now = new Date();
         try {
-            create(path);
-            Stat stat = zooKeeper.exists(path + "/" + hmilyParticipantUndo.getUndoId(), false);
-            if (stat == null) {
-                hmilyParticipantUndo.setCreateTime(new Date());
-                hmilyParticipantUndo.setUpdateTime(new Date());
-                zooKeeper.create(path + "/" + hmilyParticipantUndo.getUndoId(),
-                        hmilySerializer.serialize(hmilyParticipantUndo), ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
-            } else {
-                hmilyParticipantUndo.setUpdateTime(new Date());
-                zooKeeper.setData(path + "/" + hmilyParticipantUndo.getUndoId(),
-                        hmilySerializer.serialize(hmilyParticipantUndo), stat.getVersion());
-            }
+            Supplier<byte[]> created = () -> {
+                hmilyParticipantUndo.setCreateTime(now);
+                hmilyParticipantUndo.setUpdateTime(now);
+                return hmilySerializer.serialize(hmilyParticipantUndo);
+            };
+            Supplier<byte[]> updated = () -> {
+                hmilyParticipantUndo.setCreateTime(createTime);
+                hmilyParticipantUndo.setUpdateTime(now);
+                return hmilySerializer.serialize(hmilyParticipantUndo);
+            };
+            createOrUpdate(buildHmilyParticipantUndoRealPath(hmilyParticipantUndo.getUndoId()), created, updated);
             return HmilyRepository.ROWS;
         } catch (KeeperException | InterruptedException e) {
             throw new HmilyException(e);
@@ -393,21 +513,13 @@ public class ZookeeperRepository implements HmilyRepository {
     @Override
     public List<HmilyParticipantUndo> findHmilyParticipantUndoByParticipantId(final Long participantId) {
         String path = buildHmilyParticipantUndoRootPath();
-        return listByFilter(path, HmilyParticipantUndo.class, (undo, params) -> {
-            Long participantIdParam = (Long) params[0];
-            return participantIdParam.compareTo(undo.getParticipantId()) == 0;
-        }, participantId);
+        return listByFilter(path, null, Integer.MAX_VALUE, HmilyParticipantUndo.class, undo -> participantId.compareTo(undo.getParticipantId()) == 0);
     }
 
     @Override
     public int removeHmilyParticipantUndo(final Long undoId) {
-        String path = buildHmilyParticipantUndoRealPath(undoId);
         try {
-            if (checkPath(path, false)) {
-                return FAIL_ROWS;
-            }
-            zooKeeper.delete(path, -1);
-            return HmilyRepository.ROWS;
+            return delete(buildHmilyParticipantUndoRealPath(undoId));
         } catch (InterruptedException | KeeperException e) {
             LOGGER.error("removeHmilyParticipantUndo occur a exception", e);
         }
@@ -417,41 +529,768 @@ public class ZookeeperRepository implements HmilyRepository {
     @Override
     public int removeHmilyParticipantUndoByData(final Date date) {
         String path = buildHmilyParticipantUndoRootPath();
-        return removeByFilter(path, HmilyParticipantUndo.class, (undo, params) -> {
+        return removeByFilter(path, date, HmilyParticipantUndo.class, undo -> { }, (undo, params) -> {
             Date dateParam = (Date) params[0];
-            return dateParam.before(undo.getUpdateTime()) && undo.getStatus().compareTo(HmilyActionEnum.DELETE.getCode()) == 0;
+            return undo.getUpdateTime().before(dateParam) && undo.getStatus().compareTo(HmilyActionEnum.DELETE.getCode()) == 0;
         }, date);
     }
 
     @Override
     public int updateHmilyParticipantUndoStatus(final Long undoId, final Integer status) {
-        String path = buildHmilyParticipantUndoRealPath(undoId);
         try {
-            if (checkPath(path, false)) {
-                return FAIL_ROWS;
-            }
-            Stat stat = new Stat();
-            byte[] data = zooKeeper.getData(path, false, stat);
-            if (data == null) {
-                return HmilyRepository.FAIL_ROWS;
+            return update(buildHmilyParticipantUndoRealPath(undoId), HmilyParticipantUndo.class, hmilyParticipantUndo -> {
+                hmilyParticipantUndo.setStatus(status);
+                hmilyParticipantUndo.setUpdateTime(new Date());
+            });
+        } catch (KeeperException | InterruptedException e) {
+            LOGGER.error("updateHmilyParticipantStatus occur a exception", e);
+        }
+        return HmilyRepository.FAIL_ROWS;
+    }
+    
+    @Override
+    public int batchCreateHmilyTransaction(final List<HmilyTransaction> hmilyTransactionList) {
+        Date now = new Date();
+        List<String> paths = new ArrayList<>(hmilyTransactionList.size());
+        List<byte[]> dataList = new ArrayList<>(hmilyTransactionList.size());
+        for (HmilyTransaction hmilyTransaction : hmilyTransactionList) {
+            hmilyTransaction.setRetry(0);
+            hmilyTransaction.setVersion(0);
+            hmilyTransaction.setCreateTime(now);
+            hmilyTransaction.setUpdateTime(now);
+            paths.add(buildHmilyTransactionRealPath(hmilyTransaction.getTransId()));
+            dataList.add(hmilySerializer.serialize(hmilyTransaction));
+        }
+        return batchCreate(paths, dataList);
+    }
+    
+    @Override
+    public int batchUpdateHmilyTransactionStatus(final Map<Long, Integer> statusMap) {
+        return batchUpdate(statusMap, this::buildHmilyTransactionRealPath, HmilyTransaction.class, (hmilyTransaction, status) -> {
+            hmilyTransaction.setStatus(status);
+            hmilyTransaction.setVersion(hmilyTransaction.getVersion() + 1);
+            hmilyTransaction.setUpdateTime(new Date());
+        });
+    }
+    
+    @Override
+    public int batchRemoveHmilyTransaction(final List<Long> transIdList) {
+        return batchDelete(transIdList.stream().map(this::buildHmilyTransactionRealPath).collect(Collectors.toList()));
+    }
+    
+    @Override
+    public int batchCreateHmilyParticipant(final List<HmilyParticipant> hmilyParticipantList) {
+        Date now = new Date();
+        List<String> paths = new ArrayList<>(hmilyParticipantList.size());
+        List<byte[]> dataList = new ArrayList<>(hmilyParticipantList.size());
+        for (HmilyParticipant hmilyParticipant : hmilyParticipantList) {
+            hmilyParticipant.setRetry(0);
+            hmilyParticipant.setVersion(0);
+            hmilyParticipant.setCreateTime(now);
+            hmilyParticipant.setUpdateTime(now);
+            paths.add(buildHmilyParticipantRealPath(hmilyParticipant.getParticipantId()));
+            dataList.add(hmilySerializer.serialize(hmilyParticipant));
+        }
+        try {
+            CompletableFuture.allOf(hmilyParticipantList.stream().map(this::indexParticipantAsync).toArray(CompletableFuture<?>[]::new)).join();
+        } catch (CompletionException e) {
+            throw new HmilyException(e.getCause());
+        }
+        return batchCreate(paths, dataList);
+    }
+    
+    @Override
+    public int batchUpdateHmilyParticipantStatus(final Map<Long, Integer> statusMap) {
+        return batchUpdate(statusMap, this::buildHmilyParticipantRealPath, HmilyParticipant.class, (hmilyParticipant, status) -> {
+            hmilyParticipant.setStatus(status);
+            hmilyParticipant.setVersion(hmilyParticipant.getVersion() + 1);
+            hmilyParticipant.setUpdateTime(new Date());
+        });
+    }
+    
+    /**
+     * the participants are read before they are deleted for the transactions to unindex, the index is left as is
+     * when any of them is not deleted, a stale entry only keeps its transaction from being seen without participants.
+     */
+    @Override
+    public int batchRemoveHmilyParticipant(final List<Long> participantIdList) {
+        List<String> paths = participantIdList.stream().map(this::buildHmilyParticipantRealPath).collect(Collectors.toList());
+        List<NodeData> nodes;
+        try {
+            nodes = getDataAsync(paths);
+        } catch (CompletionException e) {
+            LOGGER.warn("read participants to unindex failed: {}", e.getMessage());
+            nodes = Collections.emptyList();
+        }
+        int rows = batchDelete(paths);
+        if (rows == paths.size()) {
+            nodes.stream().filter(Objects::nonNull).forEach(node -> unindexParticipant(hmilySerializer.deSerialize(node.getData(), HmilyParticipant.class)));
+        }
+        return rows;
+    }
+    
+    @Override
+    public int batchRemoveHmilyParticipantUndo(final List<Long> undoIdList) {
+        return batchDelete(undoIdList.stream().map(this::buildHmilyParticipantUndoRealPath).collect(Collectors.toList()));
+    }
+    
+    @Override
+    public int batchUpdateHmilyParticipantUndoStatus(final Map<Long, Integer> statusMap) {
+        return batchUpdate(statusMap, this::buildHmilyParticipantUndoRealPath, HmilyParticipantUndo.class, (hmilyParticipantUndo, status) -> {
+            hmilyParticipantUndo.setStatus(status);
+            hmilyParticipantUndo.setUpdateTime(new Date());
+        });
+    }
+    
+    @Override
+    public CompletableFuture<Integer> createHmilyTransactionAsync(final HmilyTransaction hmilyTransaction) {
+        hmilyTransaction.setRetry(0);
+        hmilyTransaction.setVersion(0);
+        hmilyTransaction.setCreateTime(new Date());
+        hmilyTransaction.setUpdateTime(new Date());
+        return createAsync(buildHmilyTransactionRealPath(hmilyTransaction.getTransId()), hmilySerializer.serialize(hmilyTransaction),
+            () -> createHmilyTransaction(hmilyTransaction));
+    }
+    
+    @Override
+    public CompletableFuture<Integer> updateHmilyTransactionStatusAsync(final Long transId, final Integer status) {
+        return updateAsync(buildHmilyTransactionRealPath(transId), HmilyTransaction.class, hmilyTransaction -> {
+            hmilyTransaction.setStatus(status);
+            hmilyTransaction.setVersion(hmilyTransaction.getVersion() + 1);
+            hmilyTransaction.setUpdateTime(new Date());
+        });
+    }
+    
+    @Override
+    public CompletableFuture<Integer> removeHmilyTransactionAsync(final Long transId) {
+        return deleteAsync(buildHmilyTransactionRealPath(transId));
+    }
+    
+    @Override
+    public CompletableFuture<Integer> createHmilyParticipantAsync(final HmilyParticipant hmilyParticipant) {
+        hmilyParticipant.setRetry(0);
+        hmilyParticipant.setVersion(0);
+        hmilyParticipant.setCreateTime(new Date());
+        hmilyParticipant.setUpdateTime(new Date());
+        byte[] data = hmilySerializer.serialize(hmilyParticipant);
+        return indexParticipantAsync(hmilyParticipant).thenCompose(indexed -> createAsync(buildHmilyParticipantRealPath(hmilyParticipant.getParticipantId()), data,
+            () -> createHmilyParticipant(hmilyParticipant)));
+    }
+    
+    @Override
+    public CompletableFuture<Integer> updateHmilyParticipantStatusAsync(final Long participantId, final Integer status) {
+        return updateAsync(buildHmilyParticipantRealPath(participantId), HmilyParticipant.class, hmilyParticipant -> {
+            hmilyParticipant.setStatus(status);
+            hmilyParticipant.setVersion(hmilyParticipant.getVersion() + 1);
+            hmilyParticipant.setUpdateTime(new Date());
+        });
+    }
+    
+    @Override
+    public CompletableFuture<Integer> removeHmilyParticipantAsync(final Long participantId) {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        zooKeeper.getData(buildHmilyParticipantRealPath(participantId), false, (rc, dataPath, ctx, data, stat) -> {
+            if (rc != KeeperException.Code.OK.intValue()) {
+                complete(future, rc, dataPath);
+                return;
             }
-            HmilyParticipantUndo hmilyParticipantUndo = hmilySerializer.deSerialize(data, HmilyParticipantUndo.class);
+            zooKeeper.delete(dataPath, -1, (deleteRc, deletedPath, deleteCtx) -> {
+                if (deleteRc == KeeperException.Code.OK.intValue()) {
+                    removeFromMirror(deletedPath);
+                }
+                if (deleteRc == KeeperException.Code.OK.intValue() && Objects.nonNull(data)) {
+                    try {
+                        unindexParticipant(hmilySerializer.deSerialize(data, HmilyParticipant.class));
+                    } catch (HmilySerializerException e) {
+                        LOGGER.warn("unindex {} failed: {}", deletedPath, e.getMessage());
+                    }
+                }
+                complete(future, deleteRc, deletedPath);
+            }, null);
+        }, null);
+        return future;
+    }
+    
+    @Override
+    public CompletableFuture<Integer> createHmilyParticipantUndoAsync(final HmilyParticipantUndo hmilyParticipantUndo) {
+        hmilyParticipantUndo.setCreateTime(new Date());
+        hmilyParticipantUndo.setUpdateTime(new Date());
+        return createAsync(buildHmilyParticipantUndoRealPath(hmilyParticipantUndo.getUndoId()), hmilySerializer.serialize(hmilyParticipantUndo),
+            () -> createHmilyParticipantUndo(hmilyParticipantUndo));
+    }
+    
+    @Override
+    public CompletableFuture<Integer> removeHmilyParticipantUndoAsync(final Long undoId) {
+        return deleteAsync(buildHmilyParticipantUndoRealPath(undoId));
+    }
+    
+    @Override
+    public CompletableFuture<Integer> updateHmilyParticipantUndoStatusAsync(final Long undoId, final Integer status) {
+        return updateAsync(buildHmilyParticipantUndoRealPath(undoId), HmilyParticipantUndo.class, hmilyParticipantUndo -> {
             hmilyParticipantUndo.setStatus(status);
             hmilyParticipantUndo.setUpdateTime(new Date());
-            zooKeeper.setData(path, hmilySerializer.serialize(hmilyParticipantUndo), stat.getVersion());
-            return HmilyRepository.ROWS;
-        } catch (KeeperException | InterruptedException e) {
-            LOGGER.error("updateHmilyParticipantStatus occur a exception", e);
+        });
+    }
+    
+    /**
+     * create the nodes in one multi request, multi is atomic, so when any node exists or a parent is missing
+     * it falls back to create them with the async api, all in flight at once.
+     */
+    private int batchCreate(final List<String> paths, final List<byte[]> dataList) {
+        if (paths.isEmpty()) {
+            return 0;
+        }
+        List<Op> ops = new ArrayList<>(paths.size());
+        try {
+            for (String bucket : paths.stream().map(ZookeeperRepository::parentOf).collect(Collectors.toCollection(LinkedHashSet::new))) {
+                create(bucket);
+                ops.add(Op.setData(bucket, EMPTY_DATA, -1));
+            }
+            for (int i = 0; i < paths.size(); i++) {
+                ops.add(Op.create(paths.get(i), dataList.get(i), ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT));
+            }
+            zooKeeper.multi(ops);
+            for (int i = 0; i < paths.size(); i++) {
+                applyToMirror(paths.get(i), dataList.get(i), 0);
+            }
+            return paths.size();
+        } catch (KeeperException e) {
+            LOGGER.warn("batch create multi failed, fallback to create async: {}", e.getMessage());
+            knownPaths.clear();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HmilyException(e);
+        }
+        List<CompletableFuture<Integer>> futures = new ArrayList<>(paths.size());
+        for (int i = 0; i < paths.size(); i++) {
+            String path = paths.get(i);
+            byte[] data = dataList.get(i);
+            futures.add(createAsync(path, data, () -> {
+                try {
+                    createOrUpdate(path, () -> data, () -> data);
+                    return HmilyRepository.ROWS;
+                } catch (KeeperException | InterruptedException e) {
+                    throw new HmilyException(e);
+                }
+            }));
+        }
+        try {
+            return sum(futures);
+        } catch (CompletionException e) {
+            throw new HmilyException(e.getCause());
+        }
+    }
+    
+    /**
+     * read the nodes with the async api, all in flight at once, then write them in one multi request which checks
+     * the versions read, so when any node changed meanwhile it falls back to update them one by one.
+     */
+    private <T, V> int batchUpdate(final Map<Long, V> valueMap, final Function<Long, String> pathBuilder, final Class<T> deserializeClass, final BiConsumer<T, V> updater) {
+        if (valueMap.isEmpty()) {
+            return 0;
+        }
+        try {
+            List<Long> ids = new ArrayList<>(valueMap.keySet());
+            List<NodeData> nodes = getDataAsync(ids.stream().map(pathBuilder).collect(Collectors.toList()));
+            List<Op> ops = new ArrayList<>(nodes.size());
+            List<NodeData> updated = new ArrayList<>(nodes.size());
+            Set<String> buckets = new LinkedHashSet<>();
+            for (int i = 0; i < nodes.size(); i++) {
+                NodeData node = nodes.get(i);
+                if (Objects.isNull(node)) {
+                    continue;
+                }
+                T t = hmilySerializer.deSerialize(node.getData(), deserializeClass);
+                updater.accept(t, valueMap.get(ids.get(i)));
+                byte[] data = hmilySerializer.serialize(t);
+                ops.add(Op.setData(node.getPath(), data, node.getStat().getVersion()));
+                updated.add(new NodeData(node.getPath(), data, node.getStat()));
+                buckets.add(parentOf(node.getPath()));
+            }
+            if (ops.isEmpty()) {
+                return 0;
+            }
+            int count = ops.size();
+            buckets.forEach(bucket -> ops.add(0, Op.setData(bucket, EMPTY_DATA, -1)));
+            try {
+                zooKeeper.multi(ops);
+                updated.forEach(node -> applyToMirror(node.getPath(), node.getData(), node.getStat().getVersion() + 1));
+                return count;
+            } catch (KeeperException e) {
+                LOGGER.warn("batch update multi failed, fallback to update one by one: {}", e.getMessage());
+            }
+            count = 0;
+            for (Map.Entry<Long, V> entry : valueMap.entrySet()) {
+                count += update(pathBuilder.apply(entry.getKey()), deserializeClass, t -> updater.accept(t, entry.getValue()));
+            }
+            return count;
+        } catch (KeeperException | CompletionException e) {
+            LOGGER.error("batch update occur a exception", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("batch update occur a exception", e);
         }
         return HmilyRepository.FAIL_ROWS;
     }
     
+    /**
+     * delete the paths in one multi request, multi is atomic, so when any path is missing it falls back to delete them
+     * with the async api, all in flight at once.
+     */
+    private int batchDelete(final List<String> paths) {
+        if (paths.isEmpty()) {
+            return 0;
+        }
+        List<Op> ops = paths.stream().map(path -> Op.delete(path, -1)).collect(Collectors.toList());
+        try {
+            int rows = zooKeeper.multi(ops).size();
+            paths.forEach(this::removeFromMirror);
+            return rows;
+        } catch (KeeperException e) {
+            LOGGER.warn("batch delete multi failed, fallback to delete async: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("batch delete occur a exception", e);
+            return HmilyRepository.FAIL_ROWS;
+        }
+        try {
+            return sum(paths.stream().map(this::deleteAsync).collect(Collectors.toList()));
+        } catch (CompletionException e) {
+            LOGGER.error("batch delete occur a exception", e);
+        }
+        return HmilyRepository.FAIL_ROWS;
+    }
+    
+    /**
+     * create the node, or when it exists set its data, which is one request once the parent is known.
+     */
+    private void createOrUpdate(final String path, final Supplier<byte[]> created, final Supplier<byte[]> updated) throws KeeperException, InterruptedException {
+        try {
+            createNode(path, created.get());
+        } catch (KeeperException.NodeExistsException e) {
+            setData(path, updated.get(), -1);
+        }
+    }
+    
+    /**
+     * create the node under its parent, which is made on the first use and cached, when the parent was removed meanwhile it is made again.
+     */
+    private void createNode(final String path, final byte[] data) throws KeeperException, InterruptedException {
+        String parent = parentOf(path);
+        create(parent);
+        touch(parent);
+        try {
+            zooKeeper.create(path, data, ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        } catch (KeeperException.NoNodeException e) {
+            knownPaths.clear();
+            create(parent);
+            zooKeeper.create(path, data, ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        }
+        applyToMirror(path, data, 0);
+    }
+    
+    /**
+     * set the data of a record after touching its bucket, both are in flight at once.
+     */
+    private void setData(final String path, final byte[] data, final int version) throws KeeperException, InterruptedException {
+        touch(parentOf(path));
+        applyToMirror(path, data, zooKeeper.setData(path, data, version).getVersion());
+    }
+    
+    /**
+     * touch a bucket with the async api before a write of one of its records, the requests of a session are applied
+     * in order, so the bucket is modified before the record and needs no extra round trip.
+     */
+    private void touch(final String bucket) {
+        zooKeeper.setData(bucket, EMPTY_DATA, -1, (rc, path, ctx, stat) -> {
+            if (rc != KeeperException.Code.OK.intValue() && rc != KeeperException.Code.NONODE.intValue()) {
+                LOGGER.warn("touch bucket {} failed: {}", path, KeeperException.Code.get(rc));
+            }
+        }, null);
+    }
+    
+    private <T> int update(final String path, final Class<T> deserializeClass, final Consumer<T> updater) throws KeeperException, InterruptedException {
+        Stat stat = new Stat();
+        byte[] data;
+        try {
+            data = zooKeeper.getData(path, false, stat);
+        } catch (KeeperException.NoNodeException e) {
+            return HmilyRepository.FAIL_ROWS;
+        }
+        if (data == null) {
+            return HmilyRepository.FAIL_ROWS;
+        }
+        T t = hmilySerializer.deSerialize(data, deserializeClass);
+        updater.accept(t);
+        setData(path, hmilySerializer.serialize(t), stat.getVersion());
+        return HmilyRepository.ROWS;
+    }
+    
+    private int delete(final String path) throws KeeperException, InterruptedException {
+        try {
+            zooKeeper.delete(path, -1);
+            removeFromMirror(path);
+            return HmilyRepository.ROWS;
+        } catch (KeeperException.NoNodeException e) {
+            return HmilyRepository.FAIL_ROWS;
+        }
+    }
+    
+    /**
+     * read the nodes with the async api, all in flight at once, the result has null for the missing ones.
+     */
+    private List<NodeData> getDataAsync(final List<String> paths) {
+        List<CompletableFuture<NodeData>> futures = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            CompletableFuture<NodeData> future = new CompletableFuture<>();
+            zooKeeper.getData(path, false, (rc, dataPath, ctx, data, stat) -> {
+                if (rc == KeeperException.Code.OK.intValue()) {
+                    future.complete(Objects.isNull(data) ? null : new NodeData(dataPath, data, stat));
+                } else if (rc == KeeperException.Code.NONODE.intValue()) {
+                    future.complete(null);
+                } else {
+                    future.completeExceptionally(KeeperException.create(KeeperException.Code.get(rc), dataPath));
+                }
+            }, null);
+            futures.add(future);
+        }
+        return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+    
+    private static ExecutorService buildFallbackExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(FALLBACK_THREADS, FALLBACK_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(FALLBACK_QUEUE_SIZE), HmilyThreadFactory.create("zookeeper-fallback", true));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+    
+    private static int sum(final List<CompletableFuture<Integer>> futures) {
+        return futures.stream().mapToInt(CompletableFuture::join).sum();
+    }
+    
+    /**
+     * create the node with the async api, an existing node is overwritten like the blocking create,
+     * the callbacks run on the zookeeper event thread, so a missing parent falls back to the blocking create on the fallback executor.
+     */
+    private CompletableFuture<Integer> createAsync(final String path, final byte[] data, final Supplier<Integer> fallback) {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        touch(parentOf(path));
+        zooKeeper.create(path, data, ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT, (rc, createdPath, ctx, name) -> {
+            if (rc == KeeperException.Code.NODEEXISTS.intValue()) {
+                zooKeeper.setData(path, data, -1, (setRc, setPath, setCtx, stat) -> {
+                    if (setRc == KeeperException.Code.OK.intValue()) {
+                        applyToMirror(setPath, data, stat.getVersion());
+                    }
+                    complete(future, setRc, setPath);
+                }, null);
+            } else if (rc == KeeperException.Code.NONODE.intValue()) {
+                try {
+                    CompletableFuture.supplyAsync(fallback, fallbackExecutor).whenComplete((rows, throwable) -> {
+                        if (Objects.isNull(throwable)) {
+                            future.complete(rows);
+                        } else {
+                            future.completeExceptionally(throwable);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    future.completeExceptionally(e);
+                }
+            } else {
+                if (rc == KeeperException.Code.OK.intValue()) {
+                    applyToMirror(createdPath, data, 0);
+                }
+                complete(future, rc, createdPath);
+            }
+        }, null);
+        return future;
+    }
+    
+    private <T> CompletableFuture<Integer> updateAsync(final String path, final Class<T> deserializeClass, final Consumer<T> updater) {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        zooKeeper.getData(path, false, (rc, dataPath, ctx, data, stat) -> {
+            if (rc != KeeperException.Code.OK.intValue() || data == null) {
+                complete(future, rc == KeeperException.Code.OK.intValue() ? KeeperException.Code.NONODE.intValue() : rc, dataPath);
+                return;
+            }
+            try {
+                T t = hmilySerializer.deSerialize(data, deserializeClass);
+                updater.accept(t);
+                byte[] updated = hmilySerializer.serialize(t);
+                touch(parentOf(dataPath));
+                zooKeeper.setData(dataPath, updated, stat.getVersion(), (setRc, setPath, setCtx, setStat) -> {
+                    if (setRc == KeeperException.Code.OK.intValue()) {
+                        applyToMirror(setPath, updated, setStat.getVersion());
+                    }
+                    complete(future, setRc, setPath);
+                }, null);
+            } catch (HmilySerializerException e) {
+                future.completeExceptionally(e);
+            }
+        }, null);
+        return future;
+    }
+    
+    private CompletableFuture<Integer> deleteAsync(final String path) {
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        zooKeeper.delete(path, -1, (rc, deletedPath, ctx) -> {
+            if (rc == KeeperException.Code.OK.intValue()) {
+                removeFromMirror(deletedPath);
+            }
+            complete(future, rc, deletedPath);
+        }, null);
+        return future;
+    }
+    
+    private static void complete(final CompletableFuture<Integer> future, final int rc, final String path) {
+        if (rc == KeeperException.Code.OK.intValue()) {
+            future.complete(HmilyRepository.ROWS);
+        } else if (rc == KeeperException.Code.NONODE.intValue()) {
+            future.complete(HmilyRepository.FAIL_ROWS);
+        } else {
+            future.completeExceptionally(KeeperException.create(KeeperException.Code.get(rc), path));
+        }
+    }
+    
+    /**
+     * index the participant under its transaction before the participant is written, so a transaction is never
+     * seen without a participant it has. the node of the transaction is a container, removed with its last entry.
+     */
+    private void indexParticipant(final HmilyParticipant hmilyParticipant) throws KeeperException, InterruptedException {
+        if (Objects.isNull(hmilyParticipant.getTransId())) {
+            return;
+        }
+        String entry = buildTransIndexPath(hmilyParticipant.getTransId()) + "/" + hmilyParticipant.getParticipantId();
+        try {
+            zooKeeper.create(entry, EMPTY_DATA, ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        } catch (KeeperException.NodeExistsException ignored) {
+            // indexed by an earlier write
+        } catch (KeeperException.NoNodeException e) {
+            String transPath = parentOf(entry);
+            create(parentOf(transPath));
+            try {
+                zooKeeper.create(transPath, EMPTY_DATA, ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.CONTAINER);
+            } catch (KeeperException.NodeExistsException ignored) {
+                // made by another participant
+            }
+            try {
+                zooKeeper.create(entry, EMPTY_DATA, ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+            } catch (KeeperException.NodeExistsException ignored) {
+                // indexed meanwhile
+            }
+        }
+    }
+    
+    /**
+     * index the participant with the async api, a missing transaction node falls back to the blocking index on the fallback executor.
+     */
+    private CompletableFuture<Void> indexParticipantAsync(final HmilyParticipant hmilyParticipant) {
+        if (Objects.isNull(hmilyParticipant.getTransId())) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        String entry = buildTransIndexPath(hmilyParticipant.getTransId()) + "/" + hmilyParticipant.getParticipantId();
+        zooKeeper.create(entry, EMPTY_DATA, ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT, (rc, createdPath, ctx, name) -> {
+            if (rc == KeeperException.Code.OK.intValue() || rc == KeeperException.Code.NODEEXISTS.intValue()) {
+                future.complete(null);
+            } else if (rc == KeeperException.Code.NONODE.intValue()) {
+                try {
+                    CompletableFuture.runAsync(() -> {
+                        try {
+                            indexParticipant(hmilyParticipant);
+                        } catch (KeeperException | InterruptedException e) {
+                            throw new HmilyException(e);
+                        }
+                    }, fallbackExecutor).whenComplete((indexed, throwable) -> {
+                        if (Objects.isNull(throwable)) {
+                            future.complete(null);
+                        } else {
+                            future.completeExceptionally(throwable);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    future.completeExceptionally(e);
+                }
+            } else {
+                future.completeExceptionally(KeeperException.create(KeeperException.Code.get(rc), createdPath));
+            }
+        }, null);
+        return future;
+    }
+    
+    /**
+     * remove the index entry of a removed participant with the async api, an entry left behind is removed when its
+     * transaction is found without participants.
+     */
+    private void unindexParticipant(final HmilyParticipant hmilyParticipant) {
+        if (Objects.nonNull(hmilyParticipant.getTransId())) {
+            unindex(buildTransIndexPath(hmilyParticipant.getTransId()) + "/" + hmilyParticipant.getParticipantId());
+        }
+    }
+    
+    private void unindex(final String entry) {
+        zooKeeper.delete(entry, -1, (rc, path, ctx) -> {
+            if (rc != KeeperException.Code.OK.intValue() && rc != KeeperException.Code.NONODE.intValue()) {
+                LOGGER.warn("unindex {} failed: {}", path, KeeperException.Code.get(rc));
+            }
+        }, null);
+    }
+    
+    /**
+     * look up the index of each transaction, then check the participants indexed exist, all with the async api and in flight at once.
+     * the entries of a transaction whose participants are all gone are stale and removed.
+     */
+    private List<Long> withoutParticipants(final List<Long> transIds) {
+        List<CompletableFuture<List<String>>> indexes = transIds.stream().map(transId -> getChildrenAsync(buildTransIndexPath(transId))).collect(Collectors.toList());
+        List<List<String>> entries = indexes.stream().map(CompletableFuture::join).collect(Collectors.toList());
+        List<Boolean> exists = existsAsync(participantPathsOf(entries.stream().flatMap(List::stream).collect(Collectors.toList())));
+        List<Long> result = new ArrayList<>();
+        int offset = 0;
+        for (int i = 0; i < transIds.size(); i++) {
+            List<String> transEntries = entries.get(i);
+            if (!exists.subList(offset, offset + transEntries.size()).contains(Boolean.TRUE)) {
+                result.add(transIds.get(i));
+                transEntries.forEach(this::unindex);
+            }
+            offset += transEntries.size();
+        }
+        return result;
+    }
+    
+    private List<String> participantPathsOf(final List<String> entries) {
+        return entries.stream().map(entry -> buildHmilyParticipantRealPath(Long.valueOf(entry.substring(entry.lastIndexOf('/') + 1)))).collect(Collectors.toList());
+    }
+    
+    /**
+     * whether the nodes exist, read with the async api, all in flight at once.
+     */
+    private List<Boolean> existsAsync(final List<String> paths) {
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            CompletableFuture<Boolean> future = new CompletableFuture<>();
+            zooKeeper.exists(path, false, (rc, existsPath, ctx, stat) -> {
+                if (rc == KeeperException.Code.OK.intValue()) {
+                    future.complete(Boolean.TRUE);
+                } else if (rc == KeeperException.Code.NONODE.intValue()) {
+                    future.complete(Boolean.FALSE);
+                } else {
+                    future.completeExceptionally(KeeperException.create(KeeperException.Code.get(rc), existsPath));
+                }
+            }, null);
+            futures.add(future);
+        }
+        return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+    
+    /**
+     * index the participants written before the index, once. the marker is made when all of them are indexed,
+     * so a node stopped meanwhile indexes them again on the next start.
+     */
+    private void buildTransIndex() throws KeeperException, InterruptedException {
+        String marker = buildTransIndexRootPath() + "/" + TRANS_INDEX_BUILT;
+        if (Objects.nonNull(zooKeeper.exists(marker, false))) {
+            return;
+        }
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        scan(buildHmilyParticipantRootPath(), null, null, node -> {
+            pending.add(indexParticipantAsync(hmilySerializer.deSerialize(node.getData(), HmilyParticipant.class)));
+            if (pending.size() >= SCAN_BATCH_SIZE) {
+                CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+                pending.clear();
+            }
+            return true;
+        });
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+        create(marker);
+        LOGGER.info("participants of {} are indexed by transaction", appName);
+    }
+
+    /**
+     * move the records written directly under their roots, before the buckets, into their buckets, once. the marker is made
+     * when none is left, so a node stopped meanwhile, or a record changed meanwhile, is moved on the next start. the children
+     * of a root are listed in one request, so a large flat root may need a larger jute.maxbuffer for this start.
+     */
+    private void importFlatLayout() throws KeeperException, InterruptedException {
+        String marker = rootPathPrefix + "/" + appName + "/" + BUCKETED;
+        if (Objects.nonNull(zooKeeper.exists(marker, false))) {
+            return;
+        }
+        int moved = 0;
+        int left = 0;
+        for (String root : new String[]{buildHmilyTransactionRootPath(), buildHmilyParticipantRootPath(), buildHmilyParticipantUndoRootPath()}) {
+            List<String> children;
+            try {
+                children = zooKeeper.getChildren(root, false);
+            } catch (KeeperException.NoNodeException e) {
+                continue;
+            }
+            boolean participants = root.equals(buildHmilyParticipantRootPath());
+            List<String> paths = children.stream().filter(child -> Objects.nonNull(idOf(child))).map(child -> root + "/" + child).collect(Collectors.toList());
+            for (List<String> page : Lists.partition(paths, SCAN_BATCH_SIZE)) {
+                List<CompletableFuture<Integer>> moves = new ArrayList<>(page.size());
+                for (NodeData node : getDataAsync(page)) {
+                    if (isFlatRecord(node)) {
+                        moves.add(participants ? indexParticipantAsync(hmilySerializer.deSerialize(node.getData(), HmilyParticipant.class))
+                                .thenCompose(indexed -> moveAsync(node)) : moveAsync(node));
+                    }
+                }
+                int rows = sum(moves);
+                moved += rows;
+                left += moves.size() - rows;
+            }
+        }
+        if (left == 0) {
+            create(marker);
+        }
+        LOGGER.info("{} records of {} are moved into their buckets, {} are left for the next start", moved, appName, left);
+    }
+
+    /**
+     * a record written under its root, not a bucket: a bucket has children, or the data it is made or touched with.
+     */
+    private static boolean isFlatRecord(final NodeData node) {
+        return Objects.nonNull(node) && node.getStat().getNumChildren() == 0 && node.getData().length > 0
+                && !Arrays.equals(node.getData(), node.getPath().getBytes());
+    }
+
+    /**
+     * move a record into its bucket by one multi request, which makes it there and deletes it if unchanged since read.
+     */
+    private CompletableFuture<Integer> moveAsync(final NodeData node) {
+        String path = node.getPath();
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        String bucket = parentOf(path) + "/" + bucketOf(Long.valueOf(name));
+        CompletableFuture<Integer> future = new CompletableFuture<>();
+        try {
+            create(bucket);
+        } catch (KeeperException e) {
+            future.completeExceptionally(e);
+            return future;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return future;
+        }
+        List<Op> ops = Arrays.asList(Op.create(bucket + "/" + name, node.getData(), ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT),
+                Op.delete(path, node.getStat().getVersion()));
+        zooKeeper.multi(ops, (rc, multiPath, ctx, results) -> {
+            if (rc == KeeperException.Code.OK.intValue()) {
+                future.complete(HmilyRepository.ROWS);
+            } else if (rc == KeeperException.Code.NODEEXISTS.intValue() || rc == KeeperException.Code.BADVERSION.intValue() || rc == KeeperException.Code.NONODE.intValue()) {
+                LOGGER.warn("move {} skipped: {}", path, KeeperException.Code.get(rc));
+                future.complete(HmilyRepository.FAIL_ROWS);
+            } else {
+                future.completeExceptionally(KeeperException.create(KeeperException.Code.get(rc), path));
+            }
+        }, null);
+        return future;
+    }
+    
     private String buildHmilyTransactionRootPath() {
         return rootPathPrefix + "/" + HMILY_TRANSACTION_GLOBAL;
     }
     
     private String buildHmilyTransactionRealPath(final Long transId) {
-        return buildHmilyTransactionRootPath() + "/" + transId;
+        return buildHmilyTransactionRootPath() + "/" + bucketOf(transId) + "/" + transId;
     }
     
     private String buildHmilyParticipantRootPath() {
@@ -459,7 +1298,15 @@ public class ZookeeperRepository implements HmilyRepository {
     }
     
     private String buildHmilyParticipantRealPath(final Long participantId) {
-        return buildHmilyParticipantRootPath() + "/" + participantId;
+        return buildHmilyParticipantRootPath() + "/" + bucketOf(participantId) + "/" + participantId;
+    }
+    
+    private String buildTransIndexRootPath() {
+        return rootPathPrefix + "/" + appName + "/" + HMILY_PARTICIPANT_TRANS_INDEX;
+    }
+    
+    private String buildTransIndexPath(final Long transId) {
+        return buildTransIndexRootPath() + "/" + bucketOf(transId) + "/" + transId;
     }
     
     private String buildHmilyParticipantUndoRootPath() {
@@ -467,7 +1314,53 @@ public class ZookeeperRepository implements HmilyRepository {
     }
     
     private String buildHmilyParticipantUndoRealPath(final Long undoId) {
-        return buildHmilyParticipantUndoRootPath() + "/" + undoId;
+        return buildHmilyParticipantUndoRootPath() + "/" + bucketOf(undoId) + "/" + undoId;
+    }
+    
+    /**
+     * the bucket of a record, its creation time from the time bits of its snowflake id, divided by the bucket interval.
+     */
+    private long bucketOf(final Long id) {
+        return (id >>> ID_TIMESTAMP_SHIFT) / bucketMillis;
+    }
+    
+    /**
+     * the buckets among the children of a root, oldest first, without the ones created after the date, the children which
+     * are not buckets are left out. the time bits of the ids wrap around, so a bucket is taken as created at the latest
+     * time its name stands for up to now, which holds for the records younger than {@link #ID_TIME_CYCLE}.
+     */
+    private List<Long> bucketsCreatedBefore(final List<String> children, final Date before) {
+        long now = System.currentTimeMillis();
+        long minAge = Objects.isNull(before) ? Long.MIN_VALUE : now - before.getTime() - BUCKET_CLOCK_SKEW;
+        Map<Long, Long> ages = new HashMap<>(children.size());
+        for (String child : children) {
+            Long bucket = idOf(child);
+            if (Objects.nonNull(bucket)) {
+                long age = ageOf(bucket, now);
+                if (age >= minAge) {
+                    ages.put(bucket, age);
+                }
+            }
+        }
+        List<Long> result = new ArrayList<>(ages.keySet());
+        result.sort(Comparator.comparing(ages::get, Comparator.reverseOrder()));
+        return result;
+    }
+    
+    /**
+     * the time since a bucket was created, negative for a bucket of a node whose clock is ahead.
+     */
+    private long ageOf(final long bucket, final long now) {
+        long age = Math.floorMod(now - ID_EPOCH - bucket * bucketMillis, ID_TIME_CYCLE);
+        return age > ID_TIME_CYCLE - BUCKET_CLOCK_SKEW ? age - ID_TIME_CYCLE : age;
+    }
+    
+    private static Long idOf(final String name) {
+        try {
+            return Long.valueOf(name);
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
     
     private void connect(final HmilyZookeeperConfig config) {
@@ -476,6 +1369,7 @@ public class ZookeeperRepository implements HmilyRepository {
                 if (watchedEvent.getState() == Watcher.Event.KeeperState.SyncConnected) {
                     LATCH.countDown();
                 }
+                mirrors.values().forEach(mirror -> mirror.process(watchedEvent));
             });
             LATCH.await();
             Stat stat = zooKeeper.exists(rootPathPrefix, false);
@@ -487,112 +1381,250 @@ public class ZookeeperRepository implements HmilyRepository {
         }
     }
 
-    private boolean checkPath(final String path, final boolean needCreate) throws KeeperException, InterruptedException {
-        Stat stat = zooKeeper.exists(path, false);
-        if (stat != null) {
-            return false;
-        }
-        if (needCreate) {
-            create(path);
-        }
-        return !needCreate;
-    }
-
+    /**
+     * make the path and its parents, the ones made are cached, so a known path takes no request.
+     */
     private void create(final String path) throws KeeperException, InterruptedException {
+        if (knownPaths.contains(path)) {
+            return;
+        }
         PathTokenizer pathTokenizer = new PathTokenizer(path);
         while (pathTokenizer.hasNext()) {
             String nextPath = pathTokenizer.nextPath();
-            if (StringUtils.isNoneBlank(path)) {
-                Stat stat = zooKeeper.exists(nextPath, false);
-                if (stat == null) {
+            if (StringUtils.isNoneBlank(path) && !knownPaths.contains(nextPath)) {
+                try {
                     zooKeeper.create(nextPath, nextPath.getBytes(), ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+                } catch (KeeperException.NodeExistsException ignored) {
+                    // made by another node
                 }
+                knownPaths.add(nextPath);
             }
         }
     }
+    
+    private static String parentOf(final String path) {
+        return path.substring(0, path.lastIndexOf('/'));
+    }
 
-    private <T> List<T> listByFilter(final String path, final Class<T> deserializeClass, final Filter<T> filter, final Object... params) {
+    /**
+     * list the records which pass the filter, the visit stops once the limit is reached.
+     */
+    private <T> List<T> listByFilter(final String path, final Date before, final int limit, final Class<T> deserializeClass, final Predicate<T> filter) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
         try {
-            if (checkPath(path, false)) {
-                return Collections.emptyList();
-            }
-            List<String> children = zooKeeper.getChildren(path, false);
-            if (CollectionUtils.isEmpty(children)) {
-                return Collections.emptyList();
-            }
             List<T> result = new ArrayList<>();
-            for (String child : children) {
-                byte[] data = zooKeeper.getData(path + "/" + child, false, null);
-                if (data == null) {
-                    continue;
-                }
-                T t = hmilySerializer.deSerialize(data, deserializeClass);
-                if (filter.filter(t, params)) {
-                    result.add(t);
-                }
-            }
+            visit(path, before, null, deserializeClass, filter, t -> {
+                result.add(t);
+                return result.size() < limit;
+            });
             return result;
-        } catch (KeeperException | InterruptedException e) {
+        } catch (KeeperException | InterruptedException | CompletionException e) {
             LOGGER.error("listByFilter occur a exception", e);
         }
         return Collections.emptyList();
     }
 
-    private <T> boolean existByFilter(final String path, final Class<T> deserializeClass, final Filter<T> filter, final Object... params) {
+    /**
+     * read a page in (update time, id) order of the records updated before the date, after the cursor. the buckets created after the date
+     * and the ones untouched since the cursor are skipped, and only the first records of the page are kept while visiting, so a page holds
+     * at most limit records whatever the size of the root.
+     */
+    private <T> List<T> seekByFilter(final String root, final Date date, final HmilyScanCursor cursor, final int limit, final Class<T> deserializeClass,
+                                     final Function<T, Date> updateTime, final Function<T, Long> id, final Predicate<T> filter) {
+        Date after = Objects.isNull(cursor) ? null : cursor.getUpdateTime();
+        Comparator<T> order = (o1, o2) -> HmilyScanCursor.compare(updateTime.apply(o1), id.apply(o1), updateTime.apply(o2), id.apply(o2));
+        PriorityQueue<T> page = new PriorityQueue<>(order.reversed());
+        Predicate<T> pageFilter = t -> updateTime.apply(t).before(date) && (Objects.isNull(cursor) || cursor.isBefore(updateTime.apply(t), id.apply(t))) && filter.test(t);
         try {
-            if (checkPath(path, false)) {
-                return false;
-            }
-            List<String> children = zooKeeper.getChildren(path, false);
-            if (CollectionUtils.isEmpty(children)) {
-                return false;
-            }
-            for (String child : children) {
-                byte[] data = zooKeeper.getData(path + "/" + child, false, null);
-                if (data == null) {
-                    continue;
+            visit(root, date, after, deserializeClass, pageFilter, t -> {
+                page.offer(t);
+                if (page.size() > limit) {
+                    page.poll();
                 }
-                T t = hmilySerializer.deSerialize(data, deserializeClass);
-                if (filter.filter(t, params)) {
-                    return true;
-                }
-            }
-        } catch (KeeperException | InterruptedException e) {
-            LOGGER.error("existByFilter occur a exception", e);
+                return true;
+            });
+        } catch (KeeperException | InterruptedException | CompletionException e) {
+            LOGGER.error("seekByFilter occur a exception", e);
+            return Collections.emptyList();
         }
-        return false;
+        List<T> result = new ArrayList<>(page);
+        result.sort(order);
+        return result;
     }
 
-    private <T> int removeByFilter(final String path, final Class<T> deserializeClass, final Filter<T> filter, final Object... params) {
+    private <T> int removeByFilter(final String path, final Date before, final Class<T> deserializeClass, final Consumer<T> removedListener,
+                                   final Filter<T> filter, final Object... params) {
         try {
-            if (checkPath(path, false)) {
-                return FAIL_ROWS;
-            }
-            List<String> children = zooKeeper.getChildren(path, false);
-            if (CollectionUtils.isEmpty(children)) {
-                return HmilyRepository.FAIL_ROWS;
-            }
-
-            int count = 0;
-            for (String child : children) {
-                Stat stat = new Stat();
-                byte[] data = zooKeeper.getData(path + "/" + child, false, stat);
-                if (data == null) {
-                    continue;
-                }
-                T t = hmilySerializer.deSerialize(data, deserializeClass);
+            List<NodeData> removed = new ArrayList<>();
+            List<T> removedRecords = new ArrayList<>();
+            scan(path, before, null, node -> {
+                T t = hmilySerializer.deSerialize(node.getData(), deserializeClass);
                 if (filter.filter(t, params)) {
-                    zooKeeper.delete(path + "/" + child, stat.getVersion());
+                    removed.add(node);
+                    removedRecords.add(t);
+                }
+                return true;
+            });
+            int count = 0;
+            for (int i = 0; i < removed.size(); i++) {
+                NodeData node = removed.get(i);
+                try {
+                    zooKeeper.delete(node.getPath(), node.getStat().getVersion());
+                    removeFromMirror(node.getPath());
+                    removedListener.accept(removedRecords.get(i));
                     count++;
+                } catch (KeeperException.NoNodeException | KeeperException.BadVersionException e) {
+                    LOGGER.warn("remove {} skipped: {}", node.getPath(), e.getMessage());
                 }
             }
+            removed.stream().map(node -> parentOf(node.getPath())).distinct().forEach(this::deleteIfEmpty);
             return count;
-        } catch (KeeperException | InterruptedException e) {
+        } catch (KeeperException | InterruptedException | CompletionException e) {
             LOGGER.error("removeByFilter occur a exception", e);
         }
         return HmilyRepository.FAIL_ROWS;
     }
     
+    /**
+     * delete a bucket emptied by a cleanup, a write into it meanwhile makes it again.
+     */
+    private void deleteIfEmpty(final String bucket) {
+        try {
+            zooKeeper.delete(bucket, -1);
+            knownPaths.remove(bucket);
+        } catch (KeeperException.NotEmptyException | KeeperException.NoNodeException ignored) {
+            // still in use or gone
+        } catch (KeeperException e) {
+            LOGGER.warn("delete bucket {} failed: {}", bucket, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * visit the records of a root which pass the filter, in its mirror when it is ready, or else in zookeeper. the mirror skips
+     * the buckets created after the date before like a scan, and tests the filter on the records it holds, so it copies only the ones which pass.
+     *
+     * @return false if the visitor stopped
+     */
+    private <T> boolean visit(final String root, final Date before, final Date after, final Class<T> deserializeClass, final Predicate<T> filter,
+                              final Predicate<T> visitor) throws KeeperException, InterruptedException {
+        ZookeeperMirror<T> mirror = mirrorOf(root);
+        if (Objects.nonNull(mirror) && mirror.isReady()) {
+            List<String> bucketNames = bucketsCreatedBefore(new ArrayList<>(mirror.bucketNames()), before).stream().map(String::valueOf).collect(Collectors.toList());
+            return mirror.visit(bucketNames, filter, visitor);
+        }
+        return scan(root, before, after, node -> {
+            T t = hmilySerializer.deSerialize(node.getData(), deserializeClass);
+            return !filter.test(t) || visitor.test(t);
+        });
+    }
+    
+    private <T> void startMirror(final String root, final Class<T> deserializeClass) {
+        ZookeeperMirror<T> mirror = new ZookeeperMirror<>(zooKeeper, root, data -> hmilySerializer.deSerialize(data, deserializeClass));
+        mirrors.put(root, mirror);
+        mirror.start();
+    }
+    
+    /**
+     * the mirror of a root, which is started with the record type of the root.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> ZookeeperMirror<T> mirrorOf(final String root) {
+        return (ZookeeperMirror<T>) mirrors.get(root);
+    }
+    
+    /**
+     * apply a write of this node to the mirror of the record, so the reads of this node see it before the watch event.
+     */
+    private void applyToMirror(final String path, final byte[] data, final int version) {
+        ZookeeperMirror<?> mirror = mirrors.get(parentOf(parentOf(path)));
+        if (Objects.nonNull(mirror)) {
+            mirror.put(path, data, version);
+        }
+    }
+    
+    private void removeFromMirror(final String path) {
+        ZookeeperMirror<?> mirror = mirrors.get(parentOf(parentOf(path)));
+        if (Objects.nonNull(mirror)) {
+            mirror.remove(path);
+        }
+    }
+    
+    /**
+     * visit the records in the buckets of a root, oldest bucket first. when a date before is given the buckets created after it
+     * are skipped by their names, and when a date after is given the buckets untouched since are skipped by their modified times.
+     * the children of a page of buckets, then the data of a page of children are read with the async api, all in flight at once.
+     *
+     * @return false if the visitor stopped the scan
+     */
+    private boolean scan(final String root, final Date before, final Date after, final Predicate<NodeData> visitor) throws KeeperException, InterruptedException {
+        List<String> buckets;
+        try {
+            buckets = zooKeeper.getChildren(root, false);
+        } catch (KeeperException.NoNodeException e) {
+            return true;
+        }
+        if (CollectionUtils.isEmpty(buckets)) {
+            return true;
+        }
+        List<String> bucketPaths = bucketsCreatedBefore(buckets, before).stream().map(bucket -> root + "/" + bucket).collect(Collectors.toList());
+        if (Objects.nonNull(after)) {
+            long touchedAfter = after.getTime() - BUCKET_CLOCK_SKEW;
+            bucketPaths = getDataAsync(bucketPaths).stream()
+                    .filter(bucket -> Objects.nonNull(bucket) && bucket.getStat().getMtime() > touchedAfter)
+                    .map(NodeData::getPath).collect(Collectors.toList());
+        }
+        for (List<String> page : Lists.partition(bucketPaths, SCAN_BUCKET_SIZE)) {
+            for (List<String> children : Lists.partition(getChildrenAsync(page), SCAN_BATCH_SIZE)) {
+                for (NodeData node : getDataAsync(children)) {
+                    if (Objects.nonNull(node) && !visitor.test(node)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * read the children paths of nodes with the async api, all in flight at once, the missing nodes have none.
+     */
+    private List<String> getChildrenAsync(final List<String> paths) {
+        List<CompletableFuture<List<String>>> futures = paths.stream().map(this::getChildrenAsync).collect(Collectors.toList());
+        return futures.stream().flatMap(future -> future.join().stream()).collect(Collectors.toList());
+    }
+    
+    private CompletableFuture<List<String>> getChildrenAsync(final String path) {
+        CompletableFuture<List<String>> future = new CompletableFuture<>();
+        zooKeeper.getChildren(path, false, (rc, childrenPath, ctx, children) -> {
+            if (rc == KeeperException.Code.OK.intValue()) {
+                future.complete(children.stream().map(child -> childrenPath + "/" + child).collect(Collectors.toList()));
+            } else if (rc == KeeperException.Code.NONODE.intValue()) {
+                future.complete(Collections.emptyList());
+            } else {
+                future.completeExceptionally(KeeperException.create(KeeperException.Code.get(rc), childrenPath));
+            }
+        }, null);
+        return future;
+    }
+    
+    /**
+     * The data and stat of a node.
+     */
+    @Getter
+    @AllArgsConstructor
+    private static final class NodeData {
+        
+        private final String path;
+        
+        private final byte[] data;
+        
+        private final Stat stat;
+    }
+    
     /**
      * The type Path tokenizer.
      */
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.zookeeper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.zookeeper.ZooKeeper;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * The records of the zookeeper mirror.
+ *
+ * @author xiaoyu
+ */
+public final class ZookeeperMirrorTest {
+
+    private static final String ROOT = "/hmily/hmily_transaction_global";
+
+    private final AtomicInteger decoded = new AtomicInteger();
+
+    private final ZookeeperMirror<StringBuilder> mirror = new ZookeeperMirror<>(mock(ZooKeeper.class), ROOT, data -> {
+        decoded.incrementAndGet();
+        return new StringBuilder(new String(data, StandardCharsets.UTF_8));
+    });
+
+    @Test
+    public void assertOlderVersionDoesNotReplaceNewer() {
+        mirror.put(ROOT + "/1/10", bytes("second"), 2);
+        mirror.put(ROOT + "/1/10", bytes("first"), 1);
+        assertEquals("second", mirror.get(ROOT + "/1/10").toString());
+        mirror.put(ROOT + "/1/10", bytes("third"), 3);
+        assertEquals("third", mirror.get(ROOT + "/1/10").toString());
+    }
+
+    @Test
+    public void assertEmptiedBucketIsRemoved() {
+        mirror.put(ROOT + "/1/10", bytes("a"), 0);
+        mirror.put(ROOT + "/2/20", bytes("b"), 0);
+        mirror.remove(ROOT + "/1/10");
+        assertNull(mirror.get(ROOT + "/1/10"));
+        assertEquals(Collections.singleton("2"), mirror.bucketNames());
+    }
+
+    @Test
+    public void assertVisitCopiesOnlyTheRecordsWhichPassInTheBucketsGiven() {
+        mirror.put(ROOT + "/1/10", bytes("keep"), 0);
+        mirror.put(ROOT + "/1/11", bytes("skip"), 0);
+        mirror.put(ROOT + "/2/20", bytes("keep"), 0);
+        decoded.set(0);
+        List<StringBuilder> visited = new ArrayList<>();
+        assertTrue(mirror.visit(Collections.singletonList("1"), record -> "keep".contentEquals(record), visited::add));
+        assertEquals(1, visited.size());
+        assertEquals(1, decoded.get());
+        visited.get(0).append("-changed");
+        assertEquals("keep", mirror.get(ROOT + "/1/10").toString());
+    }
+
+    @Test
+    public void assertVisitStopsWhenTheVisitorDoes() {
+        mirror.put(ROOT + "/1/10", bytes("a"), 0);
+        mirror.put(ROOT + "/1/11", bytes("b"), 0);
+        mirror.put(ROOT + "/2/20", bytes("c"), 0);
+        List<StringBuilder> visited = new ArrayList<>();
+        assertFalse(mirror.visit(Arrays.asList("1", "2"), record -> true, record -> visited.add(record) && visited.size() < 2));
+        assertEquals(2, visited.size());
+    }
+
+    private static byte[] bytes(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.zookeeper;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import org.apache.curator.test.TestingServer;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.ZooDefs;
+import org.apache.zookeeper.ZooKeeper;
+import org.dromara.hmily.annotation.TransTypeEnum;
+import org.dromara.hmily.common.enums.HmilyActionEnum;
+import org.dromara.hmily.config.api.ConfigEnv;
+import org.dromara.hmily.config.api.entity.HmilyZookeeperConfig;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipant;
+import org.dromara.hmily.repository.spi.entity.HmilyParticipantUndo;
+import org.dromara.hmily.repository.spi.entity.HmilyScanCursor;
+import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
+import org.dromara.hmily.serializer.kryo.KryoSerializer;
+import org.dromara.hmily.serializer.spi.HmilySerializer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * The buckets of the zookeeper repository, on a zookeeper server.
+ *
+ * @author xiaoyu
+ */
+public final class ZookeeperRepositoryBucketTest {
+
+    private static final long ID_EPOCH = 1288834974657L;
+
+    private static final long BUCKET_MILLIS = 10 * 1000L;
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private static TestingServer server;
+
+    private static HmilyZookeeperConfig config;
+
+    private final HmilySerializer hmilySerializer = new KryoSerializer();
+
+    @BeforeClass
+    public static void setUpServer() throws Exception {
+        server = new TestingServer(true);
+        config = new HmilyZookeeperConfig();
+        config.setHost(server.getConnectString());
+        config.setSessionTimeOut(30000);
+    }
+
+    @AfterClass
+    public static void tearDownServer() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void assertRecoveryReadsOnlyTheBucketsCreatedBeforeTheDate() throws Exception {
+        String appName = "bucket_recovery";
+        ZookeeperRepository repository = start(appName);
+        long now = System.currentTimeMillis();
+        Date date = new Date(now - TimeUnit.MINUTES.toMillis(30));
+        Date longAgo = new Date(now - TimeUnit.HOURS.toMillis(2));
+        HmilyTransaction old = transaction(idAt(now - TimeUnit.HOURS.toMillis(2)), appName);
+        repository.createHmilyTransaction(old);
+        overwrite(transactionPath(old.getTransId()), old, longAgo);
+        HmilyTransaction recent = transaction(idAt(now - TimeUnit.MINUTES.toMillis(10)), appName);
+        repository.createHmilyTransaction(recent);
+        overwrite(transactionPath(recent.getTransId()), recent, longAgo);
+        repository.createHmilyTransaction(transaction(idAt(now), appName));
+        assertEquals(Collections.singletonList(old.getTransId()), transIds(repository.listLimitByDelay(date, 10)));
+        assertEquals(Collections.singletonList(old.getTransId()), transIds(repository.scanHmilyTransaction(date, null, 10)));
+    }
+
+    @Test
+    public void assertRecordUpdatedInAnOldBucketIsFoundAfterTheCursor() throws Exception {
+        String appName = "bucket_cursor";
+        ZookeeperRepository repository = start(appName);
+        long now = System.currentTimeMillis();
+        Date date = new Date(now + TimeUnit.MINUTES.toMillis(1));
+        HmilyTransaction old = transaction(idAt(now - TimeUnit.HOURS.toMillis(2)), appName);
+        repository.createHmilyTransaction(old);
+        HmilyTransaction other = transaction(idAt(now - TimeUnit.HOURS.toMillis(1)), appName);
+        repository.createHmilyTransaction(other);
+        List<HmilyTransaction> page = repository.scanHmilyTransaction(date, null, 10);
+        assertEquals(2, page.size());
+        HmilyTransaction last = page.get(page.size() - 1);
+        HmilyScanCursor cursor = new HmilyScanCursor(last.getUpdateTime(), last.getTransId());
+        assertEquals(Collections.emptyList(), repository.scanHmilyTransaction(date, cursor, 10));
+        Thread.sleep(10);
+        assertEquals(1, repository.updateHmilyTransactionStatus(old.getTransId(), 2));
+        List<HmilyTransaction> next = repository.scanHmilyTransaction(date, cursor, 10);
+        assertEquals(Collections.singletonList(old.getTransId()), transIds(next));
+        assertEquals(2, next.get(0).getStatus());
+    }
+
+    @Test
+    public void assertCleanupRemovesTheEmptiedBuckets() throws Exception {
+        String appName = "bucket_cleanup";
+        ZookeeperRepository repository = start(appName);
+        long createTime = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(3);
+        HmilyTransaction first = transaction(idAt(createTime), appName);
+        HmilyTransaction second = transaction(idAt(createTime), appName);
+        repository.createHmilyTransaction(first);
+        repository.createHmilyTransaction(second);
+        String bucket = transactionPath(first.getTransId()).substring(0, transactionPath(first.getTransId()).lastIndexOf('/'));
+        assertNotNull(zooKeeper().exists(bucket, false));
+        repository.updateHmilyTransactionStatus(first.getTransId(), HmilyActionEnum.DELETE.getCode());
+        repository.updateHmilyTransactionStatus(second.getTransId(), HmilyActionEnum.DELETE.getCode());
+        assertEquals(2, repository.removeHmilyTransactionByData(new Date(System.currentTimeMillis() + 1000L)));
+        assertNull(zooKeeper().exists(bucket, false));
+        assertNull(repository.findByTransId(first.getTransId()));
+    }
+
+    @Test
+    public void assertFlatLayoutIsMovedIntoBucketsOnce() throws Exception {
+        String appName = "bucket_import";
+        long createTime = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+        HmilyTransaction hmilyTransaction = transaction(idAt(createTime), appName);
+        hmilyTransaction.setUpdateTime(new Date(createTime));
+        HmilyParticipant hmilyParticipant = participant(idAt(createTime), hmilyTransaction.getTransId(), appName);
+        HmilyParticipantUndo undo = new HmilyParticipantUndo();
+        undo.setUndoId(idAt(createTime));
+        undo.setParticipantId(hmilyParticipant.getParticipantId());
+        undo.setTransId(hmilyTransaction.getTransId());
+        undo.setStatus(HmilyActionEnum.TRYING.getCode());
+        try (FlatWriter writer = new FlatWriter()) {
+            writer.write("/hmily/hmily_transaction_global/" + hmilyTransaction.getTransId(), hmilySerializer.serialize(hmilyTransaction));
+            writer.write("/hmily/" + appName + "/hmily_transaction_participant/" + hmilyParticipant.getParticipantId(), hmilySerializer.serialize(hmilyParticipant));
+            writer.write("/hmily/" + appName + "/hmily_participant_undo/" + undo.getUndoId(), hmilySerializer.serialize(undo));
+        }
+        ZookeeperRepository repository = start(appName);
+        assertNull(zooKeeper().exists("/hmily/hmily_transaction_global/" + hmilyTransaction.getTransId(), false));
+        assertNull(zooKeeper().exists("/hmily/" + appName + "/hmily_transaction_participant/" + hmilyParticipant.getParticipantId(), false));
+        assertNotNull(zooKeeper().exists("/hmily/" + appName + "/bucketed", false));
+        assertNotNull(repository.findByTransId(hmilyTransaction.getTransId()));
+        assertEquals(Collections.singletonList(hmilyTransaction.getTransId()), transIds(repository.listLimitByDelay(new Date(), 10)));
+        assertEquals(1, repository.listHmilyParticipantByTransId(hmilyTransaction.getTransId()).size());
+        assertEquals(1, repository.findHmilyParticipantUndoByParticipantId(hmilyParticipant.getParticipantId()).size());
+        start(appName);
+        assertNotNull(repository.findByTransId(hmilyTransaction.getTransId()));
+    }
+
+    @Test
+    public void assertBatchesFallBackWhenTheMultiFails() throws Exception {
+        String appName = "bucket_batch";
+        ZookeeperRepository repository = start(appName);
+        long now = System.currentTimeMillis();
+        HmilyTransaction existing = transaction(idAt(now), appName);
+        assertEquals(1, repository.batchCreateHmilyTransaction(Collections.singletonList(existing)));
+        HmilyTransaction created = transaction(idAt(now), appName);
+        existing.setStatus(HmilyActionEnum.CONFIRMING.getCode());
+        assertEquals(2, repository.batchCreateHmilyTransaction(Arrays.asList(existing, created)));
+        assertEquals(HmilyActionEnum.CONFIRMING.getCode(), repository.findByTransId(existing.getTransId()).getStatus());
+        assertNotNull(repository.findByTransId(created.getTransId()));
+        long missing = idAt(now);
+        Map<Long, Integer> statusMap = new LinkedHashMap<>();
+        statusMap.put(existing.getTransId(), HmilyActionEnum.DELETE.getCode());
+        statusMap.put(missing, HmilyActionEnum.DELETE.getCode());
+        statusMap.put(created.getTransId(), HmilyActionEnum.DELETE.getCode());
+        assertEquals(2, repository.batchUpdateHmilyTransactionStatus(statusMap));
+        assertEquals(HmilyActionEnum.DELETE.getCode(), repository.findByTransId(created.getTransId()).getStatus());
+        assertEquals(1, (int) repository.findByTransId(created.getTransId()).getVersion());
+        assertEquals(2, repository.batchRemoveHmilyTransaction(Arrays.asList(existing.getTransId(), missing, created.getTransId())));
+        assertNull(repository.findByTransId(existing.getTransId()));
+        assertNull(repository.findByTransId(created.getTransId()));
+    }
+
+    @Test
+    public void assertBatchOfParticipantsIsIndexedByTransaction() throws Exception {
+        String appName = "bucket_participant_batch";
+        ZookeeperRepository repository = start(appName);
+        long now = System.currentTimeMillis();
+        long transId = idAt(now);
+        List<HmilyParticipant> hmilyParticipants = Arrays.asList(participant(idAt(now), transId, appName), participant(idAt(now), transId, appName));
+        assertEquals(2, repository.batchCreateHmilyParticipant(hmilyParticipants));
+        assertEquals(2, repository.listHmilyParticipantByTransId(transId).size());
+        assertEquals(Collections.emptyList(), repository.findTransIdsWithoutParticipants(Collections.singletonList(transId)));
+        assertEquals(2, repository.batchRemoveHmilyParticipant(hmilyParticipants.stream().map(HmilyParticipant::getParticipantId).collect(Collectors.toList())));
+        assertEquals(Collections.emptyList(), repository.listHmilyParticipantByTransId(transId));
+        assertEquals(Collections.singletonList(transId), repository.findTransIdsWithoutParticipants(Collections.singletonList(transId)));
+    }
+
+    @Test
+    public void assertRemovedParentIsMadeAgain() throws Exception {
+        String appName = "bucket_parent";
+        ZookeeperRepository repository = start(appName);
+        long createTime = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(5);
+        HmilyTransaction first = transaction(idAt(createTime), appName);
+        assertEquals(1, repository.createHmilyTransaction(first));
+        String bucket = transactionPath(first.getTransId()).substring(0, transactionPath(first.getTransId()).lastIndexOf('/'));
+        repository.removeHmilyTransaction(first.getTransId());
+        removeBucket(bucket);
+        HmilyTransaction second = transaction(idAt(createTime), appName);
+        assertEquals(1, repository.createHmilyTransaction(second));
+        assertNotNull(repository.findByTransId(second.getTransId()));
+        repository.removeHmilyTransaction(second.getTransId());
+        removeBucket(bucket);
+        List<HmilyTransaction> batch = Arrays.asList(transaction(idAt(createTime), appName), transaction(idAt(createTime), appName));
+        assertEquals(2, repository.batchCreateHmilyTransaction(batch));
+        assertEquals(transIds(batch), transIds(batch.stream().map(each -> repository.findByTransId(each.getTransId())).collect(Collectors.toList())));
+    }
+
+    private ZookeeperRepository start(final String appName) {
+        ZookeeperRepository repository = new ZookeeperRepository();
+        repository.setSerializer(hmilySerializer);
+        ConfigEnv.getInstance().withConfigs(Collections.singletonList(config), () -> {
+            repository.init(appName);
+            return repository;
+        });
+        return repository;
+    }
+
+    private static void removeBucket(final String bucket) throws Exception {
+        if (zooKeeper().exists(bucket, false) != null) {
+            zooKeeper().delete(bucket, -1);
+        }
+    }
+
+    private void overwrite(final String path, final HmilyTransaction hmilyTransaction, final Date updateTime) throws Exception {
+        hmilyTransaction.setUpdateTime(updateTime);
+        zooKeeper().setData(path, hmilySerializer.serialize(hmilyTransaction), -1);
+    }
+
+    private static String transactionPath(final long transId) {
+        return "/hmily/hmily_transaction_global/" + ((transId >>> 27) / BUCKET_MILLIS) + "/" + transId;
+    }
+
+    private static long idAt(final long millis) {
+        return (millis - ID_EPOCH) << 27 | SEQUENCE.incrementAndGet();
+    }
+
+    private static List<Long> transIds(final List<HmilyTransaction> hmilyTransactions) {
+        return hmilyTransactions.stream().map(HmilyTransaction::getTransId).collect(Collectors.toList());
+    }
+
+    private static HmilyTransaction transaction(final long transId, final String appName) {
+        HmilyTransaction hmilyTransaction = new HmilyTransaction(transId);
+        hmilyTransaction.setAppName(appName);
+        hmilyTransaction.setStatus(HmilyActionEnum.TRYING.getCode());
+        hmilyTransaction.setTransType(TransTypeEnum.TCC.name());
+        hmilyTransaction.setVersion(0);
+        hmilyTransaction.setRetry(0);
+        return hmilyTransaction;
+    }
+
+    private static HmilyParticipant participant(final long participantId, final long transId, final String appName) {
+        HmilyParticipant hmilyParticipant = new HmilyParticipant();
+        hmilyParticipant.setParticipantId(participantId);
+        hmilyParticipant.setTransId(transId);
+        hmilyParticipant.setAppName(appName);
+        hmilyParticipant.setStatus(HmilyActionEnum.TRYING.getCode());
+        hmilyParticipant.setTransType(TransTypeEnum.TCC.name());
+        return hmilyParticipant;
+    }
+
+    private static ZooKeeper zooKeeper() throws Exception {
+        Field field = ZookeeperRepository.class.getDeclaredField("zooKeeper");
+        field.setAccessible(true);
+        return (ZooKeeper) field.get(null);
+    }
+
+    /**
+     * Writes the records directly under their roots, as before the buckets.
+     */
+    private static final class FlatWriter implements AutoCloseable {
+
+        private final ZooKeeper client;
+
+        FlatWriter() throws Exception {
+            client = new ZooKeeper(server.getConnectString(), 30000, event -> { });
+        }
+
+        void write(final String path, final byte[] data) throws Exception {
+            String[] nodes = path.split("/");
+            StringBuilder parent = new StringBuilder();
+            for (int i = 1; i < nodes.length - 1; i++) {
+                parent.append('/').append(nodes[i]);
+                if (client.exists(parent.toString(), false) == null) {
+                    client.create(parent.toString(), parent.toString().getBytes(), ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+                }
+            }
+            client.create(path, data, ZooDefs.Ids.OPEN_ACL_UNSAFE, CreateMode.PERSISTENT);
+        }
+
+        @Override
+        public void close() throws Exception {
+            client.close();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.dromara.hmily.repository.zookeeper;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import org.apache.curator.test.TestingServer;
+import org.apache.zookeeper.ZooKeeper;
+import org.dromara.hmily.annotation.TransTypeEnum;
+import org.dromara.hmily.common.enums.HmilyActionEnum;
+import org.dromara.hmily.config.api.ConfigEnv;
+import org.dromara.hmily.config.api.entity.HmilyZookeeperConfig;
+import org.dromara.hmily.repository.spi.entity.HmilyTransaction;
+import org.dromara.hmily.serializer.kryo.KryoSerializer;
+import org.dromara.hmily.serializer.spi.HmilySerializer;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The reads of the zookeeper repository served by its mirror, on a zookeeper server.
+ *
+ * @author xiaoyu
+ */
+public final class ZookeeperRepositoryMirrorTest {
+
+    private static final long ID_EPOCH = 1288834974657L;
+
+    private static final long BUCKET_MILLIS = 10 * 1000L;
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private static TestingServer server;
+
+    private static HmilyZookeeperConfig config;
+
+    private final HmilySerializer hmilySerializer = new KryoSerializer();
+
+    @BeforeClass
+    public static void setUpServer() throws Exception {
+        server = new TestingServer(true);
+        config = new HmilyZookeeperConfig();
+        config.setHost(server.getConnectString());
+        config.setSessionTimeOut(30000);
+        config.setMirror(true);
+    }
+
+    @AfterClass
+    public static void tearDownServer() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void assertNodeReadsItsOwnWrites() throws Exception {
+        String appName = "mirror_own_writes";
+        ZookeeperRepository repository = start(appName);
+        HmilyTransaction hmilyTransaction = transaction(idAt(System.currentTimeMillis()), appName);
+        repository.createHmilyTransaction(hmilyTransaction);
+        assertEquals(hmilyTransaction.getTransId(), repository.findByTransId(hmilyTransaction.getTransId()).getTransId());
+        for (int status = 2; status < 6; status++) {
+            repository.updateHmilyTransactionStatus(hmilyTransaction.getTransId(), status);
+            assertEquals(status, repository.findByTransId(hmilyTransaction.getTransId()).getStatus());
+        }
+        repository.removeHmilyTransaction(hmilyTransaction.getTransId());
+        assertEquals(Collections.emptyList(), repository.listLimitByDelay(new Date(System.currentTimeMillis() + 1000L), 10));
+    }
+
+    @Test
+    public void assertWritesOfAnotherNodeAreMirrored() throws Exception {
+        String appName = "mirror_other_node";
+        ZookeeperRepository repository = start(appName);
+        HmilyTransaction hmilyTransaction = transaction(idAt(System.currentTimeMillis()), appName);
+        repository.createHmilyTransaction(hmilyTransaction);
+        hmilyTransaction.setStatus(HmilyActionEnum.CONFIRMING.getCode());
+        try (ZooKeeper other = new ZooKeeper(server.getConnectString(), 30000, event -> { })) {
+            other.setData(transactionPath(hmilyTransaction.getTransId()), hmilySerializer.serialize(hmilyTransaction), -1);
+        }
+        await(() -> repository.findByTransId(hmilyTransaction.getTransId()).getStatus() == HmilyActionEnum.CONFIRMING.getCode());
+    }
+
+    @Test
+    public void assertListSkipsNewerBucketsStopsAtTheLimitAndReturnsCopies() throws Exception {
+        String appName = "mirror_list";
+        ZookeeperRepository repository = start(appName);
+        long now = System.currentTimeMillis();
+        Date longAgo = new Date(now - TimeUnit.HOURS.toMillis(2));
+        for (int i = 0; i < 3; i++) {
+            HmilyTransaction old = transaction(idAt(now - TimeUnit.HOURS.toMillis(2)), appName);
+            repository.createHmilyTransaction(old);
+            overwrite(repository, old, longAgo);
+        }
+        HmilyTransaction recent = transaction(idAt(now - TimeUnit.MINUTES.toMillis(10)), appName);
+        repository.createHmilyTransaction(recent);
+        overwrite(repository, recent, longAgo);
+        Date date = new Date(now - TimeUnit.MINUTES.toMillis(30));
+        assertEquals(3, repository.listLimitByDelay(date, 10).size());
+        assertTrue(repository.listLimitByDelay(date, 10).stream().noneMatch(each -> each.getTransId().equals(recent.getTransId())));
+        List<HmilyTransaction> limited = repository.listLimitByDelay(date, 2);
+        assertEquals(2, limited.size());
+        limited.get(0).setStatus(HmilyActionEnum.DEATH.getCode());
+        assertEquals(HmilyActionEnum.TRYING.getCode(), repository.findByTransId(limited.get(0).getTransId()).getStatus());
+    }
+
+    private ZookeeperRepository start(final String appName) throws Exception {
+        ZookeeperRepository repository = new ZookeeperRepository();
+        repository.setSerializer(hmilySerializer);
+        ConfigEnv.getInstance().withConfigs(Collections.singletonList(config), () -> {
+            repository.init(appName);
+            return repository;
+        });
+        Field field = ZookeeperRepository.class.getDeclaredField("mirrors");
+        field.setAccessible(true);
+        Map<?, ?> mirrors = (Map<?, ?>) field.get(repository);
+        await(() -> mirrors.values().stream().allMatch(mirror -> ((ZookeeperMirror<?>) mirror).isReady()));
+        return repository;
+    }
+
+    /**
+     * set an old update time directly in zookeeper, and wait for the watch event to reach the mirror.
+     */
+    private void overwrite(final ZookeeperRepository repository, final HmilyTransaction hmilyTransaction, final Date updateTime) throws Exception {
+        hmilyTransaction.setUpdateTime(updateTime);
+        Field field = ZookeeperRepository.class.getDeclaredField("zooKeeper");
+        field.setAccessible(true);
+        ((ZooKeeper) field.get(null)).setData(transactionPath(hmilyTransaction.getTransId()), hmilySerializer.serialize(hmilyTransaction), -1);
+        await(() -> Objects.equals(updateTime, repository.findByTransId(hmilyTransaction.getTransId()).getUpdateTime()));
+    }
+
+    private static void await(final BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static String transactionPath(final long transId) {
+        return "/hmily/hmily_transaction_global/" + ((transId >>> 27) / BUCKET_MILLIS) + "/" + transId;
+    }
+
+    private static long idAt(final long millis) {
+        return (millis - ID_EPOCH) << 27 | SEQUENCE.incrementAndGet();
+    }
+
+    private static HmilyTransaction transaction(final long transId, final String appName) {
+        HmilyTransaction hmilyTransaction = new HmilyTransaction(transId);
+        hmilyTransaction.setAppName(appName);
+        hmilyTransaction.setStatus(HmilyActionEnum.TRYING.getCode());
+        hmilyTransaction.setTransType(TransTypeEnum.TCC.name());
+        hmilyTransaction.setVersion(0);
+        hmilyTransaction.setRetry(0);
+        return hmilyTransaction;
+    }
+}
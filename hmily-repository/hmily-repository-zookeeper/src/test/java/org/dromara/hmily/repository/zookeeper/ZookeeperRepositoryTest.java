@@ -18,7 +18,10 @@
 package org.dromara.hmily.repository.zookeeper;
 
 import java.lang.reflect.Field;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
@@ -43,6 +46,7 @@ import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -100,6 +104,11 @@ public class ZookeeperRepositoryTest {
             zookeeperMock.mockGetChildren();
             zookeeperMock.mockSetData();
             zookeeperMock.mockDelete();
+            zookeeperMock.mockGetDataAsync();
+            zookeeperMock.mockGetChildrenAsync();
+            zookeeperMock.mockCreateAsync();
+            zookeeperMock.mockExistsAsync();
+            zookeeperMock.mockDeleteAsync();
         }
 
 
@@ -175,7 +184,7 @@ public class ZookeeperRepositoryTest {
         result = zookeeperRepository.createHmilyTransaction(hmilyTransaction);
         assertEquals(1L, result);
         Calendar calendar = Calendar.getInstance();
-        calendar.add(Calendar.HOUR_OF_DAY, -1);
+        calendar.add(Calendar.HOUR_OF_DAY, 1);
         List<HmilyTransaction> listTransactionResult = zookeeperRepository.listLimitByDelay(calendar.getTime(), 2);
         assertNotNull(listTransactionResult);
         assertNotEquals(0L, listTransactionResult.size());
@@ -218,7 +227,7 @@ public class ZookeeperRepositoryTest {
         assertNotEquals(0L, result);
         
         Calendar calendar = Calendar.getInstance();
-        calendar.add(Calendar.HOUR_OF_DAY, -1);
+        calendar.add(Calendar.HOUR_OF_DAY, 1);
         int removeByDateResult = zookeeperRepository.removeHmilyParticipantUndoByData(calendar.getTime());
         assertEquals(3L, removeByDateResult);
     }
@@ -245,7 +254,7 @@ public class ZookeeperRepositoryTest {
                         .equals(participantId)).findFirst().get().getStatus());
         
         Calendar calendar = Calendar.getInstance();
-        calendar.add(Calendar.HOUR_OF_DAY, -1);
+        calendar.add(Calendar.HOUR_OF_DAY, 1);
         long id1 = random.nextInt(1000);
         hmilyParticipant = buildHmilyParticipant(transactionId, id1);
         result = zookeeperRepository.createHmilyParticipant(hmilyParticipant);
@@ -277,6 +286,31 @@ public class ZookeeperRepositoryTest {
         assertEquals(3L, removeByDateResult);
     }
     
+    /**
+     * Test the participants are looked up by the index of their transaction.
+     */
+    @Test
+    public void testFindTransIdsWithoutParticipants() {
+        long transId = 1001L;
+        long otherTransId = 1002L;
+        long orphanTransId = 1003L;
+        zookeeperRepository.createHmilyParticipant(buildHmilyParticipant(transId, 2001L));
+        zookeeperRepository.createHmilyParticipant(buildHmilyParticipant(transId, 2002L));
+        zookeeperRepository.createHmilyParticipantAsync(buildHmilyParticipant(otherTransId, 2003L)).join();
+        assertEquals(2L, zookeeperRepository.listHmilyParticipantByTransId(transId).size());
+        assertEquals(Collections.singletonList(orphanTransId), zookeeperRepository.findTransIdsWithoutParticipants(Arrays.asList(transId, otherTransId, orphanTransId)));
+        
+        zookeeperRepository.removeHmilyParticipant(2001L);
+        assertTrue(zookeeperRepository.existHmilyParticipantByTransId(transId));
+        assertEquals(1, (int) zookeeperRepository.removeHmilyParticipantAsync(2003L).join());
+        assertFalse(zookeeperRepository.existHmilyParticipantByTransId(otherTransId));
+        assertEquals(1L, zookeeperRepository.listHmilyParticipantByTransId(transId).size());
+        
+        zookeeperRepository.updateHmilyParticipantStatus(2002L, 4);
+        zookeeperRepository.removeHmilyParticipantByData(new Date(System.currentTimeMillis() + 1000L));
+        assertEquals(Arrays.asList(transId, orphanTransId), zookeeperRepository.findTransIdsWithoutParticipants(Arrays.asList(transId, orphanTransId)));
+    }
+    
     private HmilyParticipantUndo buildHmilyParticipantUndo(Long transactionId, Long particaipantId, Long undoId) {
         HmilyParticipantUndo hmilyParticipantUndo = new HmilyParticipantUndo();
         hmilyParticipantUndo.setStatus(4);
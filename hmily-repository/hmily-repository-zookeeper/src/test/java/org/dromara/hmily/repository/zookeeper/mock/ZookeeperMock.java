@@ -1,5 +1,6 @@
 package org.dromara.hmily.repository.zookeeper.mock;
 
+import org.apache.zookeeper.AsyncCallback;
 import org.apache.zookeeper.CreateMode;
 import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.ZooKeeper;
@@ -37,7 +38,7 @@ public class ZookeeperMock {
 
 
     public void mockCreate() throws KeeperException, InterruptedException {
-        when(zooKeeper.create(anyString(), any(byte[].class), anyList(), eq(CreateMode.PERSISTENT))).then(x -> {
+        when(zooKeeper.create(anyString(), any(byte[].class), anyList(), any(CreateMode.class))).then(x -> {
             String path = x.getArgument(0);
             byte[] data = x.getArgument(1);
             List<ACL> aclList = x.getArgument(2);
@@ -79,17 +80,93 @@ public class ZookeeperMock {
                         dataTree.getData(x.getArgument(0), x.getArgument(2) == null ? new Stat() : x.getArgument(2), null));
     }
 
+    public void mockGetChildrenAsync() {
+        doAnswer(x -> {
+            String path = x.getArgument(0);
+            AsyncCallback.ChildrenCallback callback = x.getArgument(2);
+            try {
+                callback.processResult(KeeperException.Code.OK.intValue(), path, x.getArgument(3), dataTree.getChildren(path, null, null));
+            } catch (KeeperException.NoNodeException e) {
+                callback.processResult(KeeperException.Code.NONODE.intValue(), path, x.getArgument(3), null);
+            }
+            return null;
+        }).when(zooKeeper).getChildren(anyString(), eq(false), any(AsyncCallback.ChildrenCallback.class), any());
+    }
+
+    public void mockGetDataAsync() {
+        doAnswer(x -> {
+            String path = x.getArgument(0);
+            AsyncCallback.DataCallback callback = x.getArgument(2);
+            Stat stat = new Stat();
+            try {
+                byte[] data = dataTree.getData(path, stat, null);
+                callback.processResult(KeeperException.Code.OK.intValue(), path, x.getArgument(3), data, stat);
+            } catch (KeeperException.NoNodeException e) {
+                callback.processResult(KeeperException.Code.NONODE.intValue(), path, x.getArgument(3), null, null);
+            }
+            return null;
+        }).when(zooKeeper).getData(anyString(), eq(false), any(AsyncCallback.DataCallback.class), any());
+    }
+
     public void mockDelete() throws KeeperException, InterruptedException {
         // return is void and mock the method
         doAnswer(x -> {
             String path = x.getArgument(0);
             int version = x.getArgument(1);
             checkVersion(path, version);
+            DataNode node = dataTree.getNode(path);
+            if (node != null && !node.getChildren().isEmpty()) {
+                throw new KeeperException.NotEmptyException(path);
+            }
             dataTree.deleteNode(path, 0);
             return this;
         }).when(zooKeeper).delete(anyString(), anyInt());
     }
 
+    public void mockCreateAsync() {
+        doAnswer(x -> {
+            String path = x.getArgument(0);
+            AsyncCallback.StringCallback callback = x.getArgument(4);
+            try {
+                dataTree.createNode(path, x.getArgument(1), x.getArgument(2), 0, 0, 0, System.currentTimeMillis());
+                callback.processResult(KeeperException.Code.OK.intValue(), path, x.getArgument(5), path);
+            } catch (KeeperException e) {
+                callback.processResult(e.code().intValue(), path, x.getArgument(5), null);
+            }
+            return null;
+        }).when(zooKeeper).create(anyString(), any(byte[].class), anyList(), any(CreateMode.class), any(AsyncCallback.StringCallback.class), any());
+    }
+
+    public void mockExistsAsync() {
+        doAnswer(x -> {
+            String path = x.getArgument(0);
+            AsyncCallback.StatCallback callback = x.getArgument(2);
+            try {
+                callback.processResult(KeeperException.Code.OK.intValue(), path, x.getArgument(3), dataTree.statNode(path, null));
+            } catch (KeeperException.NoNodeException e) {
+                callback.processResult(KeeperException.Code.NONODE.intValue(), path, x.getArgument(3), null);
+            }
+            return null;
+        }).when(zooKeeper).exists(anyString(), eq(false), any(AsyncCallback.StatCallback.class), any());
+    }
+
+    public void mockDeleteAsync() {
+        doAnswer(x -> {
+            String path = x.getArgument(0);
+            AsyncCallback.VoidCallback callback = x.getArgument(2);
+            DataNode node = dataTree.getNode(path);
+            if (node == null) {
+                callback.processResult(KeeperException.Code.NONODE.intValue(), path, x.getArgument(3));
+            } else if (!node.getChildren().isEmpty()) {
+                callback.processResult(KeeperException.Code.NOTEMPTY.intValue(), path, x.getArgument(3));
+            } else {
+                dataTree.deleteNode(path, 0);
+                callback.processResult(KeeperException.Code.OK.intValue(), path, x.getArgument(3));
+            }
+            return null;
+        }).when(zooKeeper).delete(anyString(), anyInt(), any(AsyncCallback.VoidCallback.class), any());
+    }
+
     private void checkVersion(String path, int version) throws KeeperException.BadVersionException {
         DataNode node = dataTree.getNode(path);
         if (node != null) {
@@ -26,6 +26,9 @@ import com.caucho.hessian.io.SerializerFactory;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import org.dromara.hmily.serializer.spi.ByteBufferInputStream;
 import org.dromara.hmily.serializer.spi.HmilySerializer;
 import org.dromara.hmily.serializer.spi.exception.HmilySerializerException;
 import org.dromara.hmily.spi.HmilySPI;
@@ -57,8 +60,17 @@ public class HessianSerializer implements HmilySerializer {
     
     @Override
     public <T> T deSerialize(final byte[] param, final Class<T> clazz) throws HmilySerializerException {
+        return deSerialize(new ByteArrayInputStream(param), clazz);
+    }
+    
+    @Override
+    public <T> T deSerialize(final ByteBuffer param, final Class<T> clazz) throws HmilySerializerException {
+        return deSerialize(new ByteBufferInputStream(param.duplicate()), clazz);
+    }
+    
+    private <T> T deSerialize(final InputStream inputStream, final Class<T> clazz) throws HmilySerializerException {
         T obj;
-        try (ByteArrayInputStream is = new ByteArrayInputStream(param)) {
+        try (InputStream is = inputStream) {
             Hessian2Input input = new Hessian2Input(is);
             obj = (T) input.readObject();
             input.close();
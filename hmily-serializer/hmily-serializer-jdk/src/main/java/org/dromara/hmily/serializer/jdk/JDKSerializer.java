@@ -20,10 +20,13 @@ package org.dromara.hmily.serializer.jdk;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import org.dromara.hmily.serializer.spi.ByteBufferInputStream;
 import org.dromara.hmily.serializer.spi.HmilySerializer;
 import org.dromara.hmily.serializer.spi.exception.HmilySerializerException;
 import org.dromara.hmily.spi.HmilySPI;
@@ -48,9 +51,18 @@ public class JDKSerializer implements HmilySerializer {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public <T> T deSerialize(final byte[] param, final Class<T> clazz) throws HmilySerializerException {
-        try (ByteArrayInputStream arrayInputStream = new ByteArrayInputStream(param); ObjectInput input = new ObjectInputStream(arrayInputStream)) {
+        return deSerialize(new ByteArrayInputStream(param), clazz);
+    }
+    
+    @Override
+    public <T> T deSerialize(final ByteBuffer param, final Class<T> clazz) throws HmilySerializerException {
+        return deSerialize(new ByteBufferInputStream(param.duplicate()), clazz);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <T> T deSerialize(final InputStream inputStream, final Class<T> clazz) throws HmilySerializerException {
+        try (ObjectInput input = new ObjectInputStream(inputStream)) {
             return (T) input.readObject();
         } catch (IOException | ClassNotFoundException e) {
             throw new HmilySerializerException("java deSerialize error " + e.getMessage());
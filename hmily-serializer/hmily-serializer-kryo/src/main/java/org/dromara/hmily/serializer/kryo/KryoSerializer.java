@@ -18,11 +18,13 @@
 package org.dromara.hmily.serializer.kryo;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import org.dromara.hmily.serializer.spi.HmilySerializer;
 import org.dromara.hmily.serializer.spi.exception.HmilySerializerException;
 import org.dromara.hmily.spi.HmilySPI;
@@ -69,4 +71,15 @@ public class KryoSerializer implements HmilySerializer {
         }
         return object;
     }
+    
+    @Override
+    public <T> T deSerialize(final ByteBuffer param, final Class<T> clazz) throws HmilySerializerException {
+        Kryo kryo = null;
+        try {
+            kryo = KryoPoolFactory.getInstance().get();
+            return kryo.readObject(new ByteBufferInput(param.duplicate()), clazz);
+        } finally {
+            KryoPoolFactory.getInstance().returnKryo(kryo);
+        }
+    }
 }
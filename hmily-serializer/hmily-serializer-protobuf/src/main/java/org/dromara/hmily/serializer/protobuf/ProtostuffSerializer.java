@@ -23,6 +23,9 @@ import com.dyuproject.protostuff.Schema;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import org.dromara.hmily.serializer.spi.ByteBufferInputStream;
 import org.dromara.hmily.serializer.spi.HmilySerializer;
 import org.dromara.hmily.serializer.spi.exception.HmilySerializerException;
 import org.dromara.hmily.spi.HmilySPI;
@@ -63,8 +66,17 @@ public class ProtostuffSerializer implements HmilySerializer {
 
     @Override
     public <T> T deSerialize(final byte[] param, final Class<T> clazz) throws HmilySerializerException {
+        return deSerialize(new ByteArrayInputStream(param), clazz);
+    }
+    
+    @Override
+    public <T> T deSerialize(final ByteBuffer param, final Class<T> clazz) throws HmilySerializerException {
+        return deSerialize(new ByteBufferInputStream(param.duplicate()), clazz);
+    }
+    
+    private <T> T deSerialize(final InputStream param, final Class<T> clazz) throws HmilySerializerException {
         T object;
-        try (ByteArrayInputStream inputStream = new ByteArrayInputStream(param)) {
+        try (InputStream inputStream = param) {
             object = OBJENESIS.newInstance(clazz);
             Schema<T> schema = getSchema(clazz);
             ProtostuffIOUtil.mergeFrom(inputStream, object, schema);
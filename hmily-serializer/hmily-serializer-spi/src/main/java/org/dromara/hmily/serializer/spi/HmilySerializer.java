@@ -17,6 +17,7 @@
 
 package org.dromara.hmily.serializer.spi;
 
+import java.nio.ByteBuffer;
 import org.dromara.hmily.serializer.spi.exception.HmilySerializerException;
 
 /**
@@ -46,5 +47,20 @@ public interface HmilySerializer {
      * @throws HmilySerializerException the hmily serializer exception
      */
     <T> T deSerialize(byte[] param, Class<T> clazz) throws HmilySerializerException;
-
+    
+    /**
+     * De serialize the remaining bytes of a buffer, which may be a direct or memory mapped one.
+     * The default copies them to an array, implementations override it to read the buffer in place.
+     *
+     * @param <T>   the type parameter
+     * @param param the param
+     * @param clazz the clazz
+     * @return the t
+     * @throws HmilySerializerException the hmily serializer exception
+     */
+    default <T> T deSerialize(final ByteBuffer param, final Class<T> clazz) throws HmilySerializerException {
+        byte[] bytes = new byte[param.remaining()];
+        param.duplicate().get(bytes);
+        return deSerialize(bytes, clazz);
+    }
 }